@@ -0,0 +1,69 @@
+@echo off
+rem qctl launcher for the JVM distribution (bin\, lib\, and an optional jlink runtime\).
+rem
+rem Starts qctl on an AppCDS archive built from lib\qctl.classlist, the class list recorded at
+rem build time from a training run (help, cache ls, qbit resolve, qrun status). Archives are tied
+rem to absolute jar paths, so the archive is created here on first use, under the user cache
+rem directory and keyed by install path, and recreated when lib\qctl.jar or java.exe changes.
+rem A stale or unusable archive is ignored by the JVM (-Xshare:auto); startup never depends on it.
+
+setlocal
+for %%I in ("%~dp0..") do set "APP_HOME=%%~fI"
+
+if exist "%APP_HOME%\runtime\bin\java.exe" (
+   set "JAVA=%APP_HOME%\runtime\bin\java.exe"
+) else if defined JAVA_HOME (
+   set "JAVA=%JAVA_HOME%\bin\java.exe"
+) else (
+   for %%J in (java.exe) do set "JAVA=%%~$PATH:J"
+)
+if not defined JAVA set "JAVA=java.exe"
+
+if defined LOCALAPPDATA (
+   set "CACHE_DIR=%LOCALAPPDATA%\qctl\cache"
+) else (
+   set "CACHE_DIR=%USERPROFILE%\AppData\Local\qctl\cache"
+)
+
+set "JAR=%APP_HOME%\lib\qctl.jar"
+set "CLASSLIST=%APP_HOME%\lib\qctl.classlist"
+set "KEY=%APP_HOME::=%"
+set "KEY=%KEY:\=_%"
+set "KEY=%KEY: =_%"
+set "ARCHIVE=%CACHE_DIR%\cds\qctl-@project.version@-%KEY%.jsa"
+
+if not exist "%CLASSLIST%" goto cold
+
+rem cmd cannot compare file ages, so the archive records the jar's and java's time and size
+set "STAMP="
+for %%F in ("%JAR%") do set "STAMP=%%~tzF"
+for %%F in ("%JAVA%") do set "STAMP=%STAMP% %%~tzF"
+set "BUILT="
+if exist "%ARCHIVE%.stamp" set /p BUILT=<"%ARCHIVE%.stamp"
+if exist "%ARCHIVE%" if "%BUILT%"=="%STAMP%" goto run
+
+rem A failed dump leaves an empty placeholder so it is not retried until the jar or java changes
+if not exist "%CACHE_DIR%\cds" mkdir "%CACHE_DIR%\cds" >nul 2>&1
+set "DUMP=%ARCHIVE%.%RANDOM%%RANDOM%"
+"%JAVA%" -Xshare:dump -XX:SharedClassListFile="%CLASSLIST%" -XX:SharedArchiveFile="%DUMP%" -cp "%JAR%" >nul 2>&1
+if errorlevel 1 goto placeholder
+move /y "%DUMP%" "%ARCHIVE%" >nul 2>&1
+if errorlevel 1 goto discard
+goto stamp
+
+:placeholder
+type nul > "%ARCHIVE%" 2>nul
+
+:stamp
+>"%ARCHIVE%.stamp" echo %STAMP%
+
+:discard
+del /q "%DUMP%" >nul 2>&1
+
+:run
+"%JAVA%" -XX:SharedArchiveFile="%ARCHIVE%" -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off %JAVA_OPTS% -cp "%JAR%" io.qrun.qctl.core.Main %*
+exit /b %ERRORLEVEL%
+
+:cold
+"%JAVA%" %JAVA_OPTS% -cp "%JAR%" io.qrun.qctl.core.Main %*
+exit /b %ERRORLEVEL%
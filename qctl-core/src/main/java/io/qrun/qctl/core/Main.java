@@ -13,7 +13,7 @@
 package io.qrun.qctl.core;
 
 
-import org.slf4j.Logger;
+import io.qrun.qctl.shared.spi.CommandIndex;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -25,7 +25,10 @@ import picocli.CommandLine.Spec;
 
 
 /**
- * qctl entrypoint: registers subcommands via SPI and executes.
+ * qctl entrypoint: registers subcommands via SPI and executes. Only the plugin commands named on
+ * the command line are instantiated; the others come from the build-time {@link CommandIndex}.
+ * When a {@code qctl daemon} is listening, the invocation is handed to it before any of that.
+ * {@code --trace-startup} records each bootstrap phase with {@link io.qrun.qctl.core.sys.StartupTrace}.
  *
  * Why: Centralized bootstrap that discovers plugins and wires the CLI surfaces.
  * @since 0.1.0
@@ -38,11 +41,14 @@ import picocli.CommandLine.Spec;
    subcommands = {
       HelpCommand.class,
       io.qrun.qctl.core.cli.AuthCommand.class,
-      io.qrun.qctl.core.cli.CacheCommand.class
+      io.qrun.qctl.core.cli.BatchCommand.class,
+      io.qrun.qctl.core.cli.CacheCommand.class,
+      io.qrun.qctl.core.cli.DaemonCommand.class
    })
 public class Main implements Runnable
 {
-   private static final Logger log = LoggerFactory.getLogger(Main.class);
+   /** Longest a finished command waits for background HTTP cache refreshes before exiting. */
+   private static final java.time.Duration REFRESH_GRACE = java.time.Duration.ofSeconds(2);
 
    @Spec
    CommandSpec spec;
@@ -67,6 +73,29 @@ public class Main implements Runnable
    @Option(names = "--telemetry.enabled", description = "Enable telemetry for this invocation")
    boolean telemetryEnabled;
 
+   @Option(names = "--record-http", paramLabel = "<file>", description = "Record every HTTP exchange to a cassette file")
+   java.nio.file.Path recordHttp;
+
+   @Option(names = "--replay-http", paramLabel = "<file>", description = "Answer HTTP requests from a recorded cassette file")
+   java.nio.file.Path replayHttp;
+
+   @Option(
+      names = "--replay-speed",
+      paramLabel = "<factor>",
+      description = "Replay speed for --replay-http: 1 = recorded latency, 0 = no delay (default: 1)")
+   double replaySpeed = 1D;
+
+   @Option(names = "--no-daemon", description = "Run in this process even when a qctl daemon is listening")
+   boolean noDaemon;
+
+   @Option(
+      names = "--trace-startup",
+      arity = "0..1",
+      fallbackValue = "",
+      paramLabel = "<file>",
+      description = "Print a startup phase waterfall to stderr, or write it to <file> (Chrome trace JSON for *.json)")
+   String traceStartup;
+
 
 
    /**
@@ -75,33 +104,314 @@ public class Main implements Runnable
     * @param args command-line arguments
     * @since 0.1.0
     */
+   @SuppressWarnings("try")
    public static void main(String[] args)
    {
-      CommandLine cmd = new CommandLine(new Main());
-      // Discover external subcommands via SPI and register dynamically
-      try
+      boolean trace = traceStartupRequested(args);
+      if(trace)
       {
-         java.util.ServiceLoader<io.qrun.qctl.shared.spi.CommandPlugin> loader =
-            java.util.ServiceLoader.load(io.qrun.qctl.shared.spi.CommandPlugin.class);
-         for(io.qrun.qctl.shared.spi.CommandPlugin plugin : loader)
+         io.qrun.qctl.core.sys.StartupTrace.enable();
+         try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("logging", "logback.init"))
          {
-            Object      command = plugin.getCommand();
-            CommandLine sub     = new CommandLine(command);
-            String      name    = sub.getCommandSpec().name();
-            cmd.addSubcommand(name, command);
+            // Logback initializes on first use; do it here so its cost shows as its own phase
+            LoggerFactory.getILoggerFactory();
          }
       }
-      catch(java.util.ServiceConfigurationError | NoClassDefFoundError e)
+
+      java.util.OptionalInt forwarded = io.qrun.qctl.core.daemon.DaemonClient.forward(args);
+      if(forwarded.isPresent())
+      {
+         System.exit(forwarded.getAsInt());
+      }
+
+      CommandLine cmd;
+      try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("cli", "cli.model"))
+      {
+         cmd = commandLine(args);
+      }
+      try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("http", "http.setup"))
+      {
+         installHttpMetricsDump(args);
+         installHttpCassette(args);
+      }
+      catch(java.io.IOException | IllegalArgumentException e)
+      {
+         System.err.println("error: cannot load HTTP cassette: " + e.getMessage());
+         System.exit(2);
+      }
+
+      int code;
+      if(trace)
       {
-         // If some providers are missing (e.g., native image without module classes),
-         // keep core commands working and optionally log when --debug is set.
-         if(Boolean.getBoolean("qctl.debug") || java.util.Arrays.asList(args).contains("--debug"))
+         io.qrun.qctl.core.sys.StartupTrace.Span parse = io.qrun.qctl.core.sys.StartupTrace.begin("cli", "cli.parse");
+         cmd.setExecutionStrategy(parsed ->
+         {
+            parse.close();
+            try(io.qrun.qctl.core.sys.StartupTrace.Span run = io.qrun.qctl.core.sys.StartupTrace.begin("command", "command.run"))
+            {
+               return new CommandLine.RunLast().execute(parsed);
+            }
+         });
+         code = cmd.execute(args);
+         parse.close();
+         io.qrun.qctl.core.sys.StartupTrace.emit(traceStartupTarget(cmd), System.err);
+      }
+      else
+      {
+         code = cmd.execute(args);
+      }
+      io.qrun.qctl.core.http.ApiClient.awaitRefreshes(REFRESH_GRACE);
+      System.exit(code);
+   }
+
+
+
+   /**
+    * Builds the root command line with the SPI command plugins registered. Plugins named in
+    * {@code args}, and any without a build-time {@link CommandIndex} entry, are instantiated with
+    * their full command tree. The rest are registered as bare specs from the index (name, aliases,
+    * description), which is all usage help and command-name matching need. A
+    * {@link io.qrun.qctl.core.cli.CommandFailedException} ends execution with its exit code.
+    *
+    * @param args command-line arguments
+    * @return root command line
+    */
+   @SuppressWarnings("try")
+   public static CommandLine commandLine(String[] args)
+   {
+      CommandLine cmd;
+      try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("cli", "picocli.root"))
+      {
+         cmd = new CommandLine(new Main());
+      }
+      boolean debug = Boolean.getBoolean("qctl.debug") || java.util.Arrays.asList(args).contains("--debug");
+
+      // If some providers are missing (e.g., native image without module classes),
+      // keep core commands working and optionally log when --debug is set.
+      java.util.function.Consumer<Throwable> skipped = e ->
+      {
+         if(debug)
          {
             System.err.println("warning: some command plugins could not be loaded: " + e.getMessage());
          }
+      };
+      java.util.List<CommandIndex.Entry> plugins;
+      try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("cli", "plugins.discover"))
+      {
+         plugins = CommandIndex.load(skipped);
       }
-      int code = cmd.execute(args);
-      System.exit(code);
+      for(CommandIndex.Entry plugin : plugins)
+      {
+         if(plugin.isIndexed() && !plugin.isNamedIn(args))
+         {
+            try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("plugin", "plugin " + plugin.name()).detail("index stub"))
+            {
+               CommandSpec stub = CommandSpec.create().name(plugin.name()).aliases(plugin.aliases());
+               stub.usageMessage().description(plugin.description());
+               cmd.addSubcommand(plugin.name(), stub);
+            }
+            continue;
+         }
+         try(io.qrun.qctl.core.sys.StartupTrace.Span span = io.qrun.qctl.core.sys.StartupTrace.begin("plugin", "plugin " + (plugin.isIndexed() ? plugin.name() : plugin.type())).detail("instantiated"))
+         {
+            CommandLine sub = new CommandLine(plugin.instantiate().getCommand());
+            cmd.addSubcommand(sub.getCommandSpec().name(), sub);
+         }
+         catch(java.util.ServiceConfigurationError | NoClassDefFoundError e)
+         {
+            skipped.accept(e);
+         }
+      }
+      cmd.setExecutionExceptionHandler((e, line, parsed) ->
+      {
+         if(e instanceof io.qrun.qctl.core.cli.CommandFailedException failed)
+         {
+            return failed.exitCode;
+         }
+         throw e;
+      });
+      return cmd;
+   }
+
+
+
+   /**
+    * Runs a command line in this process under an invocation: {@code Path} options resolve
+    * against its working directory and picocli's own output (usage, errors) goes to its streams.
+    * Used by the daemon and by {@code qctl batch}.
+    *
+    * @param argv command-line arguments
+    * @param inv  invocation to run under
+    * @return exit code
+    * @throws Exception when the command fails outside picocli's exception handling
+    */
+   public static int execute(String[] argv, io.qrun.qctl.core.sys.Invocation inv) throws Exception
+   {
+      return inv.call(() ->
+      {
+         CommandLine cmd = commandLine(argv);
+         cmd.registerConverter(java.nio.file.Path.class, inv::resolve);
+         cmd.setOut(new java.io.PrintWriter(inv.out(), true));
+         cmd.setErr(new java.io.PrintWriter(inv.err(), true));
+         return cmd.execute(argv);
+      });
+   }
+
+
+
+   /**
+    * Dumps the process-wide HTTP metrics to stderr on exit: as text under {@code --debug}, as a
+    * single JSON object under {@code --output json}. A shutdown hook is used because commands
+    * terminate through {@code System.exit}.
+    *
+    * @param args command-line arguments
+    */
+   static void installHttpMetricsDump(String[] args)
+   {
+      java.util.List<String> argv = java.util.Arrays.asList(args);
+      if(!argv.contains("--debug") && !jsonOutput(argv))
+      {
+         return;
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(
+         () -> System.err.print(httpMetricsDump(args, io.qrun.qctl.core.http.HttpMetrics.shared())), "qctl-http-metrics"));
+   }
+
+
+
+   /**
+    * Renders HTTP metrics the way the CLI dumps them on exit: as text under {@code --debug}, as a
+    * single JSON object line under {@code --output json}. The daemon uses this to send a
+    * forwarded command's metrics back on its stderr.
+    *
+    * @param args    command-line arguments
+    * @param metrics metrics to render
+    * @return dump, or "" when neither option is given or nothing was recorded
+    */
+   public static String httpMetricsDump(String[] args, io.qrun.qctl.core.http.HttpMetrics metrics)
+   {
+      java.util.List<String> argv = java.util.Arrays.asList(args);
+      if(metrics.isEmpty())
+      {
+         return "";
+      }
+      if(jsonOutput(argv))
+      {
+         try
+         {
+            return io.qrun.qctl.shared.json.Json.writer().writeValueAsString(java.util.Map.of("http", metrics.toMap())) + System.lineSeparator();
+         }
+         catch(com.fasterxml.jackson.core.JsonProcessingException e)
+         {
+            return "warning: could not write HTTP metrics: " + e.getMessage() + System.lineSeparator();
+         }
+      }
+      return argv.contains("--debug") ? metrics.renderText() : "";
+   }
+
+
+
+   /***************************************************************************
+    ** Returns whether the arguments ask for JSON output.
+    ***************************************************************************/
+   private static boolean jsonOutput(java.util.List<String> argv)
+   {
+      int outputAt = argv.indexOf("--output");
+      return argv.contains("--output=json")
+         || outputAt >= 0 && outputAt + 1 < argv.size() && "json".equals(argv.get(outputAt + 1));
+   }
+
+
+
+   /**
+    * Installs a process-wide HTTP cassette from {@code --record-http <file>} or
+    * {@code --replay-http <file>} (with optional {@code --replay-speed <factor>}). These are read
+    * ahead of picocli because clients are created deep inside subcommands. A recording is
+    * written by a shutdown hook since commands terminate through {@code System.exit}.
+    *
+    * @param args command-line arguments
+    * @throws java.io.IOException when a replay cassette cannot be read
+    */
+   static void installHttpCassette(String[] args) throws java.io.IOException
+   {
+      String record = optionValue(args, "--record-http");
+      String replay = optionValue(args, "--replay-http");
+      if(replay != null)
+      {
+         String speed  = optionValue(args, "--replay-speed");
+         double factor = speed == null ? 1D : Double.parseDouble(speed);
+         io.qrun.qctl.core.http.HttpCassette.install(io.qrun.qctl.core.http.HttpCassette.replaying(
+            java.nio.file.Path.of(replay), factor == 0D ? io.qrun.qctl.core.http.HttpCassette.AS_FAST_AS_POSSIBLE : factor));
+      }
+      else if(record != null)
+      {
+         io.qrun.qctl.core.http.HttpCassette cassette = io.qrun.qctl.core.http.HttpCassette.recording(java.nio.file.Path.of(record));
+         io.qrun.qctl.core.http.HttpCassette.install(cassette);
+         Runtime.getRuntime().addShutdownHook(new Thread(() ->
+         {
+            try
+            {
+               cassette.close();
+            }
+            catch(java.io.IOException e)
+            {
+               System.err.println("warning: could not write HTTP cassette: " + e.getMessage());
+            }
+         }, "qctl-http-cassette"));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns whether --trace-startup is given, with or without a value. Read
+    ** ahead of picocli so parsing itself is traced.
+    ***************************************************************************/
+   static boolean traceStartupRequested(String[] args)
+   {
+      for(String arg : args)
+      {
+         if(arg.equals("--trace-startup") || arg.startsWith("--trace-startup="))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the parsed --trace-startup target: "" for stderr, or a file
+    ** name given as "--trace-startup=f" or "--trace-startup f". Picocli
+    ** decides whether the next argument is the file or a subcommand; when
+    ** parsing failed the trace goes to stderr.
+    ***************************************************************************/
+   static String traceStartupTarget(CommandLine cmd)
+   {
+      String target = cmd.<Main>getCommand().traceStartup;
+      return target == null ? "" : target;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the value of {@code --name value} or {@code --name=value}, or null.
+    ***************************************************************************/
+   private static String optionValue(String[] args, String name)
+   {
+      for(int i = 0; i < args.length; i++)
+      {
+         if(args[i].equals(name) && i + 1 < args.length)
+         {
+            return args[i + 1];
+         }
+         if(args[i].startsWith(name + "="))
+         {
+            return args[i].substring(name.length() + 1);
+         }
+      }
+      return null;
    }
 
 
@@ -116,23 +426,19 @@ public class Main implements Runnable
    {
       try
       {
-         // Load config from default locations and env overlay
-         java.nio.file.Path configPath =
-            io.qrun.qctl.core.sys.SystemPaths.ensureDir(io.qrun.qctl.core.sys.SystemPaths.configDir())
-               .resolve("qctl.yaml");
-         com.fasterxml.jackson.databind.JsonNode cfg =
-            io.qrun.qctl.core.config.ConfigLoader.loadAndValidate(configPath, System.getenv());
+         // Load (and so validate) config from default locations and env overlay
+         io.qrun.qctl.core.config.ConfigLoader.load();
          spec.commandLine().getOut().println("qctl: no command specified. Use --help.");
       }
       catch(ExecutionException e)
       {
-         log.error("Execution failed", e);
+         LoggerFactory.getLogger(Main.class).error("Execution failed", e);
          throw e;
       }
       catch(Exception e)
       {
-         log.error("Startup failed", e);
-         System.exit(2);
+         LoggerFactory.getLogger(Main.class).error("Startup failed", e);
+         throw new io.qrun.qctl.core.cli.CommandFailedException(2);
       }
    }
 }
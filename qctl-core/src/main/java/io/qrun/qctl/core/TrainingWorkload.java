@@ -0,0 +1,156 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core;
+
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+
+/**
+ * Runs a representative command mix in one process for build-time training: the AppCDS class
+ * list of the JVM distribution ({@code -XX:DumpLoadedClassList}), the reflection config recorded
+ * by the native-image agent, and the profile of the instrumented PGO native image.
+ *
+ * <p>The mix is usage help, {@code qbit resolve --hermetic --fetch} over a one-package lockfile,
+ * {@code qrun status} and {@code cache ls}, all in-process through {@link Main#commandLine}.
+ * The API calls go to the mock on {@code http://localhost:4010}, which must be started first; it
+ * is waited for briefly. Arguments: a scratch directory for the lockfile and, optionally, how many
+ * times to repeat the mix (default 1; repeats give profile-guided builds steady-state counts).
+ *
+ * Why: Training data from real commands makes build-time optimizations cover what runs actually do.
+ * @since 0.1.0
+ */
+public final class TrainingWorkload
+{
+   private static final URI      API          = URI.create("http://localhost:4010");
+   private static final Duration API_WAIT     = Duration.ofSeconds(30);
+   private static final long     API_POLL_MS  = 200L;
+   private static final String   QBIT         = "training-qbit";
+   private static final String   QBIT_VERSION = "1.0.0";
+
+
+
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private TrainingWorkload()
+   {
+   }
+
+
+
+   /**
+    * Runs the training mix and exits with the first non-zero command exit code, if any.
+    *
+    * @param args scratch directory, then optional repeat count
+    * @throws Exception when the mock API does not come up or the lockfile cannot be written
+    */
+   public static void main(String[] args) throws Exception
+   {
+      Path work   = Files.createDirectories(Path.of(args.length > 0 ? args[0] : "training"));
+      int  rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+      awaitApi();
+      Path lockfile = writeLockfile(work);
+
+      List<String[]> mix = List.of(
+         new String[] { "--help" },
+         new String[] { "qbit", "resolve", "--hermetic", "--fetch", "--lockfile", lockfile.toString() },
+         new String[] { "qrun", "status", "--app", "training", "--env", "dev" },
+         new String[] { "cache", "ls" });
+      for(int round = 0; round < rounds; round++)
+      {
+         for(String[] argv : mix)
+         {
+            int code = Main.commandLine(argv).execute(argv);
+            if(code != 0)
+            {
+               System.err.println("training command failed (" + code + "): qctl " + String.join(" ", argv));
+               System.exit(code);
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Polls the mock API port until it accepts connections.
+    ***************************************************************************/
+   private static void awaitApi() throws IOException, InterruptedException
+   {
+      long deadline = System.nanoTime() + API_WAIT.toNanos();
+      while(true)
+      {
+         try(Socket s = new Socket())
+         {
+            s.connect(new InetSocketAddress(API.getHost(), API.getPort()), (int) API_POLL_MS);
+            return;
+         }
+         catch(IOException e)
+         {
+            if(System.nanoTime() > deadline)
+            {
+               throw new IOException("mock API not reachable at " + API, e);
+            }
+            Thread.sleep(API_POLL_MS);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Writes a lockfile for one mock qBit, with the integrity of the tarball
+    ** the mock serves, so the fetch path runs through to the cache.
+    ***************************************************************************/
+   private static Path writeLockfile(Path work) throws IOException, InterruptedException, NoSuchAlgorithmException
+   {
+      URI    tarball = API.resolve("/v1/qbits/" + QBIT + "/versions/" + QBIT_VERSION + "/tarball");
+      byte[] body;
+      try(HttpClient http = HttpClient.newHttpClient())
+      {
+         body = http.send(HttpRequest.newBuilder(tarball).build(), HttpResponse.BodyHandlers.ofByteArray()).body();
+      }
+      String integrity = "sha512-" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-512").digest(body));
+
+      Path lockfile = work.resolve("qbits.lock");
+      Files.writeString(lockfile, """
+         {
+           "lockfileVersion": 1,
+           "packages": {
+             "%1$s": {
+               "name": "%1$s",
+               "version": "%2$s",
+               "resolved": "%3$s",
+               "integrity": "%4$s"
+             }
+           }
+         }
+         """.formatted(QBIT, QBIT_VERSION, tarball, integrity), StandardCharsets.UTF_8);
+      return lockfile;
+   }
+}
@@ -0,0 +1,220 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.batch;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * Turns one {@code qctl batch} input line into command-line arguments.
+ *
+ * <p>A line starting with {@code [} is a JSON array of arguments; one starting with <code>{</code>
+ * is a JSON object with an {@code argv} array and an optional {@code id} echoed in the result.
+ * Any other line is split like a POSIX shell word list: whitespace separates arguments, single
+ * quotes are literal, double quotes allow {@code \"}, {@code \\}, {@code \$} and {@code \`}
+ * escapes, a backslash outside quotes escapes the next character, and {@code #} at the start of
+ * a word begins a comment. No expansion of any kind is done. A leading {@code qctl} word is
+ * dropped, so lines copied from scripts work as-is.
+ *
+ * Why: Deploy scripts already hold their calls as shell lines; generators find JSON easier to emit.
+ * @since 0.1.0
+ */
+final class BatchParser
+{
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private BatchParser()
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** Parses a line. Blank and comment-only lines give an empty argv.
+    **
+    ** @throws IllegalArgumentException when the line is malformed
+    ***************************************************************************/
+   static Line parse(String text)
+   {
+      String trimmed = text.strip();
+      if(trimmed.startsWith("[") || trimmed.startsWith("{"))
+      {
+         return parseJson(trimmed);
+      }
+      return new Line(null, dropProgramName(split(trimmed)));
+   }
+
+
+
+   /***************************************************************************
+    ** Parses an NDJSON line: an argument array or an object with argv and id.
+    ***************************************************************************/
+   private static Line parseJson(String text)
+   {
+      JsonNode node;
+      try
+      {
+         node = Json.mapper().readTree(text);
+      }
+      catch(JsonProcessingException e)
+      {
+         throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage(), e);
+      }
+
+      String   id   = null;
+      JsonNode argv = node;
+      if(node.isObject())
+      {
+         argv = node.get("argv");
+         JsonNode idNode = node.get("id");
+         if(idNode != null && !idNode.isNull())
+         {
+            id = idNode.asText();
+         }
+      }
+      if(argv == null || !argv.isArray())
+      {
+         throw new IllegalArgumentException("expected a JSON array of arguments or an object with an \"argv\" array");
+      }
+      List<String> args = new ArrayList<>(argv.size());
+      for(JsonNode arg : argv)
+      {
+         if(!arg.isTextual())
+         {
+            throw new IllegalArgumentException("arguments must be JSON strings, got " + arg);
+         }
+         args.add(arg.asText());
+      }
+      return new Line(id, dropProgramName(args));
+   }
+
+
+
+   /***************************************************************************
+    ** Splits a shell-like word list.
+    ***************************************************************************/
+   static List<String> split(String text)
+   {
+      List<String>  words  = new ArrayList<>();
+      StringBuilder word   = new StringBuilder();
+      boolean       inWord = false;
+      int           i      = 0;
+      while(i < text.length())
+      {
+         char c = text.charAt(i);
+         if(Character.isWhitespace(c))
+         {
+            if(inWord)
+            {
+               words.add(word.toString());
+               word.setLength(0);
+               inWord = false;
+            }
+            i++;
+            continue;
+         }
+         if(c == '#' && !inWord)
+         {
+            break;
+         }
+
+         inWord = true;
+         if(c == '\'')
+         {
+            int close = text.indexOf('\'', i + 1);
+            if(close < 0)
+            {
+               throw new IllegalArgumentException("unterminated single quote");
+            }
+            word.append(text, i + 1, close);
+            i = close + 1;
+         }
+         else if(c == '"')
+         {
+            i = readDoubleQuoted(text, i + 1, word);
+         }
+         else if(c == '\\')
+         {
+            if(i + 1 >= text.length())
+            {
+               throw new IllegalArgumentException("trailing backslash");
+            }
+            word.append(text.charAt(i + 1));
+            i += 2;
+         }
+         else
+         {
+            word.append(c);
+            i++;
+         }
+      }
+      if(inWord)
+      {
+         words.add(word.toString());
+      }
+      return words;
+   }
+
+
+
+   /***************************************************************************
+    ** Appends a double-quoted section starting after the opening quote and
+    ** returns the index after the closing quote.
+    ***************************************************************************/
+   private static int readDoubleQuoted(String text, int start, StringBuilder word)
+   {
+      int i = start;
+      while(i < text.length())
+      {
+         char c = text.charAt(i);
+         if(c == '"')
+         {
+            return i + 1;
+         }
+         if(c == '\\' && i + 1 < text.length() && "\"\\$`".indexOf(text.charAt(i + 1)) >= 0)
+         {
+            word.append(text.charAt(i + 1));
+            i += 2;
+            continue;
+         }
+         word.append(c);
+         i++;
+      }
+      throw new IllegalArgumentException("unterminated double quote");
+   }
+
+
+
+   /***************************************************************************
+    ** Drops a leading "qctl" word.
+    ***************************************************************************/
+   private static List<String> dropProgramName(List<String> args)
+   {
+      return !args.isEmpty() && "qctl".equals(args.get(0)) ? args.subList(1, args.size()) : args;
+   }
+
+
+
+   /***************************************************************************
+    ** A parsed line: optional id from NDJSON input and the arguments.
+    ***************************************************************************/
+   record Line(String id, List<String> argv)
+   {
+   }
+}
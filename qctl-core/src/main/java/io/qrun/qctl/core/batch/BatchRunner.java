@@ -0,0 +1,350 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.batch;
+
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import io.qrun.qctl.core.Main;
+import io.qrun.qctl.core.sys.Invocation;
+import picocli.CommandLine;
+
+
+/**
+ * Runs the commands of a {@code qctl batch} input in this process and reports one
+ * {@link Result} per command, in input order.
+ *
+ * <p>Every command gets a fresh command line but shares everything process-wide: the HTTP
+ * client and its connection pool, rate limiter, circuit breaker and caches. Each one runs under
+ * its own {@link Invocation} with buffered stdout and stderr, so concurrent commands never
+ * interleave their output. With {@code jobs > 1}, up to that many commands run at once while
+ * results are still reported in input order; input is read ahead by at most {@code 2 * jobs}
+ * lines. With fail-fast, no further input is read after the first failure, and commands that
+ * have not started yet are skipped; commands already running finish and are reported.
+ *
+ * Why: Scripts looping over qctl calls pay process startup and TLS setup once instead of per call.
+ * @since 0.1.0
+ */
+public final class BatchRunner
+{
+   private static final Set<String> NOT_IN_BATCH = Set.of("batch", "daemon");
+
+   private final int           jobs;
+   private final boolean       failFast;
+   private final CommandRunner command;
+
+
+
+   /**
+    * Creates a runner.
+    *
+    * @param jobs     maximum number of commands running at once
+    * @param failFast stop after the first failed command
+    */
+   public BatchRunner(int jobs, boolean failFast)
+   {
+      this(jobs, failFast, Main::execute);
+   }
+
+
+
+   /***************************************************************************
+    ** Creates a runner executing each command line with the given function
+    ** instead of {@link Main#execute}.
+    ***************************************************************************/
+   BatchRunner(int jobs, boolean failFast, CommandRunner command)
+   {
+      if(jobs < 1)
+      {
+         throw new IllegalArgumentException("jobs must be >= 1: " + jobs);
+      }
+      this.jobs = jobs;
+      this.failFast = failFast;
+      this.command = command;
+   }
+
+
+
+   /**
+    * Reads commands until end of input and runs them, passing each result to {@code sink} in
+    * input order. Blank and comment lines are skipped but still count for line numbers; a
+    * malformed line is reported as a failed command with exit code 2.
+    *
+    * @param input  command lines
+    * @param parent invocation whose environment and working directory the commands run with
+    * @param sink   receives results in input order, on the calling thread
+    * @return summary
+    * @throws IOException when the input cannot be read
+    */
+   public Summary run(BufferedReader input, Invocation parent, Consumer<Result> sink) throws IOException
+   {
+      Invocation.routeStandardStreams();
+      ExecutorService pool     = jobs > 1 ? Executors.newFixedThreadPool(jobs, Thread.ofPlatform().daemon().name("qctl-batch-", 1).factory()) : null;
+      Executor        executor = pool != null ? pool : Runnable::run;
+      Tally           tally    = new Tally(sink);
+      AtomicBoolean   stopped  = new AtomicBoolean();
+      Deque<CompletableFuture<Result>> pending = new ArrayDeque<>();
+      try
+      {
+         int    lineNo = 0;
+         String text;
+         while(!(failFast && tally.failed > 0) && (text = input.readLine()) != null)
+         {
+            lineNo++;
+            CompletableFuture<Result> result = submit(lineNo, text, parent, executor, stopped);
+            if(result == null)
+            {
+               continue;
+            }
+            pending.add(result);
+            while(!pending.isEmpty() && (pending.peek().isDone() || pending.size() > 2 * jobs))
+            {
+               tally.accept(pending.poll());
+            }
+         }
+         if(failFast && tally.failed > 0)
+         {
+            // Queued commands see the flag and skip; running ones finish and are reported
+            stopped.set(true);
+         }
+         while(!pending.isEmpty())
+         {
+            tally.accept(pending.poll());
+         }
+      }
+      finally
+      {
+         if(pool != null)
+         {
+            pool.shutdownNow();
+         }
+      }
+      return new Summary(tally.run, tally.failed, tally.skipped, tally.exitCode);
+   }
+
+
+
+   /***************************************************************************
+    ** Parses a line and schedules its command. Null for blank lines; parse
+    ** errors come back as an already failed result. The command completes
+    ** with null, without running, if stopped is set before it starts.
+    ***************************************************************************/
+   private CompletableFuture<Result> submit(int lineNo, String text, Invocation parent, Executor executor, AtomicBoolean stopped)
+   {
+      BatchParser.Line line;
+      try
+      {
+         line = BatchParser.parse(text);
+      }
+      catch(IllegalArgumentException e)
+      {
+         return CompletableFuture.completedFuture(
+            new Result(lineNo, null, List.of(), 2, 0L, "", "error: line " + lineNo + ": " + e.getMessage() + System.lineSeparator()));
+      }
+      if(line.argv().isEmpty())
+      {
+         return null;
+      }
+      String subcommand = subcommand(line.argv());
+      if(subcommand != null && NOT_IN_BATCH.contains(subcommand))
+      {
+         return CompletableFuture.completedFuture(new Result(lineNo, line.id(), line.argv(), 2, 0L, "",
+            "error: line " + lineNo + ": '" + subcommand + "' cannot run inside qctl batch" + System.lineSeparator()));
+      }
+      return CompletableFuture.supplyAsync(() -> stopped.get() ? null : execute(lineNo, line, parent), executor);
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the top-level subcommand picocli resolves for argv, so root
+    ** options and their values before it (--output text daemon) are skipped.
+    ** Only the built-in commands of {@link Main} are registered and parsing
+    ** stops at the first unknown word, so plugin lines (qrun, qbit, ...) and
+    ** root-option-only lines come back null and are never rejected.
+    ***************************************************************************/
+   static String subcommand(List<String> argv)
+   {
+      CommandLine root = new CommandLine(new Main()).setStopAtUnmatched(true);
+      CommandLine at;
+      try
+      {
+         CommandLine.ParseResult parsed = root.parseArgs(argv.toArray(String[]::new));
+         at = parsed.hasSubcommand() ? parsed.subcommand().commandSpec().commandLine() : root;
+      }
+      catch(CommandLine.ParameterException e)
+      {
+         // Errors inside a subcommand still tell which one it is; the real run reports them
+         at = e.getCommandLine();
+      }
+      while(at != null && at.getParent() != null && at.getParent() != root)
+      {
+         at = at.getParent();
+      }
+      return at == null || at == root ? null : at.getCommandName();
+   }
+
+
+
+   /***************************************************************************
+    ** Runs one command with buffered output.
+    ***************************************************************************/
+   private Result execute(int lineNo, BatchParser.Line line, Invocation parent)
+   {
+      Charset               charset = parent.out().charset();
+      ByteArrayOutputStream outBuf  = new ByteArrayOutputStream();
+      ByteArrayOutputStream errBuf  = new ByteArrayOutputStream();
+      PrintStream           out     = new PrintStream(outBuf, true, charset);
+      PrintStream           err     = new PrintStream(errBuf, true, charset);
+      long                  start   = System.nanoTime();
+      int                   code;
+      try
+      {
+         code = command.execute(line.argv().toArray(String[]::new), parent.withStreams(out, err));
+      }
+      catch(Exception e)
+      {
+         err.println("error: " + e.getMessage());
+         code = 1;
+      }
+      long millis = (System.nanoTime() - start) / 1_000_000L;
+      out.flush();
+      err.flush();
+      return new Result(lineNo, line.id(), line.argv(), code, millis, outBuf.toString(charset), errBuf.toString(charset));
+   }
+
+
+
+   /***************************************************************************
+    ** Runs one command line; {@link Main#execute} outside tests.
+    ***************************************************************************/
+   @FunctionalInterface
+   interface CommandRunner
+   {
+      /***************************************************************************
+       ** Runs argv under inv and returns its exit code.
+       ***************************************************************************/
+      int execute(String[] argv, Invocation inv) throws Exception;
+   }
+
+
+
+   /**
+    * Outcome of one command.
+    *
+    * @param line           input line number (1-based)
+    * @param id             id from an NDJSON object line, or null
+    * @param argv           arguments the command ran with
+    * @param exitCode       exit code
+    * @param durationMillis wall time in milliseconds
+    * @param stdout         captured standard output
+    * @param stderr         captured standard error
+    */
+   public record Result(int line, String id, List<String> argv, int exitCode, long durationMillis, String stdout, String stderr)
+   {
+   }
+
+
+
+   /**
+    * Totals of a batch run.
+    *
+    * @param run      commands that ran (or failed to parse)
+    * @param failed   commands with a non-zero exit code
+    * @param skipped  commands not started because of fail-fast
+    * @param exitCode exit code of the first failed command in input order, or 0
+    */
+   public record Summary(int run, int failed, int skipped, int exitCode)
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** Counts results as they are handed to the sink.
+    ***************************************************************************/
+   private static final class Tally
+   {
+      private final Consumer<Result> sink;
+
+      private int run;
+      private int failed;
+      private int skipped;
+      private int exitCode;
+
+
+
+      /***************************************************************************
+       ** Creates a tally feeding the sink.
+       ***************************************************************************/
+      Tally(Consumer<Result> sink)
+      {
+         this.sink = sink;
+      }
+
+
+
+      /***************************************************************************
+       ** Waits for a result, counts it and passes it on. A null result is a
+       ** command skipped by fail-fast.
+       ***************************************************************************/
+      void accept(CompletableFuture<Result> future)
+      {
+         Result result;
+         try
+         {
+            result = future.get();
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            skipped++;
+            return;
+         }
+         catch(ExecutionException e)
+         {
+            throw new IllegalStateException("batch command crashed", e.getCause());
+         }
+         if(result == null)
+         {
+            skipped++;
+            return;
+         }
+
+         run++;
+         if(result.exitCode() != 0)
+         {
+            failed++;
+            if(exitCode == 0)
+            {
+               exitCode = result.exitCode();
+            }
+         }
+         sink.accept(result);
+      }
+   }
+}
@@ -0,0 +1,158 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.cli;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import io.qrun.qctl.core.batch.BatchRunner;
+import io.qrun.qctl.core.config.ConfigLoader;
+import io.qrun.qctl.core.output.Output;
+import io.qrun.qctl.core.sys.Invocation;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
+
+
+@Command(
+   name = "batch",
+   description = "Run qctl commands read line by line (NDJSON or shell-like) in one process",
+   mixinStandardHelpOptions = true)
+public class BatchCommand implements Runnable
+{
+   @Spec
+   CommandSpec spec;
+
+   @Option(
+      names = { "-f", "--file" },
+      paramLabel = "<file>",
+      description = "Read commands from <file> instead of stdin (- for stdin)")
+   Path file;
+
+   @Option(
+      names = "--jobs",
+      paramLabel = "<n>",
+      defaultValue = "1",
+      description = "Run up to <n> commands at once; lines must not depend on each other (default: ${DEFAULT-VALUE})")
+   int jobs;
+
+   @Option(names = "--fail-fast", description = "Stop reading commands after the first failure")
+   boolean failFast;
+
+
+
+   /***************************************************************************
+    * Runs every command of the input and prints their results in input order: a header line
+    * with the exit code followed by the command's output, or one JSON object per command under
+    * {@code --output json}. Exits with the first failed command's exit code.
+    *
+    * Why: One process serves a whole deploy script's worth of qctl calls.
+    * @since 0.1.0
+    ***************************************************************************/
+   @Override
+   public void run()
+   {
+      if(jobs < 1)
+      {
+         System.err.println("error: --jobs must be at least 1");
+         throw new CommandFailedException(2);
+      }
+      boolean json;
+      try
+      {
+         json = "json".equalsIgnoreCase(RootOptions.output(spec, ConfigLoader.load()));
+      }
+      catch(IOException | IllegalArgumentException e)
+      {
+         System.err.println("error: " + e.getMessage());
+         throw new CommandFailedException(2);
+      }
+
+      BatchRunner.Summary summary;
+      try(BufferedReader input = open())
+      {
+         summary = new BatchRunner(jobs, failFast).run(input, Invocation.current(), r -> print(r, json));
+      }
+      catch(IOException e)
+      {
+         System.err.println("batch error: " + e.getMessage());
+         throw new CommandFailedException(1);
+      }
+
+      System.err.println("batch: " + summary.run() + " run, " + summary.failed() + " failed"
+         + (summary.skipped() > 0 ? ", " + summary.skipped() + " skipped" : ""));
+      if(summary.exitCode() != 0)
+      {
+         throw new CommandFailedException(summary.exitCode());
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Opens the input file, or stdin without taking ownership of it.
+    ***************************************************************************/
+   private BufferedReader open() throws IOException
+   {
+      if(file == null || "-".equals(file.toString()))
+      {
+         return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+         {
+            @Override
+            public void close()
+            {
+               // stdin belongs to the process
+            }
+         };
+      }
+      return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+   }
+
+
+
+   /***************************************************************************
+    ** Prints one command result.
+    ***************************************************************************/
+   private static void print(BatchRunner.Result r, boolean json)
+   {
+      if(json)
+      {
+         Map<String, Object> m = new LinkedHashMap<>();
+         m.put("line", r.line());
+         if(r.id() != null)
+         {
+            m.put("id", r.id());
+         }
+         m.put("argv", r.argv());
+         m.put("exitCode", r.exitCode());
+         m.put("durationMs", r.durationMillis());
+         m.put("stdout", r.stdout());
+         m.put("stderr", r.stderr());
+         Output.json(System.out, m);
+         return;
+      }
+      Output.text(System.out, "==> [" + r.line() + (r.id() != null ? " " + r.id() : "") + "] exit " + r.exitCode()
+         + ", " + r.durationMillis() + " ms: qctl " + String.join(" ", r.argv()));
+      System.out.print(r.stdout());
+      System.out.flush();
+      System.err.print(r.stderr());
+      System.err.flush();
+   }
+}
@@ -0,0 +1,42 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.cli;
+
+
+/**
+ * Ends a command with a non-zero exit code after it has reported the failure itself. The root
+ * command line maps it to {@link #exitCode} without printing anything further.
+ *
+ * Why: Commands must not call {@code System.exit} when several run inside one process (daemon, batch).
+ * @since 0.1.0
+ */
+public final class CommandFailedException extends RuntimeException
+{
+   private static final long serialVersionUID = 1L;
+
+   /** Process exit code (DESIGN-2 mapping). */
+   public final int exitCode;
+
+
+
+   /**
+    * Creates the exception.
+    *
+    * @param exitCode process exit code
+    */
+   public CommandFailedException(int exitCode)
+   {
+      super("exit " + exitCode, null, false, false);
+      this.exitCode = exitCode;
+   }
+}
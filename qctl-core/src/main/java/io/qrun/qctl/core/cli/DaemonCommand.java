@@ -0,0 +1,68 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.cli;
+
+
+import java.io.IOException;
+import java.time.Duration;
+import io.qrun.qctl.core.daemon.DaemonServer;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+
+@Command(
+   name = "daemon",
+   description = "Keep a warm qctl process that runs later qctl calls (opt-in; stops when idle)",
+   mixinStandardHelpOptions = true,
+   subcommands = {
+      io.qrun.qctl.core.cli.daemon.DaemonStatusCommand.class,
+      io.qrun.qctl.core.cli.daemon.DaemonStopCommand.class
+   })
+public class DaemonCommand implements Runnable
+{
+   @Option(
+      names = "--idle-timeout",
+      paramLabel = "<seconds>",
+      defaultValue = "900",
+      description = "Stop after this many seconds without requests (default: ${DEFAULT-VALUE})")
+   long idleTimeoutSeconds;
+
+
+
+   /***************************************************************************
+    * Serves qctl calls from this process in the foreground until stopped or idle.
+    *
+    * Why: Later qctl calls find the socket and skip their own startup work.
+    * @since 0.1.0
+    ***************************************************************************/
+   @Override
+   public void run()
+   {
+      if(DaemonServer.running().isPresent())
+      {
+         System.out.println("qctl daemon already running: " + DaemonServer.running().get().describe());
+         return;
+      }
+      try(DaemonServer server = DaemonServer.bind(DaemonServer.defaultSocket(), Duration.ofSeconds(idleTimeoutSeconds)))
+      {
+         System.out.println("qctl daemon listening on " + DaemonServer.defaultSocket());
+         boolean idle = server.serve();
+         System.out.println(idle ? "qctl daemon stopped (idle)" : "qctl daemon stopped");
+      }
+      catch(IOException e)
+      {
+         System.err.println("daemon error: " + e.getMessage());
+         throw new CommandFailedException(1);
+      }
+   }
+}
@@ -0,0 +1,87 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.cli;
+
+
+import io.qrun.qctl.core.config.Config;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.ParseResult;
+
+
+/**
+ * Reads root {@code qctl} options (declared on {@code Main}) from a subcommand's spec.
+ *
+ * <p>Values come from the root parse result of the command line the subcommand belongs to, so
+ * each command run by the daemon or by {@code qctl batch} sees its own flags.
+ *
+ * Why: Plugins cannot see {@code Main}'s fields, and process-wide statics would leak one
+ * command's flags into the next.
+ * @since 0.1.0
+ */
+public final class RootOptions
+{
+   /***************************************************************************
+    ** Non-instantiable utility class.
+    ***************************************************************************/
+   private RootOptions()
+   {
+   }
+
+
+
+   /**
+    * Returns whether {@code --offline} was given.
+    *
+    * @param spec spec of the running subcommand (may be null outside picocli)
+    * @return true when network access is forbidden
+    */
+   public static boolean offline(CommandSpec spec)
+   {
+      ParseResult root = rootParseResult(spec);
+      return root != null && root.hasMatchedOption("--offline");
+   }
+
+
+
+   /**
+    * Returns the output format: {@code --output} when given, otherwise the configured
+    * {@code output}.
+    *
+    * @param spec   spec of the running subcommand (may be null outside picocli)
+    * @param config configuration of the current invocation
+    * @return {@code text} or {@code json}
+    */
+   public static String output(CommandSpec spec, Config config)
+   {
+      ParseResult root = rootParseResult(spec);
+      if(root != null && root.hasMatchedOption("--output"))
+      {
+         return root.matchedOptionValue("--output", config.output());
+      }
+      return config.output();
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the root parse result, or null when not parsed by picocli.
+    ***************************************************************************/
+   private static ParseResult rootParseResult(CommandSpec spec)
+   {
+      if(spec == null || spec.root().commandLine() == null)
+      {
+         return null;
+      }
+      return spec.root().commandLine().getParseResult();
+   }
+}
@@ -14,6 +14,7 @@ package io.qrun.qctl.core.cli.auth;
 
 
 import io.qrun.qctl.core.auth.TokenStore;
+import io.qrun.qctl.core.cli.CommandFailedException;
 import io.qrun.qctl.core.sys.SystemPaths;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -43,7 +44,7 @@ public class LoginCommand implements Runnable
       catch(Exception e)
       {
          System.err.println("auth login error: " + e.getMessage());
-         System.exit(1);
+         throw new CommandFailedException(1);
       }
    }
 
@@ -14,6 +14,7 @@ package io.qrun.qctl.core.cli.auth;
 
 
 import io.qrun.qctl.core.auth.TokenStore;
+import io.qrun.qctl.core.cli.CommandFailedException;
 import io.qrun.qctl.core.sys.SystemPaths;
 import picocli.CommandLine.Command;
 
@@ -32,7 +33,7 @@ public class LogoutCommand implements Runnable
       catch(Exception e)
       {
          System.err.println("auth logout error: " + e.getMessage());
-         System.exit(1);
+         throw new CommandFailedException(1);
       }
    }
 
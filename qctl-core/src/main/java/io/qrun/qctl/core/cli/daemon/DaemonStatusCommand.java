@@ -0,0 +1,43 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.cli.daemon;
+
+
+import io.qrun.qctl.core.cli.CommandFailedException;
+import io.qrun.qctl.core.daemon.DaemonServer;
+import picocli.CommandLine.Command;
+
+
+/**
+ * Reports whether a daemon is running. The call is forwarded like any other, so it executes
+ * inside the daemon when one is listening and locally (exit 1) when none is.
+ *
+ * Why: Scripts need a cheap way to check that their calls are being served warm.
+ * @since 0.1.0
+ */
+@Command(name = "status", description = "Show whether a qctl daemon is running")
+public class DaemonStatusCommand implements Runnable
+{
+   /** Prints the daemon summary, or fails when no daemon is running. */
+   @Override
+   public void run()
+   {
+      DaemonServer server = DaemonServer.running().orElse(null);
+      if(server == null)
+      {
+         System.out.println("no qctl daemon running");
+         throw new CommandFailedException(1);
+      }
+      System.out.println(server.describe());
+   }
+}
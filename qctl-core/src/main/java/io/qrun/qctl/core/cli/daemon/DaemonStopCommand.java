@@ -0,0 +1,44 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.cli.daemon;
+
+
+import io.qrun.qctl.core.cli.CommandFailedException;
+import io.qrun.qctl.core.daemon.DaemonServer;
+import picocli.CommandLine.Command;
+
+
+/**
+ * Stops the running daemon after its in-flight calls finish. Like {@code status}, it executes
+ * inside the daemon when one is listening and locally (exit 1) when none is.
+ *
+ * Why: Lets users release the warm process without hunting for its pid.
+ * @since 0.1.0
+ */
+@Command(name = "stop", description = "Stop the running qctl daemon")
+public class DaemonStopCommand implements Runnable
+{
+   /** Stops the daemon, or fails when no daemon is running. */
+   @Override
+   public void run()
+   {
+      DaemonServer server = DaemonServer.running().orElse(null);
+      if(server == null)
+      {
+         System.out.println("no qctl daemon running");
+         throw new CommandFailedException(1);
+      }
+      server.stop();
+      System.out.println("qctl daemon stopping");
+   }
+}
@@ -0,0 +1,215 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.config;
+
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ * Read-only view of a merged configuration with typed accessors for hot keys.
+ *
+ * <p>The tree is shared with the merge that produced it and with every profile view derived from
+ * it (see {@link JsonMerge}), so nothing returned here may be modified. Hot keys are read once
+ * at construction; {@link #profile(String)} overlays {@code profiles.<name>} onto this
+ * configuration once per name and caches the result, so switching profiles copies only the
+ * paths the profile overrides. Commands read {@link #output()} and {@link #apiEndpoint()} from
+ * here rather than from the tree.
+ *
+ * Why: Callers asking for the same keys and profiles repeatedly (daemon and batch runs) should
+ * not walk or copy the tree each time.
+ * @since 0.1.0
+ */
+public final class Config
+{
+   /**
+    * API base URL used when {@code endpoints.api} is not configured.
+    */
+   public static final URI DEFAULT_API_ENDPOINT = URI.create("http://localhost:4010");
+
+   private final JsonNode            root;
+   private final String              output;
+   private final Optional<URI>       apiEndpoint;
+   private final Map<String, Config> profiles = new ConcurrentHashMap<>();
+
+
+
+   /**
+    * Wraps a merged, validated configuration tree.
+    *
+    * @param root merged configuration; must not be modified afterwards
+    * @throws IllegalArgumentException when {@code endpoints.api} is not a URI
+    */
+   public Config(JsonNode root)
+   {
+      this.root = root;
+      this.output = root.path("output").asText("text");
+      this.apiEndpoint = uri(root, "/endpoints/api");
+   }
+
+
+
+   /**
+    * Returns the configured output format.
+    *
+    * @return {@code text} or {@code json}
+    */
+   public String output()
+   {
+      return output;
+   }
+
+
+
+   /**
+    * Returns the configured API base URL.
+    *
+    * @return {@code endpoints.api}, if set
+    */
+   public Optional<URI> apiEndpoint()
+   {
+      return apiEndpoint;
+   }
+
+
+
+   /**
+    * Returns the node at a JSON Pointer such as {@code /qrun/defaultEnv}.
+    *
+    * @param pointer JSON Pointer
+    * @return node, or a missing node; must not be modified
+    */
+   public JsonNode at(String pointer)
+   {
+      return root.at(pointer);
+   }
+
+
+
+   /**
+    * Returns the whole tree.
+    *
+    * @return merged configuration; must not be modified
+    */
+   public JsonNode tree()
+   {
+      return root;
+   }
+
+
+
+   /**
+    * Returns the configured API base URL, or {@link #DEFAULT_API_ENDPOINT}.
+    *
+    * @return API base URL
+    */
+   public URI apiEndpointOrDefault()
+   {
+      return apiEndpoint.orElse(DEFAULT_API_ENDPOINT);
+   }
+
+
+
+   /**
+    * Resolves an API path under {@link #apiEndpointOrDefault()}; see {@link #apiUri(URI, String)}.
+    *
+    * @param path relative API path, e.g. {@code v1/apps/shop/status?env=dev}
+    * @return request URI
+    */
+   public URI apiUri(String path)
+   {
+      return apiUri(apiEndpointOrDefault(), path);
+   }
+
+
+
+   /**
+    * Resolves a relative API path under an endpoint, keeping the endpoint's own base path:
+    * {@code https://gw.example.com/qrun} and {@code v1/apps} give
+    * {@code https://gw.example.com/qrun/v1/apps}, with or without a trailing slash on the endpoint.
+    *
+    * @param endpoint API base URL
+    * @param path     relative API path
+    * @return request URI
+    */
+   public static URI apiUri(URI endpoint, String path)
+   {
+      String base = endpoint.toString();
+      return URI.create(base.endsWith("/") ? base : base + "/").resolve(path);
+   }
+
+
+
+   /**
+    * Returns this configuration with {@code profiles.<name>} merged over it, or this configuration
+    * when there is no such profile. The view has no {@code profiles} key, so profiles do not nest.
+    *
+    * <p>The merged tree is not validated again, and does not need to be: the schema validates every
+    * profile against the whole schema, it has no {@code required} or cross-field constraints, and
+    * the merge replaces leaves and arrays whole and merges objects key by key. Every value in the
+    * view is therefore a value the schema already accepted at the same path.
+    *
+    * @param name profile name
+    * @return profile view, cached per name
+    */
+   public Config profile(String name)
+   {
+      JsonNode overlay = root.path("profiles").get(name);
+      if(overlay == null || !overlay.isObject())
+      {
+         return this;
+      }
+      return profiles.computeIfAbsent(name, n -> new Config(withoutProfiles(JsonMerge.merge(root, overlay))));
+   }
+
+
+
+   /***************************************************************************
+    ** Shallow copy of a merged root without its profiles; nested nodes stay
+    ** shared.
+    ***************************************************************************/
+   private static JsonNode withoutProfiles(JsonNode merged)
+   {
+      ObjectNode view = ((ObjectNode) merged).objectNode();
+      view.setAll((ObjectNode) merged);
+      view.remove("profiles");
+      return view;
+   }
+
+
+
+   /***************************************************************************
+    ** Parses an optional URI-valued key.
+    ***************************************************************************/
+   private static Optional<URI> uri(JsonNode root, String pointer)
+   {
+      JsonNode node = root.at(pointer);
+      if(!node.isTextual())
+      {
+         return Optional.empty();
+      }
+      try
+      {
+         return Optional.of(URI.create(node.asText()));
+      }
+      catch(IllegalArgumentException e)
+      {
+         throw new IllegalArgumentException("Config value " + pointer + " is not a URI: " + node.asText(), e);
+      }
+   }
+}
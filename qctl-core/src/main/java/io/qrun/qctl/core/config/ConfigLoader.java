@@ -13,36 +13,60 @@
 package io.qrun.qctl.core.config;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
 import com.networknt.schema.SpecVersion;
 import com.networknt.schema.ValidationMessage;
+import io.qrun.qctl.core.sys.Invocation;
+import io.qrun.qctl.core.sys.StartupTrace;
+import io.qrun.qctl.core.sys.SystemPaths;
+import io.qrun.qctl.shared.json.Json;
 
 
 /**
  * Loads qctl configuration from defaults, project file, and environment, then validates it.
  *
+ * <p>The embedded schema is compiled at most once per process. A merged configuration that
+ * passed validation leaves a fingerprint (SHA-256 of the schema and the merged JSON) as an empty
+ * marker file under {@code SystemPaths.cacheDir()/config/validated}; later loads of the same
+ * configuration skip schema compilation and validation altogether. The merged tree itself is
+ * kept as a {@link ConfigSnapshot}, so an unchanged project file and environment skip YAML
+ * parsing and merging too.
+ *
  * Why: Provides a single entrypoint for deterministic config precedence and schema validation.
  * @since 0.1.0
  */
 public final class ConfigLoader
 {
-   private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
-   private static final ObjectMapper JSON = new ObjectMapper();
+   private static final String SCHEMA_RESOURCE = "/schema/qctl-config-v1.json";
+
+
+
+   /***************************************************************************
+    ** Non-instantiable utility class.
+    ***************************************************************************/
+   private ConfigLoader()
+   {
+   }
 
 
 
    /**
-    * Loads configuration and validates it against the embedded JSON Schema.
+    * Loads configuration and validates it against the embedded JSON Schema, caching validated
+    * configurations under the user cache directory.
     *
     * @param projectConfig
     *    path to project-level qctl.yaml
@@ -53,23 +77,139 @@ public final class ConfigLoader
     */
    public static JsonNode loadAndValidate(Path projectConfig, Map<String, String> env) throws IOException
    {
-      JsonNode merged = mergeDefaults(projectConfig, env);
-      validateAgainstSchema(merged);
+      return loadAndValidate(projectConfig, env, SystemPaths.cacheDir().resolve("config"));
+   }
+
+
+
+   /**
+    * Loads the configuration of the current {@link Invocation}: {@code qctl.yaml} in the user
+    * config directory overlaid with its {@code QCTL_*} variables.
+    *
+    * @return merged and validated configuration
+    * @throws IOException when the config file cannot be read
+    * @throws IllegalArgumentException when the merged configuration fails validation
+    */
+   public static Config load() throws IOException
+   {
+      Path configPath = SystemPaths.ensureDir(SystemPaths.configDir()).resolve("qctl.yaml");
+      return load(configPath, Invocation.current().env());
+   }
+
+
+
+   /**
+    * Loads and validates configuration like {@link #loadAndValidate(Path, Map)} and wraps it for
+    * typed access.
+    *
+    * @param projectConfig
+    *    path to project-level qctl.yaml
+    * @param env
+    *    process environment variables
+    *
+    * @return merged and validated configuration
+    */
+   public static Config load(Path projectConfig, Map<String, String> env) throws IOException
+   {
+      return new Config(loadAndValidate(projectConfig, env));
+   }
+
+
+
+   /**
+    * Loads configuration and validates it against the embedded JSON Schema.
+    *
+    * @param projectConfig
+    *    path to project-level qctl.yaml
+    * @param env
+    *    process environment variables
+    * @param cacheDir
+    *    directory for config snapshots and validation fingerprints, or null to always merge and validate
+    *
+    * @return merged and validated configuration
+    */
+   @SuppressWarnings("try")
+   public static JsonNode loadAndValidate(Path projectConfig, Map<String, String> env, Path cacheDir) throws IOException
+   {
+      ConfigSnapshot snapshot = null;
+      if(cacheDir != null)
+      {
+         try(StartupTrace.Span span = StartupTrace.begin("config", "config.snapshot"))
+         {
+            snapshot = new ConfigSnapshot(cacheDir.resolve("snapshots"), projectConfig, env);
+            Optional<JsonNode> cached = snapshot.load();
+            if(cached.isPresent())
+            {
+               span.detail("hit");
+               return cached.get();
+            }
+         }
+      }
+
+      ConfigSnapshot.Source source = ConfigSnapshot.Source.read(projectConfig);
+      JsonNode              merged;
+      try(StartupTrace.Span span = StartupTrace.begin("config", "config.merge"))
+      {
+         merged = mergeDefaults(source.bytes(), env);
+      }
+      validate(merged, cacheDir != null ? cacheDir.resolve("validated") : null);
+      if(snapshot != null)
+      {
+         snapshot.store(source, merged);
+      }
       return merged;
    }
 
 
 
    /***************************************************************************
-    ** Merges built-in defaults, project file (if present), and environment overlay.
+    ** Returns the embedded schema's bytes; callers must not modify them.
+    ***************************************************************************/
+   static byte[] schemaBytes()
+   {
+      return SchemaSource.BYTES;
+   }
+
+
+
+   /***************************************************************************
+    ** Validates unless the fingerprint directory says this exact
+    ** configuration passed before, then records it.
+    ***************************************************************************/
+   private static void validate(JsonNode merged, Path validatedDir) throws IOException
+   {
+      Path marker = null;
+      if(validatedDir != null)
+      {
+         try(StartupTrace.Span span = StartupTrace.begin("config", "config.fingerprint"))
+         {
+            marker = validatedDir.resolve(fingerprint(merged));
+            if(Files.exists(marker))
+            {
+               span.detail("validated before");
+               return;
+            }
+         }
+      }
+      validateAgainstSchema(merged);
+      if(marker != null)
+      {
+         recordValidated(marker);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Merges built-in defaults, project file contents (if present), and environment overlay.
     ***************************************************************************/
-   private static JsonNode mergeDefaults(Path projectConfig, Map<String, String> env) throws IOException
+   private static JsonNode mergeDefaults(byte[] projectConfig, Map<String, String> env) throws IOException
    {
-      JsonNode defaults = JSON.readTree("{\"output\":\"text\"}");
+      JsonNode defaults = Json.mapper().readTree("{\"output\":\"text\"}");
       JsonNode file =
-         Files.exists(projectConfig)
-            ? YAML.readTree(Files.newBufferedReader(projectConfig))
-            : JSON.nullNode();
+         projectConfig != null
+            ? Json.yaml().readTree(projectConfig)
+            : Json.mapper().nullNode();
       JsonNode envNode = EnvOverlay.toNode(env);
       return JsonMerge.merge(JsonMerge.merge(defaults, file), envNode);
    }
@@ -77,20 +217,117 @@ public final class ConfigLoader
 
 
    /** Validates the merged configuration against the embedded JSON Schema. */
-   private static void validateAgainstSchema(JsonNode node) throws IOException
+   @SuppressWarnings("try")
+   private static void validateAgainstSchema(JsonNode node)
    {
-      try(InputStream in = ConfigLoader.class.getResourceAsStream("/schema/qctl-config-v1.json"))
+      JsonSchema schema = CompiledSchema.INSTANCE;
+      Set<ValidationMessage> errors;
+      try(StartupTrace.Span span = StartupTrace.begin("config", "config.validate"))
+      {
+         errors = schema.validate(node);
+      }
+      if(!errors.isEmpty())
+      {
+         StringBuilder sb = new StringBuilder();
+         errors.forEach(
+            e ->
+               sb.append(e.getInstanceLocation()).append(" ").append(e.getMessage()).append("\n"));
+         throw new IllegalArgumentException("Config validation failed:\n" + sb);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Hex SHA-256 over the schema and the merged configuration, so a schema
+    ** change in a new release invalidates every recorded fingerprint.
+    ***************************************************************************/
+   static String fingerprint(JsonNode node) throws IOException
+   {
+      try
+      {
+         MessageDigest sha = MessageDigest.getInstance("SHA-256");
+         sha.update(SchemaSource.BYTES);
+         sha.update((byte) 0);
+         sha.update(Json.mapper().writeValueAsBytes(node));
+         return HexFormat.of().formatHex(sha.digest());
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Leaves the marker for a configuration that passed validation.
+    ***************************************************************************/
+   private static void recordValidated(Path marker)
+   {
+      try
+      {
+         Files.createDirectories(marker.getParent());
+         Files.write(marker, new byte[0]);
+      }
+      catch(IOException e)
+      {
+         // The fingerprint is an optimization; without it the next run validates again
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Raw schema bytes, read on first use.
+    ***************************************************************************/
+   private static final class SchemaSource
+   {
+      static final byte[] BYTES = read();
+
+
+
+      /***************************************************************************
+       ** Reads the embedded schema resource.
+       ***************************************************************************/
+      private static byte[] read()
+      {
+         try(InputStream in = ConfigLoader.class.getResourceAsStream(SCHEMA_RESOURCE))
+         {
+            if(in == null)
+            {
+               throw new IllegalStateException("missing resource " + SCHEMA_RESOURCE);
+            }
+            return in.readAllBytes();
+         }
+         catch(IOException e)
+         {
+            throw new UncheckedIOException(e);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** The compiled schema, built on first use and shared by every later load
+    ** in this process (daemon and batch runs included).
+    ***************************************************************************/
+   private static final class CompiledSchema
+   {
+      static final JsonSchema INSTANCE = compile();
+
+
+
+      /***************************************************************************
+       ** Compiles the embedded schema.
+       ***************************************************************************/
+      @SuppressWarnings("try")
+      private static JsonSchema compile()
       {
-         JsonSchemaFactory      factory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V202012);
-         JsonSchema             schema  = factory.getSchema(in);
-         Set<ValidationMessage> errors  = schema.validate(node);
-         if(!errors.isEmpty())
+         try(StartupTrace.Span span = StartupTrace.begin("config", "config.schema.compile"))
          {
-            StringBuilder sb = new StringBuilder();
-            errors.forEach(
-               e ->
-                  sb.append(e.getInstanceLocation()).append(" ").append(e.getMessage()).append("\n"));
-            throw new IllegalArgumentException("Config validation failed:\n" + sb);
+            return JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V202012).getSchema(new ByteArrayInputStream(SchemaSource.BYTES));
          }
       }
    }
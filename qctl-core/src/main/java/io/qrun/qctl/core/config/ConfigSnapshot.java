@@ -0,0 +1,242 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.config;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * On-disk snapshot of a merged, validated configuration, stored as Smile under
+ * {@code SystemPaths.cacheDir()/config/snapshots}.
+ *
+ * <p>The snapshot file name is a SHA-256 over the embedded schema, the project config path and
+ * the {@code QCTL_*} environment variables, so another environment or a new schema never sees a
+ * stale tree. The snapshot records the project file's modification time, size and content hash
+ * next to the merged tree. A lookup whose modification time and size still match is a hit
+ * without reading the project file; otherwise the file is hashed, and an unchanged hash (a
+ * touched file) is still a hit. Anything else, including an unreadable snapshot, is a miss.
+ *
+ * Why: The common start reads one small binary file instead of parsing YAML and merging three trees.
+ * @since 0.1.0
+ */
+final class ConfigSnapshot
+{
+   private static final int FORMAT = 1;
+
+   private final Path snapshot;
+   private final Path source;
+
+
+
+   /***************************************************************************
+    ** Creates the snapshot handle for a project config under an environment.
+    ***************************************************************************/
+   ConfigSnapshot(Path dir, Path source, Map<String, String> env)
+   {
+      this.snapshot = dir.resolve(key(source, env) + ".smile");
+      this.source = source;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the snapshot's tree if the project file has not changed since
+    ** it was taken.
+    ***************************************************************************/
+   Optional<JsonNode> load()
+   {
+      JsonNode stored;
+      try
+      {
+         stored = Json.smile().readTree(Files.readAllBytes(snapshot));
+      }
+      catch(IOException missingOrCorrupt)
+      {
+         return Optional.empty();
+      }
+      if(stored == null || stored.path("format").asInt() != FORMAT || !stored.path("config").isObject())
+      {
+         return Optional.empty();
+      }
+
+      try
+      {
+         long[] stat = stat(source);
+         if(stat[0] == stored.path("modified").asLong() && stat[1] == stored.path("size").asLong())
+         {
+            return Optional.of(stored.get("config"));
+         }
+         Source current = Source.read(source);
+         if(current.sha256().equals(stored.path("sha256").asText()))
+         {
+            store(current, stored.get("config"));
+            return Optional.of(stored.get("config"));
+         }
+      }
+      catch(IOException e)
+      {
+         // Fall through: the caller reads the project file itself and reports the error
+      }
+      return Optional.empty();
+   }
+
+
+
+   /***************************************************************************
+    ** Writes the snapshot for a merged, validated tree built from source.
+    ***************************************************************************/
+   void store(Source from, JsonNode config)
+   {
+      ObjectNode node = JsonNodeFactory.instance.objectNode();
+      node.put("format", FORMAT);
+      node.put("modified", from.modified());
+      node.put("size", from.size());
+      node.put("sha256", from.sha256());
+      node.set("config", config);
+      try
+      {
+         Files.createDirectories(snapshot.getParent());
+         Path tmp = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+         try
+         {
+            Files.write(tmp, Json.smile().writeValueAsBytes(node));
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         }
+         finally
+         {
+            Files.deleteIfExists(tmp);
+         }
+      }
+      catch(IOException e)
+      {
+         // The snapshot is an optimization; without it the next run merges again
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Snapshot file name: hex SHA-256 over schema, config path and QCTL_*
+    ** variables in name order.
+    ***************************************************************************/
+   private static String key(Path source, Map<String, String> env)
+   {
+      MessageDigest sha = digest();
+      sha.update(ConfigLoader.schemaBytes());
+      sha.update((byte) 0);
+      sha.update(source.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+      for(Map.Entry<String, String> e : new TreeMap<>(env).entrySet())
+      {
+         if(e.getKey().startsWith("QCTL_"))
+         {
+            sha.update((byte) 0);
+            sha.update((e.getKey() + "=" + e.getValue()).getBytes(StandardCharsets.UTF_8));
+         }
+      }
+      return HexFormat.of().formatHex(sha.digest());
+   }
+
+
+
+   /***************************************************************************
+    ** Modification time (nanos) and size of a file, or -1s when it is absent.
+    ***************************************************************************/
+   private static long[] stat(Path file) throws IOException
+   {
+      try
+      {
+         BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+         return new long[] { attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), attrs.size() };
+      }
+      catch(NoSuchFileException e)
+      {
+         return new long[] { -1L, -1L };
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Creates a SHA-256 digest.
+    ***************************************************************************/
+   private static MessageDigest digest()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /**
+    * Contents of the project config file as read for a merge, with the state a snapshot records.
+    * The modification time is taken before reading, so a concurrent edit can only cause an extra
+    * miss, never a stale hit.
+    *
+    * @param modified modification time in nanoseconds, or -1 when the file is absent
+    * @param size     size in bytes, or -1 when the file is absent
+    * @param sha256   hex SHA-256 of the contents, empty when the file is absent
+    * @param bytes    contents, or null when the file is absent
+    */
+   record Source(long modified, long size, String sha256, byte[] bytes)
+   {
+      /**
+       * Reads a project config file.
+       *
+       * @param file project config path
+       * @return contents and state
+       * @throws IOException when the file exists but cannot be read
+       */
+      static Source read(Path file) throws IOException
+      {
+         long modified = stat(file)[0];
+         if(modified == -1L)
+         {
+            return new Source(-1L, -1L, "", null);
+         }
+         byte[] bytes;
+         try
+         {
+            bytes = Files.readAllBytes(file);
+         }
+         catch(NoSuchFileException e)
+         {
+            return new Source(-1L, -1L, "", null);
+         }
+         return new Source(modified, bytes.length, HexFormat.of().formatHex(digest().digest(bytes)), bytes);
+      }
+   }
+}
@@ -13,39 +13,35 @@
 package io.qrun.qctl.core.config;
 
 
+import java.util.Iterator;
+import java.util.Map;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 
 /**
  * Simple deep-merge utility for JSON objects.
+ *
+ * <p>Merging is copy-on-write: an object is copied (shallowly) only when the override changes one
+ * of its fields, and every subtree the override does not touch is shared with {@code base}.
+ * Neither input is modified, so both must be treated as read-only afterwards.
  */
 final class JsonMerge
 {
    /***************************************************************************
-    * Deep JSON merge helper.
-    *
-    * Why: Config loading overlays several sources (defaults, files, env),
-    * and we need deterministic, recursive object merging semantics.
-    * @since 0.1.0
-    ***************************************************************************/
-   /**
-    * Deep-merges {@code override} into {@code base}. Objects are merged recursively; other types
-    * replace the base value.
-    *
-    * @param base
-    *    base JSON (may be null)
-    * @param override
-    *    override JSON
+    * Merges override into base using object-wise deep merge. Objects are
+    * merged recursively; other types replace the base value. The cost is
+    * proportional to the override and the width of the objects it touches,
+    * not to the size of base.
     *
-    * @return merged JSON node
-    */
-   /***************************************************************************
-    * Merges override into base using object-wise deep merge.
+    * Why: Config loading overlays several sources (defaults, files, env,
+    * profiles), and we need deterministic, recursive object merging semantics
+    * without copying the whole base tree at every level.
     *
     * @param base base JSON (may be null)
     * @param override override JSON (may be null)
-    * @return merged JSON node
+    * @return merged JSON node; base itself when override changes nothing
     * @since 0.1.0
     ***************************************************************************/
    static JsonNode merge(JsonNode base, JsonNode override)
@@ -60,14 +56,24 @@ final class JsonMerge
       }
       if(base.isObject() && override.isObject())
       {
-         ObjectNode result = base.deepCopy();
-         override.fields().forEachRemaining(e ->
+         ObjectNode                           result = null;
+         Iterator<Map.Entry<String, JsonNode>> fields = override.fields();
+         while(fields.hasNext())
          {
-            JsonNode existing = result.get(e.getKey());
-            JsonNode merged   = merge(existing, e.getValue());
-            result.set(e.getKey(), merged);
-         });
-         return result;
+            Map.Entry<String, JsonNode> e        = fields.next();
+            JsonNode                    existing = base.get(e.getKey());
+            JsonNode                    merged   = merge(existing, e.getValue());
+            if(merged != existing)
+            {
+               if(result == null)
+               {
+                  result = JsonNodeFactory.instance.objectNode();
+                  result.setAll((ObjectNode) base);
+               }
+               result.set(e.getKey(), merged);
+            }
+         }
+         return result != null ? result : base;
       }
       return override;
    }
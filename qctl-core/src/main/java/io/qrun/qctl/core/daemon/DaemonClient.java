@@ -0,0 +1,208 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.daemon;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+
+/**
+ * Thin client side of {@code qctl daemon}: hands the whole invocation (argv, environment,
+ * working directory) to a running daemon and relays its stdout, stderr and exit code.
+ *
+ * <p>Runs before any command-line parsing or plugin discovery. When no daemon is listening, the
+ * daemon declines the request, or the arguments ask for process-local behaviour
+ * ({@code --no-daemon}, {@code --debug}, {@code --record-http}, {@code --replay-http},
+ * {@code --trace-startup}), the result is empty and the caller runs the command itself.
+ * Standard input is not forwarded, so {@code qctl batch} reading stdin also runs locally.
+ *
+ * Why: The forwarding path must cost less than the startup work it saves.
+ * @since 0.1.0
+ */
+public final class DaemonClient
+{
+   private static final List<String> LOCAL_ONLY = List.of("--no-daemon", "--debug", "--record-http", "--replay-http", "--trace-startup");
+
+
+
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private DaemonClient()
+   {
+   }
+
+
+
+   /**
+    * Runs the command on the daemon listening on the default socket, if there is one.
+    *
+    * @param args command-line arguments
+    * @return the command's exit code, or empty when the caller should run it locally
+    */
+   public static OptionalInt forward(String[] args)
+   {
+      if(!isForwardable(args))
+      {
+         return OptionalInt.empty();
+      }
+      Path socket = DaemonProtocol.defaultSocket();
+      if(!Files.exists(socket))
+      {
+         return OptionalInt.empty();
+      }
+      DaemonProtocol.Request request = new DaemonProtocol.Request(
+         DaemonProtocol.VERSION, Path.of("").toAbsolutePath().toString(), System.out.charset().name(), List.of(args), System.getenv());
+      return forward(socket, request, System.out, System.err);
+   }
+
+
+
+   /**
+    * Runs a command on the daemon listening on the given socket, from the current working
+    * directory and with UTF-8 output. Used by tools that drive a daemon directly.
+    *
+    * @param socket socket path
+    * @param argv   command-line arguments
+    * @param env    environment the command runs with
+    * @param out    receives the command's stdout
+    * @param err    receives the command's stderr
+    * @return the command's exit code, or empty when the daemon did not run it
+    */
+   public static OptionalInt forward(Path socket, List<String> argv, Map<String, String> env, OutputStream out, OutputStream err)
+   {
+      DaemonProtocol.Request request = new DaemonProtocol.Request(
+         DaemonProtocol.VERSION, Path.of("").toAbsolutePath().toString(), StandardCharsets.UTF_8.name(), argv, env);
+      return forward(socket, request, out, err);
+   }
+
+
+
+   /***************************************************************************
+    ** Sends a request to the daemon on the socket and copies its frames to
+    ** out/err. Empty when nothing was run there.
+    ***************************************************************************/
+   static OptionalInt forward(Path socket, DaemonProtocol.Request request, OutputStream out, OutputStream err)
+   {
+      SocketChannel channel;
+      try
+      {
+         channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+      }
+      catch(IOException | RuntimeException notListening)
+      {
+         return OptionalInt.empty();
+      }
+
+      boolean accepted = false;
+      try(channel)
+      {
+         DataOutputStream wire = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+         DataInputStream  in   = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+         request.write(wire);
+         if(in.readByte() != DaemonProtocol.ACCEPT)
+         {
+            return OptionalInt.empty();
+         }
+         accepted = true;
+
+         while(true)
+         {
+            byte type = in.readByte();
+            if(type == DaemonProtocol.EXIT)
+            {
+               return OptionalInt.of(in.readInt());
+            }
+            OutputStream target = type == DaemonProtocol.STDERR ? err : out;
+            target.write(DaemonProtocol.readBytes(in, Integer.MAX_VALUE));
+            target.flush();
+         }
+      }
+      catch(IOException e)
+      {
+         if(!accepted)
+         {
+            return OptionalInt.empty();
+         }
+         try
+         {
+            err.write(("error: lost connection to qctl daemon: " + e.getMessage() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            err.flush();
+         }
+         catch(IOException ignored)
+         {
+            // stderr is gone as well
+         }
+         return OptionalInt.of(1);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns whether none of the arguments asks for process-local behaviour.
+    ***************************************************************************/
+   static boolean isForwardable(String[] args)
+   {
+      if(readsStdin(args))
+      {
+         return false;
+      }
+      for(String arg : args)
+      {
+         for(String flag : LOCAL_ONLY)
+         {
+            if(arg.equals(flag) || arg.startsWith(flag + "="))
+            {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns whether the arguments look like {@code qctl batch} reading its
+    ** commands from stdin (no file, or "-").
+    ***************************************************************************/
+   private static boolean readsStdin(String[] args)
+   {
+      List<String> argv = List.of(args);
+      if(!argv.contains("batch"))
+      {
+         return false;
+      }
+      if(argv.contains("-") || argv.contains("--file=-"))
+      {
+         return true;
+      }
+      boolean file = argv.contains("-f") || argv.contains("--file") || argv.stream().anyMatch(a -> a.startsWith("--file="));
+      return !file;
+   }
+}
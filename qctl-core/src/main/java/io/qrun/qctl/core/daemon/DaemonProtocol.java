@@ -0,0 +1,238 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.daemon;
+
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import io.qrun.qctl.core.sys.SystemPaths;
+
+
+/**
+ * Wire format between {@link DaemonClient} and {@link DaemonServer}.
+ *
+ * <p>The client sends one request: protocol version, working directory, output encoding,
+ * argv and environment, each string as a length-prefixed UTF-8 byte run. The daemon answers
+ * {@link #ACCEPT}, or {@link #REJECT} plus a reason, in which case the client runs the command
+ * itself. After accepting, the daemon sends frames: {@link #STDOUT}/{@link #STDERR} with a
+ * length-prefixed byte chunk, then a single {@link #EXIT} with the exit code.
+ *
+ * Why: A fixed binary framing keeps the client path free of JSON and picocli class loading.
+ * @since 0.1.0
+ */
+final class DaemonProtocol
+{
+   static final int  VERSION = 1;
+   static final byte ACCEPT  = 0;
+   static final byte REJECT  = 1;
+   static final byte STDOUT  = 1;
+   static final byte STDERR  = 2;
+   static final byte EXIT    = 3;
+
+   private static final int MAX_STRING_BYTES = 1 << 20;
+   private static final int MAX_ENTRIES      = 1 << 14;
+
+
+
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private DaemonProtocol()
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the default socket path, under the user cache directory.
+    ***************************************************************************/
+   static Path defaultSocket()
+   {
+      return SystemPaths.cacheDir().resolve("daemon").resolve("qctl.sock");
+   }
+
+
+
+   /***************************************************************************
+    ** Writes a length-prefixed UTF-8 string.
+    ***************************************************************************/
+   static void writeString(DataOutputStream out, String s) throws IOException
+   {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+   }
+
+
+
+   /***************************************************************************
+    ** Reads a length-prefixed UTF-8 string.
+    ***************************************************************************/
+   static String readString(DataInputStream in) throws IOException
+   {
+      return new String(readBytes(in, MAX_STRING_BYTES), StandardCharsets.UTF_8);
+   }
+
+
+
+   /***************************************************************************
+    ** Reads a length-prefixed byte run of at most max bytes.
+    ***************************************************************************/
+   static byte[] readBytes(DataInputStream in, int max) throws IOException
+   {
+      int length = in.readInt();
+      if(length < 0 || length > max)
+      {
+         throw new IOException("bad frame length " + length);
+      }
+      return in.readNBytes(length);
+   }
+
+
+
+   /***************************************************************************
+    ** Reads an entry count and rejects implausible values.
+    ***************************************************************************/
+   private static int readCount(DataInputStream in) throws IOException
+   {
+      int count = in.readInt();
+      if(count < 0 || count > MAX_ENTRIES)
+      {
+         throw new IOException("bad entry count " + count);
+      }
+      return count;
+   }
+
+
+
+   /***************************************************************************
+    ** One command invocation as sent by the client.
+    ***************************************************************************/
+   record Request(int version, String cwd, String encoding, List<String> argv, Map<String, String> env)
+   {
+      /***************************************************************************
+       ** Writes this request.
+       ***************************************************************************/
+      void write(DataOutputStream out) throws IOException
+      {
+         out.writeInt(version);
+         writeString(out, cwd);
+         writeString(out, encoding);
+         out.writeInt(argv.size());
+         for(String arg : argv)
+         {
+            writeString(out, arg);
+         }
+         out.writeInt(env.size());
+         for(Map.Entry<String, String> e : env.entrySet())
+         {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue());
+         }
+         out.flush();
+      }
+
+
+
+      /***************************************************************************
+       ** Reads a request. Only the version is read when it is not ours.
+       ***************************************************************************/
+      static Request read(DataInputStream in) throws IOException
+      {
+         int version = in.readInt();
+         if(version != VERSION)
+         {
+            return new Request(version, "", "", List.of(), Map.of());
+         }
+         String       cwd      = readString(in);
+         String       encoding = readString(in);
+         int          argc     = readCount(in);
+         List<String> argv     = new ArrayList<>(argc);
+         for(int i = 0; i < argc; i++)
+         {
+            argv.add(readString(in));
+         }
+         int                 envc = readCount(in);
+         Map<String, String> env  = new LinkedHashMap<>();
+         for(int i = 0; i < envc; i++)
+         {
+            env.put(readString(in), readString(in));
+         }
+         return new Request(version, cwd, encoding, argv, env);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Output stream that sends every write as one frame of the given type.
+    ** Frames of both streams share the connection, so writes are serialized
+    ** on it.
+    ***************************************************************************/
+   static final class FrameOutputStream extends OutputStream
+   {
+      private final DataOutputStream wire;
+      private final byte             type;
+
+
+
+      /***************************************************************************
+       ** Creates a stream writing frames of the given type to the connection.
+       ***************************************************************************/
+      FrameOutputStream(DataOutputStream wire, byte type)
+      {
+         this.wire = wire;
+         this.type = type;
+      }
+
+
+
+      /***************************************************************************
+       ** Sends one byte as a frame.
+       ***************************************************************************/
+      @Override
+      public void write(int b) throws IOException
+      {
+         write(new byte[] { (byte) b }, 0, 1);
+      }
+
+
+
+      /***************************************************************************
+       ** Sends a chunk as a frame.
+       ***************************************************************************/
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         if(len == 0)
+         {
+            return;
+         }
+         synchronized(wire)
+         {
+            wire.writeByte(type);
+            wire.writeInt(len);
+            wire.write(b, off, len);
+            wire.flush();
+         }
+      }
+   }
+}
@@ -0,0 +1,414 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.daemon;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import io.qrun.qctl.core.Main;
+import io.qrun.qctl.core.http.HttpMetrics;
+import io.qrun.qctl.core.sys.Invocation;
+
+
+/**
+ * The {@code qctl daemon} server: runs commands sent by {@link DaemonClient} inside one warm
+ * process, so repeated calls skip JVM startup, plugin discovery and HTTP connection setup (the
+ * {@code ApiClient} connection pool and in-memory caches are process-wide and stay live).
+ *
+ * <p>Listens on an {@code AF_UNIX} socket in a directory only the user can open. Each request
+ * runs on its own virtual thread with the caller's environment, working directory (used for
+ * {@code Path} options) and output streams bound as its {@link Invocation}; stdout and stderr
+ * stream back as they are written, then the exit code. Under {@code --output json} the command's
+ * own HTTP metrics are written to its stderr at the end, as a local run would on exit. The server stops after
+ * {@code idleTimeout} without requests, or on {@link #stop()}, and lets running requests finish.
+ *
+ * Why: Scripts that call qctl hundreds of times should not pay startup cost on every call.
+ * @since 0.1.0
+ */
+public final class DaemonServer implements Closeable
+{
+   private static final long POLL_MILLIS = 1000L;
+
+   private static volatile DaemonServer running;
+
+   private final Path                socket;
+   private final Duration            idleTimeout;
+   private final ServerSocketChannel server;
+   private final Instant             started = Instant.now();
+   private final AtomicLong          served  = new AtomicLong();
+   private final Object              lock    = new Object();
+
+   private int     active;
+   private long    idleSince = System.nanoTime();
+   private boolean idleStop;
+
+
+
+   /***************************************************************************
+    ** Wraps a bound server channel.
+    ***************************************************************************/
+   private DaemonServer(Path socket, Duration idleTimeout, ServerSocketChannel server)
+   {
+      this.socket = socket;
+      this.idleTimeout = idleTimeout;
+      this.server = server;
+   }
+
+
+
+   /**
+    * Returns the default socket path, under the user cache directory.
+    *
+    * @return socket path
+    */
+   public static Path defaultSocket()
+   {
+      return DaemonProtocol.defaultSocket();
+   }
+
+
+
+   /**
+    * Binds a server to the socket. A socket file left behind by a daemon that is gone is
+    * replaced; a live one is an error.
+    *
+    * @param socket      socket path
+    * @param idleTimeout time without requests after which {@link #serve()} returns
+    * @return bound server
+    * @throws IOException when another daemon is listening or the socket cannot be bound
+    */
+   public static DaemonServer bind(Path socket, Duration idleTimeout) throws IOException
+   {
+      Path dir = socket.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      restrictToOwner(dir, "rwx------");
+      if(Files.exists(socket))
+      {
+         if(isListening(socket))
+         {
+            throw new IOException("a qctl daemon is already listening on " + socket);
+         }
+         Files.deleteIfExists(socket);
+      }
+
+      ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      try
+      {
+         server.bind(UnixDomainSocketAddress.of(socket));
+         restrictToOwner(socket, "rw-------");
+      }
+      catch(IOException e)
+      {
+         server.close();
+         throw e;
+      }
+      return new DaemonServer(socket, idleTimeout, server);
+   }
+
+
+
+   /**
+    * Returns the server running in this process, if any.
+    *
+    * @return running server
+    */
+   public static Optional<DaemonServer> running()
+   {
+      return Optional.ofNullable(running);
+   }
+
+
+
+   /**
+    * Accepts and runs requests until {@link #stop()} or the idle timeout, then waits for running
+    * requests to finish and removes the socket file.
+    *
+    * @return true when the server stopped because it was idle
+    * @throws IOException when accepting fails for a reason other than shutdown
+    */
+   public boolean serve() throws IOException
+   {
+      Invocation.routeStandardStreams();
+      running = this;
+      Thread watcher = Thread.ofPlatform().daemon().name("qctl-daemon-idle").start(this::watchIdle);
+      try
+      {
+         while(true)
+         {
+            SocketChannel client;
+            try
+            {
+               client = server.accept();
+            }
+            catch(ClosedChannelException stopped)
+            {
+               break;
+            }
+            begin();
+            Thread.ofVirtual().name("qctl-daemon-request").start(() -> handle(client));
+         }
+         awaitIdle();
+         synchronized(lock)
+         {
+            return idleStop;
+         }
+      }
+      finally
+      {
+         watcher.interrupt();
+         running = null;
+         close();
+      }
+   }
+
+
+
+   /**
+    * Stops accepting requests; {@link #serve()} returns once running requests have finished.
+    */
+   public void stop()
+   {
+      try
+      {
+         server.close();
+      }
+      catch(IOException e)
+      {
+         // Closing a server channel does not fail in practice; serve() ends either way
+      }
+   }
+
+
+
+   /**
+    * Closes the server channel and removes the socket file.
+    *
+    * @throws IOException when the socket file cannot be removed
+    */
+   @Override
+   public void close() throws IOException
+   {
+      stop();
+      Files.deleteIfExists(socket);
+   }
+
+
+
+   /**
+    * Returns a one-line status summary.
+    *
+    * @return status text
+    */
+   public String describe()
+   {
+      synchronized(lock)
+      {
+         return "qctl daemon pid " + ProcessHandle.current().pid()
+            + ", socket " + socket
+            + ", up " + Duration.between(started, Instant.now()).toSeconds() + "s"
+            + ", served " + served.get()
+            + ", running " + active
+            + ", idle timeout " + idleTimeout.toSeconds() + "s";
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Runs one request and streams its output and exit code back.
+    ***************************************************************************/
+   private void handle(SocketChannel client)
+   {
+      try(client)
+      {
+         DataInputStream  in   = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+         DataOutputStream wire = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+
+         DaemonProtocol.Request request = DaemonProtocol.Request.read(in);
+         if(request.version() != DaemonProtocol.VERSION)
+         {
+            wire.writeByte(DaemonProtocol.REJECT);
+            DaemonProtocol.writeString(wire, "protocol " + request.version() + " not supported (daemon speaks " + DaemonProtocol.VERSION + ")");
+            wire.flush();
+            return;
+         }
+         wire.writeByte(DaemonProtocol.ACCEPT);
+         wire.flush();
+
+         Charset     charset = Charset.isSupported(request.encoding()) ? Charset.forName(request.encoding()) : Charset.defaultCharset();
+         PrintStream out     = new PrintStream(new DaemonProtocol.FrameOutputStream(wire, DaemonProtocol.STDOUT), true, charset);
+         PrintStream err     = new PrintStream(new DaemonProtocol.FrameOutputStream(wire, DaemonProtocol.STDERR), true, charset);
+         Invocation  inv     = new Invocation(request.env(), Path.of(request.cwd()), out, err);
+
+         String[]    argv    = request.argv().toArray(String[]::new);
+         HttpMetrics metrics = new HttpMetrics();
+         int         code    = HttpMetrics.collect(metrics, () -> Main.execute(argv, inv));
+         // The caller's own process never sees this traffic, so its metrics dump is sent from here
+         err.print(Main.httpMetricsDump(argv, metrics));
+         out.flush();
+         err.flush();
+         synchronized(wire)
+         {
+            wire.writeByte(DaemonProtocol.EXIT);
+            wire.writeInt(code);
+            wire.flush();
+         }
+         served.incrementAndGet();
+      }
+      catch(Exception e)
+      {
+         // The client went away or sent garbage; nothing is left to report to
+      }
+      finally
+      {
+         end();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Records the start of a request.
+    ***************************************************************************/
+   private void begin()
+   {
+      synchronized(lock)
+      {
+         active++;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Records the end of a request and wakes anyone waiting for idleness.
+    ***************************************************************************/
+   private void end()
+   {
+      synchronized(lock)
+      {
+         active--;
+         idleSince = System.nanoTime();
+         lock.notifyAll();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Blocks until no request is running.
+    ***************************************************************************/
+   private void awaitIdle()
+   {
+      synchronized(lock)
+      {
+         while(active > 0)
+         {
+            try
+            {
+               lock.wait();
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               return;
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Stops the server once it has been idle for the timeout.
+    ***************************************************************************/
+   private void watchIdle()
+   {
+      long timeout = idleTimeout.toNanos();
+      long poll    = Math.max(1L, Math.min(POLL_MILLIS, idleTimeout.toMillis() / 4));
+      while(!Thread.currentThread().isInterrupted())
+      {
+         synchronized(lock)
+         {
+            if(active == 0 && System.nanoTime() - idleSince >= timeout)
+            {
+               idleStop = true;
+               stop();
+               return;
+            }
+         }
+         try
+         {
+            TimeUnit.MILLISECONDS.sleep(poll);
+         }
+         catch(InterruptedException e)
+         {
+            return;
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns whether something accepts connections on the socket.
+    ***************************************************************************/
+   private static boolean isListening(Path socket)
+   {
+      try(SocketChannel probe = SocketChannel.open(UnixDomainSocketAddress.of(socket)))
+      {
+         return probe.isConnected();
+      }
+      catch(IOException gone)
+      {
+         return false;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Restricts a path to its owner where POSIX permissions are supported.
+    ***************************************************************************/
+   private static void restrictToOwner(Path path, String perms) throws IOException
+   {
+      try
+      {
+         Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(perms));
+      }
+      catch(UnsupportedOperationException e)
+      {
+         // Windows: the user profile directory is already private to the user
+      }
+   }
+}
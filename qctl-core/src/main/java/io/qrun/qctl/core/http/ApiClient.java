@@ -14,20 +14,70 @@ package io.qrun.qctl.core.http;
 
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import com.fasterxml.jackson.databind.JavaType;
+import io.qrun.qctl.core.sys.Invocation;
 import io.qrun.qctl.shared.api.ProblemDetail;
+import io.qrun.qctl.shared.json.Json;
 
 
 /**
  * Minimal HTTP client wrapper with JSON serialization, retries, and RFC7807 mapping.
  *
+ * <p>Both the blocking ({@code getJson}/{@code postJson}/{@code send}) and the
+ * {@link CompletableFuture}-based ({@code *Async}) methods run through the same retry pipeline.
+ * Attempts are bounded by a per-client in-flight limit, and clients created without an explicit
+ * {@link HttpClient} share one process-wide HTTP/2 client on virtual threads so concurrent calls
+ * multiplex over a single connection. Every attempt first reserves a slot from the process-wide
+ * {@link HostRateLimiter}, which also absorbs {@code Retry-After} and adapts to {@code 429}s.
+ * Large list responses can be decoded element by element with {@code streamJson} /
+ * {@code openJsonStream} instead of being buffered whole. With an {@link HttpCache} attached, GETs
+ * are answered or revalidated from disk, and {@code withOffline(true)} refuses all network I/O.
+ * Stale entries served within their {@code stale-while-revalidate} window are refreshed in the
+ * background; one-shot processes wait for those refreshes with {@link #awaitRefreshes(Duration)}.
+ * Identical concurrent GETs (same URI, representation headers and target type) are coalesced into
+ * a single exchange whose decoded result is handed to every caller. Paged list endpoints can be
+ * walked with {@code paginate}, which prefetches upcoming pages while the current one is consumed.
+ * Every attempt, backoff and rate-limit wait is reported to {@link HttpListener}s, starting with
+ * the process-wide {@link HttpMetrics} (and to the metrics of an enclosing
+ * {@link HttpMetrics#collect}). Responses are negotiated as gzip/deflate and decoded in the
+ * body handlers; JSON request bodies above a threshold are gzipped for hosts that advertise support.
+ * A process-wide {@link HostCircuitBreaker} fails calls to an unhealthy host fast (exit code 3).
+ * With a {@link HedgePolicy} attached, slow GETs are duplicated and the first answer wins.
+ * Large bodies are streamed from disk with {@code upload} and a {@link FileBody}, and binary
+ * resources streamed back with {@code download}.
+ * With an {@link HttpCassette} attached (or installed process-wide), every round-trip is recorded
+ * to, or replayed from, a cassette file.
+ *
  * Why: Centralizes API calls with consistent error→exit code mapping for the CLI.
  * @since 0.1.0
  */
@@ -41,12 +91,33 @@ public class ApiClient
    private static final double BACKOFF_FACTOR       = 1.7D;
    private static final double JITTER_MAX_MS        = 100D;
    private static final int    MAX_ATTEMPTS         = 3;
+   private static final long   RETRY_AFTER_MAX_MS   = HostRateLimiter.MAX_BLOCK_MS;
+   private static final int    ERROR_BODY_MAX_BYTES = 64 * 1024;
+
+   /** Slowest upload throughput tolerated before a streamed-body request times out. */
+   private static final long MIN_UPLOAD_BYTES_PER_SECOND = 64 * 1024;
+
+   // ---------------------------------------------------------------------
+   // Concurrency tuning
+   // ---------------------------------------------------------------------
+   /** Background cache refreshes still running anywhere in this process. */
+   private static final Set<CompletableFuture<?>> REFRESHES = ConcurrentHashMap.newKeySet();
+
+   private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+   private static final int MAX_PAGE_SIZE         = 200;
+
+   // ---------------------------------------------------------------------
+   // Compression
+   // ---------------------------------------------------------------------
+   private static final long DEFAULT_COMPRESS_ABOVE_BYTES = 8 * 1024;
 
    // ---------------------------------------------------------------------
    // HTTP status constants (use JDK where available, define missing ones)
    // ---------------------------------------------------------------------
    private static final int HTTP_OK_MIN               = 200;
    private static final int HTTP_REDIRECT_MIN         = 300;
+   private static final int HTTP_NOT_MODIFIED         = HttpURLConnection.HTTP_NOT_MODIFIED;      // 304
+   private static final int HTTP_UNSUPPORTED_MEDIA    = HttpURLConnection.HTTP_UNSUPPORTED_TYPE;  // 415
 
    private static final int HTTP_BAD_REQUEST          = HttpURLConnection.HTTP_BAD_REQUEST;        // 400
    private static final int HTTP_UNAUTHORIZED         = HttpURLConnection.HTTP_UNAUTHORIZED;       // 401
@@ -60,10 +131,27 @@ public class ApiClient
    private static final int HTTP_UNPROCESSABLE_ENTITY = 422; // 422 not defined in HttpURLConnection
    private static final int HTTP_TOO_MANY_REQUESTS    = 429; // 429 not defined in HttpURLConnection
 
+   /***************************************************************************
+    ** GETs in flight across every ApiClient in the process, keyed by flightKey, so
+    ** commands running side by side (batch, daemon) share one exchange as well.
+    ***************************************************************************/
+   private static final Map<String, CompletableFuture<Object>> FLIGHTS = new ConcurrentHashMap<>();
+
    private final HttpClient     client;
-   private final ObjectMapper   mapper = new ObjectMapper();
    private final Duration       requestTimeout;
    private final HeaderProvider headerProvider;
+   private final Semaphore      inFlight;
+   private final Executor       executor;
+
+   private final Map<HttpRequest, Long>                 firstByteAt = Collections.synchronizedMap(new IdentityHashMap<>());
+   private final List<HttpListener>                     listeners   = new CopyOnWriteArrayList<>(List.of(HttpMetrics.shared()));
+   private HostRateLimiter      rateLimiter = HostRateLimiter.shared();
+   private HostCircuitBreaker   breaker     = HostCircuitBreaker.shared();
+   private HttpCache            cache;
+   private boolean              offline;
+   private long                 compressAbove = DEFAULT_COMPRESS_ABOVE_BYTES;
+   private HedgePolicy          hedging;
+   private HttpCassette         cassette    = HttpCassette.installed();
 
 
 
@@ -90,7 +178,21 @@ public class ApiClient
     */
    public ApiClient(Duration requestTimeout, HeaderProvider headerProvider)
    {
-      this(HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build(), requestTimeout, headerProvider);
+      this(requestTimeout, headerProvider, DEFAULT_MAX_IN_FLIGHT);
+   }
+
+
+
+   /**
+    * Creates a client with timeout, header provider hook, and an explicit in-flight limit.
+    *
+    * @param requestTimeout per-request timeout
+    * @param headerProvider callback to inject headers prior to sending
+    * @param maxInFlight    maximum number of HTTP attempts this client keeps in flight at once
+    */
+   public ApiClient(Duration requestTimeout, HeaderProvider headerProvider, int maxInFlight)
+   {
+      this(Shared.CLIENT, requestTimeout, headerProvider, maxInFlight);
    }
 
    // Visible for tests
@@ -106,9 +208,151 @@ public class ApiClient
     */
    ApiClient(HttpClient client, Duration requestTimeout, HeaderProvider headerProvider)
    {
+      this(client, requestTimeout, headerProvider, DEFAULT_MAX_IN_FLIGHT);
+   }
+
+
+
+   /**
+    * Visible for tests.
+    *
+    * @param client          underlying HTTP client
+    * @param requestTimeout  per-request timeout
+    * @param headerProvider  callback to inject headers prior to sending
+    * @param maxInFlight     maximum number of HTTP attempts kept in flight at once
+    */
+   ApiClient(HttpClient client, Duration requestTimeout, HeaderProvider headerProvider, int maxInFlight)
+   {
+      if(maxInFlight < 1)
+      {
+         throw new IllegalArgumentException("maxInFlight must be >= 1: " + maxInFlight);
+      }
       this.client = client;
       this.requestTimeout = requestTimeout;
       this.headerProvider = headerProvider;
+      this.inFlight = new Semaphore(maxInFlight);
+      // Stages scheduled from HttpClient's or the delay scheduler's threads still run as our creator's invocation
+      this.executor = Invocation.current().bind(Shared.EXECUTOR);
+      HttpMetrics scoped = HttpMetrics.scoped();
+      if(scoped != null)
+      {
+         listeners.add(scoped);
+      }
+   }
+
+
+
+   /**
+    * Replaces the process-wide rate limiter, e.g. to isolate a client from other traffic.
+    *
+    * @param rateLimiter limiter consulted before every attempt
+    * @return this client
+    */
+   public ApiClient withRateLimiter(HostRateLimiter rateLimiter)
+   {
+      this.rateLimiter = rateLimiter;
+      return this;
+   }
+
+
+
+   /**
+    * Replaces the circuit breaker consulted before every attempt (defaults to the process-wide one).
+    *
+    * @param breaker circuit breaker to use
+    * @return this client
+    */
+   public ApiClient withCircuitBreaker(HostCircuitBreaker breaker)
+   {
+      this.breaker = breaker;
+      return this;
+   }
+
+
+
+   /**
+    * Enables hedging of GETs: a request still unanswered after the policy's delay is sent again
+    * and the first response wins.
+    *
+    * @param policy hedging policy (null disables hedging)
+    * @return this client
+    */
+   public ApiClient withHedging(HedgePolicy policy)
+   {
+      this.hedging = policy;
+      return this;
+   }
+
+
+
+   /**
+    * Attaches an on-disk cache used for every GET issued by this client.
+    *
+    * @param cache cache to consult and populate (null disables caching)
+    * @return this client
+    */
+   public ApiClient withCache(HttpCache cache)
+   {
+      this.cache = cache;
+      return this;
+   }
+
+
+
+   /**
+    * Enables offline mode: GETs are answered from the cache regardless of freshness and any
+    * request that would reach the network fails with exit code 3.
+    *
+    * @param offline whether network I/O is forbidden
+    * @return this client
+    */
+   public ApiClient withOffline(boolean offline)
+   {
+      this.offline = offline;
+      return this;
+   }
+
+
+
+   /**
+    * Sets the size above which JSON request bodies are gzipped (only for hosts that advertise
+    * gzip in {@code Accept-Encoding}).
+    *
+    * @param thresholdBytes minimum body size to compress; negative disables request compression
+    * @return this client
+    */
+   public ApiClient withRequestCompression(long thresholdBytes)
+   {
+      this.compressAbove = thresholdBytes;
+      return this;
+   }
+
+
+
+   /**
+    * Records every round-trip to, or replays it from, a cassette instead of the installed one.
+    *
+    * @param cassette cassette to use, or null to talk to the network directly
+    * @return this client
+    */
+   public ApiClient withCassette(HttpCassette cassette)
+   {
+      this.cassette = cassette;
+      return this;
+   }
+
+
+
+   /**
+    * Adds a listener notified of every attempt, backoff and rate-limit wait.
+    *
+    * @param listener listener to add
+    * @return this client
+    */
+   public ApiClient withListener(HttpListener listener)
+   {
+      listeners.add(listener);
+      return this;
    }
 
 
@@ -160,14 +404,23 @@ public class ApiClient
    public <T> T getJson(URI uri, Class<T> type)
          throws IOException, InterruptedException, ApiException
    {
-      HttpRequest.Builder b =
-         HttpRequest.newBuilder(uri)
-            .timeout(requestTimeout)
-            .header("Accept", "application/json")
-            .GET();
-      headerProvider.apply(b);
-      HttpRequest req = b.build();
-      return send(req, type);
+      return send(getRequest(uri), type);
+   }
+
+
+
+   /**
+    * Performs a GET without blocking the caller and parses the JSON response into the given type.
+    *
+    * @param uri  request URI
+    * @param type target response type
+    * @param <T>  type of the response
+    * @return future completing with the parsed response, or exceptionally with an
+    *    {@link ApiException} / {@link IOException} (see {@link #await(CompletableFuture)})
+    */
+   public <T> CompletableFuture<T> getJsonAsync(URI uri, Class<T> type)
+   {
+      return sendAsync(getRequest(uri), type);
    }
 
 
@@ -187,16 +440,87 @@ public class ApiClient
    public <T> T postJson(URI uri, Object body, Class<T> type)
          throws IOException, InterruptedException, ApiException
    {
-      byte[] payload = mapper.writeValueAsBytes(body);
-      HttpRequest.Builder b =
-         HttpRequest.newBuilder(uri)
-            .timeout(requestTimeout)
-            .header("Accept", "application/json")
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
-      headerProvider.apply(b);
-      HttpRequest req = b.build();
-      return send(req, type);
+      return await(post(uri, body, type, r -> completed(this::sendOnce, r)));
+   }
+
+
+
+   /**
+    * Performs a POST with JSON body without blocking the caller and parses the JSON response.
+    *
+    * @param uri  request URI
+    * @param body payload object to serialize as JSON
+    * @param type target response type
+    * @param <T>  type of the response
+    * @return future completing with the parsed response, or exceptionally with an
+    *    {@link ApiException} / {@link IOException} (see {@link #await(CompletableFuture)})
+    */
+   public <T> CompletableFuture<T> postJsonAsync(URI uri, Object body, Class<T> type)
+   {
+      return post(uri, body, type, this::sendOnceAsync);
+   }
+
+
+
+   /**
+    * Sends a streamed body, such as a {@link FileBody}, through the retry pipeline and returns the
+    * raw response so callers can read headers like {@code Location} or {@code Range}. The response
+    * is only due once the whole body has been sent, so the request timeout is extended by the
+    * body's length at 64 KiB/s; a body of unknown length gets no timeout.
+    *
+    * @param method  HTTP method, e.g. {@code PATCH} or {@code PUT}
+    * @param uri     request URI
+    * @param body    request body (re-subscribed on retry)
+    * @param headers extra request headers
+    * @return the 2xx response
+    * @throws IOException          on IO errors
+    * @throws InterruptedException if the thread is interrupted
+    * @throws ApiException         when a non-2xx response is received
+    */
+   public HttpResponse<byte[]> upload(String method, URI uri, HttpRequest.BodyPublisher body, Map<String, String> headers)
+         throws IOException, InterruptedException, ApiException
+   {
+      return await(fetch(uploadRequest(method, uri, body, headers), r -> completed(this::sendOnce, r)));
+   }
+
+
+
+   /**
+    * Non-blocking variant of {@link #upload(String, URI, HttpRequest.BodyPublisher, Map)}.
+    *
+    * @param method  HTTP method
+    * @param uri     request URI
+    * @param body    request body (re-subscribed on retry)
+    * @param headers extra request headers
+    * @return future completing with the 2xx response, or exceptionally with an
+    *    {@link ApiException} / {@link IOException}
+    */
+   public CompletableFuture<HttpResponse<byte[]>> uploadAsync(String method, URI uri, HttpRequest.BodyPublisher body, Map<String, String> headers)
+   {
+      return fetch(uploadRequest(method, uri, body, headers), this::sendOnceAsync);
+   }
+
+
+
+   /**
+    * Performs a GET for a binary resource (e.g. a tarball) and returns the 2xx response with its
+    * body as a stream, so callers can read {@code Content-Range} and write the body straight to
+    * disk. The body is requested uncompressed so byte offsets and {@code Range} headers refer to
+    * the resource itself. The request timeout bounds the wait for the response headers, not the
+    * body transfer. The caller must close the body.
+    *
+    * @param uri     resource URI
+    * @param headers extra request headers, e.g. {@code Range}
+    * @return the 2xx response (206 for a satisfied range)
+    * @throws IOException          on IO errors
+    * @throws InterruptedException if the thread is interrupted
+    * @throws ApiException         when a non-2xx response is received
+    */
+   public HttpResponse<InputStream> download(URI uri, Map<String, String> headers)
+         throws IOException, InterruptedException, ApiException
+   {
+      Transport<InputStream> transport = r -> completed(this::sendOnceStreaming, r);
+      return await(exchange(downloadRequest(uri, headers), transport, 1, RETRY_BASE_MS));
    }
 
 
@@ -207,99 +531,1118 @@ public class ApiClient
    public <T> T send(HttpRequest req, Class<T> type)
          throws IOException, InterruptedException, ApiException
    {
-      int  attempts = 0;
-      long backoff  = RETRY_BASE_MS;
-      while(true)
-      {
-         attempts++;
-         HttpResponse<byte[]> resp = sendOnce(req);
-         int                  sc   = resp.statusCode();
+      return await(execute(req, type, r -> completed(this::sendOnce, r)));
+   }
 
-         if(sc >= HTTP_OK_MIN && sc < HTTP_REDIRECT_MIN)
-         {
-            if(type == Void.class)
-            {
-               return null;
-            }
 
-            return mapper.readValue(resp.body(), type);
-         }
-         if(sc == HTTP_UNAUTHORIZED || sc == HTTP_FORBIDDEN)
-         {
-            throw toApiException(resp, 4);
-         }
-         if(sc == HTTP_NOT_FOUND)
-         {
-            throw toApiException(resp, 5);
-         }
-         if(sc == HTTP_BAD_REQUEST || sc == HTTP_UNPROCESSABLE_ENTITY)
-         {
-            throw toApiException(resp, 6);
-         }
-         if(sc == HTTP_CONFLICT || sc == HTTP_PRECONDITION_FAILED)
-         {
-            throw toApiException(resp, 8);
-         }
-         if(sc == HTTP_REQUEST_TIMEOUT || sc == HTTP_TOO_MANY_REQUESTS || sc >= HTTP_INTERNAL_ERROR)
+
+   /**
+    * Sends a request without blocking the caller, applying the same retry/backoff and error
+    * mapping as {@link #send(HttpRequest, Class)}.
+    *
+    * @param req  request to execute
+    * @param type target response type ({@code Void.class} to discard the body)
+    * @param <T>  type of the response
+    * @return future completing with the parsed response
+    */
+   public <T> CompletableFuture<T> sendAsync(HttpRequest req, Class<T> type)
+   {
+      return execute(req, type, this::sendOnceAsync);
+   }
+
+
+
+   /**
+    * Performs a GET and decodes a JSON array response one element at a time, handing each
+    * element to the consumer as soon as it has been parsed. The body is never buffered whole.
+    *
+    * @param uri         request URI
+    * @param elementType type of each array element
+    * @param consumer    callback invoked for each element, in order
+    * @param <T>         element type
+    * @return number of elements consumed
+    * @throws IOException          on IO or JSON decoding errors
+    * @throws InterruptedException if the thread is interrupted
+    * @throws ApiException         when a non-2xx response is received
+    */
+   public <T> long streamJson(URI uri, Class<T> elementType, Consumer<? super T> consumer)
+         throws IOException, InterruptedException, ApiException
+   {
+      long count = 0;
+      try(JsonStream<T> elements = openJsonStream(uri, elementType))
+      {
+         while(elements.hasNext())
          {
-            if(attempts >= MAX_ATTEMPTS)
-            {
-               throw toApiException(resp, 3);
-            }
-            try
-            {
-               Thread.sleep(Math.min(backoff, RETRY_MAX_SLEEP_MS));
-            }
-            catch(InterruptedException ie)
-            {
-               Thread.currentThread().interrupt();
-               throw ie;
-            }
-            backoff = (long) (backoff * BACKOFF_FACTOR + (Math.random() * JITTER_MAX_MS));
-            continue;
+            consumer.accept(elements.next());
+            count++;
          }
-         throw toApiException(resp, 1);
       }
+      catch(UncheckedIOException e)
+      {
+         throw e.getCause();
+      }
+      return count;
    }
 
-   // For testability: single HTTP round-trip; override in tests
-
 
 
    /**
-    * Single HTTP round-trip (overridable in tests).
+    * Performs a GET and returns a lazy iterator over the elements of the JSON array response.
+    * The caller must close the stream to release the underlying connection.
     *
-    * @param req request to execute
-    * @return HTTP response as bytes
+    * @param uri         request URI
+    * @param elementType type of each array element
+    * @param <T>         element type
+    * @return open element stream positioned before the first element
     * @throws IOException          on IO errors
-    * @throws InterruptedException if interrupted while waiting for response
+    * @throws InterruptedException if the thread is interrupted
+    * @throws ApiException         when a non-2xx response is received
     */
-   protected HttpResponse<byte[]> sendOnce(HttpRequest req)
-         throws IOException, InterruptedException
+   public <T> JsonStream<T> openJsonStream(URI uri, Class<T> elementType)
+         throws IOException, InterruptedException, ApiException
    {
-      return client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+      Transport<InputStream>    transport = r -> completed(this::sendOnceStreaming, r);
+      HttpResponse<InputStream> resp      = await(exchange(getRequest(uri), transport, 1, RETRY_BASE_MS));
+      return JsonStream.open(resp.body(), elementType);
    }
 
 
 
-   /***************************************************************************
-    ** Converts an HTTP response into an ApiException using RFC7807 body when available.
-    ***************************************************************************/
-   private ApiException toApiException(HttpResponse<byte[]> resp, int exitCode)
+   /**
+    * Walks a paged list endpoint ({@code page}/{@code size} query parameters, JSON array body,
+    * {@code X-Total-Count} header), keeping up to {@code prefetch} upcoming pages in flight while
+    * the current one is consumed. The caller should close the pager when stopping early: closing
+    * aborts the HTTP exchanges of pages still in flight and keeps unsent attempts from going out.
+    *
+    * @param uri         list endpoint URI (existing query parameters are kept)
+    * @param elementType type of each array element
+    * @param pageSize    page size, 1 to 200
+    * @param prefetch    number of pages to fetch ahead of the consumer
+    * @param <T>         element type
+    * @return lazy pager positioned before the first element
+    */
+   public <T> Pager<T> paginate(URI uri, Class<T> elementType, int pageSize, int prefetch)
    {
-      try
+      if(pageSize < 1 || pageSize > MAX_PAGE_SIZE)
       {
-         ProblemDetail pd = mapper.readValue(resp.body(), ProblemDetail.class);
-         return new ApiException(pd, exitCode);
+         throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE + ": " + pageSize);
       }
-      catch(Exception e)
+
+      JavaType listType = Json.mapper().getTypeFactory().constructCollectionType(List.class, elementType);
+      return new Pager<>(page ->
       {
-         ProblemDetail pd = new ProblemDetail();
-         pd.status = resp.statusCode();
-         pd.title = "HTTP " + resp.statusCode();
-         pd.detail = Optional.ofNullable(resp.headers().firstValue("X-Error").orElse(null)).orElse("Unexpected error");
-         return new ApiException(pd, exitCode);
+         // The pager cancels pages it no longer needs; carry that down to the exchange
+         CompletableFuture<Void> abandoned = new CompletableFuture<>();
+         CompletableFuture<Pager.Page<T>> result = fetch(getRequest(pageUri(uri, page, pageSize)), abandonable(abandoned))
+            .thenApply(resp -> new Pager.Page<T>(page, decodeList(resp, listType), totalCount(resp)));
+         result.whenComplete((p, e) -> abandoned.complete(null));
+         return result;
+      }, pageSize, prefetch);
+   }
+
+
+
+   /**
+    * Walks every element of a paged list endpoint, handing each to the consumer in order.
+    *
+    * @param uri         list endpoint URI
+    * @param elementType type of each array element
+    * @param pageSize    page size, 1 to 200
+    * @param prefetch    number of pages to fetch ahead of the consumer
+    * @param consumer    callback invoked for each element
+    * @param <T>         element type
+    * @return number of elements consumed
+    * @throws IOException          on IO or JSON decoding errors
+    * @throws InterruptedException if the thread is interrupted
+    * @throws ApiException         when a non-2xx response is received
+    */
+   public <T> long forEachPaged(URI uri, Class<T> elementType, int pageSize, int prefetch, Consumer<? super T> consumer)
+         throws IOException, InterruptedException, ApiException
+   {
+      long count = 0;
+      try(Pager<T> pager = paginate(uri, elementType, pageSize, prefetch))
+      {
+         while(pager.hasNext())
+         {
+            consumer.accept(pager.next());
+            count++;
+         }
+      }
+      catch(CompletionException e)
+      {
+         throw rethrow(unwrap(e));
       }
+      return count;
+   }
+
+
+
+   /**
+    * Waits for a future returned by one of the async methods and rethrows its failure as the
+    * checked exception the blocking API would have thrown.
+    *
+    * @param future future returned by this client
+    * @param <T>    type of the response
+    * @return the completed value
+    * @throws IOException          on IO errors
+    * @throws InterruptedException if the thread is interrupted while waiting
+    * @throws ApiException         when a non-2xx response is received
+    */
+   public static <T> T await(CompletableFuture<T> future)
+         throws IOException, InterruptedException, ApiException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch(ExecutionException e)
+      {
+         throw rethrow(unwrap(e));
+      }
+   }
+
+
+
+   /**
+    * Waits for background cache refreshes started by stale-while-revalidate hits in this process.
+    * A one-shot command exits right after printing, which would otherwise kill the refresh and
+    * leave the same stale entry for the next run. Refreshes still running at the deadline are
+    * abandoned; their entries stay stale and are refreshed again on a later hit.
+    *
+    * @param timeout longest time to wait
+    */
+   public static void awaitRefreshes(Duration timeout)
+   {
+      if(REFRESHES.isEmpty())
+      {
+         return;
+      }
+      try
+      {
+         CompletableFuture.allOf(REFRESHES.toArray(CompletableFuture[]::new)).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      catch(ExecutionException | TimeoutException e)
+      {
+         // A refresh that failed or did not finish leaves its entry stale; nothing to report
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Rethrows an unwrapped async failure as the checked exception the
+    ** blocking API declares. Declared to return so callers can {@code throw} it.
+    ***************************************************************************/
+   private static IOException rethrow(Throwable cause)
+         throws IOException, InterruptedException, ApiException
+   {
+      if(cause instanceof ApiException ae)
+      {
+         throw ae;
+      }
+      if(cause instanceof IOException ioe)
+      {
+         throw ioe;
+      }
+      if(cause instanceof InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw ie;
+      }
+      if(cause instanceof RuntimeException re)
+      {
+         throw re;
+      }
+      if(cause instanceof Error err)
+      {
+         throw err;
+      }
+      return new IOException(cause);
+   }
+
+
+
+   /***************************************************************************
+    ** Strips CompletableFuture wrapper exceptions down to the original failure.
+    ***************************************************************************/
+   static Throwable unwrap(Throwable t)
+   {
+      Throwable cur = t;
+      while((cur instanceof CompletionException || cur instanceof ExecutionException || cur instanceof UncheckedIOException)
+         && cur.getCause() != null)
+      {
+         cur = cur.getCause();
+      }
+      return cur;
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a JSON GET request with the configured timeout and headers.
+    ***************************************************************************/
+   private HttpRequest getRequest(URI uri)
+   {
+      HttpRequest.Builder b =
+         HttpRequest.newBuilder(uri)
+            .timeout(requestTimeout)
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", Compression.ACCEPT_ENCODING)
+            .GET();
+      headerProvider.apply(b);
+      return b.build();
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a JSON POST request with the configured timeout and headers.
+    ***************************************************************************/
+   private HttpRequest postRequest(URI uri, byte[] payload, boolean gzip)
+   {
+      HttpRequest.Builder b =
+         HttpRequest.newBuilder(uri)
+            .timeout(requestTimeout)
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", Compression.ACCEPT_ENCODING)
+            .header("Content-Type", "application/json");
+      if(gzip)
+      {
+         b.header("Content-Encoding", Compression.GZIP).POST(HttpRequest.BodyPublishers.ofByteArray(Compression.gzip(payload)));
+      }
+      else
+      {
+         b.POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+      }
+      headerProvider.apply(b);
+      return b.build();
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a streamed-body request (octet-stream unless overridden), with
+    ** a timeout that leaves room to send the whole body.
+    ***************************************************************************/
+   private HttpRequest uploadRequest(String method, URI uri, HttpRequest.BodyPublisher body, Map<String, String> headers)
+   {
+      HttpRequest.Builder b =
+         HttpRequest.newBuilder(uri)
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", Compression.ACCEPT_ENCODING)
+            .header("Content-Type", "application/octet-stream")
+            .method(method, body);
+      if(body.contentLength() >= 0)
+      {
+         b.timeout(requestTimeout.plusMillis(TimeUnit.SECONDS.toMillis(body.contentLength()) / MIN_UPLOAD_BYTES_PER_SECOND));
+      }
+      headers.forEach(b::setHeader);
+      headerProvider.apply(b);
+      return b.build();
+   }
+
+
+
+   /***************************************************************************
+    ** Builds an identity-encoded binary GET; the timeout covers the response
+    ** headers only.
+    ***************************************************************************/
+   private HttpRequest downloadRequest(URI uri, Map<String, String> headers)
+   {
+      HttpRequest.Builder b =
+         HttpRequest.newBuilder(uri)
+            .header("Accept", "application/octet-stream, */*")
+            .header("Accept-Encoding", "identity")
+            .timeout(requestTimeout)
+            .GET();
+      headers.forEach(b::setHeader);
+      headerProvider.apply(b);
+      return b.build();
+   }
+
+
+
+   /***************************************************************************
+    ** Serializes and POSTs a JSON body, gzipping it when the host accepts
+    ** compressed bodies; a 415 to a compressed body is resent uncompressed.
+    ***************************************************************************/
+   private <T> CompletableFuture<T> post(URI uri, Object body, Class<T> type, Transport<byte[]> transport)
+   {
+      byte[] payload;
+      try
+      {
+         payload = Json.writer().writeValueAsBytes(body);
+      }
+      catch(IOException e)
+      {
+         return CompletableFuture.failedFuture(e);
+      }
+
+      String host = String.valueOf(uri.getAuthority());
+      if(!Compression.shouldCompress(host, payload.length, compressAbove))
+      {
+         return execute(postRequest(uri, payload, false), type, transport);
+      }
+      return execute(postRequest(uri, payload, true), type, transport).exceptionallyCompose(e ->
+      {
+         if(unwrap(e) instanceof ApiException ae && ae.problem.status != null && ae.problem.status == HTTP_UNSUPPORTED_MEDIA)
+         {
+            Compression.reject(host);
+            return execute(postRequest(uri, payload, false), type, transport);
+         }
+         return CompletableFuture.failedFuture(e);
+      });
+   }
+
+
+
+   /***************************************************************************
+    ** Runs the retry pipeline with the given transport and decodes the body.
+    ***************************************************************************/
+   private <T> CompletableFuture<T> execute(HttpRequest req, Class<T> type, Transport<byte[]> transport)
+   {
+      if(!"GET".equals(req.method()))
+      {
+         return fetch(req, transport).thenApply(resp -> decode(resp, type));
+      }
+
+      String                    key    = flightKey(req, type);
+      CompletableFuture<Object> leader = new CompletableFuture<>();
+      CompletableFuture<Object> shared = FLIGHTS.putIfAbsent(key, leader);
+      if(shared != null)
+      {
+         return shared.thenApply(type::cast);
+      }
+
+      // Leave the map before completing so callers arriving afterwards start a fresh exchange
+      fetch(req, transport).thenApply(resp -> (Object) decode(resp, type)).whenComplete((value, error) ->
+      {
+         FLIGHTS.remove(key, leader);
+         if(error != null)
+         {
+            leader.completeExceptionally(error);
+         }
+         else
+         {
+            leader.complete(value);
+         }
+      });
+      return leader.thenApply(type::cast);
+   }
+
+
+
+   /***************************************************************************
+    ** Single-flight key: method, URI, the Vary headers (so callers with other
+    ** credentials never share a response) and the result type it decodes to.
+    ***************************************************************************/
+   private static String flightKey(HttpRequest req, Class<?> type)
+   {
+      StringBuilder sb = new StringBuilder(req.method()).append(' ').append(req.uri()).append(' ').append(type.getName());
+      for(String h : HttpCache.VARY_HEADERS)
+      {
+         sb.append('\n').append(h).append(':').append(String.join(",", req.headers().allValues(h)));
+      }
+      return sb.toString();
+   }
+
+
+
+   /***************************************************************************
+    ** Transport over sendOnceAsync that stops once {@code abandoned} completes:
+    ** an exchange in flight is cancelled (which aborts it in HttpClient) and
+    ** later attempts are refused without being sent.
+    ***************************************************************************/
+   private Transport<byte[]> abandonable(CompletableFuture<Void> abandoned)
+   {
+      return req ->
+      {
+         if(abandoned.isDone())
+         {
+            return CompletableFuture.failedFuture(new CancellationException("request abandoned before sending"));
+         }
+         CompletableFuture<HttpResponse<byte[]>> sent = sendOnceAsync(req);
+         abandoned.whenComplete((v, e) -> sent.cancel(true));
+         return sent;
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** Routes GETs through the cache when one is attached.
+    ***************************************************************************/
+   private CompletableFuture<HttpResponse<byte[]>> fetch(HttpRequest req, Transport<byte[]> transport)
+   {
+      if(!"GET".equals(req.method()))
+      {
+         return exchange(req, transport, 1, RETRY_BASE_MS);
+      }
+      if(cache == null)
+      {
+         return exchangeGet(req, transport);
+      }
+
+      Optional<HttpCache.Entry> hit = cache.lookup(req);
+      if(hit.isEmpty())
+      {
+         return exchangeGet(req, transport).thenApply(resp ->
+         {
+            cache.store(req, resp, System.currentTimeMillis());
+            return resp;
+         });
+      }
+
+      HttpCache.Entry entry = hit.get();
+      long            now   = System.currentTimeMillis();
+      if(offline || entry.isFresh(now))
+      {
+         return CompletableFuture.completedFuture(entry.toResponse(req));
+      }
+      if(entry.isWithinStaleWindow(now))
+      {
+         // Serve the stale copy now and refresh it off the caller's path (best effort)
+         CompletableFuture<?> refresh = CompletableFuture.supplyAsync(() -> revalidate(req, entry, transport), executor)
+            .thenCompose(f -> f);
+         REFRESHES.add(refresh);
+         refresh.whenComplete((r, e) -> REFRESHES.remove(refresh));
+         return CompletableFuture.completedFuture(entry.toResponse(req));
+      }
+      return revalidate(req, entry, transport);
+   }
+
+
+
+   /***************************************************************************
+    ** Runs a GET exchange, hedged when a policy is attached. The first answer
+    ** wins and the other request is abandoned, so it stops holding an
+    ** in-flight permit and sends no further attempts. The primary's latency
+    ** always feeds the policy: when the hedge wins, the time until then is a
+    ** lower bound for it, which keeps the percentile from drifting down to
+    ** the winners' times only.
+    ***************************************************************************/
+   private CompletableFuture<HttpResponse<byte[]>> exchangeGet(HttpRequest req, Transport<byte[]> transport)
+   {
+      if(hedging == null)
+      {
+         return exchange(req, transport, 1, RETRY_BASE_MS);
+      }
+
+      String endpoint = HttpMetrics.endpointOf(req.method(), req.uri());
+      long   delayMs  = hedging.delayMs(endpoint);
+      long   started  = System.nanoTime();
+
+      CompletableFuture<HttpResponse<byte[]>> result      = new CompletableFuture<>();
+      CompletableFuture<Void>                 primaryLost = new CompletableFuture<>();
+      CompletableFuture<Void>                 hedgeLost   = new CompletableFuture<>();
+      AtomicInteger                           pending     = new AtomicInteger(1);
+      exchange(req, detached(transport, primaryLost), 1, RETRY_BASE_MS).whenComplete((resp, err) ->
+      {
+         if(err == null && !primaryLost.isDone())
+         {
+            hedging.record(endpoint, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+         }
+         settle(result, pending, hedgeLost, resp, err);
+      });
+
+      delay(delayMs).thenRun(() ->
+      {
+         if(!result.isDone() && hedging.tryHedge())
+         {
+            pending.incrementAndGet();
+            notify(l -> l.onHedge(endpoint));
+            exchange(req, detached(transport, hedgeLost), 1, RETRY_BASE_MS).whenComplete((resp, err) ->
+            {
+               if(err == null && !result.isDone())
+               {
+                  // Hedge is about to win; the primary has taken at least this long
+                  hedging.record(endpoint, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                  primaryLost.complete(null);
+               }
+               settle(result, pending, primaryLost, resp, err);
+            });
+         }
+      });
+      return result;
+   }
+
+
+
+   /***************************************************************************
+    ** Completes a hedged result with the first success, abandoning the other
+    ** request, or with the last failure once neither request is left.
+    ***************************************************************************/
+   private static void settle(CompletableFuture<HttpResponse<byte[]>> result, AtomicInteger pending, CompletableFuture<Void> other,
+      HttpResponse<byte[]> resp, Throwable err)
+   {
+      if(err == null)
+      {
+         if(result.complete(resp))
+         {
+            other.complete(null);
+         }
+      }
+      else if(pending.decrementAndGet() == 0)
+      {
+         result.completeExceptionally(err);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Runs a transport on the executor so the caller is free to launch the
+    ** hedge. Once {@code abandoned} completes, a send in progress is
+    ** cancelled (and its thread interrupted, which aborts a blocking send) and
+    ** later attempts are refused without being sent.
+    ***************************************************************************/
+   private Transport<byte[]> detached(Transport<byte[]> transport, CompletableFuture<Void> abandoned)
+   {
+      return req ->
+      {
+         if(abandoned.isDone())
+         {
+            return CompletableFuture.failedFuture(new CancellationException("hedged request lost the race"));
+         }
+         AtomicReference<Thread> sender = new AtomicReference<>();
+         CompletableFuture<CompletableFuture<HttpResponse<byte[]>>> sending = CompletableFuture.supplyAsync(() ->
+         {
+            sender.set(Thread.currentThread());
+            try
+            {
+               return transport.send(req);
+            }
+            finally
+            {
+               sender.set(null);
+            }
+         }, executor);
+         CompletableFuture<HttpResponse<byte[]>> sent = sending.thenCompose(f -> f);
+         abandoned.whenComplete((v, e) ->
+         {
+            Thread blocked = sender.get();
+            if(blocked != null)
+            {
+               blocked.interrupt();
+            }
+            sending.thenAccept(f -> f.cancel(true));
+            sent.cancel(true);
+         });
+         return sent;
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** Sends a conditional request for a cached entry; a 304 is answered from
+    ** the cache, a 200 replaces the entry.
+    ***************************************************************************/
+   private CompletableFuture<HttpResponse<byte[]>> revalidate(HttpRequest req, HttpCache.Entry entry, Transport<byte[]> transport)
+   {
+      HttpRequest conditional = entry.hasValidator() ? entry.conditional(req) : req;
+      return exchangeGet(conditional, transport).thenApply(resp ->
+      {
+         long now = System.currentTimeMillis();
+         if(resp.statusCode() == HTTP_NOT_MODIFIED)
+         {
+            return cache.refresh(entry, resp.headers(), now).toResponse(req);
+         }
+         cache.store(req, resp, now);
+         return resp;
+      });
+   }
+
+
+
+   /***************************************************************************
+    ** One step of the retry loop: performs an attempt and either completes with
+    ** a 2xx response, schedules the next attempt after backoff, or fails with
+    ** the mapped ApiException.
+    ***************************************************************************/
+   private <B> CompletableFuture<HttpResponse<B>> exchange(HttpRequest req, Transport<B> transport, int attempt, long backoff)
+   {
+      return attempt(req, transport, attempt).thenCompose(resp ->
+      {
+         int sc = resp.statusCode();
+         if(sc >= HTTP_OK_MIN && sc < HTTP_REDIRECT_MIN || sc == HTTP_NOT_MODIFIED && isConditional(req))
+         {
+            return CompletableFuture.completedFuture(resp);
+         }
+
+         int exitCode = exitCodeForStatus(sc);
+         if(exitCode == 3 && attempt < MAX_ATTEMPTS && retryAfterMs(resp) <= RETRY_AFTER_MAX_MS)
+         {
+            // Any Retry-After is enforced by the rate limiter when the next attempt reserves its slot
+            discard(resp);
+            long next  = (long) (backoff * BACKOFF_FACTOR + (Math.random() * JITTER_MAX_MS));
+            long sleep = Math.min(backoff, RETRY_MAX_SLEEP_MS);
+            notify(l -> l.onBackoff(HttpMetrics.endpointOf(req.method(), req.uri()), sleep));
+            return delay(sleep)
+               .thenCompose(v -> exchange(req, transport, attempt + 1, next));
+         }
+         return CompletableFuture.failedFuture(toApiException(resp, exitCode));
+      });
+   }
+
+
+
+   /***************************************************************************
+    ** Performs a single attempt: waits for the host's rate-limit slot, then
+    ** sends while holding one of the in-flight permits. The fast path takes a
+    ** free permit inline; otherwise the wait is parked on a virtual thread so
+    ** callers are never blocked by the limit.
+    ***************************************************************************/
+   private <B> CompletableFuture<HttpResponse<B>> attempt(HttpRequest req, Transport<B> transport, int attempt)
+   {
+      if(offline)
+      {
+         return CompletableFuture.failedFuture(offlineException(req));
+      }
+
+      String                    host   = String.valueOf(req.uri().getAuthority());
+      HostCircuitBreaker.Permit permit = breaker.tryAcquire(host);
+      if(permit == HostCircuitBreaker.Permit.REJECTED)
+      {
+         return CompletableFuture.failedFuture(circuitOpenException(host));
+      }
+
+      long waitMs = rateLimiter.reserve(host);
+      if(waitMs > 0)
+      {
+         notify(l -> l.onThrottle(HttpMetrics.endpointOf(req.method(), req.uri()), waitMs));
+      }
+      return delay(waitMs)
+         .thenCompose(v -> inFlight.tryAcquire()
+            ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.runAsync(inFlight::acquireUninterruptibly, executor))
+         .thenCompose(v -> timed(req, transport, attempt))
+         .whenComplete((resp, err) ->
+         {
+            inFlight.release();
+            // An abandoned request says nothing about the host's health
+            if(!(err != null && unwrap(err) instanceof CancellationException))
+            {
+               breaker.onResult(host, permit, resp != null ? resp.statusCode() : -1);
+            }
+         })
+         .thenApply(resp ->
+         {
+            rateLimiter.onResponse(host, resp.statusCode(), retryAfterMs(resp));
+            Compression.learn(host, resp.headers());
+            return resp;
+         });
+   }
+
+
+
+   /***************************************************************************
+    ** Sends one attempt and reports its timing and sizes to the listeners.
+    ** Each attempt sends its own copy of the request: firstByteAt is keyed by
+    ** identity, and a hedge or retry reuses the caller's (equal) request while
+    ** another attempt may still be in flight.
+    ***************************************************************************/
+   private <B> CompletableFuture<HttpResponse<B>> timed(HttpRequest req, Transport<B> transport, int attempt)
+   {
+      HttpRequest sent    = HttpRequest.newBuilder(req, (name, value) -> true).build();
+      long        started = System.nanoTime();
+      long[]      ended   = new long[1];
+      // Later stages run on the executor, bound to this client's invocation, not on HttpClient's threads
+      return transport.send(sent).whenComplete((resp, err) -> ended[0] = System.nanoTime()).whenCompleteAsync((resp, err) ->
+      {
+         Long firstByte = firstByteAt.remove(sent);
+         HttpAttempt event = new HttpAttempt(
+            HttpMetrics.endpointOf(req.method(), req.uri()), req.uri(), attempt,
+            resp != null ? resp.statusCode() : -1,
+            firstByte != null ? firstByte - started : -1L,
+            ended[0] - started,
+            req.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L),
+            resp != null ? bytesIn(resp) : -1L);
+         notify(l -> l.onAttempt(event));
+      }, executor);
+   }
+
+
+
+   /***************************************************************************
+    ** Wire body size: buffered length of an identity body, else Content-Length,
+    ** else -1.
+    ***************************************************************************/
+   private static long bytesIn(HttpResponse<?> resp)
+   {
+      if(Compression.encodingOf(resp.headers()) == null && resp.body() instanceof byte[] bytes)
+      {
+         return bytes.length;
+      }
+      return resp.headers().firstValueAsLong("Content-Length").orElse(-1L);
+   }
+
+
+
+   /***************************************************************************
+    ** Invokes every listener, isolating the pipeline from listener failures.
+    ***************************************************************************/
+   private void notify(Consumer<HttpListener> call)
+   {
+      for(HttpListener l : listeners)
+      {
+         try
+         {
+            call.accept(l);
+         }
+         catch(RuntimeException e)
+         {
+            // Listeners are observers; they must never break a request
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Wraps a body handler so the arrival of response headers is recorded.
+    ***************************************************************************/
+   private <B> HttpResponse.BodyHandler<B> firstByte(HttpRequest req, HttpResponse.BodyHandler<B> handler)
+   {
+      return info ->
+      {
+         firstByteAt.put(req, System.nanoTime());
+         return handler.apply(info);
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** Whether the request carries cache validators (so a 304 is expected).
+    ***************************************************************************/
+   private static boolean isConditional(HttpRequest req)
+   {
+      return req.headers().firstValue("If-None-Match").isPresent()
+         || req.headers().firstValue("If-Modified-Since").isPresent();
+   }
+
+
+
+   /***************************************************************************
+    ** Builds the exit-3 error for a request refused by offline mode.
+    ***************************************************************************/
+   private static ApiException offlineException(HttpRequest req)
+   {
+      ProblemDetail pd = new ProblemDetail();
+      pd.title = "Offline";
+      pd.detail = req.method() + " " + req.uri() + " is not available from cache; rerun without --offline";
+      return new ApiException(pd, 3);
+   }
+
+
+
+   /***************************************************************************
+    ** Builds the exit-3 error for a call refused by an open circuit.
+    ***************************************************************************/
+   private ApiException circuitOpenException(String host)
+   {
+      long          retryIn = breaker.retryInMs(host);
+      ProblemDetail pd      = new ProblemDetail();
+      pd.title = "Service unavailable";
+      pd.detail = host + " is failing most recent requests; not retrying"
+         + (retryIn > 0 ? " for another " + Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryIn)) + "s" : " until the current probe completes")
+         + ". Check the API status and try again shortly";
+      return new ApiException(pd, 3);
+   }
+
+
+
+   /***************************************************************************
+    ** Returns a future that completes on the shared executor after the delay
+    ** (immediately when the delay is not positive).
+    ***************************************************************************/
+   private CompletableFuture<Void> delay(long millis)
+   {
+      if(millis <= 0)
+      {
+         return CompletableFuture.completedFuture(null);
+      }
+      Executor delayed = CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, executor);
+      return CompletableFuture.supplyAsync(() -> null, delayed);
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the response's Retry-After delay in millis, or -1 when absent.
+    ***************************************************************************/
+   private static long retryAfterMs(HttpResponse<?> resp)
+   {
+      return HostRateLimiter.parseRetryAfter(resp.headers().firstValue("Retry-After").orElse(null), Instant.now());
+   }
+
+
+
+   /***************************************************************************
+    ** Decodes a successful response body into the requested type.
+    ***************************************************************************/
+   private <T> T decode(HttpResponse<byte[]> resp, Class<T> type)
+   {
+      if(type == Void.class)
+      {
+         return null;
+      }
+
+      try
+      {
+         return Json.reader(type).readValue(resp.body());
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Decodes a successful JSON array response into a list.
+    ***************************************************************************/
+   private <T> List<T> decodeList(HttpResponse<byte[]> resp, JavaType listType)
+   {
+      try
+      {
+         return Json.reader(listType).readValue(resp.body());
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Appends page/size query parameters to a list endpoint URI.
+    ***************************************************************************/
+   private static URI pageUri(URI uri, int page, int size)
+   {
+      String sep = uri.getRawQuery() == null ? "?" : "&";
+      return URI.create(uri + sep + "page=" + page + "&size=" + size);
+   }
+
+
+
+   /***************************************************************************
+    ** Reads X-Total-Count, or -1 when absent or malformed.
+    ***************************************************************************/
+   private static long totalCount(HttpResponse<?> resp)
+   {
+      try
+      {
+         return resp.headers().firstValue("X-Total-Count").map(Long::parseLong).orElse(-1L);
+      }
+      catch(NumberFormatException e)
+      {
+         return -1L;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Adapts a blocking round-trip seam to the async pipeline.
+    ***************************************************************************/
+   private static <B> CompletableFuture<HttpResponse<B>> completed(BlockingSend<B> send, HttpRequest req)
+   {
+      try
+      {
+         return CompletableFuture.completedFuture(send.send(req));
+      }
+      catch(IOException e)
+      {
+         return CompletableFuture.failedFuture(e);
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         return CompletableFuture.failedFuture(e);
+      }
+   }
+
+   // For testability: single HTTP round-trip; override in tests
+
+
+
+   /**
+    * Single HTTP round-trip (overridable in tests).
+    *
+    * @param req request to execute
+    * @return HTTP response as bytes
+    * @throws IOException          on IO errors
+    * @throws InterruptedException if interrupted while waiting for response
+    */
+   protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         throws IOException, InterruptedException
+   {
+      if(cassette != null)
+      {
+         return cassette.send(req, () -> client.send(req, firstByte(req, Compression.ofByteArray())));
+      }
+      return client.send(req, firstByte(req, Compression.ofByteArray()));
+   }
+
+
+
+   /**
+    * Single non-blocking HTTP round-trip used by the async methods (overridable in tests).
+    *
+    * @param req request to execute
+    * @return future completing with the HTTP response as bytes
+    */
+   protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+   {
+      if(cassette != null)
+      {
+         return cassette.sendAsync(req, () -> client.sendAsync(req, firstByte(req, Compression.ofByteArray())));
+      }
+      return client.sendAsync(req, firstByte(req, Compression.ofByteArray()));
+   }
+
+
+
+   /**
+    * Single HTTP round-trip that exposes the body as a stream (overridable in tests).
+    *
+    * @param req request to execute
+    * @return HTTP response whose body is read lazily
+    * @throws IOException          on IO errors
+    * @throws InterruptedException if interrupted while waiting for response headers
+    */
+   protected HttpResponse<InputStream> sendOnceStreaming(HttpRequest req)
+         throws IOException, InterruptedException
+   {
+      if(cassette != null)
+      {
+         return cassette.sendStreaming(req, () -> client.send(req, firstByte(req, Compression.ofInputStream())));
+      }
+      return client.send(req, firstByte(req, Compression.ofInputStream()));
+   }
+
+
+
+   /***************************************************************************
+    ** Converts an HTTP response into an ApiException using RFC7807 body when available.
+    ***************************************************************************/
+   private ApiException toApiException(HttpResponse<?> resp, int exitCode)
+   {
+      try
+      {
+         ProblemDetail pd = Json.reader(ProblemDetail.class).readValue(errorBody(resp));
+         if(pd.status == null)
+         {
+            pd.status = resp.statusCode();
+         }
+         return new ApiException(pd, exitCode);
+      }
+      catch(Exception e)
+      {
+         ProblemDetail pd = new ProblemDetail();
+         pd.status = resp.statusCode();
+         pd.title = "HTTP " + resp.statusCode();
+         pd.detail = Optional.ofNullable(resp.headers().firstValue("X-Error").orElse(null)).orElse("Unexpected error");
+         return new ApiException(pd, exitCode);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Reads the (bounded) body of an error response, closing streamed bodies.
+    ***************************************************************************/
+   private static byte[] errorBody(HttpResponse<?> resp)
+   {
+      Object body = resp.body();
+      if(body instanceof byte[] bytes)
+      {
+         return bytes;
+      }
+      if(body instanceof InputStream in)
+      {
+         try(in)
+         {
+            return in.readNBytes(ERROR_BODY_MAX_BYTES);
+         }
+         catch(IOException e)
+         {
+            return new byte[0];
+         }
+      }
+      return new byte[0];
+   }
+
+
+
+   /***************************************************************************
+    ** Releases a response that is about to be retried (closes streamed bodies).
+    ***************************************************************************/
+   private static void discard(HttpResponse<?> resp)
+   {
+      if(resp.body() instanceof InputStream in)
+      {
+         try
+         {
+            in.close();
+         }
+         catch(IOException expected)
+         {
+            // nothing to release beyond the connection itself
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** A single HTTP round-trip as seen by the retry pipeline.
+    ***************************************************************************/
+   @FunctionalInterface
+   private interface Transport<B>
+   {
+      /***************************************************************************
+       ** Sends the request once.
+       ***************************************************************************/
+      CompletableFuture<HttpResponse<B>> send(HttpRequest req);
+   }
+
+
+
+   /***************************************************************************
+    ** A blocking single round-trip seam such as {@link #sendOnce(HttpRequest)}.
+    ***************************************************************************/
+   @FunctionalInterface
+   private interface BlockingSend<B>
+   {
+      /***************************************************************************
+       ** Sends the request once, blocking until headers arrive.
+       ***************************************************************************/
+      HttpResponse<B> send(HttpRequest req) throws IOException, InterruptedException;
+   }
+
+
+
+   /***************************************************************************
+    ** Lazily created process-wide HTTP/2 client and virtual-thread executor,
+    ** shared by every ApiClient that does not bring its own HttpClient.
+    ***************************************************************************/
+   private static final class Shared
+   {
+      static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+      static final HttpClient      CLIENT   =
+         HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .executor(EXECUTOR)
+            .build();
    }
 
 
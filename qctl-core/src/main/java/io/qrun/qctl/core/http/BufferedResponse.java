@@ -0,0 +1,160 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+
+/**
+ * In-memory {@link HttpResponse} over a byte[] body, used for responses that did not come
+ * straight off the wire (served from cache, replayed, or re-encoded).
+ *
+ * Why: Lets synthesized responses flow through the same pipeline as real ones.
+ * @since 0.1.0
+ */
+final class BufferedResponse implements HttpResponse<byte[]>
+{
+   private final int         status;
+   private final HttpHeaders headers;
+   private final byte[]      body;
+   private final HttpRequest request;
+
+
+
+   /**
+    * Creates a response.
+    *
+    * @param request request this response answers (may be null)
+    * @param status  HTTP status code
+    * @param headers response headers
+    * @param body    response body
+    */
+   BufferedResponse(HttpRequest request, int status, HttpHeaders headers, byte[] body)
+   {
+      this.request = request;
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+   }
+
+
+
+   /**
+    * Creates a response from a plain header map.
+    *
+    * @param request request this response answers (may be null)
+    * @param status  HTTP status code
+    * @param headers response headers
+    * @param body    response body
+    */
+   BufferedResponse(HttpRequest request, int status, Map<String, List<String>> headers, byte[] body)
+   {
+      this(request, status, HttpHeaders.of(headers, (k, v) -> true), body);
+   }
+
+
+
+   /**
+    * Copies a response, replacing its body and headers.
+    *
+    * @param resp    response to copy status and request from
+    * @param headers replacement headers
+    * @param body    replacement body
+    * @return new buffered response
+    */
+   static BufferedResponse copyOf(HttpResponse<?> resp, HttpHeaders headers, byte[] body)
+   {
+      return new BufferedResponse(resp.request(), resp.statusCode(), headers, body);
+   }
+
+
+
+   /** Returns the HTTP status code. */
+   @Override
+   public int statusCode()
+   {
+      return status;
+   }
+
+
+
+   /** Returns the request this response answers. */
+   @Override
+   public HttpRequest request()
+   {
+      return request;
+   }
+
+
+
+   /** Buffered responses never carry a redirect chain. */
+   @Override
+   public Optional<HttpResponse<byte[]>> previousResponse()
+   {
+      return Optional.empty();
+   }
+
+
+
+   /** Returns the response headers. */
+   @Override
+   public HttpHeaders headers()
+   {
+      return headers;
+   }
+
+
+
+   /** Returns the buffered body. */
+   @Override
+   public byte[] body()
+   {
+      return body;
+   }
+
+
+
+   /** Buffered responses have no TLS session. */
+   @Override
+   public Optional<SSLSession> sslSession()
+   {
+      return Optional.empty();
+   }
+
+
+
+   /** Returns the request URI, or a placeholder when unknown. */
+   @Override
+   public URI uri()
+   {
+      return request != null ? request.uri() : URI.create("about:blank");
+   }
+
+
+
+   /** Buffered responses report HTTP/1.1. */
+   @Override
+   public HttpClient.Version version()
+   {
+      return HttpClient.Version.HTTP_1_1;
+   }
+}
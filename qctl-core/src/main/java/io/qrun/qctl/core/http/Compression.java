@@ -0,0 +1,286 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * HTTP content-coding support for {@link ApiClient}: gzip/deflate response decoding and gzip
+ * request bodies for hosts that advertise support.
+ *
+ * <p>Responses are decoded inside the body handler, so every layer above the send seams sees
+ * plain bytes; streamed bodies are inflated lazily as they are read. A host is considered to
+ * accept gzip request bodies once any of its responses lists {@code gzip} in
+ * {@code Accept-Encoding} (RFC 7694); a {@code 415} to a compressed request turns that off for
+ * the rest of the process.
+ *
+ * Why: Catalog and deployment-history payloads compress several-fold and build agents often sit
+ * behind constrained links. zstd would need a native codec outside the pinned dependencies, so
+ * only the JDK's codings are offered.
+ * @since 0.1.0
+ */
+final class Compression
+{
+   static final String ACCEPT_ENCODING = "gzip, deflate";
+   static final String GZIP            = "gzip";
+
+   private static final String DEFLATE     = "deflate";
+   private static final String X_GZIP      = "x-gzip";
+   private static final int    BUFFER_SIZE = 8192;
+
+   private static final Map<String, Boolean> REQUEST_GZIP = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private Compression()
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** Body handler returning the decoded body as bytes.
+    ***************************************************************************/
+   static HttpResponse.BodyHandler<byte[]> ofByteArray()
+   {
+      return info ->
+      {
+         String encoding = encodingOf(info.headers());
+         if(encoding == null)
+         {
+            return HttpResponse.BodySubscribers.ofByteArray();
+         }
+         return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), b -> inflate(b, encoding));
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** Body handler returning a stream that decodes as it is read.
+    ***************************************************************************/
+   static HttpResponse.BodyHandler<InputStream> ofInputStream()
+   {
+      return info ->
+      {
+         String encoding = encodingOf(info.headers());
+         if(encoding == null)
+         {
+            return HttpResponse.BodySubscribers.ofInputStream();
+         }
+         return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), in -> new LazyDecoder(in, encoding));
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the supported content-coding of a response, or null for identity.
+    ***************************************************************************/
+   static String encodingOf(HttpHeaders headers)
+   {
+      String value = headers.firstValue("Content-Encoding").map(v -> v.trim().toLowerCase(Locale.ROOT)).orElse("");
+      if(GZIP.equals(value) || X_GZIP.equals(value))
+      {
+         return GZIP;
+      }
+      return DEFLATE.equals(value) ? DEFLATE : null;
+   }
+
+
+
+   /***************************************************************************
+    ** Records whether a host advertises gzip request bodies.
+    ***************************************************************************/
+   static void learn(String host, HttpHeaders headers)
+   {
+      for(String value : headers.allValues("Accept-Encoding"))
+      {
+         for(String token : value.split(","))
+         {
+            String coding = token.split(";")[0].trim().toLowerCase(Locale.ROOT);
+            if(GZIP.equals(coding))
+            {
+               // A host that rejected a compressed body stays off
+               REQUEST_GZIP.putIfAbsent(host, Boolean.TRUE);
+               return;
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Marks a host as rejecting compressed request bodies.
+    ***************************************************************************/
+   static void reject(String host)
+   {
+      REQUEST_GZIP.put(host, Boolean.FALSE);
+   }
+
+
+
+   /***************************************************************************
+    ** Whether a request body of the given size should be gzipped for a host.
+    ***************************************************************************/
+   static boolean shouldCompress(String host, int length, long threshold)
+   {
+      return threshold >= 0 && length >= threshold && Boolean.TRUE.equals(REQUEST_GZIP.get(host));
+   }
+
+
+
+   /***************************************************************************
+    ** Gzips a request body.
+    ***************************************************************************/
+   static byte[] gzip(byte[] body)
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+      try(GZIPOutputStream gz = new GZIPOutputStream(out, BUFFER_SIZE))
+      {
+         gz.write(body);
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+      return out.toByteArray();
+   }
+
+
+
+   /***************************************************************************
+    ** Decodes a fully received body.
+    ***************************************************************************/
+   private static byte[] inflate(byte[] body, String encoding)
+   {
+      if(body.length == 0)
+      {
+         return body;
+      }
+      try(InputStream in = decoder(new ByteArrayInputStream(body), encoding))
+      {
+         return in.readAllBytes();
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Wraps a raw stream in the decoder for a content-coding.
+    ***************************************************************************/
+   private static InputStream decoder(InputStream raw, String encoding) throws IOException
+   {
+      return GZIP.equals(encoding) ? new GZIPInputStream(raw, BUFFER_SIZE) : new InflaterInputStream(raw);
+   }
+
+
+
+   /***************************************************************************
+    ** Decoding stream that defers reading the gzip header until first use, so
+    ** the body subscriber never blocks while the response is being set up.
+    ***************************************************************************/
+   private static final class LazyDecoder extends InputStream
+   {
+      private final InputStream raw;
+      private final String      encoding;
+      private InputStream       decoded;
+
+
+
+      /***************************************************************************
+       ** Creates a decoder over the raw body.
+       ***************************************************************************/
+      LazyDecoder(InputStream raw, String encoding)
+      {
+         this.raw = raw;
+         this.encoding = encoding;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the decoder, opening it on first use.
+       ***************************************************************************/
+      private InputStream decoded() throws IOException
+      {
+         if(decoded == null)
+         {
+            decoded = decoder(raw, encoding);
+         }
+         return decoded;
+      }
+
+
+
+      /***************************************************************************
+       ** Reads one decoded byte.
+       ***************************************************************************/
+      @Override
+      public int read() throws IOException
+      {
+         return decoded().read();
+      }
+
+
+
+      /***************************************************************************
+       ** Reads decoded bytes into a buffer.
+       ***************************************************************************/
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+         return decoded().read(b, off, len);
+      }
+
+
+
+      /***************************************************************************
+       ** Closes the decoder (or the raw body if it was never opened).
+       ***************************************************************************/
+      @Override
+      public void close() throws IOException
+      {
+         if(decoded != null)
+         {
+            decoded.close();
+         }
+         else
+         {
+            raw.close();
+         }
+      }
+   }
+}
@@ -0,0 +1,419 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Request body that streams a file, or a byte range of one, straight from a {@link FileChannel}
+ * and computes its SHA-256 in the same pass.
+ *
+ * <p>Buffers are read with positional reads only as the HTTP client demands them, so heap use is
+ * a handful of 64 KiB buffers regardless of file size, and nothing is read twice. Each
+ * subscription (including a retry) starts a fresh pass; {@link #digest()} returns the digest of
+ * the last pass that reached the end. With {@link #continuingDigest(MessageDigest)} each pass
+ * starts from a copy of the digest of the preceding bytes, so consecutive regions sent in order
+ * hash the whole file. Progress is reported per buffer handed to the client.
+ *
+ * Why: Multi-GB artifacts must upload from small CI containers without buffering in memory or
+ * reading the file a second time just to hash it.
+ * @since 0.1.0
+ */
+public final class FileBody implements HttpRequest.BodyPublisher
+{
+   private static final int CHUNK_BYTES = 64 * 1024;
+
+   private final Path       file;
+   private final long       offset;
+   private final long       length;
+   private final AtomicLong sent = new AtomicLong();
+
+   private volatile TransferProgress progress = TransferProgress.none();
+   private volatile MessageDigest    prefix;
+   private volatile MessageDigest    state;
+   private volatile String           digest;
+
+
+
+   /***************************************************************************
+    ** Creates a body over a region of a file.
+    ***************************************************************************/
+   private FileBody(Path file, long offset, long length)
+   {
+      this.file = file;
+      this.offset = offset;
+      this.length = length;
+   }
+
+
+
+   /**
+    * Streams a whole file.
+    *
+    * @param file file to send
+    * @return body publisher
+    * @throws IOException when the file size cannot be read
+    */
+   public static FileBody of(Path file) throws IOException
+   {
+      return new FileBody(file, 0L, Files.size(file));
+   }
+
+
+
+   /**
+    * Streams {@code length} bytes of a file starting at {@code offset}.
+    *
+    * @param file   file to read
+    * @param offset first byte to send
+    * @param length number of bytes to send
+    * @return body publisher
+    */
+   public static FileBody region(Path file, long offset, long length)
+   {
+      if(offset < 0 || length < 0)
+      {
+         throw new IllegalArgumentException("invalid region: offset=" + offset + " length=" + length);
+      }
+      return new FileBody(file, offset, length);
+   }
+
+
+
+   /**
+    * Reports bytes handed to the HTTP client as they are read.
+    *
+    * @param progress progress observer
+    * @return this body
+    */
+   public FileBody withProgress(TransferProgress progress)
+   {
+      this.progress = progress;
+      return this;
+   }
+
+
+
+   /**
+    * Continues the SHA-256 of the bytes before this region instead of starting a fresh one. Every
+    * pass starts from its own copy of {@code prior}, so a retry hashes the region once.
+    *
+    * @param prior digest over the preceding bytes, e.g. the previous region's {@link #digestState()};
+    *              not modified
+    * @return this body
+    */
+   public FileBody continuingDigest(MessageDigest prior)
+   {
+      this.prefix = copy(prior);
+      return this;
+   }
+
+
+
+   /**
+    * Returns the number of bytes this body sends.
+    *
+    * @return region length
+    */
+   @Override
+   public long contentLength()
+   {
+      return length;
+   }
+
+
+
+   /**
+    * Returns the SHA-256 of the bytes sent by the last complete pass.
+    *
+    * @return digest as {@code sha256:<hex>}
+    * @throws IllegalStateException when no pass has reached the end yet
+    */
+   public String digest()
+   {
+      String d = digest;
+      if(d == null)
+      {
+         throw new IllegalStateException("body has not been fully sent: " + file);
+      }
+      return d;
+   }
+
+
+
+   /**
+    * Returns the digest state after the last complete pass, to continue with the next region.
+    *
+    * @return a copy the caller may update
+    * @throws IllegalStateException when no pass has reached the end yet
+    */
+   public MessageDigest digestState()
+   {
+      MessageDigest d = state;
+      if(d == null)
+      {
+         throw new IllegalStateException("body has not been fully sent: " + file);
+      }
+      return copy(d);
+   }
+
+
+
+   /**
+    * Returns the number of bytes handed to the HTTP client by the current pass.
+    *
+    * @return bytes sent
+    */
+   public long bytesSent()
+   {
+      return sent.get();
+   }
+
+
+
+   /**
+    * Starts a new pass over the file for a subscriber (the HTTP client).
+    *
+    * @param subscriber body subscriber
+    */
+   @Override
+   public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber)
+   {
+      FileChannel channel;
+      try
+      {
+         channel = FileChannel.open(file, StandardOpenOption.READ);
+      }
+      catch(IOException e)
+      {
+         subscriber.onSubscribe(new Flow.Subscription()
+         {
+            /** Nothing to deliver. */
+            @Override
+            public void request(long n)
+            {
+            }
+
+
+
+            /** Nothing to cancel. */
+            @Override
+            public void cancel()
+            {
+            }
+         });
+         subscriber.onError(e);
+         return;
+      }
+      sent.set(0L);
+      subscriber.onSubscribe(new Reader(channel, subscriber));
+   }
+
+
+
+   /***************************************************************************
+    ** New SHA-256 instance.
+    ***************************************************************************/
+   static MessageDigest sha256()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Copies a digest's running state.
+    ***************************************************************************/
+   private static MessageDigest copy(MessageDigest d)
+   {
+      try
+      {
+         return (MessageDigest) d.clone();
+      }
+      catch(CloneNotSupportedException e)
+      {
+         throw new IllegalStateException(d.getAlgorithm() + " digest cannot be continued", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** One pass over the region: reads a buffer per unit of demand, hashing
+    ** it on the way out. The drain loop is serialized by a work-in-progress
+    ** counter so re-entrant request() calls from onNext are safe.
+    ***************************************************************************/
+   private final class Reader implements Flow.Subscription
+   {
+      private final FileChannel                         channel;
+      private final Flow.Subscriber<? super ByteBuffer> downstream;
+      private final MessageDigest                       sha     = prefix == null ? sha256() : copy(prefix);
+      private final AtomicLong                          demand  = new AtomicLong();
+      private final AtomicInteger                       wip     = new AtomicInteger();
+      private final long                                started = System.nanoTime();
+
+      private long             position  = offset;
+      private long             remaining = length;
+      private volatile boolean done;
+
+
+
+      /***************************************************************************
+       ** Creates a reader.
+       ***************************************************************************/
+      Reader(FileChannel channel, Flow.Subscriber<? super ByteBuffer> downstream)
+      {
+         this.channel = channel;
+         this.downstream = downstream;
+      }
+
+
+
+      /***************************************************************************
+       ** Adds demand and delivers what is possible.
+       ***************************************************************************/
+      @Override
+      public void request(long n)
+      {
+         if(n <= 0)
+         {
+            fail(new IllegalArgumentException("non-positive request: " + n));
+            return;
+         }
+         demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+         drain();
+      }
+
+
+
+      /***************************************************************************
+       ** Stops the pass and releases the file.
+       ***************************************************************************/
+      @Override
+      public void cancel()
+      {
+         done = true;
+         close();
+      }
+
+
+
+      /***************************************************************************
+       ** Delivers buffers while there is demand, then completes at the end.
+       ***************************************************************************/
+      private void drain()
+      {
+         if(wip.getAndIncrement() != 0)
+         {
+            return;
+         }
+         do
+         {
+            while(!done && demand.get() > 0)
+            {
+               if(remaining == 0)
+               {
+                  done = true;
+                  close();
+                  state = copy(sha);
+                  digest = "sha256:" + HexFormat.of().formatHex(sha.digest());
+                  downstream.onComplete();
+                  break;
+               }
+
+               ByteBuffer buf = ByteBuffer.allocate((int) Math.min(CHUNK_BYTES, remaining));
+               try
+               {
+                  while(buf.hasRemaining())
+                  {
+                     if(channel.read(buf, position + buf.position()) < 0)
+                     {
+                        throw new EOFException(file + " shrank while being sent");
+                     }
+                  }
+               }
+               catch(IOException e)
+               {
+                  fail(e);
+                  break;
+               }
+
+               buf.flip();
+               sha.update(buf.duplicate());
+               position += buf.remaining();
+               remaining -= buf.remaining();
+               long   total   = sent.addAndGet(buf.remaining());
+               double seconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+               progress.onProgress(total, length, total / seconds);
+               demand.decrementAndGet();
+               downstream.onNext(buf);
+            }
+         }
+         while(wip.decrementAndGet() != 0);
+      }
+
+
+
+      /***************************************************************************
+       ** Fails the pass once.
+       ***************************************************************************/
+      private void fail(Throwable t)
+      {
+         if(!done)
+         {
+            done = true;
+            close();
+            downstream.onError(t);
+         }
+      }
+
+
+
+      /***************************************************************************
+       ** Closes the channel, ignoring failures.
+       ***************************************************************************/
+      private void close()
+      {
+         try
+         {
+            channel.close();
+         }
+         catch(IOException ignored)
+         {
+            // read-only channel; nothing was written that could be lost
+         }
+      }
+   }
+}
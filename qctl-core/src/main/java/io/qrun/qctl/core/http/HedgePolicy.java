@@ -0,0 +1,187 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Hedging policy for idempotent GETs: when a request has not answered within a percentile of
+ * the endpoint's recent latency, {@link ApiClient} sends a duplicate and takes whichever answer
+ * arrives first.
+ *
+ * <p>Recent latency is the last {@value #WINDOW} successful exchanges per endpoint template; until
+ * {@value #MIN_SAMPLES} have been seen the fixed initial delay is used. Hedges are capped at a
+ * percentage of hedge-eligible requests, never rounded up, so a run too short to afford one
+ * extra request does not hedge at all. Commands use {@link #shared(double, double)} so samples and
+ * budget carry over between the commands a daemon or batch run executes in one process.
+ *
+ * Why: A few stragglers from a slow backend instance dominate the tail of fan-out commands such
+ * as {@code qrun status}; a budgeted duplicate cuts them off without doubling load.
+ * @since 0.1.0
+ */
+public final class HedgePolicy
+{
+   /** Percentile used when none is configured. */
+   public static final double DEFAULT_PERCENTILE = 95D;
+
+   /** Hedge budget, in percent of eligible requests, used when none is configured. */
+   public static final double DEFAULT_BUDGET_PERCENT = 10D;
+
+   static final int WINDOW      = 128;
+   static final int MIN_SAMPLES = 20;
+
+   private static final double   PERCENT               = 100D;
+   private static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(250);
+
+   private static final Map<String, HedgePolicy> SHARED = new ConcurrentHashMap<>();
+
+   private final double               percentile;
+   private final double               budgetPercent;
+   private final long                 initialDelayMs;
+   private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+
+   private long requests;
+   private long hedges;
+
+
+
+   /**
+    * Creates a policy.
+    *
+    * @param percentile    latency percentile after which to hedge, e.g. {@code 95}
+    * @param budgetPercent maximum hedges as a percentage of eligible requests, e.g. {@code 10}
+    * @param initialDelay  hedge delay used until enough latency samples exist
+    */
+   public HedgePolicy(double percentile, double budgetPercent, Duration initialDelay)
+   {
+      if(percentile <= 0 || percentile > PERCENT || budgetPercent < 0 || budgetPercent > PERCENT)
+      {
+         throw new IllegalArgumentException("percentile must be in (0, 100] and budget in [0, 100]");
+      }
+      this.percentile = percentile;
+      this.budgetPercent = budgetPercent;
+      this.initialDelayMs = initialDelay.toMillis();
+   }
+
+
+
+   /**
+    * Returns the process-wide policy for a percentile and budget, with a 250 ms delay until warmed
+    * up. Every caller asking for the same settings shares its latency samples and budget.
+    *
+    * @param percentile    latency percentile after which to hedge, e.g. {@code 95}
+    * @param budgetPercent maximum hedges as a percentage of eligible requests, e.g. {@code 10}
+    * @return shared policy
+    * @throws IllegalArgumentException when either value is out of range
+    */
+   public static HedgePolicy shared(double percentile, double budgetPercent)
+   {
+      return SHARED.computeIfAbsent(percentile + "/" + budgetPercent, k -> new HedgePolicy(percentile, budgetPercent, DEFAULT_INITIAL_DELAY));
+   }
+
+
+
+   /**
+    * Counts a hedge-eligible request and returns how long to wait before hedging it.
+    *
+    * @param endpoint endpoint key
+    * @return delay in milliseconds
+    */
+   long delayMs(String endpoint)
+   {
+      synchronized(this)
+      {
+         requests++;
+      }
+      Samples s = samples.get(endpoint);
+      return s == null ? initialDelayMs : s.percentile(percentile, initialDelayMs);
+   }
+
+
+
+   /**
+    * Claims budget for one hedge; it is granted only while hedges, this one included, stay within
+    * the budget percentage of eligible requests.
+    *
+    * @return true when the hedge may be sent
+    */
+   synchronized boolean tryHedge()
+   {
+      if((hedges + 1) * PERCENT <= budgetPercent * requests)
+      {
+         hedges++;
+         return true;
+      }
+      return false;
+   }
+
+
+
+   /**
+    * Records the latency of a primary request: its time to a successful answer, or, when its
+    * hedge answered first, the time until then.
+    *
+    * @param endpoint endpoint key
+    * @param millis   primary request latency in milliseconds
+    */
+   void record(String endpoint, long millis)
+   {
+      samples.computeIfAbsent(endpoint, e -> new Samples()).add(millis);
+   }
+
+
+
+   /***************************************************************************
+    ** Ring buffer of the most recent latencies for one endpoint.
+    ***************************************************************************/
+   private static final class Samples
+   {
+      private final long[] ring = new long[WINDOW];
+      private int          size;
+      private int          next;
+
+
+
+      /***************************************************************************
+       ** Adds a sample, overwriting the oldest once full.
+       ***************************************************************************/
+      synchronized void add(long millis)
+      {
+         ring[next] = millis;
+         next = (next + 1) % WINDOW;
+         size = Math.min(WINDOW, size + 1);
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the percentile of the window, or the fallback while warming up.
+       ***************************************************************************/
+      synchronized long percentile(double p, long fallback)
+      {
+         if(size < MIN_SAMPLES)
+         {
+            return fallback;
+         }
+         long[] sorted = Arrays.copyOf(ring, size);
+         Arrays.sort(sorted);
+         int rank = (int) Math.ceil(p / PERCENT * size) - 1;
+         return sorted[Math.max(0, Math.min(size - 1, rank))];
+      }
+   }
+}
@@ -0,0 +1,367 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Process-wide circuit breaker keyed by host.
+ *
+ * <p>Each host starts {@link State#CLOSED}. Outcomes are counted in a rolling window of one-second
+ * buckets; once the window holds enough calls and the failure rate crosses the threshold the
+ * circuit {@link State#OPEN opens} and every call fails fast. After a cool-down the circuit is
+ * {@link State#HALF_OPEN half-open}: exactly one caller is let through as a probe, and its
+ * outcome alone closes the circuit or re-opens it with a longer cool-down; calls admitted before
+ * the circuit opened that finish later only count in the window. A probe that has not reported
+ * within the current cool-down is given up on and the next caller probes instead, so one stalled
+ * request cannot keep the host rejected. Failures are transport
+ * errors, {@code 408} and {@code 5xx}; {@code 429} is left to the {@link HostRateLimiter}.
+ *
+ * Why: When the API is down, fanned-out commands should fail in milliseconds instead of each
+ * burning its retries and backoff.
+ * @since 0.1.0
+ */
+public final class HostCircuitBreaker
+{
+   // ---------------------------------------------------------------------
+   // Tuning
+   // ---------------------------------------------------------------------
+   private static final int    WINDOW_BUCKETS    = 10;
+   private static final long   BUCKET_NANOS      = TimeUnit.SECONDS.toNanos(1);
+   private static final int    MIN_CALLS         = 10;
+   private static final double FAILURE_THRESHOLD = 0.5D;
+   private static final long   OPEN_NANOS        = TimeUnit.SECONDS.toNanos(5);
+   private static final long   MAX_OPEN_NANOS    = TimeUnit.SECONDS.toNanos(60);
+
+   private static final int HTTP_REQUEST_TIMEOUT = 408;
+   private static final int HTTP_SERVER_ERROR    = 500;
+
+   private static final HostCircuitBreaker SHARED = new HostCircuitBreaker(System::nanoTime);
+
+   private final LongSupplier         nanoClock;
+   private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+
+
+   /**
+    * Circuit states.
+    */
+   public enum State
+   {
+      CLOSED,
+      OPEN,
+      HALF_OPEN
+   }
+
+
+
+   /**
+    * Answer of {@link #tryAcquire(String)}, handed back with the outcome.
+    */
+   public enum Permit
+   {
+      /** The circuit is open (or half-open with its probe out); do not send. */
+      REJECTED,
+      /** A normal call through a closed circuit. */
+      CALL,
+      /** The single probe of a half-open circuit; its outcome decides the state. */
+      PROBE
+   }
+
+
+
+   /**
+    * Creates a breaker driven by the given monotonic clock (visible for tests).
+    *
+    * @param nanoClock monotonic time source in nanoseconds
+    */
+   HostCircuitBreaker(LongSupplier nanoClock)
+   {
+      this.nanoClock = nanoClock;
+   }
+
+
+
+   /**
+    * Returns the breaker shared by every {@link ApiClient} in this process.
+    *
+    * @return process-wide breaker
+    */
+   public static HostCircuitBreaker shared()
+   {
+      return SHARED;
+   }
+
+
+
+   /**
+    * Asks whether a call to the host may proceed. In the half-open state only the first caller
+    * is admitted, with {@link Permit#PROBE}; it must report its outcome with that permit. Once a
+    * probe has been out for the current cool-down without reporting, the next caller gets a new
+    * one.
+    *
+    * @param host host key (typically the URI authority)
+    * @return {@link Permit#REJECTED}, or the permit to pass to {@link #onResult(String, Permit, int)}
+    */
+   public Permit tryAcquire(String host)
+   {
+      return circuit(host).tryAcquire(nanoClock.getAsLong());
+   }
+
+
+
+   /**
+    * Records the outcome of a call admitted by {@link #tryAcquire(String)}. Only the probe's
+    * outcome moves a half-open circuit.
+    *
+    * @param host   host key
+    * @param permit permit the call was admitted with
+    * @param status HTTP status, or {@code -1} for a transport failure
+    */
+   public void onResult(String host, Permit permit, int status)
+   {
+      circuit(host).onResult(nanoClock.getAsLong(), permit == Permit.PROBE, isFailure(status));
+   }
+
+
+
+   /**
+    * Records the outcome of a normal call, as {@link #onResult(String, Permit, int)} with
+    * {@link Permit#CALL}.
+    *
+    * @param host   host key
+    * @param status HTTP status, or {@code -1} for a transport failure
+    */
+   public void onResult(String host, int status)
+   {
+      onResult(host, Permit.CALL, status);
+   }
+
+
+
+   /**
+    * Returns the current state for a host.
+    *
+    * @param host host key
+    * @return circuit state
+    */
+   public State state(String host)
+   {
+      return circuit(host).state(nanoClock.getAsLong());
+   }
+
+
+
+   /**
+    * Returns how long until an open circuit admits a probe.
+    *
+    * @param host host key
+    * @return milliseconds until half-open, {@code 0} when not open
+    */
+   public long retryInMs(String host)
+   {
+      return TimeUnit.NANOSECONDS.toMillis(circuit(host).remainingOpen(nanoClock.getAsLong()));
+   }
+
+
+
+   /***************************************************************************
+    ** Whether an outcome counts against the host's health.
+    ***************************************************************************/
+   static boolean isFailure(int status)
+   {
+      return status < 0 || status == HTTP_REQUEST_TIMEOUT || status >= HTTP_SERVER_ERROR;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns (creating on first use) the circuit for a host.
+    ***************************************************************************/
+   private Circuit circuit(String host)
+   {
+      return circuits.computeIfAbsent(host, h -> new Circuit());
+   }
+
+
+
+   /***************************************************************************
+    ** Per-host circuit with a ring of one-second outcome buckets.
+    ***************************************************************************/
+   private static final class Circuit
+   {
+      private final long[] bucketStart = new long[WINDOW_BUCKETS];
+      private final int[]  calls       = new int[WINDOW_BUCKETS];
+      private final int[]  failures    = new int[WINDOW_BUCKETS];
+
+      private State   state     = State.CLOSED;
+      private long    openUntil;
+      private long    openNanos = OPEN_NANOS;
+      private boolean probing;
+      private long    probeSince;
+
+
+
+      /***************************************************************************
+       ** Admits a call, moving open circuits to half-open after the cool-down.
+       ** A probe outstanding for a whole cool-down is replaced.
+       ***************************************************************************/
+      synchronized Permit tryAcquire(long now)
+      {
+         if(state(now) == State.CLOSED)
+         {
+            return Permit.CALL;
+         }
+         if(state == State.HALF_OPEN && (!probing || now - probeSince >= openNanos))
+         {
+            probing = true;
+            probeSince = now;
+            return Permit.PROBE;
+         }
+         return Permit.REJECTED;
+      }
+
+
+
+      /***************************************************************************
+       ** Records an outcome and transitions the circuit. Only the probe leaves
+       ** half-open; any other call only counts in the window.
+       ***************************************************************************/
+      synchronized void onResult(long now, boolean probe, boolean failed)
+      {
+         if(probe)
+         {
+            if(state != State.HALF_OPEN || !probing)
+            {
+               return;
+            }
+            probing = false;
+            if(failed)
+            {
+               openNanos = Math.min(MAX_OPEN_NANOS, openNanos * 2);
+               open(now);
+            }
+            else
+            {
+               close();
+            }
+            return;
+         }
+
+         int i = bucket(now);
+         calls[i]++;
+         if(failed)
+         {
+            failures[i]++;
+         }
+         if(state == State.CLOSED && tripped(now))
+         {
+            open(now);
+         }
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the state, applying the open → half-open timeout.
+       ***************************************************************************/
+      synchronized State state(long now)
+      {
+         if(state == State.OPEN && now - openUntil >= 0)
+         {
+            state = State.HALF_OPEN;
+            probing = false;
+         }
+         return state;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns nanoseconds left in the open state.
+       ***************************************************************************/
+      synchronized long remainingOpen(long now)
+      {
+         return state == State.OPEN ? Math.max(0L, openUntil - now) : 0L;
+      }
+
+
+
+      /***************************************************************************
+       ** Opens the circuit for the current cool-down.
+       ***************************************************************************/
+      private void open(long now)
+      {
+         state = State.OPEN;
+         openUntil = now + openNanos;
+      }
+
+
+
+      /***************************************************************************
+       ** Closes the circuit and forgets the window.
+       ***************************************************************************/
+      private void close()
+      {
+         state = State.CLOSED;
+         openNanos = OPEN_NANOS;
+         Arrays.fill(calls, 0);
+         Arrays.fill(failures, 0);
+      }
+
+
+
+      /***************************************************************************
+       ** Whether the rolling window's failure rate crosses the threshold.
+       ***************************************************************************/
+      private boolean tripped(long now)
+      {
+         int total  = 0;
+         int failed = 0;
+         for(int i = 0; i < WINDOW_BUCKETS; i++)
+         {
+            if(now - bucketStart[i] < WINDOW_BUCKETS * BUCKET_NANOS)
+            {
+               total += calls[i];
+               failed += failures[i];
+            }
+         }
+         return total >= MIN_CALLS && failed >= total * FAILURE_THRESHOLD;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the bucket for the current second, recycling stale buckets.
+       ***************************************************************************/
+      private int bucket(long now)
+      {
+         long slot  = Math.floorDiv(now, BUCKET_NANOS);
+         int  i     = (int) Math.floorMod(slot, (long) WINDOW_BUCKETS);
+         long start = slot * BUCKET_NANOS;
+         if(bucketStart[i] != start)
+         {
+            bucketStart[i] = start;
+            calls[i] = 0;
+            failures[i] = 0;
+         }
+         return i;
+      }
+   }
+}
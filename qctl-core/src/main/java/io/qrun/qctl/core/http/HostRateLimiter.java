@@ -0,0 +1,281 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Process-wide token-bucket rate limiter keyed by host, with AIMD rate adaptation.
+ *
+ * <p>Every attempt reserves a token for its host before it is sent; when the bucket is empty
+ * the reservation returns how long the caller must wait, so concurrent callers queue behind one
+ * another instead of bursting. A {@code 429} halves the host's rate (at most once per decrease
+ * window) and each successful (2xx/3xx) response adds a small fixed step back. A
+ * {@code Retry-After} header blocks the host until the given time for every caller sharing this
+ * limiter, but never for longer than {@link #MAX_BLOCK_MS}: a longer delay is the server saying
+ * "not now", which the request that received it reports as a failure instead of stalling every
+ * later call.
+ *
+ * Why: Fanned-out commands must slow down together instead of stampeding the API and burning
+ * their retries.
+ * @since 0.1.0
+ */
+public final class HostRateLimiter
+{
+   // ---------------------------------------------------------------------
+   // AIMD tuning (rates are permits per second)
+   // ---------------------------------------------------------------------
+   private static final double INITIAL_RATE          = 50D;
+   private static final double MIN_RATE              = 1D;
+   private static final double MAX_RATE              = 100D;
+   private static final double ADDITIVE_STEP         = 0.5D;
+   private static final double DECREASE_FACTOR       = 0.5D;
+   private static final double BURST                 = 10D;
+   private static final long   DECREASE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+   /**
+    * Longest time a {@code Retry-After} blocks a host, in milliseconds.
+    */
+   public static final long MAX_BLOCK_MS = 30_000L;
+
+   private static final int    HTTP_OK_MIN            = 200;
+   private static final int    HTTP_CLIENT_ERROR_MIN  = 400;
+   private static final int    HTTP_TOO_MANY_REQUESTS = 429;
+   private static final double NANOS_PER_SECOND       = 1_000_000_000D;
+
+   private static final HostRateLimiter SHARED = new HostRateLimiter(System::nanoTime);
+
+   private final LongSupplier        nanoClock;
+   private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+
+
+   /**
+    * Creates a limiter driven by the given monotonic clock (visible for tests).
+    *
+    * @param nanoClock monotonic time source in nanoseconds
+    */
+   HostRateLimiter(LongSupplier nanoClock)
+   {
+      this.nanoClock = nanoClock;
+   }
+
+
+
+   /**
+    * Returns the limiter shared by every {@link ApiClient} in this process.
+    *
+    * @return process-wide limiter
+    */
+   public static HostRateLimiter shared()
+   {
+      return SHARED;
+   }
+
+
+
+   /**
+    * Reserves one request slot for the host and returns how long the caller must wait before
+    * sending it. The slot is consumed immediately, so later callers queue behind this one.
+    *
+    * @param host host key (typically the URI authority)
+    * @return delay in milliseconds; {@code 0} when the request may be sent right away
+    */
+   public long reserve(String host)
+   {
+      long nanos = bucket(host).reserve(nanoClock.getAsLong());
+      return nanos <= 0 ? 0L : TimeUnit.NANOSECONDS.toMillis(nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+   }
+
+
+
+   /**
+    * Feeds a response back into the limiter so it can adapt the host's rate.
+    *
+    * @param host         host key used for {@link #reserve(String)}
+    * @param status       HTTP status code of the response
+    * @param retryAfterMs parsed {@code Retry-After} delay in milliseconds, or a negative value when absent
+    */
+   public void onResponse(String host, int status, long retryAfterMs)
+   {
+      bucket(host).onResponse(nanoClock.getAsLong(), status, retryAfterMs);
+   }
+
+
+
+   /**
+    * Returns the current permitted rate for a host (permits per second).
+    *
+    * @param host host key
+    * @return current rate
+    */
+   public double rate(String host)
+   {
+      return bucket(host).rate();
+   }
+
+
+
+   /**
+    * Parses a {@code Retry-After} header value (delta-seconds or HTTP-date) into a delay.
+    *
+    * @param value header value (may be null)
+    * @param now   current wall-clock time, used for HTTP-date values
+    * @return delay in milliseconds (never negative), or {@code -1} when absent or unparseable
+    */
+   public static long parseRetryAfter(String value, Instant now)
+   {
+      if(value == null || value.isBlank())
+      {
+         return -1L;
+      }
+
+      String v = value.trim();
+      try
+      {
+         return TimeUnit.SECONDS.toMillis(Math.max(0L, Long.parseLong(v)));
+      }
+      catch(NumberFormatException notSeconds)
+      {
+         try
+         {
+            Instant at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Math.max(0L, at.toEpochMilli() - now.toEpochMilli());
+         }
+         catch(DateTimeParseException unparseable)
+         {
+            return -1L;
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns (creating on first use) the bucket for a host.
+    ***************************************************************************/
+   private Bucket bucket(String host)
+   {
+      return buckets.computeIfAbsent(host, h -> new Bucket(nanoClock.getAsLong()));
+   }
+
+
+
+   /***************************************************************************
+    ** Per-host token bucket. Tokens may go negative: the debt is the queue of
+    ** callers that already reserved a slot and are waiting for it.
+    ***************************************************************************/
+   private static final class Bucket
+   {
+      private double rate         = INITIAL_RATE;
+      private double tokens       = BURST;
+      private long   lastRefill;
+      private long   blockedUntil;
+      private long   lastDecrease = Long.MIN_VALUE;
+
+
+
+      /***************************************************************************
+       ** Creates a full bucket.
+       ***************************************************************************/
+      Bucket(long now)
+      {
+         this.lastRefill = now;
+         this.blockedUntil = now;
+      }
+
+
+
+      /***************************************************************************
+       ** Takes one token and returns the wait in nanoseconds.
+       ***************************************************************************/
+      synchronized long reserve(long now)
+      {
+         refill(now);
+         tokens -= 1D;
+         long wait = Math.max(0L, blockedUntil - now);
+         if(tokens < 0D)
+         {
+            long debt = (long) (-tokens / rate * NANOS_PER_SECOND);
+            wait = Math.max(wait, Math.max(0L, lastRefill - now) + debt);
+         }
+         return wait;
+      }
+
+
+
+      /***************************************************************************
+       ** Applies AIMD and Retry-After to this host.
+       ***************************************************************************/
+      synchronized void onResponse(long now, int status, long retryAfterMs)
+      {
+         if(retryAfterMs >= 0)
+         {
+            long until = now + TimeUnit.MILLISECONDS.toNanos(Math.min(retryAfterMs, MAX_BLOCK_MS));
+            if(until > blockedUntil)
+            {
+               blockedUntil = until;
+               // Restart the bucket empty at the unblock time so queued callers are spaced out
+               tokens = Math.min(tokens, 0D);
+               lastRefill = Math.max(lastRefill, until);
+            }
+         }
+
+         if(status == HTTP_TOO_MANY_REQUESTS)
+         {
+            if(lastDecrease == Long.MIN_VALUE || now - lastDecrease >= DECREASE_WINDOW_NANOS)
+            {
+               rate = Math.max(MIN_RATE, rate * DECREASE_FACTOR);
+               lastDecrease = now;
+            }
+         }
+         else if(status >= HTTP_OK_MIN && status < HTTP_CLIENT_ERROR_MIN)
+         {
+            rate = Math.min(MAX_RATE, rate + ADDITIVE_STEP);
+         }
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the current rate.
+       ***************************************************************************/
+      synchronized double rate()
+      {
+         return rate;
+      }
+
+
+
+      /***************************************************************************
+       ** Adds tokens accrued since the last refill, capped at the burst size.
+       ***************************************************************************/
+      private void refill(long now)
+      {
+         if(now > lastRefill)
+         {
+            tokens = Math.min(BURST, tokens + (now - lastRefill) / NANOS_PER_SECOND * rate);
+            lastRefill = now;
+         }
+      }
+   }
+}
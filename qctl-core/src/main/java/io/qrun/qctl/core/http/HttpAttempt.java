@@ -0,0 +1,76 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.net.URI;
+
+
+/**
+ * One HTTP attempt as seen by {@link HttpListener}s.
+ *
+ * Why: Immutable event so listeners can keep or forward it without copying.
+ * @since 0.1.0
+ */
+public final class HttpAttempt
+{
+   /** Endpoint key: method plus path template, e.g. "GET /v1/qbits/{id}/versions". */
+   public final String endpoint;
+
+   /** Concrete request URI. */
+   public final URI uri;
+
+   /** 1-based attempt number within the request's retry sequence. */
+   public final int attempt;
+
+   /** HTTP status, or -1 when the attempt failed without a response. */
+   public final int status;
+
+   /** Nanoseconds until response headers arrived, or -1 when not measured. */
+   public final long ttfbNanos;
+
+   /** Nanoseconds from send to the complete response (or failure). */
+   public final long durationNanos;
+
+   /** Request body bytes, or -1 when unknown (streamed bodies). */
+   public final long bytesOut;
+
+   /** Response body bytes, or -1 when unknown (streamed bodies without Content-Length). */
+   public final long bytesIn;
+
+
+
+   /**
+    * Creates an attempt event.
+    *
+    * @param endpoint      endpoint key
+    * @param uri           request URI
+    * @param attempt       1-based attempt number
+    * @param status        HTTP status or -1
+    * @param ttfbNanos     time to first byte or -1
+    * @param durationNanos total attempt duration
+    * @param bytesOut      request body size or -1
+    * @param bytesIn       response body size or -1
+    */
+   public HttpAttempt(String endpoint, URI uri, int attempt, int status, long ttfbNanos, long durationNanos, long bytesOut, long bytesIn)
+   {
+      this.endpoint = endpoint;
+      this.uri = uri;
+      this.attempt = attempt;
+      this.status = status;
+      this.ttfbNanos = ttfbNanos;
+      this.durationNanos = durationNanos;
+      this.bytesOut = bytesOut;
+      this.bytesIn = bytesIn;
+   }
+}
@@ -0,0 +1,474 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.qrun.qctl.core.sys.SystemPaths;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * On-disk HTTP response cache for GETs, keyed by URI and the request headers that select a
+ * representation ({@code Accept}, {@code X-API-Key}, {@code Authorization}).
+ *
+ * <p>Each entry is a {@code <key>.body} file plus a {@code <key>.json} metadata file holding the
+ * validators ({@code ETag}, {@code Last-Modified}) and freshness lifetime from
+ * {@code Cache-Control}. Entries are written atomically (tmp + move). Freshness follows
+ * {@code max-age}; once stale, an entry may still be served for the {@code stale-while-revalidate}
+ * window the response sent while it is revalidated in the background. A client-side window is
+ * only used for endpoints that opt in with {@link #withStaleWhileRevalidate(String, Duration)}.
+ * Responses marked {@code no-cache}, or without {@code Cache-Control}, get neither and are
+ * revalidated before every use, as is everything in a cache built with {@link #alwaysRevalidate()}.
+ *
+ * Why: Slow-changing catalog endpoints should cost a cheap conditional request or nothing, and
+ * {@code --offline} needs something to answer from.
+ * @since 0.1.0
+ */
+public final class HttpCache
+{
+   private static final int  HTTP_OK           = 200;
+   private static final long MILLIS_PER_SECOND = 1000L;
+
+   /** Request headers that select a representation (and so are part of every request key). */
+   static final List<String> VARY_HEADERS = List.of("Accept", "X-API-Key", "Authorization");
+
+   private final Path                  dir;
+   private final Map<String, Duration> staleWhileRevalidate = new HashMap<>();
+   private boolean                     revalidateAlways;
+
+
+
+   /**
+    * Creates a cache rooted at the given directory that follows the server's directives only.
+    *
+    * @param dir directory holding cache entries (created on first store)
+    */
+   public HttpCache(Path dir)
+   {
+      this.dir = dir;
+   }
+
+
+
+   /**
+    * Returns a cache under {@code SystemPaths.cacheDir()/http}.
+    *
+    * @return default cache
+    */
+   public static HttpCache defaultCache()
+   {
+      return new HttpCache(SystemPaths.cacheDir().resolve("http"));
+   }
+
+
+
+   /**
+    * Opts one endpoint in to a client-side stale-while-revalidate window, used when its responses
+    * allow caching but do not send a window of their own.
+    *
+    * @param endpoint endpoint template as produced by {@link HttpMetrics#endpointOf}, e.g.
+    *                 {@code GET /v1/templates}
+    * @param window   window in which stale entries are served while revalidating
+    * @return this cache
+    */
+   public HttpCache withStaleWhileRevalidate(String endpoint, Duration window)
+   {
+      staleWhileRevalidate.put(endpoint, window);
+      return this;
+   }
+
+
+
+   /**
+    * Makes every entry revalidate before use, whatever its {@code Cache-Control}; for live data
+    * the cache then only saves the body transfer on a 304 and answers {@code --offline}.
+    *
+    * @return this cache
+    */
+   public HttpCache alwaysRevalidate()
+   {
+      this.revalidateAlways = true;
+      return this;
+   }
+
+
+
+   /**
+    * Looks up the entry for a request.
+    *
+    * @param req GET request
+    * @return cached entry, if present and readable
+    */
+   public Optional<Entry> lookup(HttpRequest req)
+   {
+      String key  = key(req);
+      Path   meta = dir.resolve(key + ".json");
+      Path   body = dir.resolve(key + ".body");
+      if(!Files.isRegularFile(meta) || !Files.isRegularFile(body))
+      {
+         return Optional.empty();
+      }
+
+      try
+      {
+         Meta m = Json.reader(Meta.class).readValue(meta.toFile());
+         return Optional.of(new Entry(key, m, Files.readAllBytes(body), revalidateAlways));
+      }
+      catch(IOException corrupt)
+      {
+         return Optional.empty();
+      }
+   }
+
+
+
+   /**
+    * Stores a 200 response unless its {@code Cache-Control} forbids it.
+    *
+    * @param req  request that produced the response
+    * @param resp response to store
+    * @param now  current time in epoch millis
+    */
+   public void store(HttpRequest req, HttpResponse<byte[]> resp, long now)
+   {
+      if(resp.statusCode() != HTTP_OK)
+      {
+         return;
+      }
+      Map<String, String> cc = cacheControl(resp.headers());
+      if(cc.containsKey("no-store"))
+      {
+         return;
+      }
+
+      Meta m = new Meta();
+      m.uri = req.uri().toString();
+      m.etag = resp.headers().firstValue("ETag").orElse(null);
+      m.lastModified = resp.headers().firstValue("Last-Modified").orElse(null);
+      m.contentType = resp.headers().firstValue("Content-Type").orElse(null);
+      applyFreshness(m, cc, now);
+
+      String key = key(req);
+      try
+      {
+         Files.createDirectories(dir);
+         writeAtomic(dir.resolve(key + ".body"), resp.body());
+         writeAtomic(dir.resolve(key + ".json"), Json.writer(Meta.class).writeValueAsBytes(m));
+      }
+      catch(IOException e)
+      {
+         // The cache is an optimization; a failed store just means a miss next time
+      }
+   }
+
+
+
+   /**
+    * Records a successful revalidation ({@code 304}) and returns the refreshed entry.
+    *
+    * @param entry   entry that was revalidated
+    * @param headers headers of the 304 response
+    * @param now     current time in epoch millis
+    * @return refreshed entry
+    */
+   public Entry refresh(Entry entry, HttpHeaders headers, long now)
+   {
+      Meta m = entry.meta;
+      m.etag = headers.firstValue("ETag").orElse(m.etag);
+      m.lastModified = headers.firstValue("Last-Modified").orElse(m.lastModified);
+      Map<String, String> cc = cacheControl(headers);
+      if(!cc.isEmpty())
+      {
+         applyFreshness(m, cc, now);
+      }
+      else
+      {
+         m.storedAt = now;
+      }
+
+      try
+      {
+         writeAtomic(dir.resolve(entry.key + ".json"), Json.writer(Meta.class).writeValueAsBytes(m));
+      }
+      catch(IOException e)
+      {
+         // Keep serving the in-memory entry; it will simply revalidate again next time
+      }
+      return entry;
+   }
+
+
+
+   /***************************************************************************
+    ** Fills freshness fields from parsed Cache-Control directives. Without a
+    ** Cache-Control header, or with no-cache, the entry must be revalidated
+    ** before every use, so neither max-age nor a stale window apply. A window
+    ** the server did not send comes only from the endpoint's opt-in.
+    ***************************************************************************/
+   private void applyFreshness(Meta m, Map<String, String> cc, long now)
+   {
+      m.storedAt = now;
+      if(cc.isEmpty() || cc.containsKey("no-cache"))
+      {
+         m.maxAgeSeconds = 0L;
+         m.staleWhileRevalidateSeconds = 0L;
+         return;
+      }
+      m.maxAgeSeconds = parseSeconds(cc.get("max-age"), 0L);
+      Duration optIn = staleWhileRevalidate.get(HttpMetrics.endpointOf("GET", URI.create(m.uri)));
+      m.staleWhileRevalidateSeconds = parseSeconds(cc.get("stale-while-revalidate"), optIn == null ? 0L : optIn.toSeconds());
+   }
+
+
+
+   /***************************************************************************
+    ** Computes the cache key for a request.
+    ***************************************************************************/
+   private static String key(HttpRequest req)
+   {
+      StringBuilder sb = new StringBuilder(req.method()).append(' ').append(req.uri());
+      for(String h : VARY_HEADERS)
+      {
+         sb.append('\n').append(h).append(':').append(String.join(",", req.headers().allValues(h)));
+      }
+      try
+      {
+         byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+         return HexFormat.of().formatHex(digest);
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Parses Cache-Control into lower-cased directive → value (empty if none).
+    ***************************************************************************/
+   static Map<String, String> cacheControl(HttpHeaders headers)
+   {
+      Map<String, String> out = new TreeMap<>();
+      for(String header : headers.allValues("Cache-Control"))
+      {
+         for(String part : header.split(","))
+         {
+            String t = part.trim();
+            if(t.isEmpty())
+            {
+               continue;
+            }
+            int eq = t.indexOf('=');
+            if(eq < 0)
+            {
+               out.put(t.toLowerCase(Locale.ROOT), "");
+            }
+            else
+            {
+               out.put(t.substring(0, eq).trim().toLowerCase(Locale.ROOT), t.substring(eq + 1).trim().replace("\"", ""));
+            }
+         }
+      }
+      return out;
+   }
+
+
+
+   /***************************************************************************
+    ** Parses a non-negative seconds value, falling back on absence or junk.
+    ***************************************************************************/
+   private static long parseSeconds(String value, long fallback)
+   {
+      if(value == null || value.isEmpty())
+      {
+         return fallback;
+      }
+      try
+      {
+         return Math.max(0L, Long.parseLong(value));
+      }
+      catch(NumberFormatException e)
+      {
+         return fallback;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Writes a file atomically (tmp + move) to avoid torn entries.
+    ***************************************************************************/
+   private static void writeAtomic(Path path, byte[] bytes) throws IOException
+   {
+      Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try
+      {
+         Files.write(tmp, bytes);
+         Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally
+      {
+         Files.deleteIfExists(tmp);
+      }
+   }
+
+
+
+   /**
+    * A cached response: body plus validators and freshness.
+    */
+   public static final class Entry
+   {
+      private final String  key;
+      private final Meta    meta;
+      private final byte[]  body;
+      private final boolean revalidateAlways;
+
+
+
+      /***************************************************************************
+       ** Creates an entry.
+       ***************************************************************************/
+      Entry(String key, Meta meta, byte[] body, boolean revalidateAlways)
+      {
+         this.key = key;
+         this.meta = meta;
+         this.body = body;
+         this.revalidateAlways = revalidateAlways;
+      }
+
+
+
+      /**
+       * Returns whether the entry may be served without contacting the server.
+       *
+       * @param now current time in epoch millis
+       * @return true while within {@code max-age}
+       */
+      public boolean isFresh(long now)
+      {
+         return !revalidateAlways && now - meta.storedAt < meta.maxAgeSeconds * MILLIS_PER_SECOND;
+      }
+
+
+
+      /**
+       * Returns whether a stale entry may still be served while it is revalidated.
+       *
+       * @param now current time in epoch millis
+       * @return true while within {@code max-age + stale-while-revalidate}
+       */
+      public boolean isWithinStaleWindow(long now)
+      {
+         return !revalidateAlways && now - meta.storedAt < (meta.maxAgeSeconds + meta.staleWhileRevalidateSeconds) * MILLIS_PER_SECOND;
+      }
+
+
+
+      /**
+       * Returns whether the entry carries a validator usable for a conditional request.
+       *
+       * @return true when an ETag or Last-Modified value is present
+       */
+      public boolean hasValidator()
+      {
+         return meta.etag != null || meta.lastModified != null;
+      }
+
+
+
+      /**
+       * Adds {@code If-None-Match}/{@code If-Modified-Since} for this entry to a request copy.
+       *
+       * @param req original request
+       * @return conditional request
+       */
+      public HttpRequest conditional(HttpRequest req)
+      {
+         HttpRequest.Builder b = HttpRequest.newBuilder(req, (k, v) -> true);
+         if(meta.etag != null)
+         {
+            b.header("If-None-Match", meta.etag);
+         }
+         if(meta.lastModified != null)
+         {
+            b.header("If-Modified-Since", meta.lastModified);
+         }
+         return b.build();
+      }
+
+
+
+      /**
+       * Materializes the entry as a 200 response for the given request.
+       *
+       * @param req request being answered
+       * @return response carrying the cached body
+       */
+      public HttpResponse<byte[]> toResponse(HttpRequest req)
+      {
+         Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+         if(meta.etag != null)
+         {
+            headers.put("ETag", List.of(meta.etag));
+         }
+         if(meta.lastModified != null)
+         {
+            headers.put("Last-Modified", List.of(meta.lastModified));
+         }
+         if(meta.contentType != null)
+         {
+            headers.put("Content-Type", List.of(meta.contentType));
+         }
+         return new BufferedResponse(req, HTTP_OK, headers, body);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** On-disk metadata for an entry.
+    ***************************************************************************/
+   @JsonInclude(JsonInclude.Include.NON_NULL)
+   static final class Meta
+   {
+      public String uri;
+      public String etag;
+      public String lastModified;
+      public String contentType;
+      public long   storedAt;
+      public long   maxAgeSeconds;
+      public long   staleWhileRevalidateSeconds;
+   }
+}
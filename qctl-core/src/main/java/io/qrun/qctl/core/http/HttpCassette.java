@@ -0,0 +1,521 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import javax.net.ssl.SSLSession;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * Records HTTP exchanges made through {@link ApiClient} to a cassette file, or replays them.
+ *
+ * <p>A cassette is gzip-compressed NDJSON, one exchange per line: method, URI, status, response
+ * headers, decoded body, the offset at which the request started and how long the round-trip
+ * took. While recording, every call to the client's single-round-trip seams ({@code sendOnce}
+ * and friends) goes to the network and is appended to the cassette; {@link #close()} writes the
+ * file. While replaying, each request is answered with the next recorded exchange for the same
+ * method and URI, in recorded order (so a recorded 503 followed by a 200 replays as a retry),
+ * after waiting the recorded round-trip time divided by the replay speed. An unmatched request
+ * fails with an {@link IOException}, as a network error would.
+ *
+ * <p>Only server time is replayed; the client's own work between requests happens live, which
+ * is what a replay in CI is meant to measure.
+ *
+ * Why: Client-side overhead regressions are invisible behind server variance unless the server
+ * side of a session can be reproduced exactly.
+ * @since 0.1.0
+ */
+public final class HttpCassette implements Closeable
+{
+   /** Replay speed that skips the recorded latencies entirely. */
+   public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+   private static final Set<String> DROPPED_HEADERS = Set.of("content-encoding", "content-length", "transfer-encoding", "connection");
+
+   private static volatile HttpCassette installed;
+
+   private final Path                         file;
+   private final boolean                      replaying;
+   private final double                       speed;
+   private final long                         startedAt = System.nanoTime();
+   private final List<Exchange>               recorded  = new ArrayList<>();
+   private final Map<String, Deque<Exchange>> tape      = new HashMap<>();
+
+
+
+   /***************************************************************************
+    ** Creates a cassette in either mode.
+    ***************************************************************************/
+   private HttpCassette(Path file, boolean replaying, double speed)
+   {
+      this.file = file;
+      this.replaying = replaying;
+      this.speed = speed;
+   }
+
+
+
+   /**
+    * Starts recording; the cassette is written to {@code file} on {@link #close()}.
+    *
+    * @param file cassette file to (over)write
+    * @return recording cassette
+    */
+   public static HttpCassette recording(Path file)
+   {
+      return new HttpCassette(file, false, 1D);
+   }
+
+
+
+   /**
+    * Loads a cassette for replay.
+    *
+    * @param file  cassette file
+    * @param speed replay speed: 1 for recorded latencies, 10 for ten times faster,
+    *              {@link #AS_FAST_AS_POSSIBLE} for none
+    * @return replaying cassette
+    * @throws IOException when the file cannot be read
+    */
+   public static HttpCassette replaying(Path file, double speed) throws IOException
+   {
+      if(!(speed > 0))
+      {
+         throw new IllegalArgumentException("replay speed must be > 0: " + speed);
+      }
+      HttpCassette c = new HttpCassette(file, true, speed);
+      try(BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)))
+      {
+         String line;
+         while((line = in.readLine()) != null)
+         {
+            if(!line.isBlank())
+            {
+               Exchange e = Json.reader(Exchange.class).readValue(line);
+               c.tape.computeIfAbsent(key(e.method, e.uri), k -> new ArrayDeque<>()).addLast(e);
+            }
+         }
+      }
+      return c;
+   }
+
+
+
+   /**
+    * Makes a cassette the default for every {@link ApiClient} created afterwards.
+    *
+    * @param cassette cassette to install, or null to remove it
+    */
+   public static void install(HttpCassette cassette)
+   {
+      installed = cassette;
+   }
+
+
+
+   /**
+    * Returns the cassette installed with {@link #install(HttpCassette)}.
+    *
+    * @return installed cassette, or null
+    */
+   public static HttpCassette installed()
+   {
+      return installed;
+   }
+
+
+
+   /**
+    * Returns whether this cassette replays (rather than records).
+    *
+    * @return true when replaying
+    */
+   public boolean isReplaying()
+   {
+      return replaying;
+   }
+
+
+
+   /**
+    * Returns the number of exchanges recorded so far, or still left to replay.
+    *
+    * @return exchange count
+    */
+   public synchronized int size()
+   {
+      return replaying ? tape.values().stream().mapToInt(Deque::size).sum() : recorded.size();
+   }
+
+
+
+   /**
+    * Writes a recording cassette to disk (atomically); a no-op when replaying.
+    *
+    * @throws IOException when the file cannot be written
+    */
+   @Override
+   public void close() throws IOException
+   {
+      if(replaying)
+      {
+         return;
+      }
+
+      List<Exchange> snapshot;
+      synchronized(this)
+      {
+         snapshot = new ArrayList<>(recorded);
+      }
+      Path dir = file.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+      try
+      {
+         try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp)))
+         {
+            for(Exchange e : snapshot)
+            {
+               out.write(Json.writer(Exchange.class).writeValueAsBytes(e));
+               out.write('\n');
+            }
+         }
+         Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally
+      {
+         Files.deleteIfExists(tmp);
+      }
+   }
+
+
+
+   /**
+    * Decorates a blocking round-trip that buffers the body.
+    *
+    * @param req  request
+    * @param live the real round-trip, used while recording
+    * @return live or replayed response
+    * @throws IOException          on IO errors, or when no recorded exchange matches
+    * @throws InterruptedException if interrupted while waiting
+    */
+   HttpResponse<byte[]> send(HttpRequest req, Live<byte[]> live) throws IOException, InterruptedException
+   {
+      if(replaying)
+      {
+         Exchange e = next(req);
+         TimeUnit.NANOSECONDS.sleep(delayNanos(e));
+         return e.toResponse(req);
+      }
+      long                 start = System.nanoTime();
+      HttpResponse<byte[]> resp  = live.send();
+      record(req, resp, resp.body(), start);
+      return resp;
+   }
+
+
+
+   /**
+    * Decorates a non-blocking round-trip that buffers the body.
+    *
+    * @param req  request
+    * @param live the real round-trip, used while recording
+    * @return future live or replayed response
+    */
+   CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest req, Supplier<CompletableFuture<HttpResponse<byte[]>>> live)
+   {
+      if(replaying)
+      {
+         try
+         {
+            Exchange e = next(req);
+            return CompletableFuture.supplyAsync(() -> e.toResponse(req), CompletableFuture.delayedExecutor(delayNanos(e), TimeUnit.NANOSECONDS));
+         }
+         catch(IOException e)
+         {
+            return CompletableFuture.failedFuture(e);
+         }
+      }
+      long start = System.nanoTime();
+      return live.get().thenApply(resp ->
+      {
+         record(req, resp, resp.body(), start);
+         return resp;
+      });
+   }
+
+
+
+   /**
+    * Decorates a blocking round-trip with a streamed body. While recording, the body is read
+    * fully so it can be stored, and handed back as an in-memory stream.
+    *
+    * @param req  request
+    * @param live the real round-trip, used while recording
+    * @return live or replayed response
+    * @throws IOException          on IO errors, or when no recorded exchange matches
+    * @throws InterruptedException if interrupted while waiting
+    */
+   HttpResponse<InputStream> sendStreaming(HttpRequest req, Live<InputStream> live) throws IOException, InterruptedException
+   {
+      if(replaying)
+      {
+         Exchange e = next(req);
+         TimeUnit.NANOSECONDS.sleep(delayNanos(e));
+         return new StreamResponse(e.toResponse(req));
+      }
+      long                      start = System.nanoTime();
+      HttpResponse<InputStream> resp  = live.send();
+      byte[]                    body;
+      try(InputStream in = resp.body())
+      {
+         body = in.readAllBytes();
+      }
+      record(req, resp, body, start);
+      return new StreamResponse(BufferedResponse.copyOf(resp, resp.headers(), body));
+   }
+
+
+
+   /***************************************************************************
+    ** Appends an exchange to the recording.
+    ***************************************************************************/
+   private void record(HttpRequest req, HttpResponse<?> resp, byte[] body, long start)
+   {
+      Exchange e = new Exchange();
+      e.method = req.method();
+      e.uri = req.uri().toString();
+      e.status = resp.statusCode();
+      e.headers = new TreeMap<>();
+      resp.headers().map().forEach((name, values) ->
+      {
+         if(!name.startsWith(":") && !DROPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT)))
+         {
+            e.headers.put(name, values);
+         }
+      });
+      e.body = body;
+      e.startMs = TimeUnit.NANOSECONDS.toMillis(start - startedAt);
+      e.elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      synchronized(this)
+      {
+         recorded.add(e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Takes the next recorded exchange for a request.
+    ***************************************************************************/
+   private synchronized Exchange next(HttpRequest req) throws IOException
+   {
+      Deque<Exchange> queue = tape.get(key(req.method(), req.uri().toString()));
+      if(queue == null || queue.isEmpty())
+      {
+         throw new IOException("no recorded exchange for " + req.method() + " " + req.uri() + " in " + file);
+      }
+      return queue.pollFirst();
+   }
+
+
+
+   /***************************************************************************
+    ** Recorded round-trip time scaled by the replay speed.
+    ***************************************************************************/
+   private long delayNanos(Exchange e)
+   {
+      return Double.isInfinite(speed) ? 0L : (long) (TimeUnit.MILLISECONDS.toNanos(e.elapsedMs) / speed);
+   }
+
+
+
+   /***************************************************************************
+    ** Replay lookup key.
+    ***************************************************************************/
+   private static String key(String method, String uri)
+   {
+      return method + " " + uri;
+   }
+
+
+
+   /***************************************************************************
+    ** A real round-trip, as performed by one of the client's seams.
+    ***************************************************************************/
+   @FunctionalInterface
+   interface Live<B>
+   {
+      /***************************************************************************
+       ** Sends the request once.
+       ***************************************************************************/
+      HttpResponse<B> send() throws IOException, InterruptedException;
+   }
+
+
+
+   /***************************************************************************
+    ** One line of a cassette.
+    ***************************************************************************/
+   static final class Exchange
+   {
+      public String                    method;
+      public String                    uri;
+      public int                       status;
+      public Map<String, List<String>> headers;
+      public byte[]                    body;
+      public long                      startMs;
+      public long                      elapsedMs;
+
+
+
+      /***************************************************************************
+       ** Materializes the recorded response for a request.
+       ***************************************************************************/
+      HttpResponse<byte[]> toResponse(HttpRequest req)
+      {
+         Map<String, List<String>> h = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+         if(headers != null)
+         {
+            h.putAll(headers);
+         }
+         return new BufferedResponse(req, status, h, body != null ? body : new byte[0]);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Exposes a buffered response through the streaming seam's type.
+    ***************************************************************************/
+   private static final class StreamResponse implements HttpResponse<InputStream>
+   {
+      private final HttpResponse<byte[]> delegate;
+      private final InputStream          body;
+
+
+
+      /***************************************************************************
+       ** Wraps a buffered response.
+       ***************************************************************************/
+      StreamResponse(HttpResponse<byte[]> delegate)
+      {
+         this.delegate = delegate;
+         this.body = new ByteArrayInputStream(delegate.body());
+      }
+
+
+
+      /** Returns the HTTP status code. */
+      @Override
+      public int statusCode()
+      {
+         return delegate.statusCode();
+      }
+
+
+
+      /** Returns the request this response answers. */
+      @Override
+      public HttpRequest request()
+      {
+         return delegate.request();
+      }
+
+
+
+      /** Replayed responses never carry a redirect chain. */
+      @Override
+      public Optional<HttpResponse<InputStream>> previousResponse()
+      {
+         return Optional.empty();
+      }
+
+
+
+      /** Returns the response headers. */
+      @Override
+      public HttpHeaders headers()
+      {
+         return delegate.headers();
+      }
+
+
+
+      /** Returns the body as a stream over the buffered bytes. */
+      @Override
+      public InputStream body()
+      {
+         return body;
+      }
+
+
+
+      /** Replayed responses have no TLS session. */
+      @Override
+      public Optional<SSLSession> sslSession()
+      {
+         return Optional.empty();
+      }
+
+
+
+      /** Returns the request URI. */
+      @Override
+      public URI uri()
+      {
+         return delegate.uri();
+      }
+
+
+
+      /** Returns the protocol version. */
+      @Override
+      public HttpClient.Version version()
+      {
+         return delegate.version();
+      }
+   }
+}
@@ -0,0 +1,69 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+/**
+ * Observer of {@link ApiClient} traffic. Every method has a no-op default so listeners only
+ * implement what they need. Callbacks run on the thread that completed the attempt and must not
+ * block; exceptions thrown by a listener are swallowed.
+ *
+ * Why: Lets metrics, tracing and debugging hook into HTTP traffic without touching the pipeline.
+ * @since 0.1.0
+ */
+public interface HttpListener
+{
+   /**
+    * Called once per HTTP attempt (including retries and failed attempts).
+    *
+    * @param attempt what was sent and how it went
+    */
+   default void onAttempt(HttpAttempt attempt)
+   {
+   }
+
+
+
+   /**
+    * Called before sleeping between retries.
+    *
+    * @param endpoint endpoint key ({@code METHOD /path/template})
+    * @param millis   backoff duration in milliseconds
+    */
+   default void onBackoff(String endpoint, long millis)
+   {
+   }
+
+
+
+   /**
+    * Called when an attempt must wait for the host's rate limiter (including Retry-After).
+    *
+    * @param endpoint endpoint key ({@code METHOD /path/template})
+    * @param millis   wait in milliseconds
+    */
+   default void onThrottle(String endpoint, long millis)
+   {
+   }
+
+
+
+   /**
+    * Called when a hedged duplicate of a slow GET is sent.
+    *
+    * @param endpoint endpoint key ({@code METHOD /path/template})
+    */
+   default void onHedge(String endpoint)
+   {
+   }
+}
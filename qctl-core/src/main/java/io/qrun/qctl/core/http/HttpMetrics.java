@@ -0,0 +1,340 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+
+/**
+ * Aggregates {@link ApiClient} traffic per endpoint template: request and attempt counts,
+ * latency and time-to-first-byte histograms, bytes in/out, hedges, and time spent in retry
+ * backoff or waiting on the rate limiter.
+ *
+ * <p>Endpoint templates replace the identifier segments of versioned API paths with
+ * {@code {id}} (so {@code /v1/apps/demo/status} becomes {@code /v1/apps/{id}/status}); other
+ * paths are kept as-is. Every {@link ApiClient} reports to {@link #shared()}, which the CLI dumps
+ * on exit under {@code --debug} or {@code --output json}. Clients created inside
+ * {@link #collect(HttpMetrics, Callable)} also report to that call's metrics, which is how the
+ * daemon dumps one forwarded command's traffic back to its caller.
+ *
+ * Why: Tells whether a slow pipeline is waiting on the API, the network, or qctl itself.
+ * @since 0.1.0
+ */
+public final class HttpMetrics implements HttpListener
+{
+   private static final Pattern     API_VERSION = Pattern.compile("v\\d+");
+   private static final Set<String> NAMESPACES  = Set.of("qstudio");
+   private static final double      P50         = 50D;
+   private static final double      P90         = 90D;
+   private static final double      P99         = 99D;
+   private static final double      MICROS      = 1000D;
+
+   private static final HttpMetrics              SHARED = new HttpMetrics();
+   private static final ThreadLocal<HttpMetrics> SCOPED = new ThreadLocal<>();
+
+   private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+
+
+   /**
+    * Returns the process-wide metrics that every {@link ApiClient} reports to.
+    *
+    * @return shared metrics
+    */
+   public static HttpMetrics shared()
+   {
+      return SHARED;
+   }
+
+
+
+   /**
+    * Runs a task so that every {@link ApiClient} created on this thread during it reports to
+    * {@code metrics} as well as to the process-wide metrics.
+    *
+    * @param metrics metrics for this task's traffic
+    * @param task    task to run
+    * @param <T>     result type
+    * @return task result
+    * @throws Exception whatever the task throws
+    */
+   public static <T> T collect(HttpMetrics metrics, Callable<T> task) throws Exception
+   {
+      HttpMetrics previous = SCOPED.get();
+      SCOPED.set(metrics);
+      try
+      {
+         return task.call();
+      }
+      finally
+      {
+         SCOPED.set(previous);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the metrics of the enclosing collect() call, or null.
+    ***************************************************************************/
+   static HttpMetrics scoped()
+   {
+      return SCOPED.get();
+   }
+
+
+
+   /**
+    * Records an attempt.
+    *
+    * @param attempt attempt event
+    */
+   @Override
+   public void onAttempt(HttpAttempt attempt)
+   {
+      Endpoint e = endpoint(attempt.endpoint);
+      e.attempts.increment();
+      if(attempt.attempt == 1)
+      {
+         e.requests.increment();
+      }
+      if(attempt.status < 0 || attempt.status >= 400)
+      {
+         e.failures.increment();
+      }
+      e.latency.record(TimeUnit.NANOSECONDS.toMicros(attempt.durationNanos));
+      if(attempt.ttfbNanos >= 0)
+      {
+         e.ttfb.record(TimeUnit.NANOSECONDS.toMicros(attempt.ttfbNanos));
+      }
+      e.bytesOut.add(Math.max(0L, attempt.bytesOut));
+      e.bytesIn.add(Math.max(0L, attempt.bytesIn));
+   }
+
+
+
+   /**
+    * Records retry backoff.
+    *
+    * @param endpoint endpoint key
+    * @param millis   backoff in milliseconds
+    */
+   @Override
+   public void onBackoff(String endpoint, long millis)
+   {
+      endpoint(endpoint).backoffMs.add(millis);
+   }
+
+
+
+   /**
+    * Records rate-limiter waits.
+    *
+    * @param endpoint endpoint key
+    * @param millis   wait in milliseconds
+    */
+   @Override
+   public void onThrottle(String endpoint, long millis)
+   {
+      endpoint(endpoint).throttleMs.add(millis);
+   }
+
+
+
+   /**
+    * Records a hedged request.
+    *
+    * @param endpoint endpoint key
+    */
+   @Override
+   public void onHedge(String endpoint)
+   {
+      endpoint(endpoint).hedges.increment();
+   }
+
+
+
+   /**
+    * Returns whether nothing has been recorded.
+    *
+    * @return true when no attempt, backoff or throttle was recorded
+    */
+   public boolean isEmpty()
+   {
+      return endpoints.isEmpty();
+   }
+
+
+
+   /**
+    * Discards everything recorded so far.
+    */
+   public void reset()
+   {
+      endpoints.clear();
+   }
+
+
+
+   /**
+    * Returns a JSON-friendly snapshot keyed by endpoint, in endpoint order. Latencies are in
+    * milliseconds.
+    *
+    * @return snapshot
+    */
+   public Map<String, Object> toMap()
+   {
+      Map<String, Object> out = new LinkedHashMap<>();
+      for(Map.Entry<String, Endpoint> entry : endpoints.entrySet())
+      {
+         Endpoint            e = entry.getValue();
+         Map<String, Object> m = new LinkedHashMap<>();
+         m.put("requests", e.requests.sum());
+         m.put("attempts", e.attempts.sum());
+         m.put("failures", e.failures.sum());
+         m.put("hedges", e.hedges.sum());
+         m.put("latencyMs", summary(e.latency));
+         m.put("ttfbMs", summary(e.ttfb));
+         m.put("bytesIn", e.bytesIn.sum());
+         m.put("bytesOut", e.bytesOut.sum());
+         m.put("backoffMs", e.backoffMs.sum());
+         m.put("throttleMs", e.throttleMs.sum());
+         out.put(entry.getKey(), m);
+      }
+      return out;
+   }
+
+
+
+   /**
+    * Renders one human-readable line per endpoint.
+    *
+    * @return text report (empty when nothing was recorded)
+    */
+   public String renderText()
+   {
+      StringBuilder sb = new StringBuilder();
+      for(Map.Entry<String, Endpoint> entry : endpoints.entrySet())
+      {
+         Endpoint e = entry.getValue();
+         sb.append(String.format(Locale.ROOT,
+            "http %s: requests=%d attempts=%d failures=%d hedges=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms ttfb_p50=%.1fms "
+               + "in=%dB out=%dB backoff=%dms throttle=%dms%n",
+            entry.getKey(), e.requests.sum(), e.attempts.sum(), e.failures.sum(), e.hedges.sum(),
+            millis(e.latency.percentile(P50)), millis(e.latency.percentile(P90)), millis(e.latency.percentile(P99)),
+            millis(e.latency.max()), millis(e.ttfb.percentile(P50)),
+            e.bytesIn.sum(), e.bytesOut.sum(), e.backoffMs.sum(), e.throttleMs.sum()));
+      }
+      return sb.toString();
+   }
+
+
+
+   /**
+    * Returns the endpoint key for a request: the method plus the path template.
+    *
+    * @param method HTTP method
+    * @param uri    request URI
+    * @return endpoint key, e.g. {@code GET /v1/qbits/{id}/versions}
+    */
+   public static String endpointOf(String method, URI uri)
+   {
+      String   path     = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+      String[] segments = path.substring(1).split("/", -1);
+      if(segments.length == 0 || !API_VERSION.matcher(segments[0]).matches())
+      {
+         return method + " " + path;
+      }
+
+      StringBuilder sb    = new StringBuilder(method).append(' ');
+      int           start = 1;
+      sb.append('/').append(segments[0]);
+      if(segments.length > 1 && NAMESPACES.contains(segments[1]))
+      {
+         sb.append('/').append(segments[1]);
+         start = 2;
+      }
+      // Versioned resource paths alternate collection / identifier
+      for(int i = start; i < segments.length; i++)
+      {
+         sb.append('/').append((i - start) % 2 == 1 ? "{id}" : segments[i]);
+      }
+      return sb.toString();
+   }
+
+
+
+   /***************************************************************************
+    ** Returns (creating on first use) the stats for an endpoint.
+    ***************************************************************************/
+   private Endpoint endpoint(String key)
+   {
+      return endpoints.computeIfAbsent(key, k -> new Endpoint());
+   }
+
+
+
+   /***************************************************************************
+    ** Summarizes a microsecond histogram in milliseconds.
+    ***************************************************************************/
+   private static Map<String, Object> summary(LatencyHistogram h)
+   {
+      Map<String, Object> m = new LinkedHashMap<>();
+      m.put("count", h.count());
+      m.put("mean", millis(h.mean()));
+      m.put("p50", millis(h.percentile(P50)));
+      m.put("p90", millis(h.percentile(P90)));
+      m.put("p99", millis(h.percentile(P99)));
+      m.put("max", millis(h.max()));
+      return m;
+   }
+
+
+
+   /***************************************************************************
+    ** Converts microseconds to milliseconds.
+    ***************************************************************************/
+   private static double millis(double micros)
+   {
+      return micros / MICROS;
+   }
+
+
+
+   /***************************************************************************
+    ** Per-endpoint counters.
+    ***************************************************************************/
+   private static final class Endpoint
+   {
+      private final LongAdder        requests   = new LongAdder();
+      private final LongAdder        attempts   = new LongAdder();
+      private final LongAdder        failures   = new LongAdder();
+      private final LongAdder        hedges     = new LongAdder();
+      private final LongAdder        bytesIn    = new LongAdder();
+      private final LongAdder        bytesOut   = new LongAdder();
+      private final LongAdder        backoffMs  = new LongAdder();
+      private final LongAdder        throttleMs = new LongAdder();
+      private final LatencyHistogram latency    = new LatencyHistogram();
+      private final LatencyHistogram ttfb       = new LatencyHistogram();
+   }
+}
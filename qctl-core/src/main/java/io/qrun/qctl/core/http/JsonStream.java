@@ -0,0 +1,175 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * Lazy iterator over the elements of a streamed JSON array response body.
+ *
+ * <p>Elements are decoded one at a time from a Jackson parser fed by the response
+ * {@link InputStream}, so memory stays flat regardless of response size. A bare sequence of
+ * root-level values is accepted as well as a single enclosing array.
+ *
+ * Why: List endpoints can return very large pages that should not be materialized twice.
+ * @since 0.1.0
+ */
+public final class JsonStream<T> implements Iterator<T>, Closeable
+{
+   private final MappingIterator<T> elements;
+   private final InputStream        body;
+
+
+
+   /***************************************************************************
+    ** Wraps an already-positioned Jackson iterator and its source stream.
+    ***************************************************************************/
+   private JsonStream(MappingIterator<T> elements, InputStream body)
+   {
+      this.elements = elements;
+      this.body = body;
+   }
+
+
+
+   /**
+    * Opens a stream over the JSON array in {@code body}. Ownership of {@code body} passes to
+    * the returned stream.
+    *
+    * @param body        response body
+    * @param elementType type of each element
+    * @param <T>         element type
+    * @return open stream
+    * @throws IOException when the body cannot be read or does not start a JSON value
+    */
+   static <T> JsonStream<T> open(InputStream body, Class<T> elementType) throws IOException
+   {
+      try
+      {
+         MappingIterator<T> it = Json.reader(elementType).readValues(body);
+         return new JsonStream<>(it, body);
+      }
+      catch(IOException | RuntimeException e)
+      {
+         body.close();
+         throw e;
+      }
+   }
+
+
+
+   /**
+    * Returns whether another element is available, reading ahead as needed.
+    *
+    * @return true when {@link #next()} will return an element
+    * @throws UncheckedIOException when the body cannot be read or decoded
+    */
+   @Override
+   public boolean hasNext()
+   {
+      try
+      {
+         return elements.hasNextValue();
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+
+
+   /**
+    * Decodes and returns the next element.
+    *
+    * @return next element
+    * @throws UncheckedIOException when the body cannot be read or decoded
+    */
+   @Override
+   public T next()
+   {
+      if(!hasNext())
+      {
+         throw new NoSuchElementException();
+      }
+      try
+      {
+         return elements.nextValue();
+      }
+      catch(IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+      catch(RuntimeJsonMappingException e)
+      {
+         throw new UncheckedIOException(new IOException(e.getMessage(), e));
+      }
+   }
+
+
+
+   /**
+    * Adapts the remaining elements to a sequential {@link Stream}; closing the stream closes this.
+    *
+    * @return element stream
+    */
+   public Stream<T> stream()
+   {
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+         .onClose(() ->
+         {
+            try
+            {
+               close();
+            }
+            catch(IOException e)
+            {
+               throw new UncheckedIOException(e);
+            }
+         });
+   }
+
+
+
+   /**
+    * Closes the parser and the underlying response body.
+    *
+    * @throws IOException on close failure
+    */
+   @Override
+   public void close() throws IOException
+   {
+      try
+      {
+         elements.close();
+      }
+      finally
+      {
+         body.close();
+      }
+   }
+}
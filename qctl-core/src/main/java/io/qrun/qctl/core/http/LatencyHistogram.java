@@ -0,0 +1,160 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram: each power of two is split into
+ * 16 linear sub-buckets, so any recorded value is reproduced within about 6%.
+ *
+ * <p>Values are plain non-negative longs (callers pick the unit). Recording is a couple of
+ * atomic increments; percentiles walk a fixed array of under a thousand counters.
+ *
+ * Why: Per-endpoint latency needs percentiles without a new dependency or per-sample storage.
+ * @since 0.1.0
+ */
+public final class LatencyHistogram
+{
+   private static final int    SUB_BUCKET_BITS = 4;
+   private static final int    SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+   private static final int    MAX_EXPONENT    = 62;
+   private static final int    BUCKETS         = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+   private static final double PERCENT         = 100D;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+   private final LongAdder       total  = new LongAdder();
+   private final LongAdder       sum    = new LongAdder();
+   private final AtomicLong      max    = new AtomicLong();
+
+
+
+   /**
+    * Records one value; negative values are recorded as zero.
+    *
+    * @param value value to record
+    */
+   public void record(long value)
+   {
+      long v = Math.max(0L, value);
+      counts.incrementAndGet(indexOf(v));
+      total.increment();
+      sum.add(v);
+      max.accumulateAndGet(v, Math::max);
+   }
+
+
+
+   /**
+    * Returns the number of recorded values.
+    *
+    * @return sample count
+    */
+   public long count()
+   {
+      return total.sum();
+   }
+
+
+
+   /**
+    * Returns the largest recorded value.
+    *
+    * @return maximum, or {@code 0} when empty
+    */
+   public long max()
+   {
+      return max.get();
+   }
+
+
+
+   /**
+    * Returns the arithmetic mean of recorded values.
+    *
+    * @return mean, or {@code 0} when empty
+    */
+   public double mean()
+   {
+      long n = count();
+      return n == 0 ? 0D : (double) sum.sum() / n;
+   }
+
+
+
+   /**
+    * Returns the value at the given percentile (the highest value equivalent to its bucket,
+    * capped at the recorded maximum).
+    *
+    * @param percentile percentile in {@code [0, 100]}
+    * @return value at the percentile, or {@code 0} when empty
+    */
+   public long percentile(double percentile)
+   {
+      long n = count();
+      if(n == 0)
+      {
+         return 0L;
+      }
+
+      long target = Math.max(1L, (long) Math.ceil(percentile / PERCENT * n));
+      long seen   = 0;
+      for(int i = 0; i < BUCKETS; i++)
+      {
+         seen += counts.get(i);
+         if(seen >= target)
+         {
+            return Math.min(highestEquivalent(i), max());
+         }
+      }
+      return max();
+   }
+
+
+
+   /***************************************************************************
+    ** Maps a value to its bucket: values below 16 are exact, larger values use
+    ** the top four bits below the leading one as the sub-bucket.
+    ***************************************************************************/
+   static int indexOf(long value)
+   {
+      if(value < SUB_BUCKETS)
+      {
+         return (int) value;
+      }
+      int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+      int shift    = exponent - SUB_BUCKET_BITS;
+      int sub      = (int) (value >>> shift) - SUB_BUCKETS;
+      return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the largest value that maps to the given bucket.
+    ***************************************************************************/
+   static long highestEquivalent(int index)
+   {
+      if(index < SUB_BUCKETS)
+      {
+         return index;
+      }
+      int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+      int sub   = (index - SUB_BUCKETS) % SUB_BUCKETS;
+      return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+   }
+}
@@ -0,0 +1,233 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Lazy iterator over every element of a paged list endpoint ({@code page}/{@code size} query
+ * parameters, {@code X-Total-Count} response header).
+ *
+ * <p>Page 0 is requested up front. While a page is being consumed, up to {@code prefetch}
+ * following pages are already in flight. Once {@code X-Total-Count} is known, no page past the
+ * last one is requested. Without the header, a short page marks the end. Closing the pager, or
+ * the stream from {@link #stream()}, cancels any prefetched pages that were not consumed; the
+ * fetcher from {@link ApiClient#paginate} aborts their HTTP exchanges, releasing their in-flight
+ * permits, and does not send attempts that have not started.
+ *
+ * <p>A failed page fetch surfaces from {@link #hasNext()} as a {@link CompletionException}
+ * whose cause is the {@link ApiClient.ApiException} or {@link java.io.IOException}.
+ *
+ * Why: Listing thousands of items should overlap round-trips instead of paying for them serially.
+ * @since 0.1.0
+ */
+public final class Pager<T> implements Iterator<T>, Closeable
+{
+   private final IntFunction<CompletableFuture<Page<T>>> fetcher;
+   private final int                                     pageSize;
+   private final int                                     prefetch;
+   private final Deque<CompletableFuture<Page<T>>>       ahead = new ArrayDeque<>();
+
+   private int         nextToRequest;
+   private long        lastPage = Long.MAX_VALUE;
+   private long        total    = -1L;
+   private Iterator<T> current  = Collections.emptyIterator();
+   private boolean     closed;
+
+
+
+   /**
+    * Creates a pager and requests the first page.
+    *
+    * @param fetcher  fetches a page by zero-based index
+    * @param pageSize requested page size (used to detect the last page)
+    * @param prefetch number of pages to keep in flight beyond the one being consumed
+    */
+   Pager(IntFunction<CompletableFuture<Page<T>>> fetcher, int pageSize, int prefetch)
+   {
+      this.fetcher = fetcher;
+      this.pageSize = pageSize;
+      this.prefetch = Math.max(1, prefetch);
+      ahead.addLast(fetcher.apply(nextToRequest++));
+   }
+
+
+
+   /**
+    * Returns whether another element is available, waiting for the next page if needed.
+    *
+    * @return true when {@link #next()} will return an element
+    * @throws CompletionException when a page could not be fetched or decoded
+    */
+   @Override
+   public boolean hasNext()
+   {
+      while(!current.hasNext())
+      {
+         if(closed || ahead.isEmpty())
+         {
+            return false;
+         }
+
+         Page<T> page;
+         try
+         {
+            page = ahead.removeFirst().join();
+         }
+         catch(CompletionException e)
+         {
+            close();
+            throw e;
+         }
+
+         if(page.total >= 0)
+         {
+            total = page.total;
+            lastPage = Math.min(lastPage, (page.total + pageSize - 1) / pageSize - 1);
+         }
+         if(page.items.size() < pageSize)
+         {
+            lastPage = Math.min(lastPage, page.index);
+         }
+         trim();
+         fill();
+         current = page.items.iterator();
+      }
+      return true;
+   }
+
+
+
+   /**
+    * Returns the next element.
+    *
+    * @return next element
+    * @throws CompletionException when a page could not be fetched or decoded
+    */
+   @Override
+   public T next()
+   {
+      if(!hasNext())
+      {
+         throw new NoSuchElementException();
+      }
+      return current.next();
+   }
+
+
+
+   /**
+    * Returns the total reported by the server, once the first page has been read.
+    *
+    * @return value of {@code X-Total-Count}, or {@code -1} when not (yet) known
+    */
+   public long totalCount()
+   {
+      return total;
+   }
+
+
+
+   /**
+    * Adapts the remaining elements to a sequential {@link Stream}; closing the stream closes this.
+    *
+    * @return element stream
+    */
+   public Stream<T> stream()
+   {
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+         .onClose(this::close);
+   }
+
+
+
+   /**
+    * Stops paging and cancels any prefetched pages, aborting their requests.
+    */
+   @Override
+   public void close()
+   {
+      closed = true;
+      current = Collections.emptyIterator();
+      while(!ahead.isEmpty())
+      {
+         ahead.removeFirst().cancel(true);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Requests pages until the prefetch window is full or the last page is out.
+    ***************************************************************************/
+   private void fill()
+   {
+      while(ahead.size() < prefetch && nextToRequest <= lastPage)
+      {
+         ahead.addLast(fetcher.apply(nextToRequest++));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Cancels prefetched pages that turned out to be past the last page.
+    ***************************************************************************/
+   private void trim()
+   {
+      while(!ahead.isEmpty() && nextToRequest - 1 > lastPage)
+      {
+         ahead.removeLast().cancel(true);
+         nextToRequest--;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** One fetched page: its index, elements and reported total (-1 if absent).
+    ***************************************************************************/
+   static final class Page<T>
+   {
+      final int     index;
+      final List<T> items;
+      final long    total;
+
+
+
+      /***************************************************************************
+       ** Creates a page.
+       ***************************************************************************/
+      Page(int index, List<T> items, long total)
+      {
+         this.index = index;
+         this.items = items;
+         this.total = total;
+      }
+   }
+}
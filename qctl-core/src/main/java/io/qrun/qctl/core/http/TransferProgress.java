@@ -0,0 +1,114 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Observer of a long transfer (upload or download). Called from the I/O thread as bytes move,
+ * so implementations must be cheap and must not block.
+ *
+ * Why: Multi-GB artifact and tarball transfers need visible throughput, not a silent wait.
+ * @since 0.1.0
+ */
+@FunctionalInterface
+public interface TransferProgress
+{
+   /**
+    * Minimum interval between lines printed by {@link #printing(PrintStream, String)}.
+    */
+   long PRINT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+
+
+   /**
+    * Reports progress.
+    *
+    * @param done           bytes transferred so far
+    * @param total          total bytes, or {@code -1} when unknown
+    * @param bytesPerSecond average throughput since the transfer started
+    */
+   void onProgress(long done, long total, double bytesPerSecond);
+
+
+
+   /**
+    * Progress that is discarded.
+    *
+    * @return no-op progress
+    */
+   static TransferProgress none()
+   {
+      return (done, total, rate) ->
+      {
+      };
+   }
+
+
+
+   /**
+    * Prints {@code label: 42% 120.0 MiB of 285.3 MiB at 96.1 MiB/s} lines, at most twice a
+    * second plus once at completion.
+    *
+    * <p>Progress is reported from HTTP client threads, which belong to no command invocation, so
+    * {@code out} must be the concrete stream of the invocation that owns the transfer (normally
+    * {@code Invocation.current().err()} captured on the command thread), never the routed
+    * {@code System.err}.
+    *
+    * @param out   stream to print to (normally the invocation's stderr)
+    * @param label what is being transferred
+    * @return printing progress
+    */
+   static TransferProgress printing(PrintStream out, String label)
+   {
+      AtomicLong last = new AtomicLong(System.nanoTime() - PRINT_INTERVAL_NANOS);
+      return (done, total, rate) ->
+      {
+         long    now      = System.nanoTime();
+         long    prev     = last.get();
+         boolean finished = total >= 0 && done >= total;
+         if(finished || now - prev >= PRINT_INTERVAL_NANOS && last.compareAndSet(prev, now))
+         {
+            String pct = total > 0 ? String.format(Locale.ROOT, "%3d%% ", done * 100 / total) : "";
+            String of  = total >= 0 ? " of " + formatBytes(total) : "";
+            out.println(label + ": " + pct + formatBytes(done) + of + " at " + formatBytes((long) rate) + "/s");
+         }
+      };
+   }
+
+
+
+   /**
+    * Formats a byte count with a binary unit, e.g. {@code 1.5 MiB}.
+    *
+    * @param bytes byte count
+    * @return human-readable size
+    */
+   static String formatBytes(long bytes)
+   {
+      String[] units = {"B", "KiB", "MiB", "GiB", "TiB"};
+      double   v     = bytes;
+      int      u     = 0;
+      while(v >= 1024 && u < units.length - 1)
+      {
+         v /= 1024;
+         u++;
+      }
+      return u == 0 ? bytes + " B" : String.format(Locale.ROOT, "%.1f %s", v, units[u]);
+   }
+}
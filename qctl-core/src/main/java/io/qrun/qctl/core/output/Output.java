@@ -14,7 +14,7 @@ package io.qrun.qctl.core.output;
 
 
 import java.io.PrintStream;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qrun.qctl.shared.json.Json;
 
 
 /**
@@ -25,10 +25,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public final class Output
 {
-   private static final ObjectMapper MAPPER = new ObjectMapper();
-
-
-
    /**
     * Writes a line of plain text to the given stream.
     *
@@ -54,7 +50,7 @@ public final class Output
    {
       try
       {
-         out.println(MAPPER.writeValueAsString(obj));
+         out.println(Json.writer().writeValueAsString(obj));
       }
       catch(Exception e)
       {
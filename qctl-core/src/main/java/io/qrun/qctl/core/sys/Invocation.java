@@ -0,0 +1,299 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.sys;
+
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+
+/**
+ * The environment, working directory and standard streams of the command invocation running on
+ * the current thread.
+ *
+ * <p>A normal run has a single invocation: the process itself. A long-lived process that runs
+ * commands on behalf of other callers (the {@code qctl daemon}) binds one invocation per request
+ * with {@link #call(Callable)}. The binding is not inherited: pooled threads outlive the request
+ * that created them, so work handed to another thread goes through {@link #bind(Executor)}. After
+ * {@link #routeStandardStreams()}, writes to {@code System.out}/{@code System.err} go to the
+ * current invocation's streams, so commands keep using the standard streams unchanged.
+ *
+ * Why: Commands read env and relative paths and print to stdout; a shared process needs those per caller.
+ * @since 0.1.0
+ */
+public final class Invocation
+{
+   private static final Invocation             PROCESS = new Invocation(System.getenv(), null, null, null);
+   private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<>();
+
+   private static volatile PrintStream stdout;
+   private static volatile PrintStream stderr;
+
+   private final Map<String, String> env;
+   private final Path                cwd;
+   private final PrintStream         out;
+   private final PrintStream         err;
+
+
+
+   /**
+    * Creates an invocation.
+    *
+    * @param env environment variables
+    * @param cwd working directory for relative paths, or null for the process working directory
+    * @param out standard output, or null for the process stdout
+    * @param err standard error, or null for the process stderr
+    */
+   public Invocation(Map<String, String> env, Path cwd, PrintStream out, PrintStream err)
+   {
+      this.env = Map.copyOf(env);
+      this.cwd = cwd;
+      this.out = out;
+      this.err = err;
+   }
+
+
+
+   /**
+    * Returns the invocation bound to the current thread, or the process invocation.
+    *
+    * @return current invocation
+    */
+   public static Invocation current()
+   {
+      Invocation bound = CURRENT.get();
+      return bound != null ? bound : PROCESS;
+   }
+
+
+
+   /**
+    * Returns an environment variable of the current invocation.
+    *
+    * @param name variable name
+    * @return value, or null when unset
+    */
+   public static String getenv(String name)
+   {
+      return current().env.get(name);
+   }
+
+
+
+   /**
+    * Sends {@code System.out} and {@code System.err} to the current invocation's streams from
+    * now on. The process invocation keeps the streams that were installed before the call.
+    * Calling this more than once has no further effect.
+    */
+   public static synchronized void routeStandardStreams()
+   {
+      if(stdout != null)
+      {
+         return;
+      }
+      stdout = System.out;
+      stderr = System.err;
+      System.setOut(new PrintStream(new Routed(false), true, stdout.charset()));
+      System.setErr(new PrintStream(new Routed(true), true, stderr.charset()));
+   }
+
+
+
+   /**
+    * Runs a task with this invocation bound to the current thread.
+    *
+    * @param task task to run
+    * @param <T>  result type
+    * @return task result
+    * @throws Exception whatever the task throws
+    */
+   public <T> T call(Callable<T> task) throws Exception
+   {
+      Invocation previous = CURRENT.get();
+      CURRENT.set(this);
+      try
+      {
+         return task.call();
+      }
+      finally
+      {
+         CURRENT.set(previous);
+      }
+   }
+
+
+
+   /**
+    * Returns an executor that runs every task on {@code delegate} with this invocation bound,
+    * whichever thread submits it, restoring the worker's previous binding afterwards.
+    *
+    * @param delegate executor that runs the tasks
+    * @return binding executor
+    */
+   public Executor bind(Executor delegate)
+   {
+      return task -> delegate.execute(() ->
+      {
+         Invocation previous = CURRENT.get();
+         CURRENT.set(this);
+         try
+         {
+            task.run();
+         }
+         finally
+         {
+            CURRENT.set(previous);
+         }
+      });
+   }
+
+
+
+   /**
+    * Returns an invocation with the same environment and working directory but other streams.
+    *
+    * @param out standard output
+    * @param err standard error
+    * @return new invocation
+    */
+   public Invocation withStreams(PrintStream out, PrintStream err)
+   {
+      return new Invocation(env, cwd, out, err);
+   }
+
+
+
+   /**
+    * Returns the environment variables.
+    *
+    * @return immutable environment map
+    */
+   public Map<String, String> env()
+   {
+      return env;
+   }
+
+
+
+   /**
+    * Resolves a path against this invocation's working directory. For the process invocation
+    * the path is returned as given, relative or not.
+    *
+    * @param path path string
+    * @return resolved path
+    */
+   public Path resolve(String path)
+   {
+      return cwd == null ? Path.of(path) : cwd.resolve(path);
+   }
+
+
+
+   /**
+    * Returns standard output.
+    *
+    * @return output stream
+    */
+   public PrintStream out()
+   {
+      if(out != null)
+      {
+         return out;
+      }
+      return stdout != null ? stdout : System.out;
+   }
+
+
+
+   /**
+    * Returns standard error.
+    *
+    * @return error stream
+    */
+   public PrintStream err()
+   {
+      if(err != null)
+      {
+         return err;
+      }
+      return stderr != null ? stderr : System.err;
+   }
+
+
+
+   /***************************************************************************
+    ** Forwards bytes to the current invocation's stdout or stderr.
+    ***************************************************************************/
+   private static final class Routed extends OutputStream
+   {
+      private final boolean toErr;
+
+
+
+      /***************************************************************************
+       ** Creates a stream routed to stdout, or to stderr when toErr is set.
+       ***************************************************************************/
+      Routed(boolean toErr)
+      {
+         this.toErr = toErr;
+      }
+
+
+
+      /***************************************************************************
+       ** Writes one byte to the current target.
+       ***************************************************************************/
+      @Override
+      public void write(int b)
+      {
+         target().write(b);
+      }
+
+
+
+      /***************************************************************************
+       ** Writes bytes to the current target.
+       ***************************************************************************/
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+         target().write(b, off, len);
+      }
+
+
+
+      /***************************************************************************
+       ** Flushes the current target.
+       ***************************************************************************/
+      @Override
+      public void flush()
+      {
+         target().flush();
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the stream of the invocation bound to the calling thread.
+       ***************************************************************************/
+      private PrintStream target()
+      {
+         Invocation current = current();
+         return toErr ? current.err() : current.out();
+      }
+   }
+}
@@ -0,0 +1,414 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.sys;
+
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * Timeline of the bootstrap phases of one qctl process, enabled by {@code --trace-startup}.
+ *
+ * <p>Phases are recorded as spans ({@link #begin}) with nanosecond timestamps relative to process
+ * start, so the first span ({@code runtime.boot}) is the time the JVM or native image took to reach
+ * {@code main}. On the JVM each span also records how many classes were loaded while it ran; a
+ * native image has no class loading, so that column is left out. While disabled, {@link #begin}
+ * returns a shared no-op span after one volatile read.
+ *
+ * <p>{@link #emit} renders the spans as a text waterfall, or as Chrome trace-event JSON (complete
+ * {@code "X"} events, loadable in {@code chrome://tracing} or Perfetto) when the target file ends
+ * in {@code .json}.
+ *
+ * Why: Startup regressions are found by comparing where the time goes, not by total wall time.
+ * @since 0.1.0
+ */
+public final class StartupTrace
+{
+   private static final int         BAR_WIDTH    = 40;
+   private static final double      NANOS_PER_MS = 1_000_000D;
+   private static final Span        NOOP         = new Span(null, null, 0L, 0L);
+   private static final List<Event> EVENTS       = new ArrayList<>();
+
+   private static volatile boolean   enabled;
+   private static long               origin;
+   private static ClassLoadingMXBean classLoading;
+
+
+
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private StartupTrace()
+   {
+   }
+
+
+
+   /**
+    * Starts tracing. Call first thing in {@code main}: the time between process start and this
+    * call is recorded as {@code runtime.boot}.
+    */
+   @SuppressWarnings("try")
+   public static synchronized void enable()
+   {
+      long              now     = System.nanoTime();
+      long              wall    = System.currentTimeMillis();
+      Optional<Instant> started = ProcessHandle.current().info().startInstant();
+      origin = started.map(s -> now - TimeUnit.MILLISECONDS.toNanos(Math.max(0L, wall - s.toEpochMilli()))).orElse(now);
+      EVENTS.clear();
+      if(origin < now)
+      {
+         EVENTS.add(new Event("runtime", "runtime.boot", null, origin, now, Thread.currentThread().threadId(), -1L));
+      }
+      enabled = true;
+
+      if(!isNativeImage())
+      {
+         try(Span span = begin("trace", "trace.init"))
+         {
+            classLoading = ManagementFactory.getClassLoadingMXBean();
+         }
+      }
+   }
+
+
+
+   /**
+    * Returns whether spans are being recorded.
+    *
+    * @return true after {@link #enable()}
+    */
+   public static boolean isEnabled()
+   {
+      return enabled;
+   }
+
+
+
+   /**
+    * Starts a span; close it (try-with-resources) to record it.
+    *
+    * @param category grouping shown in Chrome trace viewers, e.g. {@code cli} or {@code config}
+    * @param name     phase name
+    * @return open span, or a no-op span while tracing is disabled
+    */
+   public static Span begin(String category, String name)
+   {
+      if(!enabled)
+      {
+         return NOOP;
+      }
+      return new Span(category, name, System.nanoTime(), loadedClasses());
+   }
+
+
+
+   /**
+    * Writes the recorded spans: a text waterfall to {@code err} when {@code target} is empty,
+    * otherwise to that file, as Chrome trace JSON when it ends in {@code .json}.
+    *
+    * @param target output file, or empty for {@code err}
+    * @param err    standard error
+    */
+   public static void emit(String target, PrintStream err)
+   {
+      try
+      {
+         if(target.isEmpty())
+         {
+            err.print(renderText());
+         }
+         else if(target.endsWith(".json"))
+         {
+            Files.writeString(Path.of(target), Json.writer().writeValueAsString(toChromeTrace()), StandardCharsets.UTF_8);
+         }
+         else
+         {
+            Files.writeString(Path.of(target), renderText(), StandardCharsets.UTF_8);
+         }
+      }
+      catch(IOException e)
+      {
+         err.println("warning: could not write startup trace: " + e.getMessage());
+      }
+   }
+
+
+
+   /**
+    * Renders the spans as a waterfall: start and duration in milliseconds, a bar scaled to the
+    * whole timeline, the name indented by nesting, and the classes loaded during the span.
+    *
+    * @return text waterfall
+    */
+   public static String renderText()
+   {
+      List<Event>   events = snapshot();
+      long          end    = events.stream().mapToLong(Event::end).max().orElse(origin);
+      double        total  = Math.max(1L, end - origin);
+      StringBuilder sb     = new StringBuilder();
+      sb.append(String.format(Locale.ROOT, "qctl startup trace (%s, pid %d): %.1f ms%n",
+         isNativeImage() ? "native image" : "JVM " + Runtime.version(), ProcessHandle.current().pid(), (end - origin) / NANOS_PER_MS));
+      sb.append(String.format(Locale.ROOT, "%9s %9s  %-" + BAR_WIDTH + "s  %s%n", "start ms", "dur ms", "", "phase"));
+      for(Event e : events)
+      {
+         int           from = (int) Math.round((e.start - origin) / total * BAR_WIDTH);
+         int           to   = Math.max(from + 1, (int) Math.round((e.end - origin) / total * BAR_WIDTH));
+         StringBuilder bar  = new StringBuilder(BAR_WIDTH);
+         for(int i = 0; i < BAR_WIDTH; i++)
+         {
+            bar.append(i >= from && i < Math.min(to, BAR_WIDTH) ? '#' : '.');
+         }
+         sb.append(String.format(Locale.ROOT, "%9.1f %9.1f  %s  %s%s", (e.start - origin) / NANOS_PER_MS, (e.end - e.start) / NANOS_PER_MS,
+            bar, "  ".repeat(depth(e, events)), e.name));
+         if(e.detail != null)
+         {
+            sb.append(" (").append(e.detail).append(')');
+         }
+         if(e.classes >= 0)
+         {
+            sb.append("  +").append(e.classes).append(" classes");
+         }
+         sb.append(System.lineSeparator());
+      }
+      return sb.toString();
+   }
+
+
+
+   /**
+    * Returns the spans in Chrome trace-event format: a {@code traceEvents} list of complete
+    * events with microsecond timestamps from process start.
+    *
+    * @return trace document
+    */
+   public static Map<String, Object> toChromeTrace()
+   {
+      long                      pid    = ProcessHandle.current().pid();
+      List<Map<String, Object>> events = new ArrayList<>();
+
+      Map<String, Object> process = new LinkedHashMap<>();
+      process.put("name", "process_name");
+      process.put("ph", "M");
+      process.put("pid", pid);
+      process.put("args", Map.of("name", isNativeImage() ? "qctl (native image)" : "qctl (JVM " + Runtime.version() + ")"));
+      events.add(process);
+
+      for(Event e : snapshot())
+      {
+         Map<String, Object> m = new LinkedHashMap<>();
+         m.put("name", e.name);
+         m.put("cat", e.category);
+         m.put("ph", "X");
+         m.put("ts", micros(e.start - origin));
+         m.put("dur", micros(e.end - e.start));
+         m.put("pid", pid);
+         m.put("tid", e.thread);
+         Map<String, Object> args = new LinkedHashMap<>();
+         if(e.detail != null)
+         {
+            args.put("detail", e.detail);
+         }
+         if(e.classes >= 0)
+         {
+            args.put("classesLoaded", e.classes);
+         }
+         if(!args.isEmpty())
+         {
+            m.put("args", args);
+         }
+         events.add(m);
+      }
+
+      Map<String, Object> doc = new LinkedHashMap<>();
+      doc.put("traceEvents", events);
+      doc.put("displayTimeUnit", "ms");
+      return doc;
+   }
+
+
+
+   /***************************************************************************
+    ** Stops tracing and drops recorded spans (tests).
+    ***************************************************************************/
+   static synchronized void reset()
+   {
+      enabled = false;
+      EVENTS.clear();
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the recorded spans ordered by start, longest first on ties.
+    ***************************************************************************/
+   private static synchronized List<Event> snapshot()
+   {
+      List<Event> events = new ArrayList<>(EVENTS);
+      events.sort(Comparator.comparingLong(Event::start).thenComparing(Comparator.comparingLong(Event::end).reversed()));
+      return events;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns how many recorded spans on the same thread enclose the event.
+    ***************************************************************************/
+   private static int depth(Event event, List<Event> events)
+   {
+      int depth = 0;
+      for(Event e : events)
+      {
+         if(e != event && e.thread == event.thread && e.start <= event.start && e.end >= event.end)
+         {
+            depth++;
+         }
+      }
+      return depth;
+   }
+
+
+
+   /***************************************************************************
+    ** Records a finished span.
+    ***************************************************************************/
+   private static synchronized void record(Event event)
+   {
+      if(enabled)
+      {
+         EVENTS.add(event);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the total loaded class count, or -1 where it is not tracked.
+    ***************************************************************************/
+   private static long loadedClasses()
+   {
+      ClassLoadingMXBean bean = classLoading;
+      return bean == null ? -1L : bean.getTotalLoadedClassCount();
+   }
+
+
+
+   /***************************************************************************
+    ** Returns whether this process is a GraalVM native image.
+    ***************************************************************************/
+   private static boolean isNativeImage()
+   {
+      return System.getProperty("org.graalvm.nativeimage.imagecode") != null;
+   }
+
+
+
+   /***************************************************************************
+    ** Converts nanoseconds to fractional microseconds.
+    ***************************************************************************/
+   private static double micros(long nanos)
+   {
+      return nanos / 1000D;
+   }
+
+
+
+   /***************************************************************************
+    ** One finished span; classes is -1 when class loading is not tracked.
+    ***************************************************************************/
+   private record Event(String category, String name, String detail, long start, long end, long thread, long classes)
+   {
+   }
+
+
+
+   /**
+    * An open span. Closing it more than once records it once.
+    *
+    * @since 0.1.0
+    */
+   public static final class Span implements AutoCloseable
+   {
+      private final String category;
+      private final String name;
+      private final long   start;
+      private final long   classesAtStart;
+
+      private String  detail;
+      private boolean closed;
+
+
+
+      /***************************************************************************
+       ** Opens a span at the given time.
+       ***************************************************************************/
+      private Span(String category, String name, long start, long classesAtStart)
+      {
+         this.category = category;
+         this.name = name;
+         this.start = start;
+         this.classesAtStart = classesAtStart;
+      }
+
+
+
+      /**
+       * Attaches a short note, shown next to the name.
+       *
+       * @param text note, e.g. how a plugin was registered
+       * @return this span
+       */
+      public Span detail(String text)
+      {
+         if(this != NOOP)
+         {
+            this.detail = text;
+         }
+         return this;
+      }
+
+
+
+      /**
+       * Records the span, ending now.
+       */
+      @Override
+      public void close()
+      {
+         if(this == NOOP || closed)
+         {
+            return;
+         }
+         closed = true;
+         long end     = System.nanoTime();
+         long classes = classesAtStart < 0 ? -1L : loadedClasses() - classesAtStart;
+         record(new Event(category, name, detail, start, end, Thread.currentThread().threadId(), classes));
+      }
+   }
+}
@@ -19,7 +19,8 @@ import java.nio.file.Paths;
 
 
 /**
- * OS-specific configuration and cache directory helpers.
+ * OS-specific configuration and cache directory helpers. Environment variables are read from the
+ * current {@link Invocation}.
  *
  * Why: Provide predictable config/cache locations across platforms.
  * @since 0.1.0
@@ -43,7 +44,7 @@ public final class SystemPaths
       String os = System.getProperty("os.name").toLowerCase();
       if(os.contains("win"))
       {
-         String appData = System.getenv("APPDATA");
+         String appData = Invocation.getenv("APPDATA");
          if(appData != null && !appData.isEmpty())
          {
             return Paths.get(appData, "qctl");
@@ -56,7 +57,7 @@ public final class SystemPaths
       }
       else
       {
-         String xdg = System.getenv("XDG_CONFIG_HOME");
+         String xdg = Invocation.getenv("XDG_CONFIG_HOME");
          if(xdg != null && !xdg.isEmpty())
          {
             return Paths.get(xdg, "qctl");
@@ -73,7 +74,7 @@ public final class SystemPaths
       String os = System.getProperty("os.name").toLowerCase();
       if(os.contains("win"))
       {
-         String local = System.getenv("LOCALAPPDATA");
+         String local = Invocation.getenv("LOCALAPPDATA");
          if(local != null && !local.isEmpty())
          {
             return Paths.get(local, "qctl", "cache");
@@ -86,7 +87,7 @@ public final class SystemPaths
       }
       else
       {
-         String xdg = System.getenv("XDG_CACHE_HOME");
+         String xdg = Invocation.getenv("XDG_CACHE_HOME");
          if(xdg != null && !xdg.isEmpty())
          {
             return Paths.get(xdg, "qctl");
@@ -0,0 +1,64 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.batch;
+
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests for {@link BatchParser}.
+ */
+class BatchParserTest
+{
+   /** Quotes, escapes and comments follow POSIX shell word splitting, without expansion. */
+   @Test
+   void splits_shell_like_lines()
+   {
+      assertThat(BatchParser.parse("qctl qrun status --app 'my app' --env \"dev \\\"x\\\"\"  # comment").argv())
+         .containsExactly("qrun", "status", "--app", "my app", "--env", "dev \"x\"");
+      assertThat(BatchParser.parse("qbit resolve --lockfile a\\ b.lock $HOME").argv())
+         .containsExactly("qbit", "resolve", "--lockfile", "a b.lock", "$HOME");
+      assertThat(BatchParser.parse("echo ''").argv()).containsExactly("echo", "");
+      assertThat(BatchParser.parse("   # only a comment").argv()).isEmpty();
+      assertThat(BatchParser.parse("").argv()).isEmpty();
+   }
+
+
+
+   /** NDJSON lines are argument arrays or objects with argv and an optional id. */
+   @Test
+   void reads_ndjson_lines()
+   {
+      assertThat(BatchParser.parse("[\"qrun\", \"status\", \"--app\", \"a b\"]").argv()).containsExactly("qrun", "status", "--app", "a b");
+
+      BatchParser.Line line = BatchParser.parse("{\"id\": \"web\", \"argv\": [\"qctl\", \"qrun\", \"status\"]}");
+      assertThat(line.id()).isEqualTo("web");
+      assertThat(line.argv()).containsExactly("qrun", "status");
+   }
+
+
+
+   /** Malformed lines are rejected with a reason. */
+   @Test
+   void rejects_malformed_lines()
+   {
+      assertThatThrownBy(() -> BatchParser.parse("qrun status --app 'oops")).hasMessageContaining("single quote");
+      assertThatThrownBy(() -> BatchParser.parse("qrun status \"oops")).hasMessageContaining("double quote");
+      assertThatThrownBy(() -> BatchParser.parse("[\"qrun\", 1]")).hasMessageContaining("JSON strings");
+      assertThatThrownBy(() -> BatchParser.parse("{\"args\": []}")).hasMessageContaining("argv");
+      assertThatThrownBy(() -> BatchParser.parse("[\"qrun\"")).hasMessageContaining("invalid JSON");
+   }
+}
@@ -0,0 +1,188 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.batch;
+
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import io.qrun.qctl.core.sys.Invocation;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests for {@link BatchRunner}, running core commands in-process.
+ */
+class BatchRunnerTest
+{
+   private static final String INPUT = String.join("\n",
+      "# deploy checks",
+      "qctl --version",
+      "",
+      "--bogus",
+      "[\"daemon\", \"status\"]",
+      "qctl --version 'unterminated",
+      "{\"id\": \"last\", \"argv\": [\"--version\"]}");
+
+   private final List<BatchRunner.Result> results = new ArrayList<>();
+
+
+
+   /** Each command reports its own output and exit code; the batch exits with the first failure. */
+   @Test
+   void reports_each_command_in_order()
+   {
+      BatchRunner.Summary summary = run(new BatchRunner(1, false));
+
+      assertThat(results).extracting(BatchRunner.Result::line).containsExactly(2, 4, 5, 6, 7);
+      assertThat(results).extracting(BatchRunner.Result::exitCode).containsExactly(0, 2, 2, 2, 0);
+      assertThat(results.get(0).stdout()).isEqualTo("qctl 0.1.0" + System.lineSeparator());
+      assertThat(results.get(1).stderr()).contains("Unknown option: '--bogus'");
+      assertThat(results.get(2).stderr()).contains("cannot run inside qctl batch");
+      assertThat(results.get(3).stderr()).contains("line 6").contains("single quote");
+      assertThat(results.get(4).id()).isEqualTo("last");
+      assertThat(summary).isEqualTo(new BatchRunner.Summary(5, 3, 0, 2));
+   }
+
+
+
+   /** The guard looks past root options and their values to the subcommand picocli resolves. */
+   @Test
+   void rejects_batch_and_daemon_after_root_options()
+   {
+      BatchRunner.Summary summary = run(new BatchRunner(1, false), "--output text daemon\n--offline batch\n--output text --version\n");
+
+      assertThat(results).extracting(BatchRunner.Result::exitCode).containsExactly(2, 2, 0);
+      assertThat(results.get(0).stderr()).contains("'daemon' cannot run inside qctl batch");
+      assertThat(results.get(1).stderr()).contains("'batch' cannot run inside qctl batch");
+      assertThat(BatchRunner.subcommand(List.of("--trace-startup", "cache", "ls"))).isEqualTo("cache");
+      assertThat(BatchRunner.subcommand(List.of("qrun", "batch"))).isNull();
+      assertThat(summary.failed()).isEqualTo(2);
+   }
+
+
+
+   /** Plugin lines and lines with only root options have no built-in subcommand and run normally. */
+   @Test
+   void runs_plugin_and_root_option_lines()
+   {
+      List<String> ran = new ArrayList<>();
+      BatchRunner.Summary summary = run(new BatchRunner(1, false, (argv, inv) ->
+      {
+         ran.add(String.join(" ", argv));
+         return 0;
+      }), "qrun status my-app\n--offline qbit resolve\n--version\n");
+
+      assertThat(ran).containsExactly("qrun status my-app", "--offline qbit resolve", "--version");
+      assertThat(results).extracting(BatchRunner.Result::exitCode).containsExactly(0, 0, 0);
+      assertThat(summary.failed()).isZero();
+   }
+
+
+
+   /** Parallel runs keep input order in the results. */
+   @Test
+   void keeps_input_order_with_parallel_jobs()
+   {
+      StringBuilder input = new StringBuilder();
+      for(int i = 0; i < 40; i++)
+      {
+         input.append(i % 3 == 0 ? "--bogus" : "--version").append('\n');
+      }
+      BatchRunner.Summary summary = run(new BatchRunner(4, false), input.toString());
+
+      assertThat(results).extracting(BatchRunner.Result::line).isSorted().hasSize(40);
+      for(BatchRunner.Result r : results)
+      {
+         assertThat(r.exitCode()).isEqualTo((r.line() - 1) % 3 == 0 ? 2 : 0);
+      }
+      assertThat(summary.failed()).isEqualTo(14);
+   }
+
+
+
+   /** With fail-fast nothing after the first failure is started. */
+   @Test
+   void stops_reading_after_a_failure_with_fail_fast()
+   {
+      BatchRunner.Summary summary = run(new BatchRunner(1, true), "--version\n--bogus\n--version\n--version\n");
+
+      assertThat(results).extracting(BatchRunner.Result::line).containsExactly(1, 2);
+      assertThat(summary.exitCode()).isEqualTo(2);
+   }
+
+
+
+   /** With fail-fast and parallel jobs, a command already running when another fails is reported, not skipped. */
+   @Test
+   void lets_running_commands_finish_with_fail_fast() throws Exception
+   {
+      CountDownLatch slowStarted = new CountDownLatch(1);
+      BatchRunner runner = new BatchRunner(2, true, (argv, inv) ->
+      {
+         try
+         {
+            if(argv[0].equals("fail"))
+            {
+               slowStarted.await(5, TimeUnit.SECONDS);
+               return 1;
+            }
+            slowStarted.countDown();
+            Thread.sleep(300);
+            inv.out().print("done");
+            return 0;
+         }
+         catch(InterruptedException e)
+         {
+            return 130;
+         }
+      });
+      BatchRunner.Summary summary = run(runner, "fail\nslow\n");
+
+      assertThat(results).extracting(BatchRunner.Result::line).containsExactly(1, 2);
+      assertThat(results.get(1).stdout()).isEqualTo("done");
+      assertThat(summary).isEqualTo(new BatchRunner.Summary(2, 1, 0, 1));
+   }
+
+
+
+   /***************************************************************************
+    ** Runs the default input.
+    ***************************************************************************/
+   private BatchRunner.Summary run(BatchRunner runner)
+   {
+      return run(runner, INPUT);
+   }
+
+
+
+   /***************************************************************************
+    ** Runs the input, collecting results.
+    ***************************************************************************/
+   private BatchRunner.Summary run(BatchRunner runner, String input)
+   {
+      try
+      {
+         return runner.run(new BufferedReader(new StringReader(input)), new Invocation(Map.of(), null, null, null), results::add);
+      }
+      catch(Exception e)
+      {
+         throw new AssertionError(e);
+      }
+   }
+}
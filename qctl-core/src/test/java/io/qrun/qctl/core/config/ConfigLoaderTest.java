@@ -15,9 +15,14 @@ package io.qrun.qctl.core.config;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
 import com.fasterxml.jackson.databind.JsonNode;
+import io.qrun.qctl.shared.json.Json;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -51,4 +56,103 @@ class ConfigLoaderTest
       assertThrows(
          IllegalArgumentException.class, () -> ConfigLoader.loadAndValidate(tmp, new HashMap<>()));
    }
+
+
+
+   /***************************************************************************
+    ** A configuration that passed validation leaves one fingerprint; invalid
+    ** ones leave none.
+    ***************************************************************************/
+   @Test
+   void records_fingerprint_only_for_valid_config(@TempDir Path tmp) throws Exception
+   {
+      Path config    = tmp.resolve("qctl.yaml");
+      Path validated = tmp.resolve("cache").resolve("validated");
+      Files.writeString(config, "log:\n  level: debug\n");
+      ConfigLoader.loadAndValidate(config, new HashMap<>(), tmp.resolve("cache"));
+      ConfigLoader.loadAndValidate(config, new HashMap<>(), tmp.resolve("cache"));
+      assertThat(markers(validated)).isEqualTo(1);
+
+      Files.writeString(config, "log:\n  level: wrong\n");
+      assertThrows(IllegalArgumentException.class, () -> ConfigLoader.loadAndValidate(config, new HashMap<>(), tmp.resolve("cache")));
+      assertThat(markers(validated)).isEqualTo(1);
+   }
+
+
+
+   /***************************************************************************
+    ** A known fingerprint skips schema validation entirely.
+    ***************************************************************************/
+   @Test
+   void skips_validation_for_known_fingerprint(@TempDir Path tmp) throws Exception
+   {
+      Path config    = tmp.resolve("qctl.yaml");
+      Path validated = Files.createDirectories(tmp.resolve("cache").resolve("validated"));
+      Files.writeString(config, "log:\n  level: wrong\n");
+      JsonNode merged = Json.mapper().readTree("{\"output\":\"text\",\"log\":{\"level\":\"wrong\"}}");
+      Files.createFile(validated.resolve(ConfigLoader.fingerprint(merged)));
+
+      JsonNode n = ConfigLoader.loadAndValidate(config, new HashMap<>(), tmp.resolve("cache"));
+      assertThat(n.at("/log/level").asText()).isEqualTo("wrong");
+      assertThrows(IllegalArgumentException.class, () -> ConfigLoader.loadAndValidate(config, new HashMap<>(), null));
+   }
+
+
+   /***************************************************************************
+    ** An unchanged file is served from the snapshot without being parsed;
+    ** a newer file or different QCTL_* variables are merged again.
+    ***************************************************************************/
+   @Test
+   void serves_snapshot_until_file_or_env_changes(@TempDir Path tmp) throws Exception
+   {
+      Path config = tmp.resolve("qctl.yaml");
+      Path cache  = tmp.resolve("cache");
+      Files.writeString(config, "log:\n  level: debug\n");
+      assertThat(ConfigLoader.loadAndValidate(config, new HashMap<>(), cache).at("/log/level").asText()).isEqualTo("debug");
+
+      FileTime taken = Files.getLastModifiedTime(config);
+      Files.writeString(config, "log:\n  level: trace\n");
+      Files.setLastModifiedTime(config, taken);
+      assertThat(ConfigLoader.loadAndValidate(config, new HashMap<>(), cache).at("/log/level").asText()).isEqualTo("debug");
+
+      Files.setLastModifiedTime(config, FileTime.fromMillis(taken.toMillis() + 1000));
+      assertThat(ConfigLoader.loadAndValidate(config, new HashMap<>(), cache).at("/log/level").asText()).isEqualTo("trace");
+      assertThat(ConfigLoader.loadAndValidate(config, new HashMap<>(Map.of("QCTL_LOG_LEVEL", "info")), cache).at("/log/level").asText())
+         .isEqualTo("info");
+   }
+
+
+
+   /***************************************************************************
+    ** A corrupt snapshot is ignored and replaced.
+    ***************************************************************************/
+   @Test
+   void ignores_corrupt_snapshot(@TempDir Path tmp) throws Exception
+   {
+      Path config = tmp.resolve("qctl.yaml");
+      Path cache  = tmp.resolve("cache");
+      Files.writeString(config, "log:\n  level: debug\n");
+      ConfigLoader.loadAndValidate(config, new HashMap<>(), cache);
+      try(Stream<Path> files = Files.list(cache.resolve("snapshots")))
+      {
+         for(Path f : files.toList())
+         {
+            Files.write(f, new byte[] { 1, 2, 3 });
+         }
+      }
+      assertThat(ConfigLoader.loadAndValidate(config, new HashMap<>(), cache).at("/log/level").asText()).isEqualTo("debug");
+   }
+
+
+
+   /***************************************************************************
+    ** Counts fingerprint markers.
+    ***************************************************************************/
+   private static long markers(Path dir) throws Exception
+   {
+      try(Stream<Path> files = Files.list(dir))
+      {
+         return files.count();
+      }
+   }
 }
@@ -0,0 +1,106 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.config;
+
+
+import java.net.URI;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.qrun.qctl.shared.json.Json;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/***************************************************************************
+ ** Tests for {@link Config}.
+ ***************************************************************************/
+class ConfigTest
+{
+   /***************************************************************************
+    ** Hot keys are typed, with defaults when absent.
+    ***************************************************************************/
+   @Test
+   void reads_hot_keys() throws Exception
+   {
+      Config config = new Config(tree("{\"output\":\"json\",\"endpoints\":{\"api\":\"https://api.qrun.io/v1\"}}"));
+      assertThat(config.output()).isEqualTo("json");
+      assertThat(config.apiEndpoint()).contains(URI.create("https://api.qrun.io/v1"));
+
+      Config empty = new Config(tree("{}"));
+      assertThat(empty.output()).isEqualTo("text");
+      assertThat(empty.apiEndpoint()).isEmpty();
+      assertThatThrownBy(() -> new Config(tree("{\"endpoints\":{\"api\":\"not a uri\"}}"))).hasMessageContaining("/endpoints/api");
+   }
+
+
+
+   /***************************************************************************
+    ** Profiles overlay the base configuration, once per name.
+    ***************************************************************************/
+   @Test
+   void overlays_profiles() throws Exception
+   {
+      Config config = new Config(tree(
+         "{\"output\":\"text\",\"qbit\":{\"lockfile\":\"qbit.lock\"},\"endpoints\":{\"api\":\"https://api.qrun.io\"},"
+            + "\"profiles\":{\"staging\":{\"endpoints\":{\"api\":\"https://staging.qrun.io\"}}}}"));
+
+      Config staging = config.profile("staging");
+      assertThat(staging.apiEndpoint()).contains(URI.create("https://staging.qrun.io"));
+      assertThat(staging.at("/qbit")).isSameAs(config.at("/qbit"));
+      assertThat(staging.at("/profiles").isMissingNode()).isTrue();
+      assertThat(config.at("/profiles/staging").isObject()).isTrue();
+      assertThat(config.apiEndpoint()).contains(URI.create("https://api.qrun.io"));
+      assertThat(config.profile("staging")).isSameAs(staging);
+      assertThat(config.profile("missing")).isSameAs(config);
+   }
+
+
+
+   /***************************************************************************
+    ** Without endpoints.api the local default is used.
+    ***************************************************************************/
+   @Test
+   void falls_back_to_default_api_endpoint() throws Exception
+   {
+      assertThat(new Config(tree("{\"output\":\"text\"}")).apiEndpointOrDefault()).isEqualTo(Config.DEFAULT_API_ENDPOINT);
+      assertThat(new Config(tree("{\"endpoints\":{\"api\":\"https://api.qrun.io\"}}")).apiEndpointOrDefault())
+         .isEqualTo(URI.create("https://api.qrun.io"));
+   }
+
+
+
+   /***************************************************************************
+    ** API paths resolve under the endpoint's base path, trailing slash or not.
+    ***************************************************************************/
+   @Test
+   void resolves_api_paths_under_endpoint_base_path() throws Exception
+   {
+      Config gateway = new Config(tree("{\"endpoints\":{\"api\":\"https://gw.example.com/qrun\"}}"));
+      assertThat(gateway.apiUri("v1/apps/shop/status?env=dev"))
+         .isEqualTo(URI.create("https://gw.example.com/qrun/v1/apps/shop/status?env=dev"));
+      assertThat(Config.apiUri(URI.create("https://gw.example.com/qrun/"), "v1/releases"))
+         .isEqualTo(URI.create("https://gw.example.com/qrun/v1/releases"));
+      assertThat(Config.apiUri(URI.create("http://localhost:4010"), "v1/artifacts"))
+         .isEqualTo(URI.create("http://localhost:4010/v1/artifacts"));
+   }
+
+
+
+   /***************************************************************************
+    ** Parses JSON.
+    ***************************************************************************/
+   private static JsonNode tree(String json) throws Exception
+   {
+      return Json.mapper().readTree(json);
+   }
+}
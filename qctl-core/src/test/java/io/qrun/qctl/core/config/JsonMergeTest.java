@@ -0,0 +1,70 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.config;
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.qrun.qctl.shared.json.Json;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/***************************************************************************
+ ** Tests for {@link JsonMerge}.
+ ***************************************************************************/
+class JsonMergeTest
+{
+   /***************************************************************************
+    ** Objects merge recursively, other values replace, nulls keep the base.
+    ***************************************************************************/
+   @Test
+   void merges_objects_recursively() throws Exception
+   {
+      JsonNode base     = tree("{\"output\":\"text\",\"qrun\":{\"defaultEnv\":\"dev\",\"release\":{\"channel\":\"stable\"}},\"tags\":[1]}");
+      JsonNode override = tree("{\"qrun\":{\"release\":{\"rollback\":true}},\"tags\":[2],\"output\":null,\"log\":{\"level\":\"debug\"}}");
+
+      assertThat(JsonMerge.merge(base, override)).isEqualTo(tree(
+         "{\"output\":\"text\",\"qrun\":{\"defaultEnv\":\"dev\",\"release\":{\"channel\":\"stable\",\"rollback\":true}},\"tags\":[2],"
+            + "\"log\":{\"level\":\"debug\"}}"));
+   }
+
+
+
+   /***************************************************************************
+    ** Untouched subtrees are shared and neither input is modified.
+    ***************************************************************************/
+   @Test
+   void shares_untouched_subtrees() throws Exception
+   {
+      JsonNode base     = tree("{\"qbit\":{\"resolution\":{\"dedupe\":true}},\"qrun\":{\"defaultEnv\":\"dev\",\"release\":{\"channel\":\"stable\"}}}");
+      JsonNode override = tree("{\"qrun\":{\"defaultEnv\":\"prod\"}}");
+      JsonNode before   = base.deepCopy();
+
+      JsonNode merged = JsonMerge.merge(base, override);
+      assertThat(merged.get("qbit")).isSameAs(base.get("qbit"));
+      assertThat(merged.at("/qrun/release")).isSameAs(base.at("/qrun/release"));
+      assertThat(merged.at("/qrun/defaultEnv").asText()).isEqualTo("prod");
+      assertThat(base).isEqualTo(before);
+      assertThat(JsonMerge.merge(base, tree("{\"qrun\":{}}"))).isSameAs(base);
+   }
+
+
+
+   /***************************************************************************
+    ** Parses JSON.
+    ***************************************************************************/
+   private static JsonNode tree(String json) throws Exception
+   {
+      return Json.mapper().readTree(json);
+   }
+}
@@ -0,0 +1,189 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.daemon;
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests for {@link DaemonServer} and {@link DaemonClient} over a real {@code AF_UNIX} socket.
+ */
+class DaemonServerTest
+{
+   private static final Duration LONG_IDLE = Duration.ofSeconds(30);
+
+   @TempDir
+   Path dir;
+
+   private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+   private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+
+
+   /** Output and exit codes come back per call; {@code daemon stop} ends serving and removes the socket. */
+   @Test
+   void forwards_commands_and_stops_on_request() throws Exception
+   {
+      Path                       socket = dir.resolve("qctl.sock");
+      DaemonServer               server = DaemonServer.bind(socket, LONG_IDLE);
+      CompletableFuture<Boolean> served = serveInBackground(server);
+
+      assertThat(forward(socket, Map.of(), "--version")).hasValue(0);
+      assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("qctl 0.1.0" + System.lineSeparator());
+
+      assertThat(forward(socket, Map.of(), "--bogus")).hasValue(2);
+      assertThat(err.toString(StandardCharsets.UTF_8)).contains("Unknown option: '--bogus'");
+
+      out.reset();
+      assertThat(forward(socket, Map.of(), "daemon", "status")).hasValue(0);
+      assertThat(out.toString(StandardCharsets.UTF_8)).contains("served 2");
+
+      assertThat(forward(socket, Map.of(), "daemon", "stop")).hasValue(0);
+      assertThat(served.get(5, TimeUnit.SECONDS)).isFalse();
+      assertThat(socket).doesNotExist();
+   }
+
+
+
+   /** Commands see the caller's environment, not the daemon's. */
+   @Test
+   @EnabledOnOs(OS.LINUX)
+   void runs_with_the_callers_environment() throws Exception
+   {
+      Path cache = Files.createDirectories(dir.resolve("cache/qctl/http"));
+      Files.writeString(cache.resolve("entry.body"), "x");
+      Path                       socket = dir.resolve("qctl.sock");
+      DaemonServer               server = DaemonServer.bind(socket, LONG_IDLE);
+      CompletableFuture<Boolean> served = serveInBackground(server);
+      try
+      {
+         assertThat(forward(socket, Map.of("XDG_CACHE_HOME", dir.resolve("cache").toString()), "cache", "ls")).hasValue(0);
+         assertThat(out.toString(StandardCharsets.UTF_8)).contains("entry.body");
+      }
+      finally
+      {
+         stopAndWait(server, served);
+      }
+   }
+
+
+
+   /** An idle daemon stops by itself; a socket file nobody listens on is taken over. */
+   @Test
+   void stops_when_idle_and_replaces_a_stale_socket() throws Exception
+   {
+      Path socket = dir.resolve("qctl.sock");
+      Files.writeString(socket, "stale");
+
+      DaemonServer server = DaemonServer.bind(socket, Duration.ofMillis(200));
+      assertThat(serveInBackground(server).get(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(socket).doesNotExist();
+      assertThat(forward(socket, Map.of(), "--version")).isEmpty();
+   }
+
+
+
+   /** A request in another protocol version is declined, so the client runs it locally. */
+   @Test
+   void declines_other_protocol_versions() throws Exception
+   {
+      Path                       socket = dir.resolve("qctl.sock");
+      DaemonServer               server = DaemonServer.bind(socket, LONG_IDLE);
+      CompletableFuture<Boolean> served = serveInBackground(server);
+      try
+      {
+         DaemonProtocol.Request request = new DaemonProtocol.Request(DaemonProtocol.VERSION + 1, dir.toString(), "UTF-8", List.of("--version"), Map.of());
+         assertThat(DaemonClient.forward(socket, request, out, err)).isEmpty();
+         assertThat(out.size()).isZero();
+      }
+      finally
+      {
+         stopAndWait(server, served);
+      }
+   }
+
+
+
+   /** Arguments that need process-local state or stdin are never forwarded. */
+   @Test
+   void keeps_process_local_flags_local()
+   {
+      assertThat(DaemonClient.isForwardable(new String[] { "qrun", "status" })).isTrue();
+      assertThat(DaemonClient.isForwardable(new String[] { "--no-daemon", "qrun", "status" })).isFalse();
+      assertThat(DaemonClient.isForwardable(new String[] { "--record-http=x.json", "qrun", "status" })).isFalse();
+      assertThat(DaemonClient.isForwardable(new String[] { "--output", "json", "qrun", "status" })).isTrue();
+      assertThat(DaemonClient.isForwardable(new String[] { "batch", "--jobs", "4" })).isFalse();
+      assertThat(DaemonClient.isForwardable(new String[] { "batch", "-f", "-" })).isFalse();
+      assertThat(DaemonClient.isForwardable(new String[] { "batch", "-f", "deploy.txt" })).isTrue();
+   }
+
+
+
+   /***************************************************************************
+    ** Sends a request with the test directory as working directory.
+    ***************************************************************************/
+   private OptionalInt forward(Path socket, Map<String, String> env, String... argv)
+   {
+      DaemonProtocol.Request request = new DaemonProtocol.Request(DaemonProtocol.VERSION, dir.toString(), "UTF-8", List.of(argv), env);
+      return DaemonClient.forward(socket, request, out, err);
+   }
+
+
+
+   /***************************************************************************
+    ** Stops the server and waits until serve() has removed the socket, so the
+    ** temp directory can be cleaned up.
+    ***************************************************************************/
+   private static void stopAndWait(DaemonServer server, CompletableFuture<Boolean> served) throws Exception
+   {
+      server.stop();
+      served.get(5, TimeUnit.SECONDS);
+   }
+
+
+
+   /***************************************************************************
+    ** Runs serve() on a background thread.
+    ***************************************************************************/
+   private static CompletableFuture<Boolean> serveInBackground(DaemonServer server)
+   {
+      CompletableFuture<Boolean> result = new CompletableFuture<>();
+      Thread.ofPlatform().daemon().start(() ->
+      {
+         try
+         {
+            result.complete(server.serve());
+         }
+         catch(Exception e)
+         {
+            result.completeExceptionally(e);
+         }
+      });
+      return result;
+   }
+}
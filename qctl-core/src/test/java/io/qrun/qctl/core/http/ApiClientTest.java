@@ -14,12 +14,23 @@ package io.qrun.qctl.core.http;
 
 
 import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.qrun.qctl.core.sys.Invocation;
 import io.qrun.qctl.shared.api.ProblemDetail;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -100,11 +111,299 @@ class ApiClientTest
 
 
 
+   /** Async calls never exceed the configured in-flight limit and all complete. */
+   @Test
+   void async_calls_respect_in_flight_limit() throws Exception
+   {
+      AtomicInteger                                            active  = new AtomicInteger();
+      AtomicInteger                                            peak    = new AtomicInteger();
+      ConcurrentLinkedQueue<CompletableFuture<HttpResponse<byte[]>>> pending = new ConcurrentLinkedQueue<>();
+      ApiClient api =
+         new ApiClient(TEST_TIMEOUT, b -> {}, 2)
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+               CompletableFuture<HttpResponse<byte[]>> f = new CompletableFuture<>();
+               pending.add(f);
+               return f.whenComplete((r, e) -> active.decrementAndGet());
+            }
+         };
+
+      List<CompletableFuture<Map>> calls = new ArrayList<>();
+      for(int i = 0; i < 6; i++)
+      {
+         calls.add(api.getJsonAsync(URI.create("http://localhost/app/" + i), Map.class));
+      }
+
+      int completed = 0;
+      while(completed < calls.size())
+      {
+         CompletableFuture<HttpResponse<byte[]>> next = pending.poll();
+         if(next == null)
+         {
+            Thread.sleep(5);
+            continue;
+         }
+         assertThat(active.get()).isLessThanOrEqualTo(2);
+         next.complete(new SimpleResponse<>(HTTP_OK, "{\"ok\":true}".getBytes()));
+         completed++;
+      }
+
+      for(CompletableFuture<Map> call : calls)
+      {
+         assertThat(call.get(1, TimeUnit.SECONDS)).containsEntry("ok", true);
+      }
+      assertThat(peak.get()).isEqualTo(2);
+   }
+
+
+
+   /** Async calls retry retryable statuses and surface mapped exit codes through await. */
+   @Test
+   void async_retries_then_maps_error() throws Exception
+   {
+      AtomicInteger attempts = new AtomicInteger();
+      byte[]        body     = problem(HTTP_SERVICE_UNAVAILABLE).getBytes();
+      ApiClient api =
+         new ApiClient(TEST_TIMEOUT, b -> {})
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               attempts.incrementAndGet();
+               return CompletableFuture.completedFuture(new SimpleResponse<>(HTTP_SERVICE_UNAVAILABLE, body));
+            }
+         };
+
+      CompletableFuture<Map> call = api.getJsonAsync(URI.create("http://localhost/x"), Map.class);
+      assertThatThrownBy(() -> ApiClient.await(call))
+         .isInstanceOf(ApiClient.ApiException.class)
+         .satisfies(ex -> assertThat(((ApiClient.ApiException) ex).exitCode).isEqualTo(3));
+      assertThat(attempts.get()).isEqualTo(3);
+   }
+
+
+
+   /** Concurrent identical GETs share one exchange and one decoded result; others are not coalesced. */
+   @Test
+   void identical_concurrent_gets_share_one_exchange() throws Exception
+   {
+      AtomicInteger                                                  sent    = new AtomicInteger();
+      ConcurrentLinkedQueue<CompletableFuture<HttpResponse<byte[]>>> pending = new ConcurrentLinkedQueue<>();
+      ApiClient api =
+         new ApiClient(TEST_TIMEOUT, b -> {})
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               sent.incrementAndGet();
+               CompletableFuture<HttpResponse<byte[]>> f = new CompletableFuture<>();
+               pending.add(f);
+               return f;
+            }
+         };
+
+      URI                          uri   = URI.create("http://localhost/v1/qbits/core/versions");
+      List<CompletableFuture<Map>> calls = new ArrayList<>();
+      for(int i = 0; i < 5; i++)
+      {
+         calls.add(api.getJsonAsync(uri, Map.class));
+      }
+      CompletableFuture<Map> other = api.getJsonAsync(URI.create("http://localhost/v1/qbits/util/versions"), Map.class);
+
+      while(pending.size() < 2)
+      {
+         Thread.sleep(5);
+      }
+      CompletableFuture<HttpResponse<byte[]>> next;
+      while((next = pending.poll()) != null)
+      {
+         next.complete(new SimpleResponse<>(HTTP_OK, "{\"ok\":true}".getBytes()));
+      }
+
+      Map first = calls.get(0).get(1, TimeUnit.SECONDS);
+      for(CompletableFuture<Map> call : calls)
+      {
+         assertThat(call.get(1, TimeUnit.SECONDS)).isSameAs(first);
+      }
+      assertThat(other.get(1, TimeUnit.SECONDS)).isNotSameAs(first);
+      assertThat(sent.get()).isEqualTo(2);
+
+      CompletableFuture<Map> again = api.getJsonAsync(uri, Map.class);
+      while(pending.isEmpty())
+      {
+         Thread.sleep(5);
+      }
+      assertThat(sent.get()).isEqualTo(3);
+      pending.poll().complete(new SimpleResponse<>(HTTP_OK, "{}".getBytes()));
+      again.get(1, TimeUnit.SECONDS);
+   }
+
+
+
+   /** Identical GETs from separate clients share one exchange; other credentials get their own. */
+   @Test
+   void identical_gets_share_one_exchange_across_clients() throws Exception
+   {
+      AtomicInteger                                                  sent    = new AtomicInteger();
+      ConcurrentLinkedQueue<CompletableFuture<HttpResponse<byte[]>>> pending = new ConcurrentLinkedQueue<>();
+      List<ApiClient>                                                clients = new ArrayList<>();
+      for(String key : List.of("alpha", "alpha", "beta"))
+      {
+         clients.add(new ApiClient(TEST_TIMEOUT, b -> b.header("X-API-Key", key))
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               sent.incrementAndGet();
+               CompletableFuture<HttpResponse<byte[]>> f = new CompletableFuture<>();
+               pending.add(f);
+               return f;
+            }
+         });
+      }
+
+      URI                          uri   = URI.create("http://localhost/v1/apps/shared/status");
+      List<CompletableFuture<Map>> calls = new ArrayList<>();
+      for(ApiClient api : clients)
+      {
+         calls.add(api.getJsonAsync(uri, Map.class));
+      }
+
+      while(pending.size() < 2)
+      {
+         Thread.sleep(5);
+      }
+      CompletableFuture<HttpResponse<byte[]>> next;
+      while((next = pending.poll()) != null)
+      {
+         next.complete(new SimpleResponse<>(HTTP_OK, "{\"ok\":true}".getBytes()));
+      }
+
+      assertThat(calls.get(1).get(1, TimeUnit.SECONDS)).isSameAs(calls.get(0).get(1, TimeUnit.SECONDS));
+      assertThat(calls.get(2).get(1, TimeUnit.SECONDS)).isNotSameAs(calls.get(0).get());
+      assertThat(sent.get()).isEqualTo(2);
+   }
+
+
+
+   /** Pipeline stages run as the invocation that created the client, not the thread completing the exchange. */
+   @Test
+   void pipeline_runs_as_the_creating_invocation() throws Exception
+   {
+      Invocation                              mine    = new Invocation(Map.of("QCTL_TEST_CALLER", "mine"), null, null, null);
+      Invocation                              stale   = new Invocation(Map.of("QCTL_TEST_CALLER", "stale"), null, null, null);
+      CompletableFuture<HttpResponse<byte[]>> pending = new CompletableFuture<>();
+      AtomicInteger                           sent    = new AtomicInteger();
+      ApiClient api = mine.call(() ->
+         new ApiClient(TEST_TIMEOUT, b -> {})
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               sent.incrementAndGet();
+               return pending;
+            }
+         });
+
+      CompletableFuture<String> seen = api.getJsonAsync(URI.create("http://localhost/v1/invocation"), Map.class)
+         .thenApply(m -> Invocation.getenv("QCTL_TEST_CALLER"));
+      while(sent.get() == 0)
+      {
+         Thread.sleep(5);
+      }
+      stale.call(() -> pending.complete(new SimpleResponse<>(HTTP_OK, "{}".getBytes())));
+
+      assertThat(seen.get(1, TimeUnit.SECONDS)).isEqualTo("mine");
+   }
+
+
+
+   /** Streamed array elements reach the consumer one by one, in order. */
+   @Test
+   void stream_json_hands_elements_to_consumer() throws Exception
+   {
+      StringBuilder json = new StringBuilder("[");
+      for(int i = 0; i < 500; i++)
+      {
+         json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append('}');
+      }
+      json.append(']');
+      ApiClient api =
+         new ApiClient(TEST_TIMEOUT, b -> {})
+         {
+            @Override
+            protected HttpResponse<InputStream> sendOnceStreaming(HttpRequest req)
+            {
+               return new SimpleResponse<>(HTTP_OK, new ByteArrayInputStream(json.toString().getBytes()));
+            }
+         };
+
+      List<Object> ids   = new ArrayList<>();
+      long         count = api.streamJson(URI.create("http://localhost/v1/qbits"), Map.class, m -> ids.add(m.get("id")));
+      assertThat(count).isEqualTo(500);
+      assertThat(ids).hasSize(500).startsWith(0, 1, 2).endsWith(499);
+   }
+
+
+
+   /** Streaming requests map error statuses and reject truncated bodies. */
+   @Test
+   void stream_json_maps_errors() throws Exception
+   {
+      byte[] notFound = problem(HTTP_NOT_FOUND).getBytes();
+      ApiClient api =
+         new ApiClient(TEST_TIMEOUT, b -> {})
+         {
+            @Override
+            protected HttpResponse<InputStream> sendOnceStreaming(HttpRequest req)
+            {
+               if(req.uri().getPath().endsWith("/missing"))
+               {
+                  return new SimpleResponse<>(HTTP_NOT_FOUND, new ByteArrayInputStream(notFound));
+               }
+               return new SimpleResponse<>(HTTP_OK, new ByteArrayInputStream("[{\"id\":1},{\"id\":".getBytes()));
+            }
+         };
+
+      assertThatThrownBy(() -> api.streamJson(URI.create("http://localhost/missing"), Map.class, m -> {}))
+         .isInstanceOf(ApiClient.ApiException.class)
+         .satisfies(ex -> assertThat(((ApiClient.ApiException) ex).exitCode).isEqualTo(5));
+      assertThatThrownBy(() -> api.streamJson(URI.create("http://localhost/truncated"), Map.class, m -> {}))
+         .isInstanceOf(IOException.class);
+   }
+
+
+
+   /** Streamed uploads get a timeout stretched by their length, so a stalled one still ends. */
+   @Test
+   void upload_timeout_scales_with_body_length() throws Exception
+   {
+      ConcurrentLinkedQueue<HttpRequest> seen = new ConcurrentLinkedQueue<>();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            seen.add(req);
+            return new BufferedResponse(req, 202, Map.of(), new byte[0]);
+         }
+      };
+      api.upload("PATCH", URI.create("http://localhost/v2/uploads/1"), HttpRequest.BodyPublishers.ofByteArray(new byte[640 * 1024]), Map.of());
+      api.upload("PATCH", URI.create("http://localhost/v2/uploads/1"), HttpRequest.BodyPublishers.noBody(), Map.of());
+      assertThat(seen.poll().timeout()).contains(TEST_TIMEOUT.plusSeconds(10));
+      assertThat(seen.poll().timeout()).contains(TEST_TIMEOUT);
+   }
+
+
+
    /** Helper asserting exit code mapping for a status. */
    private void assertExitForStatus(int status, int expectedExit) throws Exception
    {
       byte[]               body = problem(status).getBytes();
-      HttpResponse<byte[]> resp = new SimpleResponse(status, body);
+      HttpResponse<byte[]> resp = new SimpleResponse<>(status, body);
       ApiClient client =
          new ApiClient(TEST_TIMEOUT, b -> {})
          {
@@ -125,17 +424,17 @@ class ApiClientTest
    /***************************************************************************
     **
     ***************************************************************************/
-   private static final class SimpleResponse implements HttpResponse<byte[]>
+   private static final class SimpleResponse<B> implements HttpResponse<B>
    {
-      private final int    status;
-      private final byte[] body;
+      private final int status;
+      private final B   body;
 
 
 
       /***************************************************************************
        **
        ***************************************************************************/
-      SimpleResponse(int status, byte[] body)
+      SimpleResponse(int status, B body)
       {
          this.status = status;
          this.body = body;
@@ -169,7 +468,7 @@ class ApiClientTest
        **
        ***************************************************************************/
       @Override
-      public Optional<HttpResponse<byte[]>> previousResponse()
+      public Optional<HttpResponse<B>> previousResponse()
       {
          return Optional.empty();
       }
@@ -191,7 +490,7 @@ class ApiClientTest
        **
        ***************************************************************************/
       @Override
-      public byte[] body()
+      public B body()
       {
          return body;
       }
@@ -244,7 +543,7 @@ class ApiClientTest
        ***************************************************************************/
       CapturingClient(int status, String body)
       {
-         this.response = new SimpleResponse(status, body.getBytes());
+         this.response = new SimpleResponse<>(status, body.getBytes());
       }
    }
 }
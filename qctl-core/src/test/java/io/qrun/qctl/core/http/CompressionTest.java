@@ -0,0 +1,167 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests for {@link Compression} response decoding and gzip request bodies in {@link ApiClient}.
+ */
+class CompressionTest
+{
+   private static final Duration TEST_TIMEOUT = Duration.ofSeconds(1);
+   private static final String   JSON         = "[" + "{\"name\":\"template\"},".repeat(200) + "{}]";
+
+
+
+   /** gzip bodies are decoded by both the buffered and the streaming handler. */
+   @Test
+   void decodes_gzip_responses() throws Exception
+   {
+      byte[] gz = gzip(JSON.getBytes(StandardCharsets.UTF_8));
+
+      byte[] buffered = deliver(Compression.ofByteArray(), gz, "gzip");
+      assertThat(new String(buffered, StandardCharsets.UTF_8)).isEqualTo(JSON);
+
+      try(InputStream in = deliver(Compression.ofInputStream(), gz, "gzip"))
+      {
+         assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(JSON);
+      }
+
+      byte[] plain = deliver(Compression.ofByteArray(), JSON.getBytes(StandardCharsets.UTF_8), null);
+      assertThat(new String(plain, StandardCharsets.UTF_8)).isEqualTo(JSON);
+   }
+
+
+
+   /** Large bodies are gzipped once the host advertises support; a 415 falls back to identity. */
+   @Test
+   void compresses_large_posts_when_advertised() throws Exception
+   {
+      ConcurrentLinkedQueue<HttpRequest> posts = new ConcurrentLinkedQueue<>();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            if("GET".equals(req.method()))
+            {
+               return new BufferedResponse(req, 200, Map.of("Accept-Encoding", List.of("gzip")), "{}".getBytes());
+            }
+            posts.add(req);
+            boolean gz = req.headers().firstValue("Content-Encoding").isPresent();
+            return new BufferedResponse(req, gz && posts.size() == 2 ? 415 : 200, Map.of(), "{}".getBytes());
+         }
+      }.withRequestCompression(1024);
+
+      URI host = URI.create("http://compress.test/v1/releases");
+      api.postJson(host, Map.of("small", true), Map.class);
+      api.getJson(URI.create("http://compress.test/v1/templates"), Map.class);
+      api.postJson(host, Map.of("notes", JSON), Map.class);
+      api.postJson(host, Map.of("notes", JSON), Map.class);
+      api.postJson(host, Map.of("notes", JSON), Map.class);
+
+      List<String> encodings = posts.stream().map(r -> r.headers().firstValue("Content-Encoding").orElse("identity")).toList();
+      assertThat(encodings).containsExactly("identity", "gzip", "identity", "identity", "identity");
+      HttpRequest compressed = posts.stream().skip(1).findFirst().orElseThrow();
+      assertThat(compressed.bodyPublisher().orElseThrow().contentLength()).isLessThan(JSON.length() / 4);
+      assertThat(compressed.headers().firstValue("Accept-Encoding")).contains(Compression.ACCEPT_ENCODING);
+   }
+
+
+
+   /***************************************************************************
+    ** Feeds a body through a handler as if it arrived on the wire.
+    ***************************************************************************/
+   private static <T> T deliver(HttpResponse.BodyHandler<T> handler, byte[] body, String encoding) throws Exception
+   {
+      Map<String, List<String>> headers = encoding == null ? Map.of() : Map.of("Content-Encoding", List.of(encoding));
+      HttpResponse.ResponseInfo info = new HttpResponse.ResponseInfo()
+      {
+         @Override
+         public int statusCode()
+         {
+            return 200;
+         }
+
+
+
+         @Override
+         public HttpHeaders headers()
+         {
+            return HttpHeaders.of(headers, (k, v) -> true);
+         }
+
+
+
+         @Override
+         public HttpClient.Version version()
+         {
+            return HttpClient.Version.HTTP_1_1;
+         }
+      };
+
+      HttpResponse.BodySubscriber<T> subscriber = handler.apply(info);
+      subscriber.onSubscribe(new Flow.Subscription()
+      {
+         @Override
+         public void request(long n)
+         {
+         }
+
+
+
+         @Override
+         public void cancel()
+         {
+         }
+      });
+      subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+      subscriber.onComplete();
+      return subscriber.getBody().toCompletableFuture().get(1, TimeUnit.SECONDS);
+   }
+
+
+
+   /***************************************************************************
+    ** Gzips bytes.
+    ***************************************************************************/
+   private static byte[] gzip(byte[] bytes) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try(GZIPOutputStream gz = new GZIPOutputStream(out))
+      {
+         gz.write(bytes);
+      }
+      return out.toByteArray();
+   }
+}
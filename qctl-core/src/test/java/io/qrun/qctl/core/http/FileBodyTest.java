@@ -0,0 +1,136 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests for {@link FileBody} streaming, same-pass digest and progress.
+ */
+class FileBodyTest
+{
+   /** The whole file is delivered in bounded buffers and hashed on the way. */
+   @Test
+   void streams_file_and_digests(@TempDir Path dir) throws Exception
+   {
+      byte[] data = new byte[300_000];
+      new Random(7).nextBytes(data);
+      Path file = Files.write(dir.resolve("artifact.tar"), data);
+
+      AtomicLong reported = new AtomicLong();
+      FileBody   body     = FileBody.of(file).withProgress((done, total, rate) -> reported.set(done));
+      assertThatThrownBy(body::digest).isInstanceOf(IllegalStateException.class);
+
+      assertThat(drain(body, 1)).isEqualTo(data);
+      assertThat(body.contentLength()).isEqualTo(data.length);
+      assertThat(body.digest()).isEqualTo("sha256:" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)));
+      assertThat(reported.get()).isEqualTo(data.length);
+
+      // A retry starts a fresh pass with the same result
+      assertThat(drain(body, Long.MAX_VALUE)).isEqualTo(data);
+      assertThat(body.bytesSent()).isEqualTo(data.length);
+   }
+
+
+
+   /** A region sends only its bytes. */
+   @Test
+   void streams_region(@TempDir Path dir) throws Exception
+   {
+      Path file = Files.writeString(dir.resolve("f"), "0123456789");
+      assertThat(new String(drain(FileBody.region(file, 3, 4), 2))).isEqualTo("3456");
+   }
+
+
+
+   /** Regions continuing each other's digest hash the whole file, also when a region is retried. */
+   @Test
+   void chains_digest_across_regions(@TempDir Path dir) throws Exception
+   {
+      byte[] data = new byte[200_000];
+      new Random(11).nextBytes(data);
+      Path file = Files.write(dir.resolve("artifact.tar"), data);
+
+      FileBody first  = FileBody.region(file, 0, 70_000);
+      drain(first, 1);
+      FileBody second = FileBody.region(file, 70_000, 130_000).continuingDigest(first.digestState());
+      drain(second, 1);
+      drain(second, 1);
+
+      assertThat(second.digest()).isEqualTo("sha256:" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)));
+   }
+
+
+
+   /** Subscribes, requesting {@code batch} buffers at a time, and collects the body. */
+   private static byte[] drain(FileBody body, long batch) throws Exception
+   {
+      ByteArrayOutputStream     out  = new ByteArrayOutputStream();
+      CompletableFuture<byte[]> done = new CompletableFuture<>();
+      body.subscribe(new Flow.Subscriber<ByteBuffer>()
+      {
+         private Flow.Subscription subscription;
+         private long              outstanding;
+
+         @Override
+         public void onSubscribe(Flow.Subscription s)
+         {
+            subscription = s;
+            outstanding = batch;
+            s.request(batch);
+         }
+
+         @Override
+         public void onNext(ByteBuffer item)
+         {
+            assertThat(item.remaining()).isLessThanOrEqualTo(64 * 1024);
+            byte[] b = new byte[item.remaining()];
+            item.get(b);
+            out.writeBytes(b);
+            if(--outstanding == 0)
+            {
+               outstanding = batch;
+               subscription.request(batch);
+            }
+         }
+
+         @Override
+         public void onError(Throwable t)
+         {
+            done.completeExceptionally(t);
+         }
+
+         @Override
+         public void onComplete()
+         {
+            done.complete(out.toByteArray());
+         }
+      });
+      return done.get();
+   }
+}
@@ -0,0 +1,232 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests for {@link HedgePolicy} and hedged GETs in {@link ApiClient}.
+ */
+class HedgePolicyTest
+{
+   private static final Duration TEST_TIMEOUT = Duration.ofSeconds(5);
+   private static final URI      STATUS       = URI.create("http://hedge.test/v1/apps/demo/status");
+
+
+
+   /** A straggling primary is overtaken by the hedge. */
+   @Test
+   void hedge_wins_over_straggler() throws Exception
+   {
+      AtomicInteger sent = new AtomicInteger();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+         {
+            boolean first = sent.incrementAndGet() == 1;
+            CompletableFuture<HttpResponse<byte[]>> f = new CompletableFuture<>();
+            String body = first ? "{\"from\":\"primary\"}" : "{\"from\":\"hedge\"}";
+            f.completeOnTimeout(new BufferedResponse(req, 200, Map.of(), body.getBytes()), first ? 3000 : 10, TimeUnit.MILLISECONDS);
+            return f;
+         }
+      }.withHedging(new HedgePolicy(95, 100, Duration.ofMillis(50)));
+
+      long start = System.nanoTime();
+      Map  res   = api.getJsonAsync(STATUS, Map.class).get(2, TimeUnit.SECONDS);
+      assertThat(res).containsEntry("from", "hedge");
+      assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+      assertThat(sent.get()).isEqualTo(2);
+   }
+
+
+
+   /** Once the hedge wins, the straggling primary is cancelled instead of running to completion. */
+   @Test
+   void losing_request_is_cancelled() throws Exception
+   {
+      CompletableFuture<HttpResponse<byte[]>> straggler = new CompletableFuture<>();
+      AtomicInteger                           sent      = new AtomicInteger();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+         {
+            if(sent.incrementAndGet() == 1)
+            {
+               return straggler;
+            }
+            return CompletableFuture.completedFuture(new BufferedResponse(req, 200, Map.of(), "{\"from\":\"hedge\"}".getBytes()));
+         }
+      }.withHedging(new HedgePolicy(95, 100, Duration.ofMillis(50)));
+
+      Map res = api.getJsonAsync(STATUS, Map.class).get(2, TimeUnit.SECONDS);
+      assertThat(res).containsEntry("from", "hedge");
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+      while(!straggler.isDone() && System.nanoTime() < deadline)
+      {
+         Thread.sleep(10);
+      }
+      assertThat(straggler).isCancelled();
+      assertThat(sent.get()).isEqualTo(2);
+   }
+
+
+
+   /** Primary and hedge carry equal requests; each still reports its own time to first byte. */
+   @Test
+   void hedged_attempts_keep_their_own_first_byte_time() throws Exception
+   {
+      AtomicInteger requests = new AtomicInteger();
+      HttpServer    server   = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext("/", exchange ->
+      {
+         boolean primary = requests.incrementAndGet() == 1;
+         exchange.sendResponseHeaders(200, 0);
+         try(OutputStream out = exchange.getResponseBody())
+         {
+            out.flush();
+            if(primary)
+            {
+               // Headers now, body after the hedge has come and gone
+               Thread.sleep(500);
+            }
+            out.write("{}".getBytes());
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+      });
+      server.start();
+      try
+      {
+         ConcurrentLinkedQueue<HttpAttempt> attempts = new ConcurrentLinkedQueue<>();
+         ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+            .withListener(new HttpListener()
+            {
+               @Override
+               public void onAttempt(HttpAttempt attempt)
+               {
+                  attempts.add(attempt);
+               }
+            })
+            .withHedging(new HedgePolicy(95, 100, Duration.ofMillis(50)));
+
+         URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/apps/demo/status");
+         api.getJsonAsync(uri, Map.class).get(2, TimeUnit.SECONDS);
+         long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+         while(attempts.size() < 2 && System.nanoTime() < deadline)
+         {
+            Thread.sleep(10);
+         }
+
+         assertThat(attempts).hasSize(2);
+         assertThat(attempts).allMatch(a -> a.ttfbNanos >= 0 && a.ttfbNanos <= a.durationNanos);
+      }
+      finally
+      {
+         server.stop(0);
+      }
+   }
+
+
+
+   /** Fast answers and an exhausted budget send no duplicates. */
+   @Test
+   void budget_and_fast_answers_suppress_hedges() throws Exception
+   {
+      AtomicInteger sent = new AtomicInteger();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req) throws InterruptedException
+         {
+            sent.incrementAndGet();
+            Thread.sleep(100);
+            return new BufferedResponse(req, 200, Map.of(), "{}".getBytes());
+         }
+      }.withHedging(new HedgePolicy(95, 0, Duration.ofMillis(10)));
+      api.getJson(STATUS, Map.class);
+      assertThat(sent.get()).isEqualTo(1);
+
+      api.withHedging(new HedgePolicy(95, 100, Duration.ofSeconds(10)));
+      api.getJson(STATUS, Map.class);
+      assertThat(sent.get()).isEqualTo(2);
+   }
+
+
+
+   /** After warm-up the delay follows the configured percentile of recent latency. */
+   @Test
+   void delay_tracks_recent_percentile()
+   {
+      HedgePolicy policy = new HedgePolicy(90, 10, Duration.ofMillis(250));
+      assertThat(policy.delayMs("GET /x")).isEqualTo(250);
+      for(int i = 1; i <= 100; i++)
+      {
+         policy.record("GET /x", i);
+      }
+      assertThat(policy.delayMs("GET /x")).isEqualTo(90);
+      for(int i = 0; i < HedgePolicy.WINDOW; i++)
+      {
+         policy.record("GET /x", 5);
+      }
+      assertThat(policy.delayMs("GET /x")).isEqualTo(5);
+      assertThat(policy.delayMs("GET /y")).isEqualTo(250);
+   }
+
+
+
+   /** The budget is never rounded up: one request in ten may hedge, a single request may not. */
+   @Test
+   void budget_is_not_rounded_up()
+   {
+      HedgePolicy policy = new HedgePolicy(95, 10, Duration.ofMillis(250));
+      policy.delayMs("GET /x");
+      assertThat(policy.tryHedge()).isFalse();
+      for(int i = 1; i < 10; i++)
+      {
+         policy.delayMs("GET /x");
+      }
+      assertThat(policy.tryHedge()).isTrue();
+      assertThat(policy.tryHedge()).isFalse();
+   }
+
+
+
+   /** Callers asking for the same settings share one policy, so samples outlive a single command. */
+   @Test
+   void shared_policy_is_reused_per_settings()
+   {
+      assertThat(HedgePolicy.shared(95, 10)).isSameAs(HedgePolicy.shared(95, 10));
+      assertThat(HedgePolicy.shared(90, 10)).isNotSameAs(HedgePolicy.shared(95, 10));
+   }
+}
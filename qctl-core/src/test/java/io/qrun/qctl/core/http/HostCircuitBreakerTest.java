@@ -0,0 +1,197 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests for {@link HostCircuitBreaker} state transitions and fast-fail in {@link ApiClient}.
+ */
+class HostCircuitBreakerTest
+{
+   private static final String HOST = "api.example:443";
+
+
+
+   /** The circuit opens once the window's failure rate crosses the threshold. */
+   @Test
+   void opens_on_failure_rate()
+   {
+      AtomicLong         now     = new AtomicLong(0);
+      HostCircuitBreaker breaker = new HostCircuitBreaker(now::get);
+      for(int i = 0; i < 6; i++)
+      {
+         breaker.onResult(HOST, 200);
+      }
+      for(int i = 0; i < 5; i++)
+      {
+         breaker.onResult(HOST, 503);
+      }
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.CLOSED);
+
+      breaker.onResult(HOST, -1);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.OPEN);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.REJECTED);
+      assertThat(breaker.retryInMs(HOST)).isPositive();
+      assertThat(breaker.state("other:443")).isEqualTo(HostCircuitBreaker.State.CLOSED);
+   }
+
+
+
+   /** Old outcomes roll out of the window; 4xx and 429 never count as failures. */
+   @Test
+   void window_rolls_and_ignores_client_errors()
+   {
+      AtomicLong         now     = new AtomicLong(0);
+      HostCircuitBreaker breaker = new HostCircuitBreaker(now::get);
+      for(int i = 0; i < 9; i++)
+      {
+         breaker.onResult(HOST, 500);
+      }
+      now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+      breaker.onResult(HOST, 500);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.CLOSED);
+
+      for(int i = 0; i < 20; i++)
+      {
+         breaker.onResult(HOST, i % 2 == 0 ? 404 : 429);
+      }
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.CLOSED);
+   }
+
+
+
+   /** After the cool-down one probe is admitted; success closes, failure re-opens for longer. */
+   @Test
+   void single_probe_decides()
+   {
+      AtomicLong         now     = new AtomicLong(0);
+      HostCircuitBreaker breaker = new HostCircuitBreaker(now::get);
+      trip(breaker);
+      long firstOpen = breaker.retryInMs(HOST);
+
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(firstOpen));
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.HALF_OPEN);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.PROBE);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.REJECTED);
+      breaker.onResult(HOST, HostCircuitBreaker.Permit.PROBE, 503);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.OPEN);
+      assertThat(breaker.retryInMs(HOST)).isGreaterThan(firstOpen);
+
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(breaker.retryInMs(HOST)));
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.PROBE);
+      breaker.onResult(HOST, HostCircuitBreaker.Permit.PROBE, 200);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.CLOSED);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.CALL);
+   }
+
+
+
+   /** A straggler admitted before the circuit opened cannot decide the half-open state. */
+   @Test
+   void only_the_probe_leaves_half_open()
+   {
+      AtomicLong         now     = new AtomicLong(0);
+      HostCircuitBreaker breaker = new HostCircuitBreaker(now::get);
+      HostCircuitBreaker.Permit straggler = breaker.tryAcquire(HOST);
+      trip(breaker);
+
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(breaker.retryInMs(HOST)));
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.PROBE);
+      breaker.onResult(HOST, straggler, 200);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.HALF_OPEN);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.REJECTED);
+
+      breaker.onResult(HOST, HostCircuitBreaker.Permit.PROBE, 503);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.OPEN);
+   }
+
+
+
+   /** A probe that never reports is replaced after a cool-down instead of blocking the host for good. */
+   @Test
+   void stalled_probe_is_replaced()
+   {
+      AtomicLong         now     = new AtomicLong(0);
+      HostCircuitBreaker breaker = new HostCircuitBreaker(now::get);
+      trip(breaker);
+      long coolDown = TimeUnit.MILLISECONDS.toNanos(breaker.retryInMs(HOST));
+
+      now.addAndGet(coolDown);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.PROBE);
+      now.addAndGet(coolDown - 1);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.REJECTED);
+      now.addAndGet(1);
+      assertThat(breaker.tryAcquire(HOST)).isEqualTo(HostCircuitBreaker.Permit.PROBE);
+      breaker.onResult(HOST, HostCircuitBreaker.Permit.PROBE, 200);
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.CLOSED);
+   }
+
+
+
+   /** Once open, the client fails with exit code 3 without sending anything. */
+   @Test
+   void client_fails_fast_when_open() throws Exception
+   {
+      AtomicInteger      sent    = new AtomicInteger();
+      HostCircuitBreaker breaker = new HostCircuitBreaker(System::nanoTime);
+      ApiClient api = new ApiClient(Duration.ofSeconds(1), b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            sent.incrementAndGet();
+            return new BufferedResponse(req, 503, Map.of(), "{}".getBytes());
+         }
+      }.withCircuitBreaker(breaker);
+
+      URI uri = URI.create("http://breaker.test/v1/templates");
+      while(breaker.state("breaker.test") == HostCircuitBreaker.State.CLOSED)
+      {
+         assertThatThrownBy(() -> api.getJson(uri, Map.class)).isInstanceOf(ApiClient.ApiException.class);
+      }
+      int before = sent.get();
+
+      assertThatThrownBy(() -> api.getJson(uri, Map.class))
+         .isInstanceOf(ApiClient.ApiException.class)
+         .satisfies(ex -> assertThat(((ApiClient.ApiException) ex).exitCode).isEqualTo(3))
+         .satisfies(ex -> assertThat(((ApiClient.ApiException) ex).problem.detail).contains("breaker.test"));
+      assertThat(sent.get()).isEqualTo(before);
+   }
+
+
+
+   /***************************************************************************
+    ** Opens the circuit for HOST.
+    ***************************************************************************/
+   private static void trip(HostCircuitBreaker breaker)
+   {
+      for(int i = 0; i < 10; i++)
+      {
+         breaker.onResult(HOST, 503);
+      }
+      assertThat(breaker.state(HOST)).isEqualTo(HostCircuitBreaker.State.OPEN);
+   }
+}
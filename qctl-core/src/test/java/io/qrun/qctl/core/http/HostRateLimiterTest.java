@@ -0,0 +1,131 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests for {@link HostRateLimiter} token accounting, AIMD and Retry-After handling.
+ */
+class HostRateLimiterTest
+{
+   private static final String HOST = "api.example:443";
+
+
+
+   /** A burst is admitted immediately; the next caller queues behind it. */
+   @Test
+   void burst_then_queue()
+   {
+      AtomicLong      now     = new AtomicLong(0);
+      HostRateLimiter limiter = new HostRateLimiter(now::get);
+      for(int i = 0; i < 10; i++)
+      {
+         assertThat(limiter.reserve(HOST)).isZero();
+      }
+      assertThat(limiter.reserve(HOST)).isPositive();
+      assertThat(limiter.reserve("other:443")).isZero();
+   }
+
+
+
+   /** 429 halves the rate once per window; successes add it back slowly. */
+   @Test
+   void aimd_adapts_rate()
+   {
+      AtomicLong      now     = new AtomicLong(0);
+      HostRateLimiter limiter = new HostRateLimiter(now::get);
+      double          initial = limiter.rate(HOST);
+
+      limiter.onResponse(HOST, 429, -1);
+      limiter.onResponse(HOST, 429, -1);
+      assertThat(limiter.rate(HOST)).isEqualTo(initial / 2);
+
+      now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+      limiter.onResponse(HOST, 429, -1);
+      assertThat(limiter.rate(HOST)).isEqualTo(initial / 4);
+
+      limiter.onResponse(HOST, 200, -1);
+      assertThat(limiter.rate(HOST)).isGreaterThan(initial / 4);
+   }
+
+
+
+   /** Retry-After blocks every subsequent reservation for the host. */
+   @Test
+   void retry_after_blocks_host()
+   {
+      AtomicLong      now     = new AtomicLong(0);
+      HostRateLimiter limiter = new HostRateLimiter(now::get);
+      limiter.onResponse(HOST, 429, 2000);
+
+      long first  = limiter.reserve(HOST);
+      long second = limiter.reserve(HOST);
+      assertThat(first).isGreaterThanOrEqualTo(2000);
+      assertThat(second).isGreaterThan(first);
+
+      now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+      assertThat(limiter.reserve(HOST)).isZero();
+   }
+
+
+
+   /** A very long Retry-After blocks the host for at most the cap. */
+   @Test
+   void caps_retry_after_block()
+   {
+      AtomicLong      now     = new AtomicLong(0);
+      HostRateLimiter limiter = new HostRateLimiter(now::get);
+      limiter.onResponse(HOST, 429, TimeUnit.HOURS.toMillis(1));
+
+      assertThat(limiter.reserve(HOST)).isBetween(HostRateLimiter.MAX_BLOCK_MS, HostRateLimiter.MAX_BLOCK_MS + 1000);
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(HostRateLimiter.MAX_BLOCK_MS + 1000));
+      assertThat(limiter.reserve(HOST)).isZero();
+   }
+
+
+
+   /** Client errors other than 429 do not raise the rate. */
+   @Test
+   void client_errors_do_not_raise_rate()
+   {
+      HostRateLimiter limiter = new HostRateLimiter(new AtomicLong(0)::get);
+      limiter.onResponse(HOST, 429, -1);
+      double reduced = limiter.rate(HOST);
+
+      limiter.onResponse(HOST, 404, -1);
+      limiter.onResponse(HOST, 401, -1);
+      assertThat(limiter.rate(HOST)).isEqualTo(reduced);
+      limiter.onResponse(HOST, 304, -1);
+      assertThat(limiter.rate(HOST)).isGreaterThan(reduced);
+   }
+
+
+
+   /** Both Retry-After forms are parsed; junk is ignored. */
+   @Test
+   void parses_retry_after()
+   {
+      Instant now = Instant.parse("2025-01-15T12:00:00Z");
+      assertThat(HostRateLimiter.parseRetryAfter("3", now)).isEqualTo(3000);
+      assertThat(HostRateLimiter.parseRetryAfter("Wed, 15 Jan 2025 12:00:10 GMT", now)).isEqualTo(10_000);
+      assertThat(HostRateLimiter.parseRetryAfter("soon", now)).isEqualTo(-1);
+      assertThat(HostRateLimiter.parseRetryAfter(null, now)).isEqualTo(-1);
+   }
+}
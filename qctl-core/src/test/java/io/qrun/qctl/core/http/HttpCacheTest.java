@@ -0,0 +1,222 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests for {@link HttpCache} and its use by {@link ApiClient} for conditional GETs and offline mode.
+ */
+class HttpCacheTest
+{
+   private static final Duration TEST_TIMEOUT = Duration.ofSeconds(1);
+   private static final URI      TEMPLATES    = URI.create("http://localhost/v1/templates");
+
+   @TempDir
+   Path dir;
+
+
+
+   /** A stored ETag is sent back as If-None-Match and a 304 is answered from disk. */
+   @Test
+   void revalidates_with_etag_and_serves_304_from_disk() throws Exception
+   {
+      ConcurrentLinkedQueue<HttpRequest> seen  = new ConcurrentLinkedQueue<>();
+      HttpCache                          cache = new HttpCache(dir);
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            seen.add(req);
+            if(req.headers().firstValue("If-None-Match").isPresent())
+            {
+               return new BufferedResponse(req, 304, Map.of("ETag", List.of("\"v1\"")), new byte[0]);
+            }
+            return new BufferedResponse(req, 200, Map.of("ETag", List.of("\"v1\""), "Cache-Control", List.of("no-cache")),
+               "[{\"name\":\"basic\"}]".getBytes());
+         }
+      }.withCache(cache);
+
+      assertThat(api.getJson(TEMPLATES, List.class)).hasSize(1);
+      assertThat(api.getJson(TEMPLATES, List.class)).hasSize(1);
+      assertThat(seen).hasSize(2);
+      assertThat(seen.stream().skip(1).findFirst().orElseThrow().headers().firstValue("If-None-Match")).contains("\"v1\"");
+   }
+
+
+
+   /** Fresh entries are served without touching the network. */
+   @Test
+   void fresh_entry_skips_network() throws Exception
+   {
+      ConcurrentLinkedQueue<HttpRequest> seen  = new ConcurrentLinkedQueue<>();
+      HttpCache                          cache = new HttpCache(dir);
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            seen.add(req);
+            return new BufferedResponse(req, 200, Map.of("Cache-Control", List.of("max-age=60")), "[]".getBytes());
+         }
+      }.withCache(cache);
+
+      api.getJson(TEMPLATES, List.class);
+      api.getJson(TEMPLATES, List.class);
+      assertThat(seen).hasSize(1);
+   }
+
+
+
+   /** Offline mode answers stale entries from disk and fails misses with exit code 3. */
+   @Test
+   void offline_serves_cache_and_fails_misses() throws Exception
+   {
+      HttpCache   cache = new HttpCache(dir);
+      HttpRequest req   = HttpRequest.newBuilder(TEMPLATES).header("Accept", "application/json").GET().build();
+      cache.store(req, new BufferedResponse(req, 200, Map.of(), "[1,2]".getBytes()), 0L);
+
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {}).withCache(cache).withOffline(true);
+      assertThat(api.getJson(TEMPLATES, List.class)).containsExactly(1, 2);
+      assertThatThrownBy(() -> api.getJson(URI.create("http://localhost/schemas/qctl.json"), Map.class))
+         .isInstanceOf(ApiClient.ApiException.class)
+         .satisfies(ex -> assertThat(((ApiClient.ApiException) ex).exitCode).isEqualTo(3));
+   }
+
+
+
+   /** no-cache responses, and responses without Cache-Control, are never served stale. */
+   @Test
+   void no_cache_gets_no_stale_window()
+   {
+      HttpCache   cache   = new HttpCache(dir).withStaleWhileRevalidate("GET /v1/apps", Duration.ofMinutes(5));
+      HttpRequest noCache = HttpRequest.newBuilder(TEMPLATES).GET().build();
+      HttpRequest bare    = HttpRequest.newBuilder(URI.create("http://localhost/v1/qbits")).GET().build();
+      HttpRequest swr     = HttpRequest.newBuilder(URI.create("http://localhost/v1/apps")).GET().build();
+      cache.store(noCache, new BufferedResponse(noCache, 200, Map.of("Cache-Control", List.of("no-cache, max-age=60")), "[]".getBytes()), 0L);
+      cache.store(bare, new BufferedResponse(bare, 200, Map.of(), "[]".getBytes()), 0L);
+      cache.store(swr, new BufferedResponse(swr, 200, Map.of("Cache-Control", List.of("max-age=0")), "[]".getBytes()), 0L);
+
+      assertThat(cache.lookup(noCache).orElseThrow().isWithinStaleWindow(1L)).isFalse();
+      assertThat(cache.lookup(bare).orElseThrow().isWithinStaleWindow(1L)).isFalse();
+      assertThat(cache.lookup(swr).orElseThrow().isWithinStaleWindow(1L)).isTrue();
+   }
+
+
+
+   /** Only a window the server sent applies, unless the endpoint opted in to a client default. */
+   @Test
+   void stale_window_comes_from_server_or_endpoint_opt_in()
+   {
+      HttpCache   cache   = new HttpCache(dir).withStaleWhileRevalidate("GET /v1/qbits/{id}/versions", Duration.ofMinutes(5));
+      HttpRequest maxAge  = HttpRequest.newBuilder(TEMPLATES).GET().build();
+      HttpRequest priv    = HttpRequest.newBuilder(URI.create("http://localhost/v1/apps")).GET().build();
+      HttpRequest sent    = HttpRequest.newBuilder(URI.create("http://localhost/schemas/qctl.json")).GET().build();
+      HttpRequest optedIn = HttpRequest.newBuilder(URI.create("http://localhost/v1/qbits/core/versions")).GET().build();
+      cache.store(maxAge, new BufferedResponse(maxAge, 200, Map.of("Cache-Control", List.of("max-age=60")), "[]".getBytes()), 0L);
+      cache.store(priv, new BufferedResponse(priv, 200, Map.of("Cache-Control", List.of("private")), "[]".getBytes()), 0L);
+      cache.store(sent, new BufferedResponse(sent, 200, Map.of("Cache-Control", List.of("max-age=60, stale-while-revalidate=30")), "{}".getBytes()), 0L);
+      cache.store(optedIn, new BufferedResponse(optedIn, 200, Map.of("Cache-Control", List.of("max-age=60")), "[]".getBytes()), 0L);
+
+      long afterMaxAge = 61_000L;
+      assertThat(cache.lookup(maxAge).orElseThrow().isWithinStaleWindow(afterMaxAge)).isFalse();
+      assertThat(cache.lookup(priv).orElseThrow().isWithinStaleWindow(1L)).isFalse();
+      assertThat(cache.lookup(sent).orElseThrow().isWithinStaleWindow(afterMaxAge)).isTrue();
+      assertThat(cache.lookup(sent).orElseThrow().isWithinStaleWindow(91_000L)).isFalse();
+      assertThat(cache.lookup(optedIn).orElseThrow().isWithinStaleWindow(afterMaxAge)).isTrue();
+   }
+
+
+
+   /** A cache for live data revalidates every use, even when the response allowed caching. */
+   @Test
+   void always_revalidate_ignores_max_age() throws Exception
+   {
+      ConcurrentLinkedQueue<HttpRequest> seen = new ConcurrentLinkedQueue<>();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            seen.add(req);
+            if(req.headers().firstValue("If-None-Match").isPresent())
+            {
+               return new BufferedResponse(req, 304, Map.of(), new byte[0]);
+            }
+            return new BufferedResponse(req, 200,
+               Map.of("ETag", List.of("\"s1\""), "Cache-Control", List.of("max-age=60, stale-while-revalidate=300")), "[1]".getBytes());
+         }
+      }.withCache(new HttpCache(dir).alwaysRevalidate());
+
+      assertThat(api.getJson(TEMPLATES, List.class)).containsExactly(1);
+      assertThat(api.getJson(TEMPLATES, List.class)).containsExactly(1);
+      assertThat(seen).hasSize(2);
+   }
+
+
+
+   /** A stale hit is served at once, and awaiting refreshes leaves the refreshed entry on disk. */
+   @Test
+   void awaits_background_refresh() throws Exception
+   {
+      ConcurrentLinkedQueue<HttpRequest> seen = new ConcurrentLinkedQueue<>();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req) throws InterruptedException
+         {
+            seen.add(req);
+            if(seen.size() == 1)
+            {
+               return new BufferedResponse(req, 200, Map.of("Cache-Control", List.of("max-age=0, stale-while-revalidate=600")), "[1]".getBytes());
+            }
+            Thread.sleep(200);
+            return new BufferedResponse(req, 200, Map.of("Cache-Control", List.of("max-age=600")), "[2]".getBytes());
+         }
+      }.withCache(new HttpCache(dir));
+
+      assertThat(api.getJson(TEMPLATES, List.class)).containsExactly(1);
+      Thread.sleep(5);
+      assertThat(api.getJson(TEMPLATES, List.class)).containsExactly(1);
+      ApiClient.awaitRefreshes(Duration.ofSeconds(5));
+      assertThat(api.getJson(TEMPLATES, List.class)).containsExactly(2);
+      assertThat(seen).hasSize(2);
+   }
+
+
+
+   /** no-store responses and non-200s are never written. */
+   @Test
+   void honours_no_store()
+   {
+      HttpCache   cache = new HttpCache(dir);
+      HttpRequest req   = HttpRequest.newBuilder(TEMPLATES).GET().build();
+      cache.store(req, new BufferedResponse(req, 200, Map.of("Cache-Control", List.of("no-store")), "[]".getBytes()), 0L);
+      cache.store(req, new BufferedResponse(req, 404, Map.of(), "{}".getBytes()), 0L);
+      assertThat(cache.lookup(req)).isEmpty();
+   }
+}
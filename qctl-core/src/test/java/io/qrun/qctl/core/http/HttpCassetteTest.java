@@ -0,0 +1,113 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests for {@link HttpCassette} recording, ordered replay and replay speed.
+ */
+class HttpCassetteTest
+{
+   private static final HttpRequest STATUS = HttpRequest.newBuilder(URI.create("https://api.example/v1/apps/demo/status")).GET().build();
+
+
+
+   /** Exchanges replay in recorded order per request, then unmatched requests fail. */
+   @Test
+   void replays_in_recorded_order(@TempDir Path dir) throws Exception
+   {
+      Path         file     = dir.resolve("session.cassette");
+      HttpCassette recorder = HttpCassette.recording(file);
+      recorder.send(STATUS, () -> response(503, "busy", "Content-Encoding", "gzip"));
+      recorder.send(STATUS, () -> response(200, "{\"status\":\"healthy\"}", "Content-Type", "application/json"));
+      recorder.close();
+
+      HttpCassette player = HttpCassette.replaying(file, HttpCassette.AS_FAST_AS_POSSIBLE);
+      assertThat(player.size()).isEqualTo(2);
+
+      HttpResponse<byte[]> first  = player.send(STATUS, () -> fail());
+      HttpResponse<byte[]> second = player.sendAsync(STATUS, () -> fail()).join();
+      assertThat(first.statusCode()).isEqualTo(503);
+      assertThat(first.headers().firstValue("Content-Encoding")).isEmpty();
+      assertThat(second.statusCode()).isEqualTo(200);
+      assertThat(second.headers().firstValue("content-type")).contains("application/json");
+      assertThat(new String(second.body(), StandardCharsets.UTF_8)).isEqualTo("{\"status\":\"healthy\"}");
+
+      assertThatThrownBy(() -> player.send(STATUS, () -> fail())).isInstanceOf(IOException.class);
+   }
+
+
+
+   /** Recorded latency is reproduced at speed 1 and scaled down at higher speeds. */
+   @Test
+   void replays_recorded_latency(@TempDir Path dir) throws Exception
+   {
+      Path         file     = dir.resolve("slow.cassette");
+      HttpCassette recorder = HttpCassette.recording(file);
+      for(int i = 0; i < 2; i++)
+      {
+         recorder.send(STATUS, () ->
+         {
+            Thread.sleep(200);
+            return response(200, "ok");
+         });
+      }
+      recorder.close();
+
+      HttpCassette player = HttpCassette.replaying(file, 1D);
+      long         start  = System.nanoTime();
+      player.send(STATUS, () -> fail());
+      assertThat((System.nanoTime() - start) / 1_000_000).isGreaterThanOrEqualTo(190);
+
+      HttpCassette fast = HttpCassette.replaying(file, 100D);
+      start = System.nanoTime();
+      fast.send(STATUS, () -> fail());
+      assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(150);
+   }
+
+
+
+   /** Builds a live response with optional header name/value pairs. */
+   private static HttpResponse<byte[]> response(int status, String body, String... headers)
+   {
+      Map<String, List<String>> h = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for(int i = 0; i + 1 < headers.length; i += 2)
+      {
+         h.put(headers[i], List.of(headers[i + 1]));
+      }
+      return new BufferedResponse(STATUS, status, h, body.getBytes(StandardCharsets.UTF_8));
+   }
+
+
+
+   /** A live round-trip that must not happen during replay. */
+   private static <T> T fail()
+   {
+      throw new AssertionError("replay must not touch the network");
+   }
+}
@@ -0,0 +1,164 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.qrun.qctl.core.Main;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+
+/**
+ * Tests for {@link HttpMetrics}, {@link LatencyHistogram} and the {@link ApiClient} listener hooks.
+ */
+class HttpMetricsTest
+{
+   private static final Duration TEST_TIMEOUT = Duration.ofSeconds(1);
+
+
+
+   /** Identifier segments of versioned paths collapse into {id}; other paths stay literal. */
+   @Test
+   void endpoint_templates()
+   {
+      assertThat(HttpMetrics.endpointOf("GET", URI.create("http://h/v1/qbits/core/versions?page=2")))
+         .isEqualTo("GET /v1/qbits/{id}/versions");
+      assertThat(HttpMetrics.endpointOf("GET", URI.create("http://h/v1/apps/demo/status")))
+         .isEqualTo("GET /v1/apps/{id}/status");
+      assertThat(HttpMetrics.endpointOf("POST", URI.create("http://h/v1/qstudio/plan")))
+         .isEqualTo("POST /v1/qstudio/plan");
+      assertThat(HttpMetrics.endpointOf("GET", URI.create("http://h/v1/qstudio/plans/p1/ledger")))
+         .isEqualTo("GET /v1/qstudio/plans/{id}/ledger");
+      assertThat(HttpMetrics.endpointOf("GET", URI.create("http://h/schemas/lockfile-v1.json")))
+         .isEqualTo("GET /schemas/lockfile-v1.json");
+   }
+
+
+
+   /** Percentiles are reproduced within the histogram's bucket precision. */
+   @Test
+   void histogram_percentiles_within_precision()
+   {
+      LatencyHistogram h = new LatencyHistogram();
+      for(long v = 1; v <= 10_000; v++)
+      {
+         h.record(v);
+      }
+      assertThat(h.count()).isEqualTo(10_000);
+      assertThat(h.max()).isEqualTo(10_000);
+      assertThat(h.mean()).isCloseTo(5000.5, within(0.01));
+      assertThat((double) h.percentile(50)).isCloseTo(5000, within(5000 * 0.07));
+      assertThat((double) h.percentile(99)).isCloseTo(9900, within(9900 * 0.07));
+      assertThat(h.percentile(100)).isEqualTo(10_000);
+      assertThat(new LatencyHistogram().percentile(50)).isZero();
+   }
+
+
+
+   /** Every attempt and backoff reaches the listeners and aggregates per endpoint. */
+   @Test
+   void client_reports_attempts_and_backoff() throws Exception
+   {
+      AtomicInteger                      calls    = new AtomicInteger();
+      ConcurrentLinkedQueue<HttpAttempt> attempts = new ConcurrentLinkedQueue<>();
+      ConcurrentLinkedQueue<Long>        backoffs = new ConcurrentLinkedQueue<>();
+      HttpMetrics                        metrics  = new HttpMetrics();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            int status = calls.incrementAndGet() == 1 ? 503 : 200;
+            return new BufferedResponse(req, status, Map.of(), "{\"ok\":true}".getBytes());
+         }
+      }
+         .withListener(metrics)
+         .withListener(new HttpListener()
+         {
+            @Override
+            public void onAttempt(HttpAttempt attempt)
+            {
+               attempts.add(attempt);
+            }
+
+
+
+            @Override
+            public void onBackoff(String endpoint, long millis)
+            {
+               backoffs.add(millis);
+            }
+         });
+
+      api.getJson(URI.create("http://localhost/v1/apps/demo/status"), Map.class);
+
+      assertThat(attempts).extracting(a -> a.status).containsExactly(503, 200);
+      assertThat(attempts).extracting(a -> a.attempt).containsExactly(1, 2);
+      assertThat(attempts).allMatch(a -> a.bytesIn == 11 && a.durationNanos >= 0);
+      assertThat(backoffs).hasSize(1);
+
+      Map<String, Object> stats = (Map<String, Object>) metrics.toMap().get("GET /v1/apps/{id}/status");
+      assertThat(stats).containsEntry("requests", 1L).containsEntry("attempts", 2L).containsEntry("failures", 1L);
+      assertThat(metrics.renderText()).contains("GET /v1/apps/{id}/status", "attempts=2");
+      assertThat(List.copyOf(metrics.toMap().keySet())).containsExactly("GET /v1/apps/{id}/status");
+   }
+
+
+
+   /** Clients created inside collect() also report to its metrics, which Main dumps as one JSON line under --output json. */
+   @Test
+   void collect_scopes_metrics_to_one_task() throws Exception
+   {
+      URI         status  = URI.create("http://localhost/v1/apps/demo/status");
+      HttpMetrics scoped  = new HttpMetrics();
+      ApiClient   inside  = HttpMetrics.collect(scoped, HttpMetricsTest::stubClient);
+      ApiClient   outside = stubClient();
+
+      outside.getJson(status, Map.class);
+      assertThat(scoped.isEmpty()).isTrue();
+      inside.getJson(status, Map.class);
+      assertThat(scoped.toMap()).containsOnlyKeys("GET /v1/apps/{id}/status");
+
+      assertThat(Main.httpMetricsDump(new String[] { "--output", "json", "qrun", "status" }, scoped))
+         .startsWith("{\"http\":{\"GET /v1/apps/{id}/status\"")
+         .endsWith(System.lineSeparator());
+      assertThat(Main.httpMetricsDump(new String[] { "qrun", "status" }, scoped)).isEmpty();
+      assertThat(Main.httpMetricsDump(new String[] { "--output=json" }, new HttpMetrics())).isEmpty();
+   }
+
+
+
+   /***************************************************************************
+    ** Returns a client answering every request with an empty JSON object.
+    ***************************************************************************/
+   private static ApiClient stubClient()
+   {
+      return new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected HttpResponse<byte[]> sendOnce(HttpRequest req)
+         {
+            return new BufferedResponse(req, 200, Map.of(), "{}".getBytes());
+         }
+      };
+   }
+}
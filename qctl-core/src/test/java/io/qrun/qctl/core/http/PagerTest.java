@@ -0,0 +1,220 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.http;
+
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests for {@link Pager} via {@link ApiClient#paginate}.
+ */
+class PagerTest
+{
+   private static final Duration TEST_TIMEOUT = Duration.ofSeconds(1);
+   private static final URI      DEPLOYMENTS  = URI.create("http://localhost/v1/apps/demo/deployments?env=prod");
+
+
+
+   /** All pages are read, no page past X-Total-Count is requested, and existing query is kept. */
+   @Test
+   void reads_all_pages_up_to_total() throws Exception
+   {
+      FakeServer   server = new FakeServer(45, true);
+      List<Object> ids    = new ArrayList<>();
+      long         count  = server.client().forEachPaged(DEPLOYMENTS, Map.class, 20, 4, m -> ids.add(m.get("id")));
+
+      assertThat(count).isEqualTo(45);
+      assertThat(ids).hasSize(45).startsWith(0, 1).endsWith(44);
+      assertThat(server.pages()).containsExactlyInAnyOrder(0, 1, 2);
+      assertThat(server.queries).allMatch(q -> q.startsWith("env=prod&page="));
+   }
+
+
+
+   /** Without X-Total-Count a short page ends the walk. */
+   @Test
+   void short_page_ends_without_total() throws Exception
+   {
+      FakeServer server = new FakeServer(25, false);
+      try(Pager<Map> pager = server.client().paginate(DEPLOYMENTS, Map.class, 10, 1))
+      {
+         assertThat(pager.stream().count()).isEqualTo(25);
+         assertThat(pager.totalCount()).isEqualTo(-1);
+      }
+      assertThat(server.pages()).containsExactly(0, 1, 2);
+   }
+
+
+
+   /** Stopping early leaves at most the prefetch window of pages requested. */
+   @Test
+   void stops_early_with_consumer()
+   {
+      FakeServer server = new FakeServer(10_000, true);
+      List<Map> first;
+      try(Stream<Map> s = server.client().paginate(DEPLOYMENTS, Map.class, 10, 2).stream())
+      {
+         first = s.limit(15).collect(Collectors.toList());
+      }
+      assertThat(first).hasSize(15);
+      assertThat(server.pages().size()).isLessThanOrEqualTo(4);
+   }
+
+
+
+   /** Closing the pager aborts prefetched exchanges that are still in flight. */
+   @Test
+   void close_aborts_prefetched_exchanges()
+   {
+      FakeServer                                                     server  = new FakeServer(100, true);
+      ConcurrentLinkedQueue<CompletableFuture<HttpResponse<byte[]>>> stalled = new ConcurrentLinkedQueue<>();
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+         {
+            if(req.uri().getRawQuery().contains("&page=0&"))
+            {
+               return CompletableFuture.completedFuture(server.respond(req));
+            }
+            CompletableFuture<HttpResponse<byte[]>> never = new CompletableFuture<>();
+            stalled.add(never);
+            return never;
+         }
+      };
+      try(Pager<Map> pager = api.paginate(DEPLOYMENTS, Map.class, 10, 3))
+      {
+         assertThat(pager.next()).containsEntry("id", 0);
+      }
+      assertThat(stalled).hasSize(3).allMatch(CompletableFuture::isCancelled);
+   }
+
+
+
+   /** A failed page surfaces as the mapped ApiException. */
+   @Test
+   void page_errors_map_to_exit_codes()
+   {
+      ApiClient api = new ApiClient(TEST_TIMEOUT, b -> {})
+      {
+         @Override
+         protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+         {
+            return CompletableFuture.completedFuture(new BufferedResponse(req, 404, Map.of(), "{}".getBytes()));
+         }
+      };
+      assertThatThrownBy(() -> api.forEachPaged(DEPLOYMENTS, Map.class, 20, 2, m -> {}))
+         .isInstanceOf(ApiClient.ApiException.class)
+         .satisfies(ex -> assertThat(((ApiClient.ApiException) ex).exitCode).isEqualTo(5));
+   }
+
+
+
+   /***************************************************************************
+    ** Serves a list of {"id":n} items by page/size, recording requests.
+    ***************************************************************************/
+   private static final class FakeServer
+   {
+      private final int                           total;
+      private final boolean                       withTotal;
+      private final ConcurrentLinkedQueue<String> queries = new ConcurrentLinkedQueue<>();
+
+
+
+      /***************************************************************************
+       ** Creates a server with the given number of items.
+       ***************************************************************************/
+      FakeServer(int total, boolean withTotal)
+      {
+         this.total = total;
+         this.withTotal = withTotal;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns a client whose transport is this server.
+       ***************************************************************************/
+      ApiClient client()
+      {
+         return new ApiClient(TEST_TIMEOUT, b -> {})
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               return CompletableFuture.completedFuture(respond(req));
+            }
+         };
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the page indexes requested so far, in request order.
+       ***************************************************************************/
+      List<Integer> pages()
+      {
+         return queries.stream().map(q -> Integer.parseInt(param(q, "page"))).collect(Collectors.toList());
+      }
+
+
+
+      /***************************************************************************
+       ** Builds the response for one page request.
+       ***************************************************************************/
+      private HttpResponse<byte[]> respond(HttpRequest req)
+      {
+         String query = req.uri().getRawQuery();
+         queries.add(query);
+         int    page  = Integer.parseInt(param(query, "page"));
+         int    size  = Integer.parseInt(param(query, "size"));
+         String body  = IntStream.range(page * size, Math.min(total, (page + 1) * size))
+            .mapToObj(i -> "{\"id\":" + i + "}")
+            .collect(Collectors.joining(",", "[", "]"));
+         Map<String, List<String>> headers = withTotal ? Map.of("X-Total-Count", List.of(String.valueOf(total))) : Map.of();
+         return new BufferedResponse(req, 200, headers, body.getBytes());
+      }
+
+
+
+      /***************************************************************************
+       ** Extracts a query parameter value.
+       ***************************************************************************/
+      private static String param(String query, String name)
+      {
+         for(String kv : query.split("&"))
+         {
+            if(kv.startsWith(name + "="))
+            {
+               return kv.substring(name.length() + 1);
+            }
+         }
+         throw new IllegalArgumentException(name);
+      }
+   }
+}
@@ -0,0 +1,129 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.sys;
+
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.qrun.qctl.shared.json.Json;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests for {@link StartupTrace}.
+ */
+class StartupTraceTest
+{
+   @TempDir
+   Path dir;
+
+
+
+   /** Leaves tracing off for other tests. */
+   @AfterEach
+   void reset()
+   {
+      StartupTrace.reset();
+   }
+
+
+
+   /** Nothing is recorded while tracing is off. */
+   @Test
+   void records_nothing_while_disabled()
+   {
+      try(StartupTrace.Span span = StartupTrace.begin("cli", "ignored").detail("x"))
+      {
+         assertThat(StartupTrace.isEnabled()).isFalse();
+      }
+      assertThat(StartupTrace.renderText()).doesNotContain("ignored");
+   }
+
+
+
+   /** The waterfall lists spans in start order, nested spans indented under their parent. */
+   @Test
+   void renders_nested_spans_as_a_waterfall()
+   {
+      StartupTrace.enable();
+      try(StartupTrace.Span outer = StartupTrace.begin("cli", "cli.model"))
+      {
+         try(StartupTrace.Span inner = StartupTrace.begin("plugin", "plugin qbit").detail("index stub"))
+         {
+            assertThat(inner).isNotNull();
+         }
+      }
+
+      List<String> lines = StartupTrace.renderText().lines().toList();
+      assertThat(lines.get(0)).startsWith("qctl startup trace (JVM ");
+      int outer = indexOf(lines, "cli.model");
+      int inner = indexOf(lines, "plugin qbit (index stub)");
+      assertThat(outer).isPositive().isLessThan(inner);
+      assertThat(lines.get(inner)).contains("  plugin qbit").contains(" classes");
+   }
+
+
+
+   /** A {@code .json} target gets Chrome trace-event JSON with complete events in microseconds. */
+   @Test
+   void writes_chrome_trace_json() throws Exception
+   {
+      StartupTrace.enable();
+      try(StartupTrace.Span span = StartupTrace.begin("config", "config.validate"))
+      {
+         Thread.sleep(2L);
+      }
+      Path file = dir.resolve("trace.json");
+      StartupTrace.emit(file.toString(), System.err);
+
+      JsonNode events = Json.mapper().readTree(Files.readString(file, StandardCharsets.UTF_8)).get("traceEvents");
+      assertThat(events.get(0).get("ph").asText()).isEqualTo("M");
+      JsonNode validate = null;
+      for(JsonNode e : events)
+      {
+         if("config.validate".equals(e.path("name").asText()))
+         {
+            validate = e;
+         }
+      }
+      assertThat(validate).isNotNull();
+      assertThat(validate.get("ph").asText()).isEqualTo("X");
+      assertThat(validate.get("cat").asText()).isEqualTo("config");
+      assertThat(validate.get("dur").asDouble()).isGreaterThanOrEqualTo(2000D);
+      assertThat(validate.get("ts").asDouble()).isPositive();
+      assertThat(StartupTrace.toChromeTrace()).containsEntry("displayTimeUnit", "ms").containsKey("traceEvents");
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the index of the first line containing the text, or -1.
+    ***************************************************************************/
+   private static int indexOf(List<String> lines, String text)
+   {
+      for(int i = 0; i < lines.size(); i++)
+      {
+         if(lines.get(i).contains(text))
+         {
+            return i;
+         }
+      }
+      return -1;
+   }
+}
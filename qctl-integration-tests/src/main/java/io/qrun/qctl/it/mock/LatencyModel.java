@@ -0,0 +1,110 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.it.mock;
+
+
+import java.time.Duration;
+import java.util.Random;
+
+
+/**
+ * Distribution of artificial response latency for {@link MockApiServer}.
+ *
+ * Why: Load and tail-latency behavior of the client can only be exercised against a server whose
+ * latency shape is known and reproducible.
+ * @since 0.1.0
+ */
+@FunctionalInterface
+public interface LatencyModel
+{
+   /**
+    * Draws one latency sample.
+    *
+    * @param random seeded random source owned by the server
+    * @return delay in milliseconds (non-negative)
+    */
+   long sampleMillis(Random random);
+
+
+
+   /**
+    * No added latency.
+    *
+    * @return model that always returns zero
+    */
+   static LatencyModel none()
+   {
+      return random -> 0L;
+   }
+
+
+
+   /**
+    * Constant latency.
+    *
+    * @param delay delay for every response
+    * @return fixed model
+    */
+   static LatencyModel fixed(Duration delay)
+   {
+      long ms = delay.toMillis();
+      return random -> ms;
+   }
+
+
+
+   /**
+    * Latency drawn uniformly from {@code [min, max]}.
+    *
+    * @param min lower bound
+    * @param max upper bound
+    * @return uniform model
+    */
+   static LatencyModel uniform(Duration min, Duration max)
+   {
+      long lo = min.toMillis();
+      long hi = max.toMillis();
+      return random -> lo + (hi > lo ? (long) (random.nextDouble() * (hi - lo + 1)) : 0L);
+   }
+
+
+
+   /**
+    * Log-normal latency, the usual shape of real service response times.
+    *
+    * @param median median latency
+    * @param sigma  shape parameter; larger values give a heavier tail (0.5 is typical)
+    * @return log-normal model
+    */
+   static LatencyModel logNormal(Duration median, double sigma)
+   {
+      double m = median.toMillis();
+      return random -> Math.round(m * Math.exp(sigma * random.nextGaussian()));
+   }
+
+
+
+   /**
+    * Adds stragglers to a base model: with the given probability a response takes {@code slow}.
+    *
+    * @param base        model for normal responses
+    * @param probability chance of a straggler per response
+    * @param slow        straggler latency
+    * @return combined model
+    */
+   static LatencyModel withStragglers(LatencyModel base, double probability, Duration slow)
+   {
+      long ms = slow.toMillis();
+      return random -> random.nextDouble() < probability ? ms : base.sampleMillis(random);
+   }
+}
@@ -0,0 +1,1405 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.it.mock;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Embedded, in-process mock of the DESIGN-2 API on the JDK's {@code com.sun.net.httpserver}.
+ *
+ * <p>Serves the catalog ({@code /v1/templates}, {@code /v1/qbits}), publish
+ * ({@code /v1/artifacts}, {@code /v1/releases}, {@code /v1/deployments}), app status/logs,
+ * qStudio plans and the {@code /schemas} documents, following the contract rules: 0-based
+ * {@code page}, {@code size} 1..200 (default 20), {@code X-Total-Count} on lists, RFC 7807
+ * problem bodies, and {@code Idempotency-Key} on POSTs (201 on create, 200 replaying the stored
+ * response, 409 when a key is reused with a different body). Keys are scoped per endpoint so one
+ * key may cover the artifact and release of a single publish. Catalog GETs carry an
+ * {@code ETag} and answer {@code If-None-Match} with 304; bodies are gzip-encoded when the client
+ * accepts it, and gzip request bodies are decoded. qBit tarballs are generated deterministically
+ * per id and version and honor single {@code Range} requests with 206.
+ *
+ * <p>Every response first waits for a delay drawn from the {@link LatencyModel}, then may be
+ * replaced by an injected 429 or 503 (scripted with {@link #failNext(int, int)}, or random at
+ * the configured rates), both carrying {@code Retry-After}. All randomness comes from one seeded
+ * source, so a given seed and request order reproduce the same run. Request counts per route and
+ * the peak number of concurrently handled requests are recorded for assertions.
+ *
+ * <pre>
+ * try(MockApiServer api = MockApiServer.start()
+ *        .withLatency(LatencyModel.logNormal(Duration.ofMillis(20), 0.5))
+ *        .withFaultRates(0.05, 0.01))
+ * {
+ *    URI base = api.baseUri();
+ *    ...
+ * }
+ * </pre>
+ *
+ * Why: Retry, rate-limit and concurrency behavior of the client needs a real socket peer with
+ * controllable latency and faults, on a laptop without Node, Prism or the network.
+ * @since 0.1.0
+ */
+public final class MockApiServer implements AutoCloseable
+{
+   private static final int  DEFAULT_PORT        = 4010;
+   private static final int  DEFAULT_PAGE_SIZE   = 20;
+   private static final int  MAX_PAGE_SIZE       = 200;
+   private static final int  GZIP_MIN_BYTES      = 1024;
+   private static final int  UPLOAD_BUFFER_BYTES = 64 * 1024;
+   private static final int  TARBALL_BYTES       = 256 * 1024;
+   private static final long CREATED_IDS         = 9_000_000L;
+
+   private static final String JSON    = "application/json";
+   private static final String PROBLEM = "application/problem+json";
+   private static final String TEXT    = "text/plain; charset=utf-8";
+
+   private final HttpServer      server;
+   private final Path            uploadDir;
+   private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+   private final ObjectMapper    mapper   = new ObjectMapper();
+   private final List<Route>     routes   = new ArrayList<>();
+
+   private final Map<String, Replay>              idempotency = new ConcurrentHashMap<>();
+   private final Map<String, Map<String, Object>> created     = new ConcurrentHashMap<>();
+   private final Map<String, LongAdder>           hits        = new ConcurrentHashMap<>();
+   private final Map<String, Upload>              uploads     = new ConcurrentHashMap<>();
+   private final Map<String, byte[]>              tarballs    = new ConcurrentHashMap<>();
+   private final Deque<Integer>                   scripted    = new ArrayDeque<>();
+   private final AtomicLong                       requests    = new AtomicLong();
+   private final AtomicLong                       faults      = new AtomicLong();
+   private final AtomicLong                       nextId      = new AtomicLong(CREATED_IDS);
+   private final AtomicInteger                    active      = new AtomicInteger();
+   private final AtomicInteger                    peak        = new AtomicInteger();
+
+   private volatile MockCatalog  catalog           = new MockCatalog(1, 2, 1);
+   private volatile LatencyModel latency           = LatencyModel.none();
+   private volatile Random       random            = new Random(0L);
+   private volatile double       rate429;
+   private volatile double       rate503;
+   private volatile long         retryAfterSeconds = 1L;
+   private volatile int          parallelUploads   = 1;
+   private volatile int          tarballBytes      = TARBALL_BYTES;
+   private volatile boolean      ranges            = true;
+
+
+
+   /***************************************************************************
+    ** Binds the server; routes are registered before it starts accepting.
+    ***************************************************************************/
+   private MockApiServer(int port) throws IOException
+   {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+      uploadDir = Files.createTempDirectory("qctl-mock-uploads");
+      server.setExecutor(executor);
+      server.createContext("/", this::handle);
+      registerRoutes();
+   }
+
+
+
+   /**
+    * Starts a server on an ephemeral loopback port.
+    *
+    * @return running server
+    * @throws IOException when the socket cannot be bound
+    */
+   public static MockApiServer start() throws IOException
+   {
+      return start(0);
+   }
+
+
+
+   /**
+    * Starts a server on the given loopback port.
+    *
+    * @param port port to bind, or 0 for an ephemeral one
+    * @return running server
+    * @throws IOException when the socket cannot be bound
+    */
+   public static MockApiServer start(int port) throws IOException
+   {
+      MockApiServer s = new MockApiServer(port);
+      s.server.start();
+      return s;
+   }
+
+
+
+   /**
+    * Returns the base URI to resolve API paths against, e.g. {@code http://127.0.0.1:51234}.
+    *
+    * @return base URI without a trailing slash
+    */
+   public URI baseUri()
+   {
+      return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+   }
+
+
+
+   /**
+    * Resolves an API path against {@link #baseUri()}.
+    *
+    * @param pathAndQuery path with optional query, e.g. {@code /v1/qbits?page=1}
+    * @return absolute URI
+    */
+   public URI uri(String pathAndQuery)
+   {
+      return URI.create(baseUri() + pathAndQuery);
+   }
+
+
+
+   /**
+    * Sets the latency distribution applied before every response.
+    *
+    * @param model latency model
+    * @return this server
+    */
+   public MockApiServer withLatency(LatencyModel model)
+   {
+      this.latency = model;
+      return this;
+   }
+
+
+
+   /**
+    * Sets the probability of answering any request with 429 or 503 instead of the real response.
+    *
+    * @param tooManyRequests probability of 429 per request
+    * @param unavailable     probability of 503 per request
+    * @return this server
+    */
+   public MockApiServer withFaultRates(double tooManyRequests, double unavailable)
+   {
+      this.rate429 = tooManyRequests;
+      this.rate503 = unavailable;
+      return this;
+   }
+
+
+
+   /**
+    * Sets the {@code Retry-After} sent with injected 429 and 503 responses.
+    *
+    * @param retryAfter delay (whole seconds; zero sends {@code Retry-After: 0})
+    * @return this server
+    */
+   public MockApiServer withRetryAfter(Duration retryAfter)
+   {
+      this.retryAfterSeconds = retryAfter.toSeconds();
+      return this;
+   }
+
+
+
+   /**
+    * Reseeds the random source used for latency and fault injection.
+    *
+    * @param seed seed
+    * @return this server
+    */
+   public MockApiServer withSeed(long seed)
+   {
+      this.random = new Random(seed);
+      return this;
+   }
+
+
+
+   /**
+    * Sizes the generated data set.
+    *
+    * @param templates          number of templates
+    * @param qbits              number of qBits
+    * @param deploymentsPerApp  number of deployments listed for every app
+    * @return this server
+    */
+   public MockApiServer withCatalog(int templates, int qbits, int deploymentsPerApp)
+   {
+      this.catalog = new MockCatalog(Math.max(1, templates), Math.max(2, qbits), Math.max(1, deploymentsPerApp));
+      return this;
+   }
+
+
+
+   /**
+    * Lets upload sessions accept chunks out of order, advertised to clients as
+    * {@code X-Upload-Max-Parallel}.
+    *
+    * @param lanes number of chunks a client may send concurrently (1 restores strict ordering)
+    * @return this server
+    */
+   public MockApiServer withParallelUploads(int lanes)
+   {
+      this.parallelUploads = Math.max(1, lanes);
+      return this;
+   }
+
+
+
+   /**
+    * Sizes the generated qBit tarballs and whether their route honors {@code Range}.
+    *
+    * @param bytes     tarball size
+    * @param rangeable false to ignore {@code Range} and always answer 200 with the whole body
+    * @return this server
+    */
+   public MockApiServer withTarballs(int bytes, boolean rangeable)
+   {
+      this.tarballBytes = bytes;
+      this.ranges = rangeable;
+      tarballs.clear();
+      return this;
+   }
+
+
+
+   /**
+    * Returns the bytes served for a qBit version's tarball.
+    *
+    * @param qbitId  qBit id or name
+    * @param version version
+    * @return tarball content
+    */
+   public byte[] tarball(String qbitId, String version)
+   {
+      return tarballs.computeIfAbsent(qbitId + "@" + version, k ->
+      {
+         byte[] data = new byte[tarballBytes];
+         new Random(k.hashCode()).nextBytes(data);
+         return data;
+      });
+   }
+
+
+
+   /**
+    * Answers the next {@code count} requests, whatever their route, with the given status.
+    *
+    * @param status status to inject, typically 429 or 503
+    * @param count  number of requests to fail
+    * @return this server
+    */
+   public MockApiServer failNext(int status, int count)
+   {
+      synchronized(scripted)
+      {
+         for(int i = 0; i < count; i++)
+         {
+            scripted.addLast(status);
+         }
+      }
+      return this;
+   }
+
+
+
+   /**
+    * Returns the number of requests received.
+    *
+    * @return total requests, including injected faults
+    */
+   public long requestCount()
+   {
+      return requests.get();
+   }
+
+
+
+   /**
+    * Returns the number of requests received for one route.
+    *
+    * @param route method and path template, e.g. {@code GET /v1/qbits/{qbitId}}
+    * @return requests for that route, including injected faults
+    */
+   public long requestCount(String route)
+   {
+      LongAdder n = hits.get(route);
+      return n == null ? 0L : n.sum();
+   }
+
+
+
+   /**
+    * Returns the number of injected 429/503 responses.
+    *
+    * @return injected faults
+    */
+   public long faultCount()
+   {
+      return faults.get();
+   }
+
+
+
+   /**
+    * Returns the largest number of requests that were being handled at the same time.
+    *
+    * @return peak concurrency
+    */
+   public int maxConcurrent()
+   {
+      return peak.get();
+   }
+
+
+
+   /**
+    * Clears counters, scripted faults and stored idempotency keys.
+    */
+   public void reset()
+   {
+      synchronized(scripted)
+      {
+         scripted.clear();
+      }
+      hits.clear();
+      idempotency.clear();
+      created.clear();
+      requests.set(0);
+      faults.set(0);
+      peak.set(0);
+   }
+
+
+
+   /**
+    * Stops the server and its handler threads, and deletes unfinished uploads.
+    */
+   @Override
+   public void close()
+   {
+      server.stop(0);
+      executor.shutdownNow();
+      try(Stream<Path> files = Files.list(uploadDir))
+      {
+         for(Path f : files.toList())
+         {
+            Files.deleteIfExists(f);
+         }
+         Files.deleteIfExists(uploadDir);
+      }
+      catch(IOException e)
+      {
+         // temp files; the OS will reclaim them
+      }
+   }
+
+
+
+   /**
+    * Runs the mock standalone, in place of Prism.
+    *
+    * <p>Options: {@code --port N} (default 4010), {@code --latency-ms M} (log-normal median),
+    * {@code --p429 X}, {@code --p503 X}, {@code --retry-after S}, {@code --seed N},
+    * {@code --catalog T,Q,D}, {@code --parallel-uploads N}.
+    *
+    * @param args command line
+    * @throws Exception when the server cannot start
+    */
+   public static void main(String[] args) throws Exception
+   {
+      Map<String, String> opts = new TreeMap<>();
+      for(int i = 0; i + 1 < args.length; i += 2)
+      {
+         opts.put(args[i], args[i + 1]);
+      }
+
+      MockApiServer api = start(Integer.parseInt(opts.getOrDefault("--port", String.valueOf(DEFAULT_PORT))))
+         .withFaultRates(Double.parseDouble(opts.getOrDefault("--p429", "0")), Double.parseDouble(opts.getOrDefault("--p503", "0")))
+         .withRetryAfter(Duration.ofSeconds(Long.parseLong(opts.getOrDefault("--retry-after", "1"))))
+         .withSeed(Long.parseLong(opts.getOrDefault("--seed", "0")))
+         .withParallelUploads(Integer.parseInt(opts.getOrDefault("--parallel-uploads", "1")));
+      if(opts.containsKey("--latency-ms"))
+      {
+         api.withLatency(LatencyModel.logNormal(Duration.ofMillis(Long.parseLong(opts.get("--latency-ms"))), 0.5));
+      }
+      if(opts.containsKey("--catalog"))
+      {
+         int[] n = Arrays.stream(opts.get("--catalog").split(",")).mapToInt(Integer::parseInt).toArray();
+         api.withCatalog(n[0], n[1], n[2]);
+      }
+
+      Runtime.getRuntime().addShutdownHook(new Thread(api::close));
+      System.out.println("mock API listening on " + api.baseUri());
+      new CountDownLatch(1).await();
+   }
+
+
+
+   /***************************************************************************
+    ** Declares the DESIGN-2 routes.
+    ***************************************************************************/
+   private void registerRoutes()
+   {
+      route("GET", "/v1/templates", c -> page(c, filter(catalog.templates(), c.query.get("query"))));
+      route("GET", "/v1/templates/{templateId}", c -> found(catalog.template(c.param(1)).orElse(null)));
+      route("GET", "/v1/templates/{templateId}/versions", c -> page(c, versionsOf(catalog.template(c.param(1)).orElse(null))));
+      route("GET", "/v1/templates/{templateId}/versions/{version}", c -> found(versionOf(catalog.template(c.param(1)).orElse(null), c.param(2))));
+      route("GET", "/v1/qbits", c -> page(c, filter(catalog.qbits(), c.query.get("query"))));
+      route("GET", "/v1/qbits/{qbitId}", c -> found(catalog.qbit(c.param(1)).orElse(null)));
+      route("GET", "/v1/qbits/{qbitId}/versions", c -> page(c, versionsOf(catalog.qbit(c.param(1)).orElse(null))));
+      route("GET", "/v1/qbits/{qbitId}/versions/{version}", c -> found(versionOf(catalog.qbit(c.param(1)).orElse(null), c.param(2))));
+      route("GET", "/v1/qbits/{qbitId}/versions/{version}/tarball", c -> ranged(c, tarball(c.param(1), c.param(2))));
+
+      route("POST", "/v1/artifacts", c -> create(c, "kind", "digest", "sizeBytes"));
+      route("POST", "/v1/artifacts/uploads", c -> startUpload());
+      route("GET", "/v1/artifacts/uploads/{uploadId}", c -> uploadStatus(c.param(1)));
+      route("PATCH", "/v1/artifacts/uploads/{uploadId}", c -> appendUpload(c, c.param(1)));
+      route("PUT", "/v1/artifacts/uploads/{uploadId}", c -> finishUpload(c, c.param(1)));
+      route("GET", "/v1/artifacts/{artifactId}", c -> found(created.get(c.param(1))));
+      route("POST", "/v1/releases", c -> create(c, "appName", "version", "artifactId"));
+      route("GET", "/v1/releases/{releaseId}", c -> found(created.get(c.param(1))));
+      route("POST", "/v1/deployments", c -> create(c, "appName", "env", "releaseId"));
+      route("GET", "/v1/deployments/{deploymentId}", c -> found(created.get(c.param(1))));
+
+      route("GET", "/v1/apps/{appName}/deployments", c -> page(c, catalog.deployments(c.param(1))));
+      route("GET", "/v1/apps/{appName}/status", c -> json(200, Map.of("status", "healthy", "version", "0.1.0", "updatedAt", MockCatalog.UPDATED)));
+      route("GET", "/v1/apps/{appName}/logs", c -> logs(c.param(1)));
+
+      route("POST", "/v1/qstudio/plan", c -> create(c, "summary"));
+      route("GET", "/v1/qstudio/plans/{planId}", c -> found(created.get(c.param(1))));
+      route("GET", "/v1/qstudio/plans/{planId}/ledger", c -> ledger(c.param(1)));
+
+      route("GET", "/schemas/{schema}", c -> schema(c.param(1)));
+   }
+
+
+
+   /***************************************************************************
+    ** Registers one route; {name} segments match a single path segment.
+    ***************************************************************************/
+   private void route(String method, String template, Handler handler)
+   {
+      String regex = template.replaceAll("\\{[^/]+}", "([^/]+)");
+      routes.add(new Route(method, method + " " + template, Pattern.compile(regex), handler));
+   }
+
+
+
+   /***************************************************************************
+    ** Handles one exchange: latency, fault injection, routing, validators,
+    ** compression.
+    ***************************************************************************/
+   private void handle(HttpExchange ex) throws IOException
+   {
+      requests.incrementAndGet();
+      peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try
+      {
+         String  path  = ex.getRequestURI().getRawPath();
+         Route   route = null;
+         Matcher m     = null;
+         for(Route r : routes)
+         {
+            Matcher candidate = r.pattern.matcher(path);
+            if(r.method.equals(ex.getRequestMethod()) && candidate.matches())
+            {
+               route = r;
+               m = candidate;
+               break;
+            }
+         }
+         hits.computeIfAbsent(route != null ? route.name : ex.getRequestMethod() + " " + path, k -> new LongAdder()).increment();
+         sleep(latency.sampleMillis(random));
+
+         Reply reply = injectedFault();
+         if(reply == null)
+         {
+            try
+            {
+               reply = route == null
+                  ? problem(404, "not-found", "Not Found", "no route for " + ex.getRequestMethod() + " " + path)
+                  : route.handler.handle(new Call(m, query(ex.getRequestURI()), ex));
+            }
+            catch(IOException | RuntimeException e)
+            {
+               reply = problem(500, "internal", "Internal Server Error", String.valueOf(e.getMessage()));
+            }
+         }
+         send(ex, reply);
+      }
+      finally
+      {
+         active.decrementAndGet();
+         ex.close();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns a scripted or random 429/503, or null to serve normally.
+    ***************************************************************************/
+   private Reply injectedFault()
+   {
+      Integer status;
+      synchronized(scripted)
+      {
+         status = scripted.pollFirst();
+      }
+      if(status == null && (rate429 > 0 || rate503 > 0))
+      {
+         double roll = random.nextDouble();
+         status = roll < rate429 ? Integer.valueOf(429) : roll < rate429 + rate503 ? Integer.valueOf(503) : null;
+      }
+      if(status == null)
+      {
+         return null;
+      }
+
+      faults.incrementAndGet();
+      Reply r = status == 429
+         ? problem(429, "rate-limited", "Too Many Requests", "rate limit exceeded")
+         : problem(status, "unavailable", "Service Unavailable", "injected failure");
+      r.headers.put("Retry-After", String.valueOf(retryAfterSeconds));
+      return r;
+   }
+
+
+
+   /***************************************************************************
+    ** Creates a resource from a POST body, honoring Idempotency-Key.
+    ***************************************************************************/
+   private Reply create(Call c, String... required) throws IOException
+   {
+      Map<String, Object> in;
+      try
+      {
+         in = c.body().length == 0 ? Map.of() : mapper.readValue(c.body(), new TypeReference<LinkedHashMap<String, Object>>()
+         {
+         });
+      }
+      catch(IOException e)
+      {
+         return problem(400, "validation-error", "Invalid request", "body is not a JSON object");
+      }
+      for(String field : required)
+      {
+         if(!in.containsKey(field))
+         {
+            return problem(400, "validation-error", "Invalid request", "missing field: " + field);
+         }
+      }
+
+      String key = c.headers.getFirst("Idempotency-Key");
+      if(key == null)
+      {
+         return json(201, store(in));
+      }
+
+      String hash = sha256(c.body());
+      String slot = c.matcher.pattern().pattern() + " " + key;
+      Replay prior;
+      synchronized(idempotency)
+      {
+         prior = idempotency.get(slot);
+         if(prior == null)
+         {
+            Reply reply = json(201, store(in));
+            idempotency.put(slot, new Replay(hash, reply.body));
+            return reply;
+         }
+      }
+      if(!prior.requestHash.equals(hash))
+      {
+         return problem(409, "conflict", "Conflict", "Idempotency-Key reused with a different request body");
+      }
+      Reply replay = new Reply(200, JSON, prior.body);
+      replay.headers.put("Idempotent-Replayed", "true");
+      return replay;
+   }
+
+
+
+   /***************************************************************************
+    ** Opens a blob upload session (OCI style).
+    ***************************************************************************/
+   private Reply startUpload() throws IOException
+   {
+      String id = MockCatalog.ulid(nextId.incrementAndGet());
+      uploads.put(id, new Upload(Files.createFile(uploadDir.resolve(id))));
+      Reply reply = new Reply(202, JSON, new byte[0]);
+      reply.headers.put("Location", "/v1/artifacts/uploads/" + id);
+      reply.headers.put("Docker-Upload-UUID", id);
+      if(parallelUploads > 1)
+      {
+         reply.headers.put("X-Upload-Max-Parallel", String.valueOf(parallelUploads));
+      }
+      return reply;
+   }
+
+
+
+   /***************************************************************************
+    ** Reports how much of a session has been received, as an OCI Range header.
+    ***************************************************************************/
+   private Reply uploadStatus(String id)
+   {
+      Upload u = uploads.get(id);
+      if(u == null)
+      {
+         return problem(404, "blob-upload-unknown", "Not Found", "unknown upload session " + id);
+      }
+      Reply reply = new Reply(204, JSON, new byte[0]);
+      reply.headers.put("Location", "/v1/artifacts/uploads/" + id);
+      reply.headers.put("Docker-Upload-UUID", id);
+      reply.headers.put("Range", received(u));
+      return reply;
+   }
+
+
+
+   /***************************************************************************
+    ** OCI Range value for a session. Like docker/distribution, an empty session
+    ** reports {@code 0-0}, the same as one holding a single byte.
+    ***************************************************************************/
+   private static String received(Upload u)
+   {
+      return "0-" + Math.max(0L, u.size() - 1);
+   }
+
+
+
+   /***************************************************************************
+    ** Streams a PATCH body into the session at the Content-Range start (or at
+    ** the end when absent). Like an OCI registry, a sequential session only
+    ** takes a chunk that starts exactly at its current end (416 otherwise);
+    ** with parallel uploads enabled any start is accepted.
+    ***************************************************************************/
+   private Reply appendUpload(Call c, String id) throws IOException
+   {
+      Upload u = uploads.get(id);
+      if(u == null)
+      {
+         return problem(404, "blob-upload-unknown", "Not Found", "unknown upload session " + id);
+      }
+
+      long   start = u.size();
+      String range = c.headers.getFirst("Content-Range");
+      if(range != null)
+      {
+         start = Long.parseLong(range.replace("bytes", "").trim().split("-")[0]);
+         if(start != u.size() && parallelUploads == 1)
+         {
+            // Read the chunk first so the client sees the 416 rather than a reset connection
+            try(InputStream in = c.exchange.getRequestBody())
+            {
+               in.transferTo(OutputStream.nullOutputStream());
+            }
+            return problem(416, "range-invalid", "Range Not Satisfiable", "upload is at " + u.size() + ", chunk starts at " + start);
+         }
+      }
+
+      long end = start;
+      try(FileChannel ch = FileChannel.open(u.file, StandardOpenOption.WRITE); InputStream in = c.exchange.getRequestBody())
+      {
+         byte[] buf = new byte[UPLOAD_BUFFER_BYTES];
+         int    n;
+         while((n = in.read(buf)) > 0)
+         {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+            while(bb.hasRemaining())
+            {
+               end += ch.write(bb, end);
+            }
+         }
+      }
+      u.received(start, end);
+
+      Reply reply = new Reply(202, JSON, new byte[0]);
+      reply.headers.put("Location", "/v1/artifacts/uploads/" + id);
+      reply.headers.put("Docker-Upload-UUID", id);
+      reply.headers.put("Range", received(u));
+      return reply;
+   }
+
+
+
+   /***************************************************************************
+    ** Completes a session: appends any final body, then checks ?digest=.
+    ***************************************************************************/
+   private Reply finishUpload(Call c, String id) throws IOException
+   {
+      Upload u = uploads.get(id);
+      if(u == null)
+      {
+         return problem(404, "blob-upload-unknown", "Not Found", "unknown upload session " + id);
+      }
+      String expected = c.query.get("digest");
+      if(expected == null)
+      {
+         return problem(400, "digest-invalid", "Invalid request", "missing digest query parameter");
+      }
+      appendUpload(c, id);
+      if(!u.isContiguous())
+      {
+         return problem(400, "blob-upload-invalid", "Invalid request", "upload has gaps after byte " + u.size());
+      }
+
+      MessageDigest sha = newSha256();
+      try(InputStream in = Files.newInputStream(u.file))
+      {
+         byte[] buf = new byte[UPLOAD_BUFFER_BYTES];
+         int    n;
+         while((n = in.read(buf)) > 0)
+         {
+            sha.update(buf, 0, n);
+         }
+      }
+      String actual = "sha256:" + HexFormat.of().formatHex(sha.digest());
+      if(!actual.equals(expected))
+      {
+         return problem(400, "digest-invalid", "Invalid request", "expected " + expected + " but received " + actual);
+      }
+
+      uploads.remove(id);
+      Files.deleteIfExists(u.file);
+      Reply reply = new Reply(201, JSON, new byte[0]);
+      reply.headers.put("Location", "/v1/artifacts/blobs/" + actual);
+      reply.headers.put("Docker-Content-Digest", actual);
+      return reply;
+   }
+
+
+
+   /***************************************************************************
+    ** Assigns an id and timestamp (unless supplied) and stores the resource.
+    ***************************************************************************/
+   private Map<String, Object> store(Map<String, Object> in)
+   {
+      Map<String, Object> out = new LinkedHashMap<>(in);
+      out.putIfAbsent("id", MockCatalog.ulid(nextId.incrementAndGet()));
+      out.putIfAbsent("createdAt", MockCatalog.TIMESTAMP);
+      created.put(String.valueOf(out.get("id")), out);
+      return out;
+   }
+
+
+
+   /***************************************************************************
+    ** Serves one page of a list with X-Total-Count, validating page/size.
+    ***************************************************************************/
+   private Reply page(Call c, List<Map<String, Object>> all)
+   {
+      if(all == null)
+      {
+         return notFound();
+      }
+      int page;
+      int size;
+      try
+      {
+         page = Integer.parseInt(c.query.getOrDefault("page", "0"));
+         size = Integer.parseInt(c.query.getOrDefault("size", String.valueOf(DEFAULT_PAGE_SIZE)));
+      }
+      catch(NumberFormatException e)
+      {
+         return problem(400, "validation-error", "Invalid request", "page and size must be integers");
+      }
+      if(page < 0 || size < 1 || size > MAX_PAGE_SIZE)
+      {
+         return problem(400, "validation-error", "Invalid request", "page must be >= 0 and size 1.." + MAX_PAGE_SIZE);
+      }
+
+      long  from  = Math.min((long) page * size, all.size());
+      int   to    = (int) Math.min(from + size, all.size());
+      Reply reply = json(200, all.subList((int) from, to));
+      reply.headers.put("X-Total-Count", String.valueOf(all.size()));
+      return reply;
+   }
+
+
+
+   /***************************************************************************
+    ** Filters catalog entries by a case-insensitive name/description match.
+    ***************************************************************************/
+   private static List<Map<String, Object>> filter(List<Map<String, Object>> all, String query)
+   {
+      if(query == null || query.isBlank())
+      {
+         return all;
+      }
+      String q = query.toLowerCase(Locale.ROOT);
+      return all.stream()
+         .filter(m -> (m.get("name") + " " + m.get("description")).toLowerCase(Locale.ROOT).contains(q))
+         .toList();
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the versions of a catalog entry, or null when it is unknown.
+    ***************************************************************************/
+   private List<Map<String, Object>> versionsOf(Map<String, Object> entry)
+   {
+      return entry == null ? null : catalog.versions(String.valueOf(entry.get("id")));
+   }
+
+
+
+   /***************************************************************************
+    ** Returns one version of a catalog entry, or null.
+    ***************************************************************************/
+   private Map<String, Object> versionOf(Map<String, Object> entry, String version)
+   {
+      List<Map<String, Object>> all = versionsOf(entry);
+      return all == null ? null : all.stream().filter(v -> version.equals(v.get("version"))).findFirst().orElse(null);
+   }
+
+
+
+   /***************************************************************************
+    ** Serves a binary body, honoring a single {@code bytes=a-b} or
+    ** {@code bytes=a-} Range with 206 (416 when it starts past the end).
+    ***************************************************************************/
+   private Reply ranged(Call c, byte[] data)
+   {
+      String range = c.headers.getFirst("Range");
+      if(!ranges || range == null || !range.startsWith("bytes="))
+      {
+         Reply whole = new Reply(200, "application/octet-stream", data);
+         whole.headers.put("Accept-Ranges", ranges ? "bytes" : "none");
+         return whole;
+      }
+
+      String[] bounds = range.substring("bytes=".length()).split("-", 2);
+      long     start  = Long.parseLong(bounds[0].trim());
+      long     end    = bounds[1].isBlank() ? data.length - 1 : Math.min(Long.parseLong(bounds[1].trim()), data.length - 1);
+      if(start >= data.length || end < start)
+      {
+         Reply unsatisfiable = problem(416, "range-invalid", "Range Not Satisfiable", "range " + range + " outside 0-" + (data.length - 1));
+         unsatisfiable.headers.put("Content-Range", "bytes */" + data.length);
+         return unsatisfiable;
+      }
+      Reply part = new Reply(206, "application/octet-stream", Arrays.copyOfRange(data, (int) start, (int) end + 1));
+      part.headers.put("Accept-Ranges", "bytes");
+      part.headers.put("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+      return part;
+   }
+
+
+
+   /***************************************************************************
+    ** Serves plain-text logs for an app.
+    ***************************************************************************/
+   private static Reply logs(String app)
+   {
+      String text = "2025-01-15T12:04:57Z " + app + "[web]: started\n"
+         + "2025-01-15T12:04:58Z " + app + "[web]: listening on :8080\n"
+         + "2025-01-15T12:05:00Z " + app + "[web]: health=ok\n";
+      return new Reply(200, TEXT, text.getBytes(StandardCharsets.UTF_8));
+   }
+
+
+
+   /***************************************************************************
+    ** Serves the ledger of a plan created through this server.
+    ***************************************************************************/
+   private Reply ledger(String planId)
+   {
+      if(!created.containsKey(planId))
+      {
+         return notFound();
+      }
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("id", "01J0M46Z4B7C9D1E2F3G4H5J6K");
+      entry.put("planId", planId);
+      entry.put("provider", "selfhosted");
+      entry.put("promptHash", "ph_abc123");
+      entry.put("outputHash", "oh_def456");
+      entry.put("timestamp", "2025-01-15T12:01:00Z");
+      return json(200, List.of(entry));
+   }
+
+
+
+   /***************************************************************************
+    ** Serves a JSON Schema: the bundled one when present on the classpath,
+    ** otherwise a permissive placeholder.
+    ***************************************************************************/
+   private Reply schema(String name)
+   {
+      try(InputStream in = MockApiServer.class.getResourceAsStream("/schema/" + name))
+      {
+         if(in != null)
+         {
+            return new Reply(200, "application/schema+json", in.readAllBytes());
+         }
+      }
+      catch(IOException e)
+      {
+         return problem(500, "internal", "Internal Server Error", e.getMessage());
+      }
+      return json(200, Map.of("$schema", "https://json-schema.org/draft/2020-12/schema", "$id", "https://qrun.io/schemas/" + name, "type", "object"));
+   }
+
+
+
+   /***************************************************************************
+    ** Returns a 200 with the entity, or a 404 problem when it is null.
+    ***************************************************************************/
+   private Reply found(Object entity)
+   {
+      return entity == null ? notFound() : json(200, entity);
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the standard 404 problem.
+    ***************************************************************************/
+   private Reply notFound()
+   {
+      return problem(404, "not-found", "Not Found", "resource not found");
+   }
+
+
+
+   /***************************************************************************
+    ** Serializes a JSON reply.
+    ***************************************************************************/
+   private Reply json(int status, Object entity)
+   {
+      try
+      {
+         return new Reply(status, JSON, mapper.writeValueAsBytes(entity));
+      }
+      catch(IOException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Builds an RFC 7807 problem reply.
+    ***************************************************************************/
+   private Reply problem(int status, String type, String title, String detail)
+   {
+      Map<String, Object> p = new LinkedHashMap<>();
+      p.put("type", "https://qrun.io/problems/" + type);
+      p.put("title", title);
+      p.put("status", status);
+      p.put("detail", detail);
+      Reply r = json(status, p);
+      return new Reply(r.status, PROBLEM, r.body);
+   }
+
+
+
+   /***************************************************************************
+    ** Writes a reply, adding an ETag/304 for successful GETs and gzip when
+    ** accepted.
+    ***************************************************************************/
+   private void send(HttpExchange ex, Reply reply) throws IOException
+   {
+      Headers out  = ex.getResponseHeaders();
+      byte[]  body = reply.body;
+      int     sc   = reply.status;
+      reply.headers.forEach(out::set);
+      out.set("Accept-Encoding", "gzip");
+
+      if(sc == 200 && "GET".equals(ex.getRequestMethod()))
+      {
+         String etag = "\"" + sha256(body).substring(0, 16) + "\"";
+         out.set("ETag", etag);
+         out.set("Cache-Control", "no-cache");
+         if(etag.equals(ex.getRequestHeaders().getFirst("If-None-Match")))
+         {
+            ex.sendResponseHeaders(304, -1);
+            return;
+         }
+      }
+
+      out.set("Content-Type", reply.contentType);
+      String accept = ex.getRequestHeaders().getFirst("Accept-Encoding");
+      if(accept != null && accept.contains("gzip") && body.length >= GZIP_MIN_BYTES)
+      {
+         body = gzip(body);
+         out.set("Content-Encoding", "gzip");
+      }
+      ex.sendResponseHeaders(sc, body.length == 0 ? -1 : body.length);
+      try(OutputStream os = ex.getResponseBody())
+      {
+         os.write(body);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Reads the request body, decoding Content-Encoding: gzip.
+    ***************************************************************************/
+   private static byte[] readBody(HttpExchange ex) throws IOException
+   {
+      InputStream in = ex.getRequestBody();
+      if("gzip".equalsIgnoreCase(ex.getRequestHeaders().getFirst("Content-Encoding")))
+      {
+         in = new GZIPInputStream(in);
+      }
+      try(InputStream body = in)
+      {
+         return body.readAllBytes();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Parses the query string into a map (last value wins).
+    ***************************************************************************/
+   private static Map<String, String> query(URI uri)
+   {
+      Map<String, String> out = new LinkedHashMap<>();
+      String              raw = uri.getRawQuery();
+      if(raw == null)
+      {
+         return out;
+      }
+      for(String pair : raw.split("&"))
+      {
+         int eq = pair.indexOf('=');
+         if(eq > 0)
+         {
+            out.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+         }
+      }
+      return out;
+   }
+
+
+
+   /***************************************************************************
+    ** Sleeps for the sampled latency; handlers run on virtual threads.
+    ***************************************************************************/
+   private static void sleep(long ms)
+   {
+      if(ms <= 0)
+      {
+         return;
+      }
+      try
+      {
+         Thread.sleep(ms);
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Gzip-encodes a body.
+    ***************************************************************************/
+   private static byte[] gzip(byte[] body) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2 + 64);
+      try(GZIPOutputStream gz = new GZIPOutputStream(bytes))
+      {
+         gz.write(body);
+      }
+      return bytes.toByteArray();
+   }
+
+
+
+   /***************************************************************************
+    ** Hex SHA-256 of a byte array.
+    ***************************************************************************/
+   private static String sha256(byte[] bytes)
+   {
+      return HexFormat.of().formatHex(newSha256().digest(bytes));
+   }
+
+
+
+   /***************************************************************************
+    ** New SHA-256 instance.
+    ***************************************************************************/
+   private static MessageDigest newSha256()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Route handler.
+    ***************************************************************************/
+   @FunctionalInterface
+   private interface Handler
+   {
+      /***************************************************************************
+       ** Produces the reply for a matched request.
+       ***************************************************************************/
+      Reply handle(Call call) throws IOException;
+   }
+
+
+
+   /***************************************************************************
+    ** A registered route.
+    ***************************************************************************/
+   private static final class Route
+   {
+      final String  method;
+      final String  name;
+      final Pattern pattern;
+      final Handler handler;
+
+
+
+      /***************************************************************************
+       ** Creates a route.
+       ***************************************************************************/
+      Route(String method, String name, Pattern pattern, Handler handler)
+      {
+         this.method = method;
+         this.name = name;
+         this.pattern = pattern;
+         this.handler = handler;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** A matched request: path parameters, query, headers and the body, which
+    ** is read lazily so upload handlers can stream it.
+    ***************************************************************************/
+   private static final class Call
+   {
+      final Matcher             matcher;
+      final Map<String, String> query;
+      final Headers             headers;
+      final HttpExchange        exchange;
+
+      private byte[] body;
+
+
+
+      /***************************************************************************
+       ** Creates a call.
+       ***************************************************************************/
+      Call(Matcher matcher, Map<String, String> query, HttpExchange exchange)
+      {
+         this.matcher = matcher;
+         this.query = query;
+         this.headers = exchange.getRequestHeaders();
+         this.exchange = exchange;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns a URL-decoded path parameter by position (1-based).
+       ***************************************************************************/
+      String param(int index)
+      {
+         return URLDecoder.decode(matcher.group(index), StandardCharsets.UTF_8);
+      }
+
+
+
+      /***************************************************************************
+       ** Reads (once) and returns the decoded request body.
+       ***************************************************************************/
+      byte[] body() throws IOException
+      {
+         if(body == null)
+         {
+            body = readBody(exchange);
+         }
+         return body;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** A response to write: status, content type, body and extra headers.
+    ***************************************************************************/
+   private static final class Reply
+   {
+      final int                 status;
+      final String              contentType;
+      final byte[]              body;
+      final Map<String, String> headers = new LinkedHashMap<>();
+
+
+
+      /***************************************************************************
+       ** Creates a reply.
+       ***************************************************************************/
+      Reply(int status, String contentType, byte[] body)
+      {
+         this.status = status;
+         this.contentType = contentType;
+         this.body = body;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** An open blob upload session: its spool file and the byte ranges received
+    ** (start → end, merged), whose first range is the contiguous prefix.
+    ***************************************************************************/
+   private static final class Upload
+   {
+      final Path file;
+
+      private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+
+
+      /***************************************************************************
+       ** Creates a session over a spool file.
+       ***************************************************************************/
+      Upload(Path file)
+      {
+         this.file = file;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the length of the contiguous prefix received from byte 0.
+       ***************************************************************************/
+      synchronized long size()
+      {
+         Map.Entry<Long, Long> first = ranges.firstEntry();
+         return first != null && first.getKey() == 0L ? first.getValue() : 0L;
+      }
+
+
+
+      /***************************************************************************
+       ** Returns whether everything received forms one range from byte 0.
+       ***************************************************************************/
+      synchronized boolean isContiguous()
+      {
+         return ranges.isEmpty() || (ranges.size() == 1 && ranges.firstKey() == 0L);
+      }
+
+
+
+      /***************************************************************************
+       ** Records that bytes {@code [start, end)} have been written, merging with
+       ** adjacent or overlapping ranges.
+       ***************************************************************************/
+      synchronized void received(long start, long end)
+      {
+         if(end <= start)
+         {
+            return;
+         }
+         long                  from  = start;
+         long                  to    = end;
+         Map.Entry<Long, Long> below = ranges.floorEntry(from);
+         if(below != null && below.getValue() >= from)
+         {
+            from = below.getKey();
+            to = Math.max(to, below.getValue());
+         }
+         Map.Entry<Long, Long> next = ranges.ceilingEntry(from);
+         while(next != null && next.getKey() <= to)
+         {
+            to = Math.max(to, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(from);
+         }
+         ranges.put(from, to);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** A stored idempotent response and the hash of the request that made it.
+    ***************************************************************************/
+   private static final class Replay
+   {
+      final String requestHash;
+      final byte[] body;
+
+
+
+      /***************************************************************************
+       ** Creates a replay record.
+       ***************************************************************************/
+      Replay(String requestHash, byte[] body)
+      {
+         this.requestHash = requestHash;
+         this.body = body;
+      }
+   }
+}
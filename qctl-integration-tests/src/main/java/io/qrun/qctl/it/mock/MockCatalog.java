@@ -0,0 +1,279 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.it.mock;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+
+/**
+ * Deterministic data set served by {@link MockApiServer}: templates, qBits and per-app
+ * deployments, seeded with the DESIGN-2 examples and padded with generated entries.
+ *
+ * Why: Pagination and fan-out tests need lists far longer than the single OpenAPI example,
+ * with stable IDs so runs are repeatable.
+ * @since 0.1.0
+ */
+final class MockCatalog
+{
+   static final String TIMESTAMP = "2025-01-15T12:00:00Z";
+   static final String UPDATED   = "2025-01-15T12:05:00Z";
+
+   private static final String CROCKFORD  = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+   private static final String ULID_EPOCH = "01J0M";
+   private static final int    ULID_LEN   = 26;
+   private static final int    BASE32     = 32;
+
+   private static final long TEMPLATE_IDS   = 1_000_000L;
+   private static final long QBIT_IDS       = 2_000_000L;
+   private static final long DEPLOYMENT_IDS = 3_000_000L;
+
+   private final List<Map<String, Object>>              templates   = new ArrayList<>();
+   private final List<Map<String, Object>>              qbits       = new ArrayList<>();
+   private final Map<String, List<Map<String, Object>>> versions    = new LinkedHashMap<>();
+   private final int                                    deployments;
+
+
+
+   /**
+    * Builds a catalog.
+    *
+    * @param templateCount   number of templates (at least the DESIGN-2 example)
+    * @param qbitCount       number of qBits (at least the DESIGN-2 examples)
+    * @param deploymentCount number of deployments listed per app
+    */
+   MockCatalog(int templateCount, int qbitCount, int deploymentCount)
+   {
+      this.deployments = deploymentCount;
+
+      templates.add(template("01J0M3K6K7Q8Z6ZDX8Q5A2F7KM", "web-basic", "Basic web app starter", "1.2.0"));
+      for(int i = 1; i < templateCount; i++)
+      {
+         templates.add(template(ulid(TEMPLATE_IDS + i), String.format(Locale.ROOT, "template-%04d", i), "Generated template " + i, "1.0." + (i % 10)));
+      }
+
+      qbits.add(qbit("01J0M3QF5V2J0F1TBKQ1S6F2ZP", "io.qbits/auth", "Authentication & RBAC", "2.3.1", List.of("io.qbits/jwt@^1.4.0")));
+      qbits.add(qbit("01J0M3QF5V2J0F1TBKQ1S6F2ZQ", "io.qbits/jwt", "JSON Web Tokens", "1.4.2", List.of()));
+      for(int i = 2; i < qbitCount; i++)
+      {
+         qbits.add(qbit(ulid(QBIT_IDS + i), String.format(Locale.ROOT, "io.qbits/gen-%04d", i), "Generated qBit " + i, "0.1." + (i % 10), List.of()));
+      }
+   }
+
+
+
+   /**
+    * Returns every template.
+    *
+    * @return templates in catalog order
+    */
+   List<Map<String, Object>> templates()
+   {
+      return templates;
+   }
+
+
+
+   /**
+    * Returns every qBit.
+    *
+    * @return qBits in catalog order
+    */
+   List<Map<String, Object>> qbits()
+   {
+      return qbits;
+   }
+
+
+
+   /**
+    * Finds a template by ULID or name.
+    *
+    * @param idOrName template ID or name
+    * @return template, if known
+    */
+   Optional<Map<String, Object>> template(String idOrName)
+   {
+      return find(templates, idOrName);
+   }
+
+
+
+   /**
+    * Finds a qBit by ULID or name.
+    *
+    * @param idOrName qBit ID or name (e.g. {@code io.qbits/auth})
+    * @return qBit, if known
+    */
+   Optional<Map<String, Object>> qbit(String idOrName)
+   {
+      return find(qbits, idOrName);
+   }
+
+
+
+   /**
+    * Returns the published versions of a template or qBit, newest first.
+    *
+    * @param id template or qBit ULID
+    * @return versions (empty when unknown)
+    */
+   List<Map<String, Object>> versions(String id)
+   {
+      return versions.getOrDefault(id, List.of());
+   }
+
+
+
+   /**
+    * Returns the deployments of an app, newest first.
+    *
+    * @param appName app name
+    * @return generated deployments
+    */
+   List<Map<String, Object>> deployments(String appName)
+   {
+      List<Map<String, Object>> out = new ArrayList<>(deployments);
+      for(int i = 0; i < deployments; i++)
+      {
+         Map<String, Object> d = new LinkedHashMap<>();
+         d.put("id", i == 0 ? "01J0M43J8E4S7N9C0L2X5V6B3M" : ulid(DEPLOYMENT_IDS + Math.abs(appName.hashCode() % 1000) * 100_000L + i));
+         d.put("appName", appName);
+         d.put("env", i % 3 == 0 ? "dev" : i % 3 == 1 ? "staging" : "prod");
+         d.put("releaseId", "01J0M41V9X5J2B4M5H0G7D2T1Q");
+         d.put("status", i == 0 ? "active" : "superseded");
+         d.put("createdAt", TIMESTAMP);
+         d.put("updatedAt", UPDATED);
+         out.add(d);
+      }
+      return out;
+   }
+
+
+
+   /**
+    * Encodes a number as a 26-character Crockford base32 ULID with a fixed time prefix.
+    *
+    * @param n sequence number
+    * @return deterministic ULID
+    */
+   static String ulid(long n)
+   {
+      char[] out = new char[ULID_LEN];
+      long   v   = n;
+      for(int i = ULID_LEN - 1; i >= ULID_EPOCH.length(); i--)
+      {
+         out[i] = CROCKFORD.charAt((int) (v % BASE32));
+         v /= BASE32;
+      }
+      ULID_EPOCH.getChars(0, ULID_EPOCH.length(), out, 0);
+      return new String(out);
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a template and its versions.
+    ***************************************************************************/
+   private Map<String, Object> template(String id, String name, String description, String latest)
+   {
+      Map<String, Object> t = new LinkedHashMap<>();
+      t.put("id", id);
+      t.put("name", name);
+      t.put("description", description);
+      t.put("latestVersion", latest);
+      t.put("createdAt", TIMESTAMP);
+
+      List<Map<String, Object>> list = new ArrayList<>();
+      for(String v : olderVersions(latest))
+      {
+         Map<String, Object> tv = new LinkedHashMap<>();
+         tv.put("templateId", id);
+         tv.put("version", v);
+         tv.put("manifestUrl", "https://templates.qrun.io/" + name + "/" + v + "/manifest.yaml");
+         tv.put("signatureUrl", "https://templates.qrun.io/" + name + "/" + v + "/manifest.sig");
+         tv.put("sha256", Integer.toHexString((name + v).hashCode()));
+         tv.put("createdAt", TIMESTAMP);
+         list.add(tv);
+      }
+      versions.put(id, list);
+      return t;
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a qBit and its versions.
+    ***************************************************************************/
+   private Map<String, Object> qbit(String id, String name, String description, String latest, List<String> dependencies)
+   {
+      Map<String, Object> q = new LinkedHashMap<>();
+      q.put("id", id);
+      q.put("name", name);
+      q.put("description", description);
+      q.put("latestVersion", latest);
+      q.put("publisher", "qrun.io");
+      q.put("createdAt", TIMESTAMP);
+
+      List<Map<String, Object>> list = new ArrayList<>();
+      for(String v : olderVersions(latest))
+      {
+         Map<String, Object> qv = new LinkedHashMap<>();
+         qv.put("qbitId", id);
+         qv.put("version", v);
+         qv.put("tarballUrl", "https://registry.qrun.io/" + name + "/" + v + ".tgz");
+         qv.put("signatureUrl", "https://registry.qrun.io/" + name + "/" + v + ".tgz.sig");
+         qv.put("sha512", Integer.toHexString((name + v).hashCode()));
+         qv.put("dependencies", dependencies);
+         qv.put("createdAt", TIMESTAMP);
+         list.add(qv);
+      }
+      versions.put(id, list);
+      return q;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the given version followed by earlier minor releases, newest first.
+    ***************************************************************************/
+   private static List<String> olderVersions(String latest)
+   {
+      String[]     parts = latest.split("\\.");
+      int          minor = Integer.parseInt(parts[1]);
+      List<String> out   = new ArrayList<>();
+      out.add(latest);
+      for(int m = minor - 1; m >= 0 && out.size() < 3; m--)
+      {
+         out.add(parts[0] + "." + m + ".0");
+      }
+      return out;
+   }
+
+
+
+   /***************************************************************************
+    ** Finds an entry by id or name.
+    ***************************************************************************/
+   private static Optional<Map<String, Object>> find(List<Map<String, Object>> list, String idOrName)
+   {
+      return list.stream()
+         .filter(m -> idOrName.equals(m.get("id")) || idOrName.equals(m.get("name")))
+         .findFirst();
+   }
+}
@@ -0,0 +1,333 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.it.pgo;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalInt;
+import io.qrun.qctl.core.daemon.DaemonClient;
+import io.qrun.qctl.core.daemon.DaemonServer;
+import io.qrun.qctl.core.sys.Invocation;
+
+
+/**
+ * Compares a plain native image with its profile-guided build and writes a Markdown report.
+ *
+ * <p>Startup is the wall time of separate {@code --version}, {@code --help} and
+ * {@code qrun status} processes (median and p90). Peak throughput is measured on a warm
+ * {@code qctl daemon} started from each image: after a warm-up, {@code qrun status} requests are
+ * sent back to back for a fixed time and counted. Every run gets its own cache and config
+ * directories. Like {@link io.qrun.qctl.core.TrainingWorkload}, it needs the mock API on
+ * {@code localhost:4010}. It is build tooling for the {@code native-pgo} profile of
+ * {@code qctl-cli} and is not part of the shipped CLI.
+ *
+ * <p>Arguments: plain image, PGO image, report file, and a scratch directory.
+ *
+ * Why: PGO only pays for its longer build if the numbers show it; they are recorded with each build.
+ * @since 0.1.0
+ */
+public final class NativeImageComparison
+{
+   private static final int          STARTUP_RUNS       = 20;
+   private static final int          WARMUP_RUNS        = 2;
+   private static final int          DAEMON_WARMUP      = 200;
+   private static final Duration     THROUGHPUT_WINDOW  = Duration.ofSeconds(10);
+   private static final Duration     DAEMON_START_LIMIT = Duration.ofSeconds(30);
+   private static final List<String> STATUS             = List.of("qrun", "status", "--app", "training", "--env", "dev");
+
+
+
+   /***************************************************************************
+    ** Not instantiable.
+    ***************************************************************************/
+   private NativeImageComparison()
+   {
+   }
+
+
+
+   /**
+    * Measures both images and writes the report.
+    *
+    * @param args plain image, PGO image, report file, scratch directory
+    * @throws Exception when an image cannot be run or a measured command fails
+    */
+   public static void main(String[] args) throws Exception
+   {
+      if(args.length < 4)
+      {
+         System.err.println("usage: NativeImageComparison <plain-image> <pgo-image> <report.md> <work-dir>");
+         System.exit(2);
+      }
+      Path plain  = Path.of(args[0]);
+      Path pgo    = Path.of(args[1]);
+      Path report = Path.of(args[2]);
+      Path work   = Files.createDirectories(Path.of(args[3]));
+
+      Result a = measure("plain", plain, work.resolve("plain"));
+      Result b = measure("pgo", pgo, work.resolve("pgo"));
+
+      StringBuilder md = new StringBuilder();
+      md.append("# Native image: plain vs PGO\n\n");
+      md.append("Startup: ").append(STARTUP_RUNS).append(" runs per command after ").append(WARMUP_RUNS).append(" warm-up runs.\n");
+      md.append("Throughput: `qctl ").append(String.join(" ", STATUS)).append("` on a warm daemon for ")
+         .append(THROUGHPUT_WINDOW.toSeconds()).append(" s after ").append(DAEMON_WARMUP).append(" warm-up requests.\n\n");
+      md.append("| Metric | plain | PGO | change |\n");
+      md.append("|---|---:|---:|---:|\n");
+      row(md, "binary size (MiB)", a.sizeBytes / 1048576.0, b.sizeBytes / 1048576.0);
+      for(String name : a.startup.keySet())
+      {
+         Samples sa = a.startup.get(name);
+         Samples sb = b.startup.get(name);
+         row(md, "`" + name + "` median (ms)", sa.median(), sb.median());
+         row(md, "`" + name + "` p90 (ms)", sa.p90(), sb.p90());
+      }
+      row(md, "daemon throughput (req/s)", a.throughput, b.throughput);
+
+      Files.createDirectories(report.toAbsolutePath().getParent());
+      Files.writeString(report, md, StandardCharsets.UTF_8);
+      System.out.print(md);
+   }
+
+
+
+   /***************************************************************************
+    ** Runs all measurements for one image.
+    ***************************************************************************/
+   private static Result measure(String label, Path image, Path work) throws Exception
+   {
+      Map<String, String> env = isolatedEnv(work);
+
+      Map<String, Samples> startup = new LinkedHashMap<>();
+      for(List<String> argv : List.of(List.of("--version"), List.of("--help"), STATUS))
+      {
+         List<String> command = new ArrayList<>();
+         command.add(image.toString());
+         command.add("--no-daemon");
+         command.addAll(argv);
+         for(int i = 0; i < WARMUP_RUNS; i++)
+         {
+            run(command, env, work);
+         }
+         Samples samples = new Samples();
+         for(int i = 0; i < STARTUP_RUNS; i++)
+         {
+            long start = System.nanoTime();
+            run(command, env, work);
+            samples.add((System.nanoTime() - start) / 1_000_000.0);
+         }
+         startup.put("qctl " + String.join(" ", argv), samples);
+      }
+
+      System.err.println("measured " + label + " startup; measuring daemon throughput");
+      return new Result(Files.size(image), startup, throughput(image, env, work));
+   }
+
+
+
+   /***************************************************************************
+    ** Starts a daemon from the image and counts requests completed within the
+    ** measurement window.
+    ***************************************************************************/
+   private static double throughput(Path image, Map<String, String> env, Path work) throws Exception
+   {
+      Path           socket = new Invocation(env, null, System.out, System.err).call(DaemonServer::defaultSocket);
+      ProcessBuilder pb     = new ProcessBuilder(image.toString(), "daemon", "--idle-timeout", "120")
+         .directory(work.toFile())
+         .redirectErrorStream(true)
+         .redirectOutput(work.resolve("daemon.log").toFile());
+      pb.environment().putAll(env);
+      Process daemon = pb.start();
+      try
+      {
+         long deadline = System.nanoTime() + DAEMON_START_LIMIT.toNanos();
+         while(forward(socket, List.of("--version"), env).isEmpty())
+         {
+            if(!daemon.isAlive() || System.nanoTime() > deadline)
+            {
+               throw new IOException("daemon from " + image + " did not come up; see " + work.resolve("daemon.log"));
+            }
+            Thread.sleep(50L);
+         }
+
+         for(int i = 0; i < DAEMON_WARMUP; i++)
+         {
+            check(forward(socket, STATUS, env), STATUS);
+         }
+         long count = 0;
+         long start = System.nanoTime();
+         long end   = start + THROUGHPUT_WINDOW.toNanos();
+         long now   = start;
+         while(now < end)
+         {
+            check(forward(socket, STATUS, env), STATUS);
+            count++;
+            now = System.nanoTime();
+         }
+         double seconds = (now - start) / 1e9;
+
+         forward(socket, List.of("daemon", "stop"), env);
+         daemon.waitFor();
+         return count / seconds;
+      }
+      finally
+      {
+         daemon.destroy();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Sends one request to the daemon, discarding its output.
+    ***************************************************************************/
+   private static OptionalInt forward(Path socket, List<String> argv, Map<String, String> env)
+   {
+      return DaemonClient.forward(socket, argv, env, OutputStream.nullOutputStream(), OutputStream.nullOutputStream());
+   }
+
+
+
+   /***************************************************************************
+    ** Fails when a forwarded command did not run or did not succeed.
+    ***************************************************************************/
+   private static void check(OptionalInt code, List<String> argv) throws IOException
+   {
+      if(code.isEmpty() || code.getAsInt() != 0)
+      {
+         throw new IOException("qctl " + String.join(" ", argv) + " failed on the daemon: " + code);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Runs one process to completion, failing on a non-zero exit.
+    ***************************************************************************/
+   private static void run(List<String> command, Map<String, String> env, Path work) throws IOException, InterruptedException
+   {
+      ProcessBuilder pb = new ProcessBuilder(command)
+         .directory(work.toFile())
+         .redirectErrorStream(true)
+         .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+      pb.environment().putAll(env);
+      int code = pb.start().waitFor();
+      if(code != 0)
+      {
+         throw new IOException(String.join(" ", command) + " exited " + code);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns this process's environment with cache and config directories
+    ** under the scratch directory.
+    ***************************************************************************/
+   private static Map<String, String> isolatedEnv(Path work) throws IOException
+   {
+      Path                cache = Files.createDirectories(work.resolve("cache")).toAbsolutePath();
+      Path                conf  = Files.createDirectories(work.resolve("config")).toAbsolutePath();
+      Map<String, String> env   = new HashMap<>(System.getenv());
+      env.put("XDG_CACHE_HOME", cache.toString());
+      env.put("XDG_CONFIG_HOME", conf.toString());
+      env.put("LOCALAPPDATA", cache.toString());
+      env.put("APPDATA", conf.toString());
+      return env;
+   }
+
+
+
+   /***************************************************************************
+    ** Appends one table row with the relative change from plain to PGO.
+    ***************************************************************************/
+   private static void row(StringBuilder md, String metric, double plain, double pgo)
+   {
+      String change = plain == 0 ? "n/a" : String.format(Locale.ROOT, "%+.1f%%", (pgo - plain) * 100.0 / plain);
+      md.append(String.format(Locale.ROOT, "| %s | %.1f | %.1f | %s |%n", metric, plain, pgo, change));
+   }
+
+
+
+   /***************************************************************************
+    ** Measurements of one image.
+    ***************************************************************************/
+   private record Result(long sizeBytes, Map<String, Samples> startup, double throughput)
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** Wall-time samples in milliseconds.
+    ***************************************************************************/
+   private static final class Samples
+   {
+      private final List<Double> values = new ArrayList<>();
+
+
+
+      /***************************************************************************
+       ** Adds a sample.
+       ***************************************************************************/
+      void add(double millis)
+      {
+         values.add(millis);
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the median.
+       ***************************************************************************/
+      double median()
+      {
+         return percentile(50);
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the 90th percentile.
+       ***************************************************************************/
+      double p90()
+      {
+         return percentile(90);
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the nearest-rank percentile.
+       ***************************************************************************/
+      private double percentile(int p)
+      {
+         List<Double> sorted = new ArrayList<>(values);
+         Collections.sort(sorted);
+         int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+         return sorted.get(Math.max(0, rank - 1));
+      }
+   }
+}
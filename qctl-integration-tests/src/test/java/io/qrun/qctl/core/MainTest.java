@@ -0,0 +1,78 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core;
+
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import io.qrun.qctl.qbit.QbitCommand;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Checks lazy plugin registration in {@link Main} against the build-time command index.
+ */
+class MainTest
+{
+   /** Only the invoked plugin is instantiated; the others are index stubs. */
+   @Test
+   void instantiates_only_the_named_plugin()
+   {
+      CommandLine cmd = Main.commandLine(new String[] { "qbit", "resolve", "--hermetic" });
+
+      assertThat(cmd.getSubcommands()).containsKeys("qbit", "qrun");
+      assertThat((Object) cmd.getSubcommands().get("qbit").getCommand()).isInstanceOf(QbitCommand.class);
+      assertThat((Object) cmd.getSubcommands().get("qrun").getCommand()).isNull();
+      assertThat(cmd.getSubcommands().get("qrun").getSubcommands()).isEmpty();
+   }
+
+
+
+   /** Usage help lists stubbed plugins with their indexed description. */
+   @Test
+   void help_lists_indexed_plugins()
+   {
+      StringWriter out = new StringWriter();
+      CommandLine  cmd = Main.commandLine(new String[] { "--help" });
+      cmd.usage(new PrintWriter(out));
+
+      assertThat(out.toString()).contains("qrun").contains("qRun lifecycle commands").contains("qbit");
+   }
+
+
+
+   /** --trace-startup takes a file in either form but leaves a following subcommand alone. */
+   @Test
+   void reads_trace_startup_target_in_both_forms()
+   {
+      assertThat(traceTarget("--trace-startup", "out.json", "qrun", "status", "--app", "a", "--env", "dev")).isEqualTo("out.json");
+      assertThat(traceTarget("--trace-startup=out.json", "qrun", "status", "--app", "a", "--env", "dev")).isEqualTo("out.json");
+      assertThat(traceTarget("--trace-startup", "qrun", "status", "--app", "a", "--env", "dev")).isEmpty();
+      assertThat(Main.traceStartupRequested(new String[] { "--trace-startup", "out.json" })).isTrue();
+      assertThat(Main.traceStartupRequested(new String[] { "qrun", "status" })).isFalse();
+   }
+
+
+
+   /***************************************************************************
+    ** Parses args and returns the resolved trace target.
+    ***************************************************************************/
+   private static String traceTarget(String... args)
+   {
+      CommandLine cmd = Main.commandLine(args);
+      cmd.parseArgs(args);
+      return Main.traceStartupTarget(cmd);
+   }
+}
@@ -0,0 +1,95 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.core.daemon;
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import io.qrun.qctl.it.mock.MockApiServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Runs artifact uploads through a {@link DaemonServer} and checks where their progress goes.
+ */
+class DaemonProgressTest
+{
+   private static final int MOCK_PORT = 4010;
+
+
+
+   /** Each caller sees its own upload progress, even though it is reported from shared HTTP client threads. */
+   @Test
+   void prints_progress_to_the_calling_client(@TempDir Path dir) throws Exception
+   {
+      Path artifact = Files.write(dir.resolve("app.tar"), new byte[3 * 1024 * 1024]);
+      Path socket   = dir.resolve("qctl.sock");
+      Map<String, String> env = Map.of(
+         "XDG_CONFIG_HOME", dir.resolve("config").toString(),
+         "XDG_CACHE_HOME", dir.resolve("cache").toString());
+
+      try(MockApiServer api = MockApiServer.start(MOCK_PORT))
+      {
+         DaemonServer               server = DaemonServer.bind(socket, Duration.ofSeconds(30));
+         CompletableFuture<Boolean> served = new CompletableFuture<>();
+         Thread.ofPlatform().daemon().start(() ->
+         {
+            try
+            {
+               served.complete(server.serve());
+            }
+            catch(Exception e)
+            {
+               served.completeExceptionally(e);
+            }
+         });
+         try
+         {
+            String first  = publish(socket, env, artifact);
+            String second = publish(socket, env, artifact);
+
+            assertThat(first).contains("upload app.tar: 100%");
+            assertThat(second).contains("upload app.tar: 100%");
+            assertThat(first.split("upload app.tar: 100%", -1)).hasSize(2);
+         }
+         finally
+         {
+            server.stop();
+            served.get(5, TimeUnit.SECONDS);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Publishes the artifact through the daemon and returns the caller's stderr.
+    ***************************************************************************/
+   private static String publish(Path socket, Map<String, String> env, Path artifact)
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      List<String> argv = List.of("qrun", "publish", "--env", "dev", "--artifact", artifact.toString(), "--upload-chunk-mb", "1");
+      assertThat(DaemonClient.forward(socket, argv, env, out, err)).hasValue(0);
+      return err.toString(StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,175 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.it.mock;
+
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.HttpCache;
+import io.qrun.qctl.core.http.HttpCassette;
+import io.qrun.qctl.core.http.Pager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Drives {@link ApiClient} against {@link MockApiServer} over a real socket.
+ */
+class MockApiServerTest
+{
+   private MockApiServer api;
+
+
+
+   /** Starts a fresh server per test so counters and host state do not leak. */
+   @BeforeEach
+   void start() throws Exception
+   {
+      api = MockApiServer.start().withRetryAfter(Duration.ZERO);
+   }
+
+
+
+   /** Stops the server. */
+   @AfterEach
+   void stop()
+   {
+      api.close();
+   }
+
+
+
+   /** Paging follows X-Total-Count and never requests past the last page. */
+   @Test
+   void paginates_with_total_count()
+   {
+      api.withCatalog(1, 450, 1);
+      ApiClient client = new ApiClient(Duration.ofSeconds(5));
+
+      try(Pager<Map> pager = client.paginate(api.uri("/v1/qbits"), Map.class, 200, 2))
+      {
+         assertThat(pager.stream().count()).isEqualTo(450);
+         assertThat(pager.totalCount()).isEqualTo(450);
+      }
+      assertThat(api.requestCount("GET /v1/qbits")).isEqualTo(3);
+   }
+
+
+
+   /** Injected 429s with Retry-After are retried transparently; too many surface as exit 3. */
+   @Test
+   void retries_injected_faults() throws Exception
+   {
+      ApiClient client = new ApiClient(Duration.ofSeconds(5));
+      URI       status = api.uri("/v1/apps/demo-app/status");
+
+      api.failNext(429, 1).failNext(503, 1);
+      assertThat(client.getJson(status, Map.class)).containsEntry("status", "healthy");
+      assertThat(api.requestCount()).isEqualTo(3);
+      assertThat(api.faultCount()).isEqualTo(2);
+
+      api.failNext(503, 3);
+      assertThatThrownBy(() -> client.getJson(status, Map.class))
+         .isInstanceOfSatisfying(ApiClient.ApiException.class, e -> assertThat(e.exitCode).isEqualTo(3));
+   }
+
+
+
+   /** A repeated Idempotency-Key replays the first response; a different body conflicts. */
+   @Test
+   void replays_idempotent_posts() throws Exception
+   {
+      ApiClient client = new ApiClient(Duration.ofSeconds(5), b -> b.header("Idempotency-Key", "publish-1"));
+      URI       uri    = api.uri("/v1/artifacts");
+      Map<?, ?> body   = Map.of("kind", "oci", "digest", "sha256:d34db33f", "sizeBytes", 1024);
+
+      Map<?, ?> first  = client.postJson(uri, body, Map.class);
+      Map<?, ?> second = client.postJson(uri, body, Map.class);
+      assertThat(second.get("id")).isEqualTo(first.get("id"));
+      assertThat(client.getJson(api.uri("/v1/artifacts/" + first.get("id")), Map.class)).containsEntry("digest", "sha256:d34db33f");
+
+      assertThatThrownBy(() -> client.postJson(uri, Map.of("kind", "oci", "digest", "sha256:other", "sizeBytes", 1), Map.class))
+         .isInstanceOfSatisfying(ApiClient.ApiException.class, e -> assertThat(e.exitCode).isEqualTo(8));
+   }
+
+
+
+   /** Under latency, the server never sees more concurrent requests than the client allows. */
+   @Test
+   void concurrency_is_bounded_by_client() throws Exception
+   {
+      api.withLatency(LatencyModel.uniform(Duration.ofMillis(10), Duration.ofMillis(30))).withCatalog(1, 40, 1);
+      ApiClient client = new ApiClient(Duration.ofSeconds(5), b ->
+      {
+      }, 4);
+
+      List<CompletableFuture<List>> calls = new ArrayList<>();
+      for(int i = 0; i < 40; i++)
+      {
+         calls.add(client.getJsonAsync(api.uri("/v1/qbits?size=1&page=" + i), List.class));
+      }
+      CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+      assertThat(api.requestCount()).isEqualTo(40);
+      assertThat(api.maxConcurrent()).isBetween(2, 4);
+   }
+
+
+
+   /** Catalog GETs revalidate with If-None-Match and are answered from cache on 304. */
+   @Test
+   void conditional_gets_revalidate(@TempDir Path dir) throws Exception
+   {
+      ApiClient client = new ApiClient(Duration.ofSeconds(5)).withCache(new HttpCache(dir));
+      URI       uri    = api.uri("/v1/templates/web-basic");
+
+      Map<?, ?> first  = client.getJson(uri, Map.class);
+      Map<?, ?> second = client.getJson(uri, Map.class);
+      assertThat(second).isEqualTo(first);
+      assertThat(second.get("latestVersion")).isEqualTo("1.2.0");
+      assertThat(api.requestCount("GET /v1/templates/{templateId}")).isEqualTo(2);
+   }
+
+
+
+   /** A session recorded against the server replays byte-for-byte after it is gone. */
+   @Test
+   void replays_recorded_session(@TempDir Path dir) throws Exception
+   {
+      Path         file     = dir.resolve("status.cassette");
+      URI          status   = api.uri("/v1/apps/demo-app/status");
+      URI          qbits    = api.uri("/v1/qbits?size=2");
+      HttpCassette recorder = HttpCassette.recording(file);
+      ApiClient    live     = new ApiClient(Duration.ofSeconds(5)).withCassette(recorder);
+      api.failNext(503, 1);
+      Map<?, ?>    health   = live.getJson(status, Map.class);
+      List<?>      page     = live.getJson(qbits, List.class);
+      recorder.close();
+      api.close();
+
+      ApiClient replay = new ApiClient(Duration.ofSeconds(5))
+         .withCassette(HttpCassette.replaying(file, HttpCassette.AS_FAST_AS_POSSIBLE));
+      assertThat(replay.getJson(status, Map.class)).isEqualTo(health);
+      assertThat(replay.getJson(qbits, List.class)).isEqualTo(page);
+   }
+}
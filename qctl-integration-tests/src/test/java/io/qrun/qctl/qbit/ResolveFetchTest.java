@@ -0,0 +1,102 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qbit;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import io.qrun.qctl.core.Main;
+import io.qrun.qctl.core.sys.Invocation;
+import io.qrun.qctl.it.mock.MockApiServer;
+import io.qrun.qctl.qbit.lock.Lockfile;
+import io.qrun.qctl.qbit.lock.LockfileIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Runs {@code qctl qbit resolve --hermetic --fetch} through {@link Main} against {@link MockApiServer}.
+ */
+class ResolveFetchTest
+{
+   private static final int KIB = 1024;
+
+   private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+   private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+
+
+   /** A tarball failing its sha512 check is reported, not cached, and fails the command with exit 7. */
+   @Test
+   void integrity_mismatch_fails_the_command(@TempDir Path dir) throws Exception
+   {
+      Invocation.routeStandardStreams();
+      Invocation inv = new Invocation(Map.of("XDG_CACHE_HOME", dir.resolve("cache").toString()), dir,
+         new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+      try(MockApiServer api = MockApiServer.start().withTarballs(200 * KIB, true))
+      {
+         Lockfile lf = new Lockfile();
+         lf.packages.put("io.qbits/auth", entry(api, "io.qbits/auth", "io.qbits%2Fauth", integrity(new byte[] { 1 })));
+         lf.packages.put("io.qbits/jwt", entry(api, "io.qbits/jwt", "io.qbits%2Fjwt", integrity(api.tarball("io.qbits/jwt", "1.0.0"))));
+         Path lockfile = dir.resolve("qbits.lock");
+         LockfileIO.writeAtomic(lockfile, lf);
+
+         int code = Main.execute(new String[] { "qbit", "resolve", "--hermetic", "--fetch", "--lockfile", lockfile.toString() }, inv);
+
+         assertThat(code).isEqualTo(7);
+         assertThat(err.toString(StandardCharsets.UTF_8)).contains("integrity mismatch", "io.qbits/auth@1.0.0");
+         assertThat(out.toString(StandardCharsets.UTF_8)).contains("io.qbits/jwt@1.0.0 -> ");
+         try(Stream<Path> files = Files.list(dir.resolve("cache").resolve("qctl").resolve("qbits")))
+         {
+            List<Path> cached = files.toList();
+            assertThat(cached).hasSize(1);
+            assertThat(cached.get(0).toString()).endsWith(".tgz");
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a lockfile entry resolved to the mock's tarball route.
+    ***************************************************************************/
+   private static Lockfile.PackageEntry entry(MockApiServer api, String name, String encodedName, String integrity)
+   {
+      Lockfile.PackageEntry e = new Lockfile.PackageEntry();
+      e.name = name;
+      e.version = "1.0.0";
+      e.resolved = api.uri("/v1/qbits/" + encodedName + "/versions/1.0.0/tarball").toString();
+      e.integrity = integrity;
+      return e;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the SRI sha512 of a byte array.
+    ***************************************************************************/
+   private static String integrity(byte[] data) throws Exception
+   {
+      return "sha512-" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-512").digest(data));
+   }
+}
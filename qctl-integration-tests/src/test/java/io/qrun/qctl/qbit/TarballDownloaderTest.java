@@ -0,0 +1,165 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qbit;
+
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.stream.Stream;
+import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.TransferProgress;
+import io.qrun.qctl.it.mock.LatencyModel;
+import io.qrun.qctl.it.mock.MockApiServer;
+import io.qrun.qctl.qbit.lock.Lockfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Downloads qBit tarballs through {@link TarballDownloader} from {@link MockApiServer}.
+ */
+class TarballDownloaderTest
+{
+   private static final int    KIB     = 1024;
+   private static final String TARBALL = "GET /v1/qbits/{qbitId}/versions/{version}/tarball";
+
+
+
+   /** Segments are fetched as ranges, verified, and committed under the digest name. */
+   @Test
+   void downloads_ranges_and_commits_verified_tarball(@TempDir Path dir) throws Exception
+   {
+      try(MockApiServer api = MockApiServer.start().withTarballs(1000 * KIB + 7, true).withLatency(LatencyModel.fixed(Duration.ofMillis(20))))
+      {
+         byte[]                data  = api.tarball("io.qbits/auth", "2.3.1");
+         Lockfile.PackageEntry entry = entry(api.uri("/v1/qbits/io.qbits%2Fauth/versions/2.3.1/tarball"), integrity(data));
+
+         Path tarball = new TarballDownloader(new ApiClient(Duration.ofSeconds(5)), dir)
+            .withSegmentSize(100 * KIB)
+            .withParallelism(4)
+            .fetch(entry, TransferProgress.none());
+
+         assertThat(Files.readAllBytes(tarball)).isEqualTo(data);
+         assertThat(api.requestCount(TARBALL)).isEqualTo(11);
+         assertThat(api.maxConcurrent()).isGreaterThan(1);
+         assertThat(parts(dir)).isZero();
+
+         new TarballDownloader(new ApiClient(Duration.ofSeconds(5)), dir).fetch(entry, TransferProgress.none());
+         assertThat(api.requestCount(TARBALL)).isEqualTo(11);
+      }
+   }
+
+
+
+   /** A server without Range support is streamed in one pass. */
+   @Test
+   void falls_back_to_single_stream(@TempDir Path dir) throws Exception
+   {
+      try(MockApiServer api = MockApiServer.start().withTarballs(300 * KIB, false))
+      {
+         byte[]                data  = api.tarball("io.qbits/jwt", "1.0.0");
+         Lockfile.PackageEntry entry = entry(api.uri("/v1/qbits/io.qbits%2Fjwt/versions/1.0.0/tarball"), integrity(data));
+
+         Path tarball = new TarballDownloader(new ApiClient(Duration.ofSeconds(5)), dir)
+            .withSegmentSize(64 * KIB)
+            .fetch(entry, TransferProgress.none());
+
+         assertThat(Files.readAllBytes(tarball)).isEqualTo(data);
+         assertThat(api.requestCount(TARBALL)).isEqualTo(1);
+      }
+   }
+
+
+
+   /** An empty tarball is fetched with one plain GET; a Range on it would be unsatisfiable. */
+   @Test
+   void fetches_empty_tarball_without_range(@TempDir Path dir) throws Exception
+   {
+      try(MockApiServer api = MockApiServer.start().withTarballs(0, true))
+      {
+         byte[]                data  = api.tarball("io.qbits/jwt", "1.0.0");
+         Lockfile.PackageEntry entry = entry(api.uri("/v1/qbits/io.qbits%2Fjwt/versions/1.0.0/tarball"), integrity(data));
+
+         Path tarball = new TarballDownloader(new ApiClient(Duration.ofSeconds(5)), dir).fetch(entry, TransferProgress.none());
+
+         assertThat(data).isEmpty();
+         assertThat(Files.size(tarball)).isZero();
+         assertThat(api.requestCount(TARBALL)).isEqualTo(1);
+      }
+   }
+
+
+
+   /** A digest mismatch fails and leaves nothing in the cache. */
+   @Test
+   void mismatch_commits_nothing(@TempDir Path dir) throws Exception
+   {
+      try(MockApiServer api = MockApiServer.start().withTarballs(200 * KIB, true))
+      {
+         Lockfile.PackageEntry entry = entry(api.uri("/v1/qbits/io.qbits%2Fauth/versions/2.3.1/tarball"), integrity(new byte[] { 1 }));
+
+         assertThatThrownBy(() -> new TarballDownloader(new ApiClient(Duration.ofSeconds(5)), dir)
+            .withSegmentSize(64 * KIB)
+            .fetch(entry, TransferProgress.none()))
+            .isInstanceOf(TarballDownloader.IntegrityException.class);
+         try(Stream<Path> files = Files.list(dir))
+         {
+            assertThat(files).isEmpty();
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Builds a lockfile entry.
+    ***************************************************************************/
+   private static Lockfile.PackageEntry entry(URI resolved, String integrity)
+   {
+      Lockfile.PackageEntry e = new Lockfile.PackageEntry();
+      e.name = "io.qbits/auth";
+      e.version = "2.3.1";
+      e.resolved = resolved.toString();
+      e.integrity = integrity;
+      return e;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the SRI sha512 of a byte array.
+    ***************************************************************************/
+   private static String integrity(byte[] data) throws Exception
+   {
+      return "sha512-" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-512").digest(data));
+   }
+
+
+
+   /***************************************************************************
+    ** Counts leftover partial files.
+    ***************************************************************************/
+   private static long parts(Path dir) throws Exception
+   {
+      try(Stream<Path> files = Files.list(dir))
+      {
+         return files.filter(p -> p.toString().endsWith(".part")).count();
+      }
+   }
+}
@@ -0,0 +1,358 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qrun;
+
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.TransferProgress;
+import io.qrun.qctl.it.mock.LatencyModel;
+import io.qrun.qctl.it.mock.MockApiServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Streams an artifact through {@link ArtifactUploader} to {@link MockApiServer}.
+ */
+class ArtifactUploaderTest
+{
+   private static final int    MIB   = 1024 * 1024;
+   private static final String PATCH = "PATCH /v1/artifacts/uploads/{uploadId}";
+
+
+
+   /** The registry accepts the digest computed while streaming. */
+   @Test
+   void uploads_and_commits_digest(@TempDir Path dir) throws Exception
+   {
+      byte[] data = artifact();
+      Path   file = Files.write(dir.resolve("app.tar"), data);
+      String sha  = sha256(data);
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         AtomicLong              sent   = new AtomicLong();
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .upload(file, (done, total, rate) -> sent.set(done));
+
+         assertThat(result.digest).isEqualTo(sha);
+         assertThat(result.sizeBytes).isEqualTo(data.length);
+         assertThat(result.location.getPath()).endsWith(sha);
+         assertThat(sent.get()).isEqualTo(data.length);
+         assertThat(api.requestCount(PATCH)).isEqualTo(1);
+      }
+   }
+
+
+
+   /** A re-run with the same key sends only the chunks the registry has not acknowledged. */
+   @Test
+   void resumes_from_last_acknowledged_chunk(@TempDir Path dir) throws Exception
+   {
+      byte[] data    = artifact();
+      Path   file    = Files.write(dir.resolve("app.tar"), data);
+      Path   journal = dir.resolve("journal");
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         AtomicInteger patches = new AtomicInteger();
+         ApiClient flaky = new ApiClient(Duration.ofSeconds(5))
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               if(req.method().equals("PATCH") && patches.incrementAndGet() == 3)
+               {
+                  return CompletableFuture.failedFuture(new IOException("connection reset"));
+               }
+               return super.sendOnceAsync(req);
+            }
+         };
+         assertThatThrownBy(() -> new ArtifactUploader(flaky, api.baseUri()).withChunkSize(MIB).withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none()))
+            .isInstanceOf(IOException.class);
+         assertThat(api.requestCount(PATCH)).isEqualTo(2);
+
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .withChunkSize(MIB)
+            .withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none());
+
+         assertThat(result.digest).isEqualTo(sha256(data));
+         assertThat(api.requestCount("POST /v1/artifacts/uploads")).isEqualTo(1);
+         assertThat(api.requestCount(PATCH)).isEqualTo(6);
+         try(var left = Files.list(journal))
+         {
+            assertThat(left).isEmpty();
+         }
+      }
+   }
+
+
+
+   /** A resume continues at an acknowledged offset inside a chunk instead of re-sending bytes the registry holds. */
+   @Test
+   void resumes_from_offset_inside_a_chunk(@TempDir Path dir) throws Exception
+   {
+      byte[] data    = artifact();
+      Path   file    = Files.write(dir.resolve("app.tar"), data);
+      Path   journal = dir.resolve("journal");
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         AtomicInteger patches = new AtomicInteger();
+         ApiClient flaky = new ApiClient(Duration.ofSeconds(5))
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               if(req.method().equals("PATCH") && patches.incrementAndGet() == 3)
+               {
+                  // Half of the third chunk reaches the registry before the connection drops
+                  HttpRequest partial = HttpRequest.newBuilder(req, (n, v) -> true)
+                     .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(data, 2 * MIB, MIB / 2))
+                     .build();
+                  return super.sendOnceAsync(partial).thenCompose(r -> CompletableFuture.failedFuture(new IOException("connection reset")));
+               }
+               return super.sendOnceAsync(req);
+            }
+         };
+         assertThatThrownBy(() -> new ArtifactUploader(flaky, api.baseUri()).withChunkSize(MIB).withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none()))
+            .isInstanceOf(IOException.class);
+
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .withChunkSize(MIB)
+            .withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none());
+
+         assertThat(result.digest).isEqualTo(sha256(data));
+         assertThat(api.requestCount("POST /v1/artifacts/uploads")).isEqualTo(1);
+         assertThat(api.requestCount(PATCH)).isEqualTo(7);
+      }
+   }
+
+
+
+   /** An empty session reports Range 0-0, which means nothing received, so a resume starts at byte 0. */
+   @Test
+   void resumes_after_failed_first_chunk(@TempDir Path dir) throws Exception
+   {
+      byte[] data    = artifact();
+      Path   file    = Files.write(dir.resolve("app.tar"), data);
+      Path   journal = dir.resolve("journal");
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         ApiClient flaky = new ApiClient(Duration.ofSeconds(5))
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               if(req.method().equals("PATCH"))
+               {
+                  return CompletableFuture.failedFuture(new IOException("connection reset"));
+               }
+               return super.sendOnceAsync(req);
+            }
+         };
+         assertThatThrownBy(() -> new ArtifactUploader(flaky, api.baseUri()).withChunkSize(MIB).withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none()))
+            .isInstanceOf(IOException.class);
+
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .withChunkSize(MIB)
+            .withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none());
+
+         assertThat(result.digest).isEqualTo(sha256(data));
+         assertThat(api.requestCount("POST /v1/artifacts/uploads")).isEqualTo(1);
+         assertThat(api.requestCount(PATCH)).isEqualTo(6);
+      }
+   }
+
+
+
+   /** When the registry rejects the resumed offset with 416, the upload opens a fresh session instead of failing. */
+   @Test
+   void restarts_when_resumed_offset_is_rejected(@TempDir Path dir) throws Exception
+   {
+      byte[] data    = artifact();
+      Path   file    = Files.write(dir.resolve("app.tar"), data);
+      Path   journal = dir.resolve("journal");
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         ApiClient flaky = new ApiClient(Duration.ofSeconds(5))
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               if(req.method().equals("PATCH"))
+               {
+                  // One byte reaches the registry, which then reports Range 0-0 just as for an empty session
+                  HttpRequest partial = HttpRequest.newBuilder(req, (n, v) -> true)
+                     .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(data, 0, 1))
+                     .build();
+                  return super.sendOnceAsync(partial).thenCompose(r -> CompletableFuture.failedFuture(new IOException("connection reset")));
+               }
+               return super.sendOnceAsync(req);
+            }
+         };
+         assertThatThrownBy(() -> new ArtifactUploader(flaky, api.baseUri()).withChunkSize(MIB).withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none()))
+            .isInstanceOf(IOException.class);
+
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .withChunkSize(MIB)
+            .withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none());
+
+         assertThat(result.digest).isEqualTo(sha256(data));
+         assertThat(api.requestCount("POST /v1/artifacts/uploads")).isEqualTo(2);
+         try(var left = Files.list(journal))
+         {
+            assertThat(left).isEmpty();
+         }
+      }
+   }
+
+
+
+   /** A sequential multi-chunk upload chains the digest through the chunks. */
+   @Test
+   void chains_digest_across_sequential_chunks(@TempDir Path dir) throws Exception
+   {
+      byte[] data = artifact();
+      Path   file = Files.write(dir.resolve("app.tar"), data);
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .withChunkSize(MIB)
+            .upload(file, TransferProgress.none());
+
+         assertThat(result.digest).isEqualTo(sha256(data));
+         assertThat(api.requestCount(PATCH)).isEqualTo(6);
+      }
+   }
+
+
+
+   /** Only 404 and 410 on the session mean it expired; other errors fail instead of starting over. */
+   @Test
+   void does_not_restart_on_other_session_errors(@TempDir Path dir) throws Exception
+   {
+      byte[] data    = artifact();
+      Path   file    = Files.write(dir.resolve("app.tar"), data);
+      Path   journal = dir.resolve("journal");
+
+      try(MockApiServer api = MockApiServer.start())
+      {
+         ApiClient broken = new ApiClient(Duration.ofSeconds(5))
+         {
+            @Override
+            protected CompletableFuture<HttpResponse<byte[]>> sendOnceAsync(HttpRequest req)
+            {
+               if(req.method().equals("PATCH"))
+               {
+                  return CompletableFuture.failedFuture(new IOException("connection reset"));
+               }
+               return super.sendOnceAsync(req);
+            }
+         };
+         assertThatThrownBy(() -> new ArtifactUploader(broken, api.baseUri()).withChunkSize(MIB).withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none()))
+            .isInstanceOf(IOException.class);
+
+         api.failNext(403, 1);
+         assertThatThrownBy(() -> new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri()).withChunkSize(MIB)
+            .withJournal(journal)
+            .upload(file, "key-1", TransferProgress.none()))
+            .isInstanceOf(ApiClient.ApiException.class);
+         assertThat(api.requestCount("POST /v1/artifacts/uploads")).isEqualTo(1);
+      }
+   }
+
+
+
+   /** A malformed or non-positive X-Upload-Max-Parallel means one chunk at a time. */
+   @Test
+   void parses_max_parallel_defensively()
+   {
+      assertThat(ArtifactUploader.maxParallel(" 3 ")).isEqualTo(3);
+      assertThat(ArtifactUploader.maxParallel("0")).isEqualTo(1);
+      assertThat(ArtifactUploader.maxParallel("-2")).isEqualTo(1);
+      assertThat(ArtifactUploader.maxParallel("many")).isEqualTo(1);
+   }
+
+
+
+   /** When the registry advertises parallel chunks, several are in flight at once. */
+   @Test
+   void sends_chunks_in_parallel_when_allowed(@TempDir Path dir) throws Exception
+   {
+      byte[] data = artifact();
+      Path   file = Files.write(dir.resolve("app.tar"), data);
+
+      try(MockApiServer api = MockApiServer.start().withParallelUploads(4).withLatency(LatencyModel.fixed(Duration.ofMillis(50))))
+      {
+         AtomicLong              sent   = new AtomicLong();
+         ArtifactUploader.Result result = new ArtifactUploader(new ApiClient(Duration.ofSeconds(5)), api.baseUri())
+            .withChunkSize(MIB)
+            .withParallelism(4)
+            .upload(file, (done, total, rate) -> sent.accumulateAndGet(done, Math::max));
+
+         assertThat(result.digest).isEqualTo(sha256(data));
+         assertThat(sent.get()).isEqualTo(data.length);
+         assertThat(api.requestCount(PATCH)).isEqualTo(6);
+         assertThat(api.maxConcurrent()).isGreaterThan(1);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns 5 MiB + 17 bytes of seeded random data.
+    ***************************************************************************/
+   private static byte[] artifact()
+   {
+      byte[] data = new byte[5 * MIB + 17];
+      new Random(3).nextBytes(data);
+      return data;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the OCI digest of a byte array.
+    ***************************************************************************/
+   private static String sha256(byte[] data) throws Exception
+   {
+      return "sha256:" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+   }
+}
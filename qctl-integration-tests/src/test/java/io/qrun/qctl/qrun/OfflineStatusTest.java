@@ -0,0 +1,63 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qrun;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import io.qrun.qctl.core.Main;
+import io.qrun.qctl.core.sys.Invocation;
+import io.qrun.qctl.it.mock.MockApiServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Runs {@code qctl --offline qrun status} through {@link Main} against the on-disk HTTP cache.
+ */
+class OfflineStatusTest
+{
+   private static final int MOCK_PORT = 4010;
+
+   private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+   private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+
+
+   /** A status fetched online is answered from the cache offline; an uncached one fails with exit 3. */
+   @Test
+   void answers_from_cache_when_offline(@TempDir Path dir) throws Exception
+   {
+      Invocation inv = new Invocation(
+         Map.of("XDG_CACHE_HOME", dir.resolve("cache").toString(), "XDG_CONFIG_HOME", dir.resolve("config").toString()),
+         dir, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+      try(MockApiServer api = MockApiServer.start(MOCK_PORT))
+      {
+         assertThat(Main.execute(new String[] { "qrun", "status", "--app", "demo", "--env", "dev" }, inv)).isZero();
+      }
+      String online = out.toString(StandardCharsets.UTF_8);
+      assertThat(online).contains("demo");
+      out.reset();
+
+      assertThat(Main.execute(new String[] { "--offline", "qrun", "status", "--app", "demo", "--env", "dev" }, inv)).isZero();
+      assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(online);
+
+      assertThat(Main.execute(new String[] { "--offline", "qrun", "status", "--app", "other", "--env", "dev" }, inv)).isEqualTo(3);
+      assertThat(err.toString(StandardCharsets.UTF_8)).contains("rerun without --offline");
+   }
+}
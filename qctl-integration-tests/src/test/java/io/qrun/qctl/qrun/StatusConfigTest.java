@@ -0,0 +1,87 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qrun;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.qrun.qctl.core.Main;
+import io.qrun.qctl.core.sys.Invocation;
+import io.qrun.qctl.it.mock.MockApiServer;
+import io.qrun.qctl.shared.json.Json;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Runs {@code qctl qrun status} with its endpoint and output format taken from configuration.
+ */
+class StatusConfigTest
+{
+   private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+   private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+
+
+   /** endpoints.api and output come from config; --output on the command line wins. */
+   @Test
+   void uses_configured_endpoint_and_output(@TempDir Path dir) throws Exception
+   {
+      try(MockApiServer api = MockApiServer.start())
+      {
+         Invocation inv = new Invocation(
+            Map.of(
+               "XDG_CACHE_HOME", dir.resolve("cache").toString(),
+               "XDG_CONFIG_HOME", dir.resolve("config").toString(),
+               "QCTL_ENDPOINTS_API", api.baseUri().toString(),
+               "QCTL_OUTPUT", "json"),
+            dir, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+         assertThat(Main.execute(new String[] { "qrun", "status", "--app", "demo", "--env", "dev" }, inv)).isZero();
+         JsonNode status = Json.mapper().readTree(out.toString(StandardCharsets.UTF_8));
+         assertThat(status.path("app").asText()).isEqualTo("demo");
+         assertThat(status.at("/status/status").asText()).isEqualTo("healthy");
+
+         out.reset();
+         assertThat(Main.execute(new String[] { "--output", "text", "qrun", "status", "--app", "demo", "--env", "dev" }, inv)).isZero();
+         assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("app demo (env dev): status=healthy");
+      }
+   }
+
+
+
+   /** Several apps under JSON output print one array in argument order. */
+   @Test
+   void prints_one_json_array_for_several_apps(@TempDir Path dir) throws Exception
+   {
+      try(MockApiServer api = MockApiServer.start())
+      {
+         Invocation inv = new Invocation(
+            Map.of(
+               "XDG_CACHE_HOME", dir.resolve("cache").toString(),
+               "XDG_CONFIG_HOME", dir.resolve("config").toString(),
+               "QCTL_ENDPOINTS_API", api.baseUri().toString()),
+            dir, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+         assertThat(Main.execute(new String[] { "--output", "json", "qrun", "status", "--app", "web,worker", "--app", "api", "--env", "dev" }, inv)).isZero();
+         JsonNode all = Json.mapper().readTree(out.toString(StandardCharsets.UTF_8));
+         assertThat(all.isArray()).isTrue();
+         assertThat(all.findValuesAsText("app")).containsExactly("web", "worker", "api");
+      }
+   }
+}
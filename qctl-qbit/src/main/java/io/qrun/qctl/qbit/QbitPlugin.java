@@ -14,8 +14,10 @@ package io.qrun.qctl.qbit;
 
 
 import io.qrun.qctl.shared.spi.CommandPlugin;
+import io.qrun.qctl.shared.spi.PluginCommand;
 
 
+@PluginCommand(QbitCommand.class)
 public final class QbitPlugin implements CommandPlugin
 {
    /***************************************************************************
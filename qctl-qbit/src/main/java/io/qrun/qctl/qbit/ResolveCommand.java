@@ -14,21 +14,42 @@ package io.qrun.qctl.qbit;
 
 
 import java.nio.file.Path;
+import java.time.Duration;
+import io.qrun.qctl.core.cli.CommandFailedException;
+import io.qrun.qctl.core.cli.RootOptions;
+import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.TransferProgress;
+import io.qrun.qctl.core.sys.Invocation;
+import io.qrun.qctl.core.sys.SystemPaths;
 import io.qrun.qctl.qbit.lock.Lockfile;
 import io.qrun.qctl.qbit.lock.LockfileIO;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
 
 
 @Command(name = "resolve", description = "Resolve qBits (V1 hermetic stub)")
 public class ResolveCommand implements Runnable
 {
+   /** Exit code for a failed integrity check (DESIGN-2). */
+   private static final int EXIT_INTEGRITY = 7;
+
+   @Spec
+   CommandSpec spec;
+
    @Option(names = "--lockfile", description = "Path to lockfile", defaultValue = "qbits.lock")
    Path lockfilePath;
 
    @Option(names = "--hermetic", description = "Resolve strictly from lockfile")
    boolean hermetic;
 
+   @Option(names = "--fetch", description = "Download and verify locked tarballs into the cache (with --hermetic)")
+   boolean fetch;
+
+   @Option(names = "--download-parallel", paramLabel = "<n>", defaultValue = "4", description = "Ranged segments in flight per tarball (default: ${DEFAULT-VALUE})")
+   int downloadParallel;
+
 
 
    /***************************************************************************
@@ -48,6 +69,7 @@ public class ResolveCommand implements Runnable
    @Override
    public void run()
    {
+      int mismatches = 0;
       try
       {
          Lockfile lf = LockfileIO.read(lockfilePath);
@@ -55,16 +77,73 @@ public class ResolveCommand implements Runnable
          {
             int count = lf.packages != null ? lf.packages.size() : 0;
             System.out.println(summary(count));
+            if(fetch && count > 0)
+            {
+               mismatches = fetchAll(lf);
+            }
          }
          else
          {
             System.out.println("non-hermetic resolution TODO (V1)");
          }
       }
+      catch(ApiClient.ApiException e)
+      {
+         System.err.println("qbit resolve error: " + e.problem.title + ": " + e.problem.detail);
+         throw new CommandFailedException(e.exitCode);
+      }
       catch(Exception e)
       {
          System.err.println("qbit resolve error: " + e.getMessage());
-         System.exit(1);
+         throw new CommandFailedException(1);
+      }
+      if(mismatches > 0)
+      {
+         throw new CommandFailedException(EXIT_INTEGRITY);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Downloads every locked tarball into the qBit cache and returns how many
+    ** failed their integrity check. A mismatched download is deleted and
+    ** reported; the remaining tarballs are still fetched.
+    ***************************************************************************/
+   private int fetchAll(Lockfile lf) throws Exception
+   {
+      TarballDownloader downloader = new TarballDownloader(createClient().withOffline(RootOptions.offline(spec)), SystemPaths.cacheDir().resolve("qbits"))
+         .withParallelism(downloadParallel);
+      int mismatches = 0;
+      for(Lockfile.PackageEntry entry : lf.packages.values())
+      {
+         String label = entry.name + "@" + entry.version;
+         try
+         {
+            Path tarball = downloader.fetch(entry, TransferProgress.printing(Invocation.current().err(), label));
+            System.out.println(label + " -> " + tarball);
+         }
+         catch(TarballDownloader.IntegrityException e)
+         {
+            System.err.println("qbit resolve error: integrity mismatch, not cached: " + e.getMessage());
+            mismatches++;
+         }
       }
+      return mismatches;
+   }
+
+
+
+   // Visible for tests
+   /***************************************************************************
+    * Creates the ApiClient used for tarball downloads (overridden in tests).
+    *
+    * @return ApiClient instance
+    * @since 0.1.0
+    ***************************************************************************/
+   @SuppressWarnings("checkstyle:MagicNumber")
+   protected ApiClient createClient()
+   {
+      return new ApiClient(Duration.ofSeconds(30));
    }
 }
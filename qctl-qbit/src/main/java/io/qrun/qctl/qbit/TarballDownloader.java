@@ -0,0 +1,530 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qbit;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.TransferProgress;
+import io.qrun.qctl.qbit.lock.Lockfile;
+
+
+/**
+ * Downloads locked qBit tarballs into a content-addressed cache, verifying their {@code sha512}
+ * integrity.
+ *
+ * <p>The first request asks for the first segment with {@code Range}. A 206 reveals the total size
+ * from {@code Content-Range}; the remaining segments are then fetched concurrently (up to
+ * {@link #withParallelism(int)}) and written with positional {@link FileChannel} writes into a
+ * {@code .part} file next to the cache entry. The digest is updated in file order as soon as the
+ * leading segments are complete, so hashing overlaps with the transfer instead of following it. A
+ * server that ignores {@code Range} (200) is streamed sequentially and hashed in the same pass.
+ * An entry whose integrity is the digest of no bytes is an empty tarball; it is fetched with one
+ * plain GET, since any {@code Range} on an empty resource is unsatisfiable (416).
+ *
+ * <p>Only when the digest matches is the file forced to disk and moved atomically to
+ * {@code <sha512 hex>.tgz}; on mismatch or failure the partial file is deleted and nothing is
+ * committed. An entry already in the cache is returned without network access.
+ *
+ * Why: Cold hermetic installs of large vendor sets are dominated by serial tarball downloads.
+ * @since 0.1.0
+ */
+final class TarballDownloader
+{
+   /** Default bytes per ranged request. */
+   static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+   private static final int    DEFAULT_PARALLELISM = 4;
+   private static final int    BUFFER_BYTES        = 128 * 1024;
+   private static final int    HTTP_PARTIAL        = 206;
+   private static final int    SHA512_BYTES        = 64;
+   private static final String SRI_PREFIX          = "sha512-";
+   private static final byte[] EMPTY_SHA512        = newSha512().digest();
+
+   private final ApiClient client;
+   private final Path      cacheDir;
+
+   private long segmentBytes = DEFAULT_SEGMENT_BYTES;
+   private int  parallelism  = DEFAULT_PARALLELISM;
+
+
+
+   /**
+    * Creates a downloader.
+    *
+    * @param client   API client (retries, rate limits, headers)
+    * @param cacheDir directory of verified tarballs, e.g. {@code SystemPaths.cacheDir()/qbits}
+    */
+   TarballDownloader(ApiClient client, Path cacheDir)
+   {
+      this.client = client;
+      this.cacheDir = cacheDir;
+   }
+
+
+
+   /**
+    * Sets the segment size.
+    *
+    * @param bytes bytes per ranged GET
+    * @return this downloader
+    */
+   TarballDownloader withSegmentSize(long bytes)
+   {
+      if(bytes < 1)
+      {
+         throw new IllegalArgumentException("segment size must be positive: " + bytes);
+      }
+      this.segmentBytes = bytes;
+      return this;
+   }
+
+
+
+   /**
+    * Caps the number of segments in flight.
+    *
+    * @param lanes maximum concurrent ranged GETs
+    * @return this downloader
+    */
+   TarballDownloader withParallelism(int lanes)
+   {
+      this.parallelism = Math.max(1, lanes);
+      return this;
+   }
+
+
+
+   /**
+    * Returns the verified tarball for a lockfile entry, downloading it if it is not cached.
+    *
+    * @param entry    lockfile entry with {@code resolved} and {@code integrity}
+    * @param progress transfer progress observer
+    * @return path of the cached tarball
+    * @throws IntegrityException         when the downloaded bytes do not match {@code integrity}
+    * @throws IOException                on IO errors or a malformed entry
+    * @throws InterruptedException       if interrupted
+    * @throws ApiClient.ApiException     when the registry rejects a request
+    */
+   Path fetch(Lockfile.PackageEntry entry, TransferProgress progress) throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      if(entry.resolved == null)
+      {
+         throw new IOException(entry.name + ": lockfile entry has no resolved URL");
+      }
+      byte[] expected = expectedSha512(entry);
+      Path   target   = cacheDir.resolve(HexFormat.of().formatHex(expected) + ".tgz");
+      if(Files.isRegularFile(target))
+      {
+         return target;
+      }
+
+      Files.createDirectories(cacheDir);
+      Path part = Files.createTempFile(cacheDir, target.getFileName().toString() + ".", ".part");
+      try
+      {
+         try(FileChannel ch = FileChannel.open(part, StandardOpenOption.READ, StandardOpenOption.WRITE))
+         {
+            byte[] actual = download(URI.create(entry.resolved), ch, progress, !MessageDigest.isEqual(expected, EMPTY_SHA512));
+            if(!MessageDigest.isEqual(expected, actual))
+            {
+               throw new IntegrityException(entry.name + "@" + entry.version + ": expected " + entry.integrity
+                  + " but downloaded " + SRI_PREFIX + Base64.getEncoder().encodeToString(actual));
+            }
+            ch.force(true);
+         }
+         Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+         return target;
+      }
+      finally
+      {
+         Files.deleteIfExists(part);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Downloads into the channel and returns the sha512 of what was written.
+    ** Without ranged, the resource is requested whole.
+    ***************************************************************************/
+   private byte[] download(URI uri, FileChannel ch, TransferProgress progress, boolean ranged) throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      HttpResponse<InputStream> first = client.download(uri, ranged ? Map.of("Range", "bytes=0-" + (segmentBytes - 1)) : Map.of());
+      Counter                   count = new Counter(progress);
+      if(first.statusCode() != HTTP_PARTIAL)
+      {
+         // No range support: one sequential stream, hashed as it is written
+         count.total = first.headers().firstValueAsLong("Content-Length").orElse(-1L);
+         MessageDigest sha = newSha512();
+         try(InputStream in = first.body())
+         {
+            write(in, ch, 0L, sha, count);
+         }
+         return sha.digest();
+      }
+
+      long total    = totalOf(first);
+      long segments = Math.max(1L, (total + segmentBytes - 1) / segmentBytes);
+      count.total = total;
+
+      SegmentHasher      hasher = new SegmentHasher(ch, segmentBytes, total, segments);
+      AtomicLong         next   = new AtomicLong(1L);
+      AtomicBoolean      failed = new AtomicBoolean();
+      List<Future<Void>> lanes  = new ArrayList<>();
+      try(ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor())
+      {
+         for(int i = 1; i < Math.min(parallelism, segments); i++)
+         {
+            lanes.add(pool.submit(() -> drain(uri, ch, next, segments, hasher, count, failed)));
+         }
+         try(InputStream in = first.body())
+         {
+            expectLength(write(in, ch, 0L, null, count), 0L, Math.min(segmentBytes, total));
+            hasher.completed(0L);
+         }
+         catch(IOException | RuntimeException e)
+         {
+            failed.set(true);
+            throw e;
+         }
+         // This thread becomes one more lane once the first segment is in
+         drain(uri, ch, next, segments, hasher, count, failed);
+      }
+      for(Future<Void> lane : lanes)
+      {
+         join(lane);
+      }
+      return hasher.digest();
+   }
+
+
+
+   /***************************************************************************
+    ** Fetches and writes segments until none are left or another lane fails.
+    ***************************************************************************/
+   private Void drain(URI uri, FileChannel ch, AtomicLong next, long segments, SegmentHasher hasher, Counter count, AtomicBoolean failed)
+         throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      try
+      {
+         for(long i = next.getAndIncrement(); i < segments && !failed.get(); i = next.getAndIncrement())
+         {
+            long start = i * segmentBytes;
+            long end   = Math.min(start + segmentBytes, hasher.total) - 1;
+            HttpResponse<InputStream> resp = client.download(uri, Map.of("Range", "bytes=" + start + "-" + end));
+            try(InputStream in = resp.body())
+            {
+               if(resp.statusCode() != HTTP_PARTIAL || totalOf(resp) != hasher.total)
+               {
+                  throw new IOException(uri + ": server stopped honoring Range at byte " + start);
+               }
+               expectLength(write(in, ch, start, null, count), start, end + 1);
+            }
+            hasher.completed(i);
+         }
+         return null;
+      }
+      catch(IOException | InterruptedException | ApiClient.ApiException | RuntimeException e)
+      {
+         failed.set(true);
+         throw e;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Copies a body to the channel at {@code position} with positional writes,
+    ** optionally hashing it; returns the number of bytes written.
+    ***************************************************************************/
+   private static long write(InputStream in, FileChannel ch, long position, MessageDigest sha, Counter count) throws IOException
+   {
+      byte[] buf = new byte[BUFFER_BYTES];
+      long   at  = position;
+      int    n;
+      while((n = in.read(buf)) > 0)
+      {
+         if(sha != null)
+         {
+            sha.update(buf, 0, n);
+         }
+         ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+         while(bb.hasRemaining())
+         {
+            at += ch.write(bb, at);
+         }
+         count.add(n);
+      }
+      return at - position;
+   }
+
+
+
+   /***************************************************************************
+    ** Fails when a segment body was shorter or longer than its range.
+    ***************************************************************************/
+   private static void expectLength(long written, long start, long end) throws IOException
+   {
+      if(written != end - start)
+      {
+         throw new IOException("segment at byte " + start + " carried " + written + " bytes, expected " + (end - start));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the complete length from a 206's {@code Content-Range}.
+    ***************************************************************************/
+   private static long totalOf(HttpResponse<?> resp) throws IOException
+   {
+      String range = resp.headers().firstValue("Content-Range").orElse("");
+      int    slash = range.lastIndexOf('/');
+      try
+      {
+         return Long.parseLong(range.substring(slash + 1).trim());
+      }
+      catch(NumberFormatException | IndexOutOfBoundsException e)
+      {
+         throw new IOException(resp.uri() + ": 206 without a usable Content-Range: '" + range + "'");
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Waits for a lane and rethrows its failure.
+    ***************************************************************************/
+   private static void join(Future<Void> lane) throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      try
+      {
+         lane.get();
+      }
+      catch(ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if(cause instanceof IOException io)
+         {
+            throw io;
+         }
+         if(cause instanceof ApiClient.ApiException ae)
+         {
+            throw ae;
+         }
+         if(cause instanceof RuntimeException re)
+         {
+            throw re;
+         }
+         throw new IOException(cause);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Decodes the expected digest from {@code sha512-<base64>} (SRI) or a bare
+    ** 128-digit hex string.
+    ***************************************************************************/
+   static byte[] expectedSha512(Lockfile.PackageEntry entry) throws IOException
+   {
+      String integrity = entry.integrity == null ? "" : entry.integrity.trim();
+      try
+      {
+         byte[] digest = integrity.startsWith(SRI_PREFIX)
+            ? Base64.getDecoder().decode(integrity.substring(SRI_PREFIX.length()))
+            : HexFormat.of().parseHex(integrity);
+         if(digest.length == SHA512_BYTES)
+         {
+            return digest;
+         }
+      }
+      catch(IllegalArgumentException e)
+      {
+         // reported below
+      }
+      throw new IOException(entry.name + ": integrity '" + integrity + "' is not a sha512 (sha512-<base64>)");
+   }
+
+
+
+   /***************************************************************************
+    ** Returns a new SHA-512 digest.
+    ***************************************************************************/
+   private static MessageDigest newSha512()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-512");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-512 not available", e);
+      }
+   }
+
+
+
+   /**
+    * Thrown when a downloaded tarball does not match its lockfile integrity.
+    */
+   static final class IntegrityException extends IOException
+   {
+      private static final long serialVersionUID = 1L;
+
+
+
+      /***************************************************************************
+       ** Creates the exception.
+       ***************************************************************************/
+      IntegrityException(String message)
+      {
+         super(message);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Hashes segments in file order as the leading ones complete, reading them
+    ** back from the channel (still in the page cache).
+    ***************************************************************************/
+   private static final class SegmentHasher
+   {
+      final long total;
+
+      private final FileChannel   ch;
+      private final long          segmentBytes;
+      private final long          segments;
+      private final MessageDigest sha  = newSha512();
+      private final BitSet        done = new BitSet();
+      private final ByteBuffer    buf  = ByteBuffer.allocate(BUFFER_BYTES);
+
+      private long next;
+
+
+
+      /***************************************************************************
+       ** Creates a hasher for {@code segments} segments over {@code total} bytes.
+       ***************************************************************************/
+      SegmentHasher(FileChannel ch, long segmentBytes, long total, long segments)
+      {
+         this.ch = ch;
+         this.segmentBytes = segmentBytes;
+         this.total = total;
+         this.segments = segments;
+      }
+
+
+
+      /***************************************************************************
+       ** Marks a segment written and hashes every segment now contiguous with
+       ** what has been hashed so far.
+       ***************************************************************************/
+      synchronized void completed(long index) throws IOException
+      {
+         done.set(Math.toIntExact(index));
+         while(next < segments && done.get(Math.toIntExact(next)))
+         {
+            long at  = next * segmentBytes;
+            long end = Math.min(at + segmentBytes, total);
+            while(at < end)
+            {
+               buf.clear().limit((int) Math.min(buf.capacity(), end - at));
+               int n = ch.read(buf, at);
+               if(n < 0)
+               {
+                  throw new IOException("segment " + next + " is shorter than expected");
+               }
+               sha.update(buf.flip());
+               at += n;
+            }
+            next++;
+         }
+      }
+
+
+
+      /***************************************************************************
+       ** Returns the digest once every segment has been hashed.
+       ***************************************************************************/
+      synchronized byte[] digest()
+      {
+         if(next != segments)
+         {
+            throw new IllegalStateException("hashed " + next + " of " + segments + " segments");
+         }
+         return sha.digest();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Aggregates bytes written across lanes into progress callbacks.
+    ***************************************************************************/
+   private static final class Counter
+   {
+      private final TransferProgress progress;
+      private final AtomicLong       bytes   = new AtomicLong();
+      private final long             started = System.nanoTime();
+
+      private volatile long total = -1L;
+
+
+
+      /***************************************************************************
+       ** Creates a counter reporting to {@code progress}.
+       ***************************************************************************/
+      Counter(TransferProgress progress)
+      {
+         this.progress = progress;
+      }
+
+
+
+      /***************************************************************************
+       ** Adds written bytes and reports.
+       ***************************************************************************/
+      void add(long n)
+      {
+         long   now     = bytes.addAndGet(n);
+         double seconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+         progress.onProgress(now, total, now / seconds);
+      }
+   }
+}
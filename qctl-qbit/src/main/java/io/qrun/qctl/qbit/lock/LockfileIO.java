@@ -17,16 +17,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.qrun.qctl.shared.json.Json;
 
 
 public final class LockfileIO
 {
-   private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
-
-
-
    /***************************************************************************
     * Non-instantiable utility.
     *
@@ -52,7 +47,7 @@ public final class LockfileIO
          return new Lockfile();
       }
 
-      return YAML.readValue(path.toFile(), Lockfile.class);
+      return Json.yamlReader(Lockfile.class).readValue(path.toFile());
    }
 
 
@@ -67,7 +62,7 @@ public final class LockfileIO
    public static void writeAtomic(Path path, Lockfile lf) throws IOException
    {
       Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
-      YAML.writeValue(tmp.toFile(), lf);
+      Json.yamlWriter().writeValue(tmp.toFile(), lf);
       Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
    }
 }
@@ -14,8 +14,10 @@ package io.qrun.qctl.qqq;
 
 
 import io.qrun.qctl.shared.spi.CommandPlugin;
+import io.qrun.qctl.shared.spi.PluginCommand;
 
 
+@PluginCommand(QqqCommand.class)
 public final class QqqPlugin implements CommandPlugin
 {
    /***************************************************************************
@@ -0,0 +1,559 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qrun;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import io.qrun.qctl.core.config.Config;
+import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.FileBody;
+import io.qrun.qctl.core.http.TransferProgress;
+
+
+/**
+ * Uploads an artifact file as a blob using the OCI distribution flow: {@code POST} opens an
+ * upload session, the file is streamed in {@code PATCH} chunks carrying {@code Content-Range},
+ * and {@code PUT ?digest=} commits the session.
+ *
+ * <p>Chunks go out one at a time, in order, unless the registry advertises
+ * {@code X-Upload-Max-Parallel} on the session, in which case up to that many (capped by
+ * {@link #withParallelism(int)}) are in flight. With a journal directory and a resume key, the
+ * session and acknowledged chunks are recorded in an {@link UploadJournal}; a later run with the
+ * same key and the same unchanged file asks the registry for its acknowledged offset
+ * ({@code GET} on the session, {@code Range} header) and sends only what is missing, starting at
+ * that offset even when it falls inside a chunk. An expired session (404 or 410), or one that
+ * rejects the resumed offset with 416, starts over; any other error fails the upload.
+ *
+ * <p>Each chunk is read from disk only when sent and never buffered whole. When the whole file is
+ * sent one chunk at a time, in order, each chunk continues the previous chunk's SHA-256 (see
+ * {@link FileBody#continuingDigest}), so the file is hashed in the same pass. Parallel and resumed
+ * uploads compute the SHA-256 by one sequential local read on its own thread that overlaps with
+ * the network transfer and is interrupted if the transfer fails.
+ *
+ * Why: Artifacts are hundreds of MB to several GB, and a network blip should cost one chunk, not
+ * the whole upload.
+ * @since 0.1.0
+ */
+final class ArtifactUploader
+{
+   /** Default chunk size. */
+   static final long DEFAULT_CHUNK_BYTES = 64L * 1024 * 1024;
+
+   private static final int    DEFAULT_PARALLELISM = 4;
+   private static final int    HASH_BUFFER_BYTES   = 256 * 1024;
+   private static final String PARALLEL_HEADER     = "X-Upload-Max-Parallel";
+   private static final int    HTTP_NOT_FOUND      = 404;
+   private static final int    HTTP_GONE           = 410;
+   private static final int    HTTP_BAD_RANGE      = 416;
+
+   private final ApiClient client;
+   private final URI       base;
+
+   private long chunkBytes  = DEFAULT_CHUNK_BYTES;
+   private int  parallelism = DEFAULT_PARALLELISM;
+   private Path journalDir;
+
+
+
+   /**
+    * Creates an uploader.
+    *
+    * @param client API client (supplies auth headers and retries)
+    * @param base   API base URI, e.g. {@code http://localhost:4010}; may carry a base path
+    */
+   ArtifactUploader(ApiClient client, URI base)
+   {
+      this.client = client;
+      this.base = base;
+   }
+
+
+
+   /**
+    * Sets the chunk size.
+    *
+    * @param bytes bytes per PATCH
+    * @return this uploader
+    */
+   ArtifactUploader withChunkSize(long bytes)
+   {
+      if(bytes < 1)
+      {
+         throw new IllegalArgumentException("chunk size must be positive: " + bytes);
+      }
+      this.chunkBytes = bytes;
+      return this;
+   }
+
+
+
+   /**
+    * Caps the number of chunks in flight when the registry allows parallel chunks.
+    *
+    * @param lanes maximum concurrent PATCHes
+    * @return this uploader
+    */
+   ArtifactUploader withParallelism(int lanes)
+   {
+      this.parallelism = Math.max(1, lanes);
+      return this;
+   }
+
+
+
+   /**
+    * Journals progress under a directory so interrupted uploads can resume.
+    *
+    * @param dir journal directory, e.g. {@code SystemPaths.cacheDir()/artifacts/uploads}
+    * @return this uploader
+    */
+   ArtifactUploader withJournal(Path dir)
+   {
+      this.journalDir = dir;
+      return this;
+   }
+
+
+
+   /**
+    * Uploads a file without resume support.
+    *
+    * @param file     artifact file
+    * @param progress transfer progress observer
+    * @return digest, size and blob location
+    * @throws IOException                when the file cannot be read or the server reports a
+    *                                    different digest
+    * @throws InterruptedException       if interrupted
+    * @throws ApiClient.ApiException     when the registry rejects a request
+    */
+   Result upload(Path file, TransferProgress progress) throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      return upload(file, null, progress);
+   }
+
+
+
+   /**
+    * Uploads a file, resuming a journaled session for the same key when possible.
+    *
+    * @param file      artifact file
+    * @param resumeKey key the journal is stored under (normally the idempotency key), or null
+    * @param progress  transfer progress observer
+    * @return digest, size and blob location
+    * @throws IOException                when the file cannot be read or the server reports a
+    *                                    different digest
+    * @throws InterruptedException       if interrupted
+    * @throws ApiClient.ApiException     when the registry rejects a request
+    */
+   Result upload(Path file, String resumeKey, TransferProgress progress) throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      return upload(file, resumeKey, progress, true);
+   }
+
+
+
+   /***************************************************************************
+    ** Uploads a file; when restartOnBadRange is set, a resumed session whose
+    ** offset the registry rejects with 416 is dropped and the upload runs
+    ** once more from a fresh session.
+    ***************************************************************************/
+   private Result upload(Path file, String resumeKey, TransferProgress progress, boolean restartOnBadRange)
+         throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      long size   = Files.size(file);
+      long chunks = (size + chunkBytes - 1) / chunkBytes;
+
+      UploadJournal journal = null;
+      URI           session = null;
+      int           lanes   = 1;
+      long          acked   = 0L;
+      boolean       resumed = false;
+      if(journalDir != null && resumeKey != null)
+      {
+         Optional<UploadJournal> prior = UploadJournal.resume(journalDir, resumeKey, file, chunkBytes);
+         if(prior.isPresent())
+         {
+            OptionalOffset offset = acknowledged(URI.create(prior.get().session()));
+            if(offset.present)
+            {
+               journal = prior.get();
+               session = URI.create(journal.session());
+               lanes = journal.parallelism();
+               acked = offset.value;
+               resumed = true;
+            }
+         }
+      }
+      if(session == null)
+      {
+         HttpResponse<byte[]> opened = client.upload("POST", Config.apiUri(base, "v1/artifacts/uploads"), HttpRequest.BodyPublishers.noBody(), Map.of());
+         session = location(opened, null);
+         lanes = opened.headers().firstValue(PARALLEL_HEADER).map(ArtifactUploader::maxParallel).orElse(1);
+         if(journalDir != null && resumeKey != null)
+         {
+            journal = UploadJournal.start(journalDir, resumeKey, file, chunkBytes, session.toString(), lanes);
+         }
+      }
+
+      List<Long> pending = new ArrayList<>();
+      for(long i = 0; i < chunks; i++)
+      {
+         if((i + 1) * chunkBytes > acked && (journal == null || !journal.isDone(i)))
+         {
+            pending.add(i);
+         }
+      }
+      long       resumeAt = acked;
+      AtomicLong sent     = new AtomicLong(size - pending.stream().mapToLong(i -> end(i, size) - start(i, resumeAt)).sum());
+
+      // Sending every chunk in order chains one digest through them; otherwise hash alongside the transfer
+      int                inFlight = Math.min(lanes, parallelism);
+      boolean            samePass = chunks > 0 && inFlight == 1 && acked == 0L && pending.size() == chunks;
+      FutureTask<String> digest   = null;
+      if(!samePass)
+      {
+         digest = new FutureTask<>(() -> sha256(file));
+         Thread.ofVirtual().name("artifact-sha256").start(digest);
+      }
+
+      long                      started  = System.nanoTime();
+      AtomicReference<FileBody> previous = new AtomicReference<>();
+      UploadJournal             j        = journal;
+      URI                       target   = session;
+      try
+      {
+         sendChunks(pending, inFlight, index ->
+         {
+            // The registry may have acknowledged part of the first pending chunk; continue from there
+            long     from = start(index, resumeAt);
+            FileBody body = FileBody.region(file, from, end(index, size) - from)
+               .withProgress(chunkProgress(sent, size, started, progress));
+            if(samePass && previous.get() != null)
+            {
+               // Runs after the previous chunk completed: one lane, and sendChunks waits for it
+               body.continuingDigest(previous.get().digestState());
+            }
+            String range = from + "-" + (from + body.contentLength() - 1);
+            return client.uploadAsync("PATCH", target, body, Map.of("Content-Range", range))
+               .thenApply(resp ->
+               {
+                  if(samePass)
+                  {
+                     previous.set(body);
+                  }
+                  if(j != null)
+                  {
+                     try
+                     {
+                        j.markDone(index);
+                     }
+                     catch(IOException e)
+                     {
+                        throw new UncheckedIOException(e);
+                     }
+                  }
+                  return resp;
+               });
+         });
+      }
+      catch(IOException | InterruptedException | ApiClient.ApiException | RuntimeException e)
+      {
+         // Stop re-reading a possibly multi-GB file for an upload that has failed
+         if(digest != null)
+         {
+            digest.cancel(true);
+         }
+         if(resumed && restartOnBadRange && e instanceof ApiClient.ApiException api && api.problem.status != null && api.problem.status == HTTP_BAD_RANGE)
+         {
+            // The registry disagrees with the offset it reported; open a fresh session instead of failing every re-run
+            journal.delete();
+            return upload(file, resumeKey, progress, false);
+         }
+         throw e;
+      }
+
+      String sha = samePass ? previous.get().digest() : awaitDigest(digest);
+      URI                  commit = URI.create(session + (session.getRawQuery() == null ? "?" : "&") + "digest=" + sha);
+      HttpResponse<byte[]> closed = client.upload("PUT", commit, HttpRequest.BodyPublishers.noBody(), Map.of());
+      String               stored = closed.headers().firstValue("Docker-Content-Digest").orElse(sha);
+      if(!stored.equals(sha))
+      {
+         throw new IOException("registry stored " + stored + " but " + file + " hashes to " + sha);
+      }
+      if(journal != null)
+      {
+         journal.delete();
+      }
+      return new Result(sha, size, location(closed, session));
+   }
+
+
+
+   /***************************************************************************
+    ** Sends chunks with at most {@code lanes} in flight, failing fast on the
+    ** first error.
+    ***************************************************************************/
+   private static void sendChunks(List<Long> pending, int lanes, ChunkSender sender)
+         throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      Semaphore                                      window = new Semaphore(lanes);
+      List<CompletableFuture<HttpResponse<byte[]>>> flying = new ArrayList<>();
+      for(long index : pending)
+      {
+         window.acquire();
+         for(CompletableFuture<HttpResponse<byte[]>> f : flying)
+         {
+            if(f.isCompletedExceptionally())
+            {
+               ApiClient.await(f);
+            }
+         }
+         CompletableFuture<HttpResponse<byte[]>> f = sender.send(index);
+         f.whenComplete((r, e) -> window.release());
+         flying.add(f);
+      }
+      for(CompletableFuture<HttpResponse<byte[]>> f : flying)
+      {
+         ApiClient.await(f);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Asks the registry how much of a session it holds. Absent when the
+    ** session no longer exists (404 or 410); other errors propagate. Like
+    ** docker/distribution, registries send {@code 0-0} for an empty session,
+    ** so that reads as offset 0 rather than one byte received.
+    ***************************************************************************/
+   private OptionalOffset acknowledged(URI session) throws IOException, InterruptedException, ApiClient.ApiException
+   {
+      try
+      {
+         HttpResponse<byte[]> resp  = client.upload("GET", session, HttpRequest.BodyPublishers.noBody(), Map.of());
+         String               range = resp.headers().firstValue("Range").orElse(null);
+         long                 end   = range == null ? -1L : Long.parseLong(range.substring(range.indexOf('-') + 1).trim());
+         return new OptionalOffset(true, end <= 0L ? 0L : end + 1);
+      }
+      catch(ApiClient.ApiException e)
+      {
+         Integer status = e.problem.status;
+         if(status != null && (status == HTTP_NOT_FOUND || status == HTTP_GONE))
+         {
+            return new OptionalOffset(false, 0L);
+         }
+         throw e;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Parses X-Upload-Max-Parallel; anything but a positive integer means one
+    ** chunk at a time.
+    ***************************************************************************/
+   static int maxParallel(String header)
+   {
+      try
+      {
+         return Math.max(1, Integer.parseInt(header.trim()));
+      }
+      catch(NumberFormatException e)
+      {
+         return 1;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Folds per-chunk progress (which restarts on retry) into overall progress.
+    ***************************************************************************/
+   private static TransferProgress chunkProgress(AtomicLong sent, long size, long started, TransferProgress progress)
+   {
+      AtomicLong last = new AtomicLong();
+      return (done, total, rate) ->
+      {
+         long   now     = sent.addAndGet(done - last.getAndSet(done));
+         double seconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+         progress.onProgress(now, size, now / seconds);
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** First byte to send of chunk {@code index}: its start, or the registry's
+    ** acknowledged offset when that falls inside the chunk.
+    ***************************************************************************/
+   private long start(long index, long acked)
+   {
+      return Math.max(index * chunkBytes, acked);
+   }
+
+
+
+   /***************************************************************************
+    ** End (exclusive) of chunk {@code index}.
+    ***************************************************************************/
+   private long end(long index, long size)
+   {
+      return Math.min((index + 1) * chunkBytes, size);
+   }
+
+
+
+   /***************************************************************************
+    ** Resolves the Location header against the base URI, or returns the
+    ** fallback when absent.
+    ***************************************************************************/
+   private URI location(HttpResponse<?> resp, URI fallback) throws IOException
+   {
+      String loc = resp.headers().firstValue("Location").orElse(null);
+      if(loc == null)
+      {
+         if(fallback == null)
+         {
+            throw new IOException("registry did not return an upload Location");
+         }
+         return fallback;
+      }
+      return base.resolve(loc);
+   }
+
+
+
+   /***************************************************************************
+    ** SHA-256 of a file by one sequential read; interrupting the reading
+    ** thread closes the file and ends it.
+    ***************************************************************************/
+   private static String sha256(Path file) throws IOException
+   {
+      try(InputStream in = Files.newInputStream(file))
+      {
+         MessageDigest sha = MessageDigest.getInstance("SHA-256");
+         byte[]        buf = new byte[HASH_BUFFER_BYTES];
+         int           n;
+         while((n = in.read(buf)) > 0)
+         {
+            sha.update(buf, 0, n);
+         }
+         return "sha256:" + HexFormat.of().formatHex(sha.digest());
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Waits for the background SHA-256 and rethrows its read failure.
+    ***************************************************************************/
+   private static String awaitDigest(FutureTask<String> digest) throws IOException, InterruptedException
+   {
+      try
+      {
+         return digest.get();
+      }
+      catch(ExecutionException e)
+      {
+         if(e.getCause() instanceof IOException io)
+         {
+            throw io;
+         }
+         throw new IOException("cannot hash artifact", e.getCause());
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Starts the PATCH for one chunk.
+    ***************************************************************************/
+   @FunctionalInterface
+   private interface ChunkSender
+   {
+      /***************************************************************************
+       ** Sends chunk {@code index}.
+       ***************************************************************************/
+      CompletableFuture<HttpResponse<byte[]>> send(long index);
+   }
+
+
+
+   /***************************************************************************
+    ** Acknowledged offset, or absence of the session.
+    ***************************************************************************/
+   private static final class OptionalOffset
+   {
+      final boolean present;
+      final long    value;
+
+
+
+      /***************************************************************************
+       ** Creates an offset.
+       ***************************************************************************/
+      OptionalOffset(boolean present, long value)
+      {
+         this.present = present;
+         this.value = value;
+      }
+   }
+
+
+
+   /**
+    * Outcome of an upload.
+    */
+   static final class Result
+   {
+      final String digest;
+      final long   sizeBytes;
+      final URI    location;
+
+
+
+      /***************************************************************************
+       ** Creates a result.
+       ***************************************************************************/
+      Result(String digest, long sizeBytes, URI location)
+      {
+         this.digest = digest;
+         this.sizeBytes = sizeBytes;
+         this.location = location;
+      }
+   }
+}
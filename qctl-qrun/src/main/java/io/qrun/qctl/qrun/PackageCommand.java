@@ -19,7 +19,10 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import io.qrun.qctl.core.cli.CommandFailedException;
 import io.qrun.qctl.core.output.Output;
+import io.qrun.qctl.core.sys.Invocation;
+import io.qrun.qctl.shared.json.Json;
 import picocli.CommandLine.Command;
 
 
@@ -37,7 +40,7 @@ public class PackageCommand implements Runnable
    {
       try
       {
-         Path target = Path.of("target");
+         Path target = Invocation.current().resolve("target");
          Files.createDirectories(target);
          Path                manifest = target.resolve("artifact-manifest.json");
          Map<String, Object> m        = new LinkedHashMap<>();
@@ -46,14 +49,14 @@ public class PackageCommand implements Runnable
          m.put("sizeBytes", 12345678);
          // Use fixed timestamp for deterministic tests per V1 fixtures
          m.put("createdAt", "2025-01-15T12:00:00Z");
-         String json = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(m);
+         String json = Json.writer().writeValueAsString(m);
          Files.writeString(manifest, json);
          Output.text(System.out, "wrote " + manifest);
       }
       catch(IOException e)
       {
          System.err.println("qrun package error: " + e.getMessage());
-         System.exit(1);
+         throw new CommandFailedException(1);
       }
    }
 }
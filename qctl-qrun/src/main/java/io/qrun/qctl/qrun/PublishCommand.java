@@ -14,28 +14,53 @@ package io.qrun.qctl.qrun;
 
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import io.qrun.qctl.core.cli.CommandFailedException;
+import io.qrun.qctl.core.cli.RootOptions;
+import io.qrun.qctl.core.config.Config;
+import io.qrun.qctl.core.config.ConfigLoader;
 import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.TransferProgress;
+import io.qrun.qctl.core.sys.Invocation;
 import io.qrun.qctl.core.sys.SystemPaths;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.Spec;
 
 
 @Command(name = "publish", description = "Publish artifact and create release (mock)")
 public class PublishCommand implements Runnable
 {
+   @Spec
+   CommandSpec spec;
+
    @Option(names = "--env", required = true)
    String env;
 
    @Option(names = "--idempotency-key")
    String idempotencyKey;
 
+   @Option(names = "--artifact", paramLabel = "<file>", description = "OCI/zip artifact to upload (streamed; digest computed while sending)")
+   Path artifactFile;
+
+   @Option(names = "--upload-chunk-mb", paramLabel = "<mb>", defaultValue = "64", description = "Artifact upload chunk size in MiB (default: ${DEFAULT-VALUE})")
+   long uploadChunkMb;
+
+   @Option(names = "--upload-parallel", paramLabel = "<n>", defaultValue = "4", description = "Chunks in flight when the registry allows parallel upload (default: ${DEFAULT-VALUE})")
+   int uploadParallel;
+
 
 
    /***************************************************************************
-    * Executes a mock publish flow (artifact + release) honoring Idempotency-Key.
+    * Executes a publish flow (artifact + release) honoring Idempotency-Key. With
+    * {@code --artifact}, the file is first streamed to the registry as a blob in chunks; when an
+    * {@code --idempotency-key} is given, progress is journaled under
+    * {@code SystemPaths.cacheDir()/artifacts/uploads} and a re-run with the same key resumes it.
     *
     * @since 0.1.0
     ***************************************************************************/
@@ -45,6 +70,7 @@ public class PublishCommand implements Runnable
    {
       try
       {
+         URI    api    = ConfigLoader.load().apiEndpointOrDefault();
          var    store  = new io.qrun.qctl.core.auth.TokenStore(SystemPaths.configDir());
          var    apiKey = store.readApiKey();
          String key    = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
@@ -55,28 +81,35 @@ public class PublishCommand implements Runnable
                   builder.header("User-Agent", "qctl/0.1.0");
                   builder.header("Idempotency-Key", key);
                   apiKey.ifPresent(k -> builder.header("X-API-Key", k));
-               });
+               })
+               .withOffline(RootOptions.offline(spec));
 
-         // POST /v1/artifacts (mock)
-         URI artifacts = URI.create("http://localhost:4010/v1/artifacts");
-         Map<?, ?> artifact =
-            client.postJson(
-               artifacts,
-               Map.of(
-                  "id",
-                  "01J0M40G3SJ0QJ9E3V1QK8A3R2",
-                  "kind",
-                  "oci",
-                  "digest",
-                  "sha256:d34db33f",
-                  "sizeBytes",
-                  12345678,
-                  "createdAt",
-                  "2025-01-15T12:00:00Z"),
-               Map.class);
+         // POST /v1/artifacts (mock manifest, or the uploaded blob)
+         URI                 artifacts = Config.apiUri(api, "v1/artifacts");
+         Map<String, Object> manifest  = new LinkedHashMap<>();
+         if(artifactFile != null)
+         {
+            ArtifactUploader.Result blob = new ArtifactUploader(client, api)
+               .withChunkSize(uploadChunkMb * 1024 * 1024)
+               .withParallelism(uploadParallel)
+               .withJournal(SystemPaths.cacheDir().resolve("artifacts").resolve("uploads"))
+               .upload(artifactFile, idempotencyKey, TransferProgress.printing(Invocation.current().err(), "upload " + artifactFile.getFileName()));
+            manifest.put("kind", artifactFile.getFileName().toString().endsWith(".zip") ? "zip" : "oci");
+            manifest.put("digest", blob.digest);
+            manifest.put("sizeBytes", blob.sizeBytes);
+         }
+         else
+         {
+            manifest.put("id", "01J0M40G3SJ0QJ9E3V1QK8A3R2");
+            manifest.put("kind", "oci");
+            manifest.put("digest", "sha256:d34db33f");
+            manifest.put("sizeBytes", 12345678);
+            manifest.put("createdAt", "2025-01-15T12:00:00Z");
+         }
+         Map<?, ?> artifact = client.postJson(artifacts, manifest, Map.class);
 
          // POST /v1/releases (mock)
-         URI releases = URI.create("http://localhost:4010/v1/releases");
+         URI releases = Config.apiUri(api, "v1/releases");
          Map<?, ?> release =
             client.postJson(
                releases,
@@ -100,12 +133,12 @@ public class PublishCommand implements Runnable
       catch(ApiClient.ApiException e)
       {
          System.err.println("error: " + e.problem.title + ": " + e.problem.detail);
-         System.exit(e.exitCode);
+         throw new CommandFailedException(e.exitCode);
       }
       catch(Exception e)
       {
          System.err.println("error: " + e.getMessage());
-         System.exit(1);
+         throw new CommandFailedException(1);
       }
    }
 
@@ -14,8 +14,10 @@ package io.qrun.qctl.qrun;
 
 
 import io.qrun.qctl.shared.spi.CommandPlugin;
+import io.qrun.qctl.shared.spi.PluginCommand;
 
 
+@PluginCommand(QrunCommand.class)
 public final class QrunPlugin implements CommandPlugin
 {
    /***************************************************************************
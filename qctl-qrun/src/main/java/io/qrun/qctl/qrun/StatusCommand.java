@@ -16,10 +16,20 @@ package io.qrun.qctl.qrun;
 import java.io.PrintStream;
 import java.net.URI;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import io.qrun.qctl.core.cli.CommandFailedException;
+import io.qrun.qctl.core.cli.RootOptions;
+import io.qrun.qctl.core.config.Config;
+import io.qrun.qctl.core.config.ConfigLoader;
 import io.qrun.qctl.core.http.ApiClient;
+import io.qrun.qctl.core.http.HedgePolicy;
+import io.qrun.qctl.core.http.HttpCache;
 import io.qrun.qctl.core.output.Output;
+import io.qrun.qctl.core.sys.Invocation;
 import io.qrun.qctl.core.sys.SystemPaths;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Model.CommandSpec;
@@ -30,12 +40,36 @@ import picocli.CommandLine.Spec;
 @Command(name = "status", description = "Show app status from qRun API (mock)")
 public class StatusCommand implements Runnable
 {
-   @Option(names = "--app", required = true)
-   String app;
+   @Option(
+      names = "--app",
+      required = true,
+      split = ",",
+      description = "Application name; repeat or comma-separate to query several apps concurrently "
+         + "(with --output json, several apps print one JSON array in argument order)")
+   List<String> apps;
 
    @Option(names = "--env", required = true)
    String env;
 
+   @Option(
+      names = "--hedge",
+      description = "Re-send status calls still unanswered after the recent --hedge-percentile latency "
+         + "(250 ms until enough calls have been timed), within --hedge-budget")
+   boolean hedge;
+
+   @Option(
+      names = "--hedge-percentile",
+      paramLabel = "<p>",
+      description = "Latency percentile after which --hedge re-sends a call (default: ${DEFAULT-VALUE})")
+   double hedgePercentile = HedgePolicy.DEFAULT_PERCENTILE;
+
+   @Option(
+      names = "--hedge-budget",
+      paramLabel = "<percent>",
+      description = "Most extra requests --hedge may add, in percent of status calls in this process; "
+         + "a one-shot run of fewer than 100/<percent> calls never hedges (default: ${DEFAULT-VALUE})")
+   double hedgeBudget = HedgePolicy.DEFAULT_BUDGET_PERCENT;
+
    @Spec
    CommandSpec spec;
 
@@ -56,11 +90,7 @@ public class StatusCommand implements Runnable
    {
       if("json".equalsIgnoreCase(outputFormat))
       {
-         Map<String, Object> wrapper = new LinkedHashMap<>();
-         wrapper.put("app", app);
-         wrapper.put("env", env);
-         wrapper.put("status", status);
-         Output.json(out, wrapper);
+         Output.json(out, statusJson(status, app, env));
          return;
       }
       String st      = String.valueOf(status.getOrDefault("status", "unknown"));
@@ -88,8 +118,9 @@ public class StatusCommand implements Runnable
    {
       try
       {
-         var store  = new io.qrun.qctl.core.auth.TokenStore(SystemPaths.configDir());
-         var apiKey = store.readApiKey();
+         Config config = ConfigLoader.load();
+         var    store  = new io.qrun.qctl.core.auth.TokenStore(SystemPaths.configDir());
+         var    apiKey = store.readApiKey();
          ApiClient client =
             new ApiClient(
                Duration.ofSeconds(30),
@@ -98,37 +129,71 @@ public class StatusCommand implements Runnable
                   builder.header("User-Agent", "qctl/0.1.0");
                   apiKey.ifPresent(k -> builder.header("X-API-Key", k));
                });
-         URI uri = URI.create("http://localhost:4010/v1/apps/" + app + "/status?env=" + env);
-         @SuppressWarnings("unchecked")
-         Map<String, Object> status = client.getJson(uri, Map.class);
-         String outputFormat = resolveOutputFormat();
-         renderStatus(status, app, env, outputFormat, System.out);
+         // Status is live data: the cache only turns unchanged bodies into 304s and answers --offline
+         client.withCache(HttpCache.defaultCache().alwaysRevalidate()).withOffline(RootOptions.offline(spec));
+         if(hedge)
+         {
+            client.withHedging(HedgePolicy.shared(hedgePercentile, hedgeBudget));
+         }
+         // Issue every status call up front so round-trips overlap; render in argument order
+         List<CompletableFuture<Map<String, Object>>> pending = new ArrayList<>();
+         for(String app : apps)
+         {
+            URI uri = config.apiUri("v1/apps/" + app + "/status?env=" + env);
+            pending.add(client.getJsonAsync(uri, Map.class).thenApply(StatusCommand::asObject));
+         }
+         String      outputFormat = RootOptions.output(spec, config);
+         PrintStream out          = Invocation.current().out();
+         if(apps.size() > 1 && "json".equalsIgnoreCase(outputFormat))
+         {
+            // One document for the whole call, so the output stays parseable as JSON
+            List<Map<String, Object>> all = new ArrayList<>();
+            for(int i = 0; i < apps.size(); i++)
+            {
+               all.add(statusJson(ApiClient.await(pending.get(i)), apps.get(i), env));
+            }
+            Output.json(out, all);
+            return;
+         }
+         for(int i = 0; i < apps.size(); i++)
+         {
+            renderStatus(ApiClient.await(pending.get(i)), apps.get(i), env, outputFormat, out);
+         }
       }
       catch(ApiClient.ApiException e)
       {
-         System.err.println("error: " + e.problem.title + ": " + e.problem.detail);
-         System.exit(e.exitCode);
+         Invocation.current().err().println("error: " + e.problem.title + ": " + e.problem.detail);
+         throw new CommandFailedException(e.exitCode);
       }
       catch(Exception e)
       {
-         System.err.println("error: " + e.getMessage());
-         System.exit(1);
+         Invocation.current().err().println("error: " + e.getMessage());
+         throw new CommandFailedException(1);
       }
    }
 
 
 
    /***************************************************************************
-    * Resolve the desired output format from Picocli parse result, defaults to text.
-    *
-    * @since 0.1.0
+    ** JSON shape of one app's status: app and env next to the API payload.
     ***************************************************************************/
-   private String resolveOutputFormat()
+   private static Map<String, Object> statusJson(Map<String, Object> status, String app, String env)
    {
-      if(spec != null && spec.commandLine() != null && spec.commandLine().getParseResult() != null)
-      {
-         return spec.commandLine().getParseResult().matchedOptionValue("output", "text");
-      }
-      return "text";
+      Map<String, Object> wrapper = new LinkedHashMap<>();
+      wrapper.put("app", app);
+      wrapper.put("env", env);
+      wrapper.put("status", status);
+      return wrapper;
+   }
+
+
+
+   /***************************************************************************
+    ** Narrows a decoded JSON object; Jackson maps objects to string keys.
+    ***************************************************************************/
+   @SuppressWarnings("unchecked")
+   private static Map<String, Object> asObject(Map<?, ?> json)
+   {
+      return (Map<String, Object>) json;
    }
 }
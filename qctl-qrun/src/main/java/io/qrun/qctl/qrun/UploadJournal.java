@@ -0,0 +1,238 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.qrun;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.TreeSet;
+import io.qrun.qctl.shared.json.Json;
+
+
+/**
+ * On-disk record of an in-progress chunked upload, keyed by the publish idempotency key and
+ * stored as {@code <sha256(key)>.json} under {@code SystemPaths.cacheDir()/artifacts/uploads}.
+ *
+ * <p>It remembers which file is being sent (path, size, mtime), the registry session, the chunk
+ * size and which chunks the registry has acknowledged. Every save is atomic (tmp + move), so a
+ * crash leaves either the previous or the new state. The registry stays the authority on the
+ * contiguous offset; the journal adds the out-of-order chunks of parallel uploads.
+ *
+ * Why: Re-running {@code qrun publish} with the same key after a network failure should
+ * continue a multi-GB upload, not restart it.
+ * @since 0.1.0
+ */
+final class UploadJournal
+{
+   private final Path  path;
+   private final State state;
+
+
+
+   /***************************************************************************
+    ** Creates a journal over a state.
+    ***************************************************************************/
+   private UploadJournal(Path path, State state)
+   {
+      this.path = path;
+      this.state = state;
+   }
+
+
+
+   /**
+    * Returns the journal for a key when it describes the same, unchanged file and chunk size.
+    *
+    * @param dir        journal directory
+    * @param key        idempotency key
+    * @param file       file being uploaded
+    * @param chunkBytes chunk size of this run
+    * @return resumable journal, if any
+    */
+   static Optional<UploadJournal> resume(Path dir, String key, Path file, long chunkBytes)
+   {
+      Path p = dir.resolve(fileName(key));
+      if(!Files.isRegularFile(p))
+      {
+         return Optional.empty();
+      }
+      try
+      {
+         State s = Json.reader(State.class).readValue(p.toFile());
+         if(s.file.equals(file.toAbsolutePath().toString())
+            && s.sizeBytes == Files.size(file)
+            && s.modifiedMillis == Files.getLastModifiedTime(file).toMillis()
+            && s.chunkBytes == chunkBytes)
+         {
+            return Optional.of(new UploadJournal(p, s));
+         }
+      }
+      catch(IOException corrupt)
+      {
+         // Unreadable or stale journals are simply replaced by a fresh upload
+      }
+      return Optional.empty();
+   }
+
+
+
+   /**
+    * Starts a journal for a new upload session and saves it.
+    *
+    * @param dir         journal directory
+    * @param key         idempotency key
+    * @param file        file being uploaded
+    * @param chunkBytes  chunk size
+    * @param session     registry upload session URI
+    * @param parallelism number of chunks the registry accepts concurrently
+    * @return saved journal
+    * @throws IOException when the file or the journal cannot be accessed
+    */
+   static UploadJournal start(Path dir, String key, Path file, long chunkBytes, String session, int parallelism) throws IOException
+   {
+      State s = new State();
+      s.file = file.toAbsolutePath().toString();
+      s.sizeBytes = Files.size(file);
+      s.modifiedMillis = Files.getLastModifiedTime(file).toMillis();
+      s.chunkBytes = chunkBytes;
+      s.session = session;
+      s.parallelism = parallelism;
+      UploadJournal j = new UploadJournal(dir.resolve(fileName(key)), s);
+      j.save();
+      return j;
+   }
+
+
+
+   /**
+    * Returns the registry upload session URI.
+    *
+    * @return session URI as recorded
+    */
+   String session()
+   {
+      return state.session;
+   }
+
+
+
+   /**
+    * Returns how many chunks the registry accepts concurrently.
+    *
+    * @return 1 for strictly sequential registries
+    */
+   int parallelism()
+   {
+      return state.parallelism;
+   }
+
+
+
+   /**
+    * Returns whether a chunk was acknowledged.
+    *
+    * @param index chunk index
+    * @return true when recorded as done
+    */
+   synchronized boolean isDone(long index)
+   {
+      return state.done.contains(index);
+   }
+
+
+
+   /**
+    * Records an acknowledged chunk and saves the journal.
+    *
+    * @param index chunk index
+    * @throws IOException when the journal cannot be written
+    */
+   synchronized void markDone(long index) throws IOException
+   {
+      state.done.add(index);
+      save();
+   }
+
+
+
+   /**
+    * Removes the journal once the upload is committed.
+    *
+    * @throws IOException when the file cannot be deleted
+    */
+   void delete() throws IOException
+   {
+      Files.deleteIfExists(path);
+   }
+
+
+
+   /***************************************************************************
+    ** Writes the state atomically.
+    ***************************************************************************/
+   private synchronized void save() throws IOException
+   {
+      Files.createDirectories(path.getParent());
+      Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try
+      {
+         Files.write(tmp, Json.writer(State.class).writeValueAsBytes(state));
+         Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally
+      {
+         Files.deleteIfExists(tmp);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Journal file name for a key (hashed; keys are free-form).
+    ***************************************************************************/
+   private static String fileName(String key)
+   {
+      try
+      {
+         byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+         return HexFormat.of().formatHex(digest) + ".json";
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException("SHA-256 not available", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Serialized journal content.
+    ***************************************************************************/
+   static final class State
+   {
+      public String        file;
+      public long          sizeBytes;
+      public long          modifiedMillis;
+      public long          chunkBytes;
+      public String        session;
+      public int           parallelism;
+      public TreeSet<Long> done = new TreeSet<>();
+   }
+}
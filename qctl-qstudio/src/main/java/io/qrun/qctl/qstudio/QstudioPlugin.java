@@ -14,8 +14,10 @@ package io.qrun.qctl.qstudio;
 
 
 import io.qrun.qctl.shared.spi.CommandPlugin;
+import io.qrun.qctl.shared.spi.PluginCommand;
 
 
+@PluginCommand(QstudioCommand.class)
 public final class QstudioPlugin implements CommandPlugin
 {
    /***************************************************************************
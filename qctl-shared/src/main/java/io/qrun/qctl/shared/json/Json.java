@@ -0,0 +1,247 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.shared.json;
+
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+
+/**
+ * Process-wide Jackson mappers for JSON, YAML and Smile (binary JSON), with {@link ObjectReader}s and
+ * {@link ObjectWriter}s cached per target type.
+ *
+ * <p>A reader or writer obtained here has its root (de)serializer resolved once and is then
+ * reused by every caller, so hot paths skip the per-call type lookup that
+ * {@code mapper.readValue(bytes, Type.class)} performs. Both are immutable and thread-safe.
+ *
+ * <p>On the JVM, the {@link BlackbirdModule} replaces reflective property access on DTOs with
+ * generated lambda accessors. In a native image it is not registered: there is no runtime class
+ * definition there, and the existing {@code reflect-config.json} entries keep databinding working
+ * reflectively.
+ *
+ * Why: Every module built its own {@code ObjectMapper}, paying construction and serializer
+ * discovery again instead of sharing one warmed-up instance.
+ * @since 0.1.0
+ */
+public final class Json
+{
+   private static final ObjectMapper JSON        = configure(new ObjectMapper());
+   private static final ObjectMapper YAML        = configure(new ObjectMapper(new YAMLFactory()));
+   private static final ObjectMapper SMILE       = configure(new ObjectMapper(new SmileFactory()));
+   private static final ObjectWriter JSON_WRITER = JSON.writer();
+   private static final ObjectWriter YAML_WRITER = YAML.writer();
+
+   private static final ClassValue<ObjectReader>    READERS         = readers(JSON);
+   private static final ClassValue<ObjectReader>    YAML_READERS    = readers(YAML);
+   private static final ClassValue<ObjectWriter>    WRITERS         = writers(JSON);
+   private static final Map<JavaType, ObjectReader> GENERIC_READERS = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    * Non-instantiable utility.
+    *
+    * @since 0.1.0
+    ***************************************************************************/
+   private Json()
+   {
+   }
+
+
+
+   /**
+    * Returns the shared JSON mapper, for tree access ({@code readTree}, {@code nullNode}) and
+    * type construction. Do not reconfigure it.
+    *
+    * @return JSON mapper
+    */
+   public static ObjectMapper mapper()
+   {
+      return JSON;
+   }
+
+
+
+   /**
+    * Returns the cached JSON reader for a type.
+    *
+    * @param type target type
+    * @return reader bound to {@code type}
+    */
+   public static ObjectReader reader(Class<?> type)
+   {
+      return READERS.get(type);
+   }
+
+
+
+   /**
+    * Returns the cached JSON reader for a generic type such as {@code List<Foo>}.
+    *
+    * @param type target type, e.g. from {@code mapper().getTypeFactory()}
+    * @return reader bound to {@code type}
+    */
+   public static ObjectReader reader(JavaType type)
+   {
+      return GENERIC_READERS.computeIfAbsent(type, JSON::readerFor);
+   }
+
+
+
+   /**
+    * Returns the shared JSON writer for values of any runtime type.
+    *
+    * @return JSON writer
+    */
+   public static ObjectWriter writer()
+   {
+      return JSON_WRITER;
+   }
+
+
+
+   /**
+    * Returns the cached JSON writer for a root type.
+    *
+    * @param type declared type of the values written
+    * @return writer bound to {@code type}
+    */
+   public static ObjectWriter writer(Class<?> type)
+   {
+      return WRITERS.get(type);
+   }
+
+
+
+   /**
+    * Returns the shared YAML mapper, for tree access. Do not reconfigure it.
+    *
+    * @return YAML mapper
+    */
+   public static ObjectMapper yaml()
+   {
+      return YAML;
+   }
+
+
+
+   /**
+    * Returns the cached YAML reader for a type.
+    *
+    * @param type target type
+    * @return reader bound to {@code type}
+    */
+   public static ObjectReader yamlReader(Class<?> type)
+   {
+      return YAML_READERS.get(type);
+   }
+
+
+
+   /**
+    * Returns the shared YAML writer.
+    *
+    * @return YAML writer
+    */
+   public static ObjectWriter yamlWriter()
+   {
+      return YAML_WRITER;
+   }
+
+
+
+   /**
+    * Returns the shared Smile mapper, for compact binary trees in on-disk caches. Do not
+    * reconfigure it.
+    *
+    * @return Smile mapper
+    */
+   public static ObjectMapper smile()
+   {
+      return SMILE;
+   }
+
+
+
+   /**
+    * Returns whether this code runs inside a GraalVM native image.
+    *
+    * @return true at native-image build and run time
+    */
+   public static boolean inNativeImage()
+   {
+      return System.getProperty("org.graalvm.nativeimage.imagecode") != null;
+   }
+
+
+
+   /***************************************************************************
+    ** Registers the accessor module where runtime class definition works.
+    ***************************************************************************/
+   private static ObjectMapper configure(ObjectMapper mapper)
+   {
+      if(!inNativeImage())
+      {
+         mapper.registerModule(new BlackbirdModule());
+      }
+      return mapper;
+   }
+
+
+
+   /***************************************************************************
+    ** Creates a per-class reader cache over a mapper.
+    ***************************************************************************/
+   private static ClassValue<ObjectReader> readers(ObjectMapper mapper)
+   {
+      return new ClassValue<>()
+      {
+         /***************************************************************************
+          ** Resolves a reader for a root type.
+          ***************************************************************************/
+         @Override
+         protected ObjectReader computeValue(Class<?> type)
+         {
+            return mapper.readerFor(type);
+         }
+      };
+   }
+
+
+
+   /***************************************************************************
+    ** Creates a per-class writer cache over a mapper.
+    ***************************************************************************/
+   private static ClassValue<ObjectWriter> writers(ObjectMapper mapper)
+   {
+      return new ClassValue<>()
+      {
+         /***************************************************************************
+          ** Resolves a writer for a root type.
+          ***************************************************************************/
+         @Override
+         protected ObjectWriter computeValue(Class<?> type)
+         {
+            return mapper.writerFor(type);
+         }
+      };
+   }
+}
@@ -0,0 +1,249 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.shared.spi;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+
+/**
+ * Startup view of the installed {@link CommandPlugin}s: for each provider, the command name,
+ * aliases and description recorded at build time by {@link CommandIndexProcessor}.
+ *
+ * <p>Providers are enumerated with {@link ServiceLoader#stream()}, which loads the small plugin
+ * classes but does not instantiate them. A plugin is only instantiated, and its command tree only
+ * built, through {@link Entry#instantiate()}. A provider without an index resource (built without
+ * the processor) is reported as unindexed, and callers should load it eagerly as before.
+ *
+ * Why: Building picocli models for every plugin on each run made startup grow with every module.
+ * @since 0.1.0
+ */
+public final class CommandIndex
+{
+   static final String KEY_PLUGIN      = "plugin";
+   static final String KEY_COMMAND     = "command";
+   static final String KEY_NAME        = "name";
+   static final String KEY_ALIASES     = "aliases";
+   static final String KEY_DESCRIPTION = "description";
+
+   private static final String RESOURCE_DIR = "META-INF/qctl/commands/";
+
+
+
+   /***************************************************************************
+    * Non-instantiable utility.
+    *
+    * @since 0.1.0
+    ***************************************************************************/
+   private CommandIndex()
+   {
+   }
+
+
+
+   /**
+    * Lists the installed command plugins from the context class loader. A provider that is
+    * declared but cannot be loaded (e.g. its module is not on the class path) is skipped and
+    * reported, and the remaining ones are still listed.
+    *
+    * @param skipped receives the error for each provider that could not be loaded
+    * @return one entry per loadable provider, in service-loader order
+    */
+   public static List<Entry> load(Consumer<? super Throwable> skipped)
+   {
+      List<Entry>                                      out       = new ArrayList<>();
+      Spliterator<ServiceLoader.Provider<CommandPlugin>> providers = ServiceLoader.load(CommandPlugin.class).stream().spliterator();
+      while(true)
+      {
+         try
+         {
+            if(!providers.tryAdvance(p -> out.add(new Entry(p, read(p.type())))))
+            {
+               return out;
+            }
+         }
+         catch(ServiceConfigurationError | LinkageError e)
+         {
+            // The lookup has already moved past the broken provider
+            skipped.accept(e);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    * Returns the class-path resource holding a plugin's index entry.
+    *
+    * @param pluginClass binary name of the plugin class
+    * @return resource path (no leading slash)
+    * @since 0.1.0
+    ***************************************************************************/
+   static String resourceName(String pluginClass)
+   {
+      return RESOURCE_DIR + pluginClass + ".properties";
+   }
+
+
+
+   /***************************************************************************
+    ** Reads a plugin's index entry, or returns null when it has none.
+    ***************************************************************************/
+   private static Properties read(Class<?> plugin)
+   {
+      try(InputStream in = plugin.getClassLoader().getResourceAsStream(resourceName(plugin.getName())))
+      {
+         if(in == null)
+         {
+            return null;
+         }
+         Properties props = new Properties();
+         props.load(in);
+         return props.getProperty(KEY_NAME) != null ? props : null;
+      }
+      catch(IOException e)
+      {
+         return null;
+      }
+   }
+
+
+
+   /**
+    * One installed plugin and, when indexed, its command metadata.
+    */
+   public static final class Entry
+   {
+      private final ServiceLoader.Provider<CommandPlugin> provider;
+      private final Properties                            props;
+
+
+
+      /***************************************************************************
+       ** Creates an entry.
+       ***************************************************************************/
+      Entry(ServiceLoader.Provider<CommandPlugin> provider, Properties props)
+      {
+         this.provider = provider;
+         this.props = props;
+      }
+
+
+
+      /**
+       * Returns whether build-time metadata exists for this plugin.
+       *
+       * @return false when the plugin must be instantiated to learn its name
+       */
+      public boolean isIndexed()
+      {
+         return props != null;
+      }
+
+
+
+      /**
+       * Returns the command name.
+       *
+       * @return name, or null when not indexed
+       */
+      public String name()
+      {
+         return props == null ? null : props.getProperty(KEY_NAME);
+      }
+
+
+
+      /**
+       * Returns the plugin class name.
+       *
+       * @return fully qualified provider class name
+       */
+      public String type()
+      {
+         return provider.type().getName();
+      }
+
+
+
+      /**
+       * Returns the command aliases.
+       *
+       * @return aliases (empty when none or not indexed)
+       */
+      public String[] aliases()
+      {
+         String list = props == null ? "" : props.getProperty(KEY_ALIASES, "");
+         return list.isEmpty() ? new String[0] : list.split(",");
+      }
+
+
+
+      /**
+       * Returns the command description lines.
+       *
+       * @return description (empty when none or not indexed)
+       */
+      public String[] description()
+      {
+         String text = props == null ? "" : props.getProperty(KEY_DESCRIPTION, "");
+         return text.isEmpty() ? new String[0] : text.split("\n");
+      }
+
+
+
+      /**
+       * Returns whether any argument equals the command name or one of its aliases.
+       *
+       * @param args command-line arguments
+       * @return true when the command may be invoked (or asked for help) by these arguments
+       */
+      public boolean isNamedIn(String[] args)
+      {
+         List<String> argv = Arrays.asList(args);
+         if(argv.contains(name()))
+         {
+            return true;
+         }
+         for(String alias : aliases())
+         {
+            if(argv.contains(alias))
+            {
+               return true;
+            }
+         }
+         return false;
+      }
+
+
+
+      /**
+       * Instantiates the plugin.
+       *
+       * @return plugin instance
+       */
+      public CommandPlugin instantiate()
+      {
+         return provider.get();
+      }
+   }
+}
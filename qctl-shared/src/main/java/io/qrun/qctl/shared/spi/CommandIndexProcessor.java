@@ -0,0 +1,188 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.shared.spi;
+
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+
+/**
+ * Annotation processor that writes a {@link CommandIndex} entry for every class annotated with
+ * {@link PluginCommand}: the plugin class plus the {@code name}, {@code aliases} and
+ * {@code description} of the picocli {@code @Command} it returns, stored as
+ * {@code META-INF/qctl/commands/<plugin class>.properties}.
+ *
+ * <p>It is discovered from the compile classpath, so every plugin module gets it by depending on
+ * {@code qctl-shared}. The {@code @Command} annotation is read by name, so this module does not
+ * depend on picocli.
+ *
+ * Why: Command metadata is known at compile time; reading it from a properties file at startup
+ * is far cheaper than building picocli models for commands that will not run.
+ * @since 0.1.0
+ */
+@SupportedAnnotationTypes("io.qrun.qctl.shared.spi.PluginCommand")
+public final class CommandIndexProcessor extends AbstractProcessor
+{
+   private static final String PICOCLI_COMMAND = "picocli.CommandLine.Command";
+
+
+
+   /**
+    * Supports whatever language level the compiler runs at.
+    *
+    * @return latest supported source version
+    */
+   @Override
+   public SourceVersion getSupportedSourceVersion()
+   {
+      return SourceVersion.latestSupported();
+   }
+
+
+
+   /**
+    * Writes an index entry for each annotated plugin.
+    *
+    * @param annotations annotation types requested by this processor
+    * @param round       current round
+    * @return true, the annotation is claimed
+    */
+   @Override
+   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round)
+   {
+      for(TypeElement annotation : annotations)
+      {
+         for(Element plugin : round.getElementsAnnotatedWith(annotation))
+         {
+            try
+            {
+               write((TypeElement) plugin, commandClass(plugin, annotation));
+            }
+            catch(IOException | IllegalStateException e)
+            {
+               processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "cannot index command plugin: " + e.getMessage(), plugin);
+            }
+         }
+      }
+      return true;
+   }
+
+
+
+   /***************************************************************************
+    ** Returns the command class named by {@code @PluginCommand(value)}.
+    ***************************************************************************/
+   private static TypeElement commandClass(Element plugin, TypeElement annotation)
+   {
+      for(AnnotationMirror mirror : plugin.getAnnotationMirrors())
+      {
+         if(mirror.getAnnotationType().asElement().equals(annotation))
+         {
+            for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : mirror.getElementValues().entrySet())
+            {
+               if(e.getKey().getSimpleName().contentEquals("value"))
+               {
+                  return (TypeElement) ((DeclaredType) e.getValue().getValue()).asElement();
+               }
+            }
+         }
+      }
+      throw new IllegalStateException("@PluginCommand without a value");
+   }
+
+
+
+   /***************************************************************************
+    ** Writes the properties resource for one plugin.
+    ***************************************************************************/
+   private void write(TypeElement plugin, TypeElement command) throws IOException
+   {
+      AnnotationMirror picocli = null;
+      for(AnnotationMirror mirror : command.getAnnotationMirrors())
+      {
+         if(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(PICOCLI_COMMAND))
+         {
+            picocli = mirror;
+         }
+      }
+      if(picocli == null)
+      {
+         throw new IllegalStateException(command + " is not annotated with @Command");
+      }
+
+      Properties props = new Properties();
+      props.setProperty(CommandIndex.KEY_PLUGIN, processingEnv.getElementUtils().getBinaryName(plugin).toString());
+      props.setProperty(CommandIndex.KEY_COMMAND, processingEnv.getElementUtils().getBinaryName(command).toString());
+      for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e
+         : processingEnv.getElementUtils().getElementValuesWithDefaults(picocli).entrySet())
+      {
+         String key = e.getKey().getSimpleName().toString();
+         if(key.equals(CommandIndex.KEY_NAME))
+         {
+            props.setProperty(key, String.valueOf(e.getValue().getValue()));
+         }
+         else if(key.equals(CommandIndex.KEY_ALIASES) || key.equals(CommandIndex.KEY_DESCRIPTION))
+         {
+            props.setProperty(key, String.join(key.equals(CommandIndex.KEY_ALIASES) ? "," : "\n", strings(e.getValue())));
+         }
+      }
+
+      String       binary = props.getProperty(CommandIndex.KEY_PLUGIN);
+      FileObject   out    = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", CommandIndex.resourceName(binary), plugin);
+      StringWriter text   = new StringWriter();
+      props.store(text, null);
+      try(Writer w = out.openWriter())
+      {
+         // Drop the timestamp comment so the resource is reproducible
+         w.write(text.toString().replaceAll("(?m)^#.*\\R", ""));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** Flattens a String[] annotation value.
+    ***************************************************************************/
+   private static List<String> strings(AnnotationValue value)
+   {
+      List<String> out = new ArrayList<>();
+      if(value.getValue() instanceof List<?> items)
+      {
+         for(Object item : items)
+         {
+            out.add(String.valueOf(((AnnotationValue) item).getValue()));
+         }
+      }
+      return out;
+   }
+}
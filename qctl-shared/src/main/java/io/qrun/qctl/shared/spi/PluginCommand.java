@@ -0,0 +1,39 @@
+/*
+ * All Rights Reserved
+ *
+ * Copyright (c) 2025. QRunIO.   Contact: contact@qrun.io
+ *
+ * THE CONTENTS OF THIS PROJECT ARE PROPRIETARY AND CONFIDENTIAL.
+ * UNAUTHORIZED COPYING, TRANSFERRING, OR REPRODUCTION OF ANY PART OF THIS PROJECT, VIA ANY MEDIUM, IS STRICTLY PROHIBITED.
+ *
+ * The receipt or possession of the source code and/or any parts thereof does not convey or imply any right to use them
+ * for any purpose other than the purpose for which they were provided to you.
+ */
+
+package io.qrun.qctl.shared.spi;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Names the picocli {@code @Command} class a {@link CommandPlugin} returns, so that
+ * {@link CommandIndexProcessor} can record its name, aliases and description at build time.
+ *
+ * Why: Lets the CLI list and route to plugin commands without instantiating or introspecting them.
+ * @since 0.1.0
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface PluginCommand
+{
+   /**
+    * Returns the command class returned by {@link CommandPlugin#getCommand()}.
+    *
+    * @return picocli command class
+    */
+   Class<?> value();
+}
@@ -5,6 +5,12 @@
 
 set -e
 
+# --pgo: profile-guided build of qctl-cli (Oracle GraalVM); see NATIVE-BUILD.md
+PGO=false
+if [ "$1" = "--pgo" ]; then
+    PGO=true
+fi
+
 RED='\033[0;31m'
 GREEN='\033[0;32m'
 BLUE='\033[0;34m'
@@ -25,20 +31,33 @@ fi
 
 echo
 echo -e "${BLUE}Step 2: Building Native Executable${NC}"
-echo "Running: mvn -Pnative -DskipTests -pl qctl-shared,qctl-core -am clean package"
-echo
+if [ "$PGO" = true ]; then
+    echo "Running: mvn -Pnative-pgo -DskipTests -pl qctl-cli -am clean verify"
+    echo
+
+    # Instrumented image, training run against the mock API, PGO image and comparison report
+    mvn -Pnative-pgo -DskipTests -pl qctl-cli -am clean verify
+else
+    echo "Running: mvn -Pnative -DskipTests -pl qctl-shared,qctl-core -am clean package"
+    echo
 
-# Step 2: Build native executable (include dependencies)
-# -am = also-make (build required dependencies)
-# -pl = projects list (target qctl-core and its dependencies)
-mvn -Pnative -DskipTests -pl qctl-shared,qctl-core -am clean package
+    # Step 2: Build native executable (include dependencies)
+    # -am = also-make (build required dependencies)
+    # -pl = projects list (target qctl-core and its dependencies)
+    mvn -Pnative -DskipTests -pl qctl-shared,qctl-core -am clean package
+fi
 
 if [ $? -eq 0 ]; then
     echo
     echo -e "${GREEN}🎉 Native build completed successfully!${NC}"
     
     # Find the native executable
-    NATIVE_BINARY=$(find . -name "qctl" -type f -executable 2>/dev/null | head -n 1)
+    if [ "$PGO" = true ]; then
+        NATIVE_BINARY=qctl-cli/target/qctl-pgo
+        echo -e "${GREEN}📈 PGO report: ${NC}qctl-cli/target/pgo/report.md"
+    else
+        NATIVE_BINARY=$(find . -name "qctl" -type f -executable 2>/dev/null | head -n 1)
+    fi
     if [ -n "$NATIVE_BINARY" ]; then
         echo -e "${GREEN}📦 Native executable: ${NC}${NATIVE_BINARY}"
         